@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files written with {@code -rf json} and fails if a benchmark got slower than the given
+ * threshold. This is meant to compare the results of a change with the results of its base branch on the same machine:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.graylog.benchmarks.BaselineComparison baseline.json result.json 5
+ * </pre>
+ */
+public class BaselineComparison {
+    private static final double DEFAULT_THRESHOLD_PERCENT = 5.0d;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <result.json> [threshold-percent]");
+            System.exit(2);
+        }
+        final double threshold = args.length == 3 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final Map<String, Score> baseline = readScores(objectMapper, Path.of(args[0]));
+        final Map<String, Score> result = readScores(objectMapper, Path.of(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : new TreeMap<>(result).entrySet()) {
+            final Score base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf(Locale.ENGLISH, "%-100s %15s%n", entry.getKey(), "new");
+                continue;
+            }
+            final double change = entry.getValue().improvementPercent(base);
+            final boolean regression = change < -threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf(Locale.ENGLISH, "%-100s %+14.2f%%%s%n", entry.getKey(), change, regression ? "  REGRESSION" : "");
+        }
+
+        if (regressions > 0) {
+            System.out.printf(Locale.ENGLISH, "%d benchmarks are more than %.1f%% slower than the baseline%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> readScores(ObjectMapper objectMapper, Path file) throws IOException {
+        final Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : objectMapper.readTree(file.toFile())) {
+            final StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+            final Map<String, String> sortedParams = new TreeMap<>();
+            run.path("params").fields().forEachRemaining(param -> sortedParams.put(param.getKey(), param.getValue().asText()));
+            sortedParams.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+
+            final String mode = run.path("mode").asText();
+            scores.put(key + " (" + mode + ")", new Score(run.path("primaryMetric").path("score").asDouble(), "thrpt".equals(mode)));
+        }
+        return scores;
+    }
+
+    /**
+     * @param higherIsBetter true for throughput, false for the modes which measure time
+     */
+    private record Score(double value, boolean higherIsBetter) {
+        double improvementPercent(Score baseline) {
+            if (baseline.value() == 0.0d) {
+                return 0.0d;
+            }
+            final double change = (value - baseline.value()) / baseline.value() * 100.0d;
+            return higherIsBetter ? change : -change;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import org.graylog.plugins.beats.Beats2Codec;
+import org.graylog.plugins.cef.codec.CEFCodec;
+import org.graylog2.inputs.codecs.GelfChunkAggregator;
+import org.graylog2.inputs.codecs.GelfCodec;
+import org.graylog2.inputs.codecs.SyslogCodec;
+import org.graylog2.inputs.codecs.gelf.GELFBulkDroppedMsgService;
+import org.graylog2.inputs.diagnosis.InputDiagnosisMetrics;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.inputs.codecs.Codec;
+import org.graylog2.plugin.journal.RawMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Decodes raw messages like the input buffer does for the most common codecs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"gelf", "syslog", "cef", "beats"})
+    public String codec;
+
+    private Codec decoder;
+    private RawMessage[] rawMessages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final MessageCorpus corpus = new MessageCorpus(42);
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final Configuration configuration = new Configuration(Map.of());
+
+        final List<byte[]> payloads;
+        switch (codec) {
+            case "gelf" -> {
+                decoder = new GelfCodec(configuration, mock(GelfChunkAggregator.class), corpus.messageFactory(),
+                        new GELFBulkDroppedMsgService(new InputDiagnosisMetrics(metricRegistry)));
+                payloads = corpus.gelfPayloads(MessageCorpus.SIZE);
+            }
+            case "syslog" -> {
+                decoder = new SyslogCodec(configuration, metricRegistry, corpus.messageFactory());
+                payloads = corpus.syslogPayloads(MessageCorpus.SIZE);
+            }
+            case "cef" -> {
+                decoder = new CEFCodec(configuration, corpus.messageFactory());
+                payloads = corpus.cefPayloads(MessageCorpus.SIZE);
+            }
+            case "beats" -> {
+                decoder = new Beats2Codec(configuration, corpus.objectMapper(), corpus.messageFactory());
+                payloads = corpus.beatsPayloads(MessageCorpus.SIZE);
+            }
+            default -> throw new IllegalArgumentException("Unknown codec: " + codec);
+        }
+        rawMessages = payloads.stream().map(RawMessage::new).toArray(RawMessage[]::new);
+    }
+
+    @Benchmark
+    public Optional<Message> decode() {
+        return decoder.decodeSafe(rawMessages[next++ & MessageCorpus.MASK]);
+    }
+}
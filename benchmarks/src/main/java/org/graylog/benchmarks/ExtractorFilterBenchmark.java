@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.eventbus.EventBus;
+import org.graylog2.filters.ExtractorFilter;
+import org.graylog2.inputs.Input;
+import org.graylog2.inputs.InputService;
+import org.graylog2.inputs.extractors.RegexExtractor;
+import org.graylog2.inputs.extractors.SplitAndIndexExtractor;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.inputs.Extractor;
+import org.graylog2.plugin.lifecycles.Lifecycle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the extractors of an input on messages. Most extractors have a string or regular expression condition and
+ * only a few of them match a message, like on inputs which receive logs of many different applications.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExtractorFilterBenchmark {
+    private static final String INPUT_ID = "000000000000000000000001";
+    private static final String[] RESOURCES = {"/login", "/users", "/posts/45326/edit", "/admin"};
+
+    @Param({"10", "50"})
+    public int extractors;
+
+    private ExtractorFilter filter;
+    private Message[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        final MessageCorpus corpus = new MessageCorpus(42);
+        final MetricRegistry metricRegistry = new MetricRegistry();
+
+        final List<Extractor> extractorList = new ArrayList<>(extractors);
+        for (int i = 0; i < extractors; i++) {
+            extractorList.add(extractor(metricRegistry, i));
+        }
+
+        final Input input = mock(Input.class);
+        when(input.getId()).thenReturn(INPUT_ID);
+        final InputService inputService = mock(InputService.class);
+        when(inputService.all()).thenReturn(List.of(input));
+        when(inputService.find(INPUT_ID)).thenReturn(input);
+        when(inputService.getExtractors(any())).thenReturn(extractorList);
+
+        filter = new ExtractorFilter(inputService, new EventBus(), mock(ScheduledExecutorService.class));
+        filter.lifecycleChanged(Lifecycle.STARTING);
+
+        messages = corpus.messages(MessageCorpus.SIZE).toArray(Message[]::new);
+        for (Message message : messages) {
+            message.setSourceInputId(INPUT_ID);
+        }
+    }
+
+    @Benchmark
+    public Message filter() {
+        final Message message = messages[next++ & MessageCorpus.MASK];
+        filter.filter(message);
+        return message;
+    }
+
+    private static Extractor extractor(MetricRegistry metricRegistry, int i) throws Exception {
+        final String id = "extractor-" + i;
+        final String target = "extracted_" + i;
+        return switch (i % 4) {
+            // Only requests of one resource
+            case 0 -> new RegexExtractor(metricRegistry, id, id, i, Extractor.CursorStrategy.COPY, "message", target,
+                    Map.of("regex_value", "\\[(\\d{3})\\]"), "admin", List.of(),
+                    Extractor.ConditionType.STRING, RESOURCES[i / 4 % RESOURCES.length] + " [");
+            // Only server errors
+            case 1 -> new RegexExtractor(metricRegistry, id, id, i, Extractor.CursorStrategy.COPY, "message", target,
+                    Map.of("regex_value", "(\\d+)ms$"), "admin", List.of(),
+                    Extractor.ConditionType.REGEX, "\\[50" + (i % 10) + "\\]");
+            // Logs of another application
+            case 2 -> new SplitAndIndexExtractor(metricRegistry, id, id, i, Extractor.CursorStrategy.COPY, "message",
+                    target, Map.of("index", 2, "split_by", " "), "admin", List.of(),
+                    Extractor.ConditionType.STRING, "level=error app=service-" + i);
+            // Every message
+            default -> new SplitAndIndexExtractor(metricRegistry, id, id, i, Extractor.CursorStrategy.COPY, "message",
+                    target, Map.of("index", 2, "split_by", " "), "admin", List.of(),
+                    Extractor.ConditionType.NONE, null);
+        };
+    }
+}
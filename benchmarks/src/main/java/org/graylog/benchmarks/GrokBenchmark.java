@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.benchmarks;
+
+import io.krakens.grok.api.GrokCompiler;
+import org.graylog2.grok.GrokMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches {@code %{COMBINEDAPACHELOG}} against access log lines and against key=value lines it can't match, with and
+ * without the literal prefilter of {@link GrokMatcher}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GrokBenchmark {
+    @Param({"true", "false"})
+    public boolean prefilter;
+
+    @Param({"access_log", "key_value"})
+    public String lines;
+
+    private GrokMatcher matcher;
+    private String[] texts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final MessageCorpus corpus = new MessageCorpus(42);
+        final GrokCompiler grokCompiler = GrokCompiler.newInstance();
+        grokCompiler.registerDefaultPatterns();
+        matcher = GrokMatcher.of(grokCompiler.compile("%{COMBINEDAPACHELOG}"), prefilter);
+        texts = ("access_log".equals(lines) ? corpus.accessLogLines(MessageCorpus.SIZE) : corpus.keyValueBodies(MessageCorpus.SIZE))
+                .toArray(String[]::new);
+    }
+
+    @Benchmark
+    public Map<String, Object> match() {
+        return matcher.match(texts[next++ & MessageCorpus.MASK]).capture();
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.graylog2.inputs.random.generators.FakeHttpRawMessageGenerator;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageFactory;
+import org.graylog2.plugin.TestMessageFactory;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Generates realistic messages and raw payloads for the benchmarks.
+ * <p>
+ * All payloads are derived from the HTTP request messages of the {@link FakeHttpRawMessageGenerator}, which is also
+ * used by the "Random HTTP message generator" input. This way the codec, extractor, stream and pipeline benchmarks
+ * work on messages with the same content and field vocabulary.
+ */
+public class MessageCorpus {
+    /**
+     * Number of messages the benchmarks cycle through. It's large enough to keep the branch predictor from learning
+     * the input and a power of two, so the next index can be masked with {@link #MASK}.
+     */
+    public static final int SIZE = 1024;
+    public static final int MASK = SIZE - 1;
+
+    private static final DateTimeFormatter RFC3164_TIMESTAMP = DateTimeFormat.forPattern("MMM dd HH:mm:ss")
+            .withLocale(Locale.ENGLISH)
+            .withZoneUTC();
+    private static final DateTimeFormatter ISO_TIMESTAMP = ISODateTimeFormat.dateTime().withZoneUTC();
+    private static final DateTimeFormatter ACCESS_LOG_TIMESTAMP = DateTimeFormat.forPattern("dd/MMM/yyyy:HH:mm:ss Z")
+            .withLocale(Locale.ENGLISH)
+            .withZoneUTC();
+    private static final String[] SOURCES = {"web-01", "web-02", "web-03", "api-01", "api-02"};
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101 Firefox/128.0",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/126.0 Safari/537.36",
+            "curl/8.5.0"
+    };
+
+    private final MessageFactory messageFactory = new TestMessageFactory();
+    private final ObjectMapper objectMapper = new ObjectMapperProvider().get();
+    private final FakeHttpRawMessageGenerator generator = new FakeHttpRawMessageGenerator("benchmark");
+    private final Random random;
+
+    public MessageCorpus(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public MessageFactory messageFactory() {
+        return messageFactory;
+    }
+
+    public ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Returns new messages as they are created by the random HTTP message input, with a few additional fields
+     * most inputs add.
+     */
+    public List<Message> messages(int count) {
+        return generate(count, i -> message());
+    }
+
+    public Message message() {
+        final Message message = FakeHttpRawMessageGenerator.generateMessage(messageFactory, generator.generateState());
+        message.setSource(pick(SOURCES));
+        message.addField("client_ip", clientIp());
+        message.addField("user_agent", pick(USER_AGENTS));
+        return message;
+    }
+
+    public List<byte[]> gelfPayloads(int count) {
+        return generate(count, i -> {
+            final Message message = message();
+            final Map<String, Object> gelf = new LinkedHashMap<>();
+            gelf.put("version", "1.1");
+            gelf.put("host", message.getSource());
+            gelf.put("short_message", message.getMessage());
+            gelf.put("timestamp", message.getTimestamp().getMillis() / 1000.0d);
+            gelf.put("level", 6);
+            customFields(message).forEach((key, value) -> gelf.put("_" + key, value));
+            return toJson(gelf);
+        });
+    }
+
+    /**
+     * Returns RFC 5424 and RFC 3164 syslog messages in equal parts.
+     */
+    public List<byte[]> syslogPayloads(int count) {
+        return generate(count, i -> {
+            final Message message = message();
+            final DateTime timestamp = message.getTimestamp();
+            final String line;
+            if (i % 2 == 0) {
+                line = "<134>1 " + ISO_TIMESTAMP.print(timestamp) + " " + message.getSource() + " nginx "
+                        + (1000 + random.nextInt(30000)) + " access - " + message.getMessage();
+            } else {
+                line = "<134>" + RFC3164_TIMESTAMP.print(timestamp) + " " + message.getSource() + " nginx["
+                        + (1000 + random.nextInt(30000)) + "]: " + message.getMessage();
+            }
+            return line.getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    public List<byte[]> cefPayloads(int count) {
+        return generate(count, i -> {
+            final Message message = message();
+            final String line = "<134>1 " + ISO_TIMESTAMP.print(message.getTimestamp()) + " " + message.getSource()
+                    + " waf 1234 msgid - CEF:0|Graylog|Benchmark|1.0|" + message.getField("http_response_code")
+                    + "|HTTP request|" + (1 + random.nextInt(9))
+                    + "|src=" + message.getField("client_ip")
+                    + " dst=10.0.0.1 dpt=443"
+                    + " requestMethod=" + message.getField("http_method")
+                    + " request=" + message.getField("resource")
+                    + " requestClientApplication=" + message.getField("user_agent")
+                    + " cs1Label=controller cs1=" + message.getField("controller")
+                    + " cn1Label=took_ms cn1=" + message.getField("took_ms")
+                    + " msg=" + message.getMessage();
+            return line.getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    public List<byte[]> beatsPayloads(int count) {
+        return generate(count, i -> {
+            final Message message = message();
+            final Map<String, Object> event = new LinkedHashMap<>();
+            event.put("@metadata", Map.of("beat", "filebeat", "type", "_doc", "version", "8.14.0"));
+            event.put("@timestamp", ISO_TIMESTAMP.print(message.getTimestamp()));
+            event.put("message", message.getMessage());
+            event.put("agent", Map.of("type", "filebeat", "version", "8.14.0", "hostname", message.getSource(),
+                    "name", message.getSource()));
+            event.put("host", Map.of("name", message.getSource(), "os", Map.of("family", "debian", "kernel", "6.1.0")));
+            event.put("log", Map.of("file", Map.of("path", "/var/log/nginx/access.log"), "offset", random.nextInt(1 << 20)));
+            event.put("input", Map.of("type", "filestream"));
+            event.put("fields", customFields(message));
+            event.put("tags", List.of("nginx", "access"));
+            return toJson(event);
+        });
+    }
+
+    /**
+     * Returns JSON documents with nested objects and arrays, like applications log them in the message body.
+     */
+    public List<String> jsonBodies(int count) {
+        return generate(count, i -> {
+            final Message message = message();
+            final Map<String, Object> request = new LinkedHashMap<>();
+            request.put("method", message.getField("http_method"));
+            request.put("path", message.getField("resource"));
+            request.put("headers", Map.of("user-agent", message.getField("user_agent"), "accept", "application/json"));
+            final Map<String, Object> json = new LinkedHashMap<>();
+            json.put("level", "info");
+            json.put("logger", "com.example." + message.getField("controller"));
+            json.put("request", request);
+            json.put("response", Map.of("status", message.getField("http_response_code"), "took_ms", message.getField("took_ms")));
+            json.put("user", Map.of("id", message.getField("user_id"), "roles", List.of("reader", "writer")));
+            json.put("client_ip", message.getField("client_ip"));
+            json.put("trace_id", Long.toHexString(random.nextLong()));
+            json.put("cached", random.nextBoolean());
+            json.put("error", null);
+            return new String(toJson(json), StandardCharsets.UTF_8);
+        });
+    }
+
+    /**
+     * Returns key=value bodies with some quoted values, like firewalls and many appliances send them.
+     */
+    public List<String> keyValueBodies(int count) {
+        return generate(count, i -> {
+            final Message message = message();
+            final StringBuilder sb = new StringBuilder();
+            sb.append("action=").append(random.nextInt(10) == 0 ? "deny" : "allow");
+            sb.append(" src=").append(message.getField("client_ip"));
+            sb.append(" dst=10.0.0.1 dport=443 proto=tcp");
+            sb.append(" method=").append(message.getField("http_method"));
+            sb.append(" url=").append(message.getField("resource"));
+            sb.append(" status=").append(message.getField("http_response_code"));
+            sb.append(" duration=").append(message.getField("took_ms"));
+            sb.append(" user=").append(message.getField("user_id"));
+            sb.append(" agent=\"").append(message.getField("user_agent")).append('"');
+            sb.append(" policy='default outbound'");
+            return sb.toString();
+        });
+    }
+
+    /**
+     * Returns access log lines in the Apache combined log format.
+     */
+    public List<String> accessLogLines(int count) {
+        return generate(count, i -> {
+            final Message message = message();
+            return message.getField("client_ip") + " - user" + message.getField("user_id") + " ["
+                    + ACCESS_LOG_TIMESTAMP.print(message.getTimestamp())
+                    + "] \"" + message.getField("http_method") + " " + message.getField("resource") + " HTTP/1.1\" "
+                    + message.getField("http_response_code") + " " + random.nextInt(100_000)
+                    + " \"https://example.com/\" \"" + message.getField("user_agent") + "\"";
+        });
+    }
+
+    private Map<String, Object> customFields(Message message) {
+        final Map<String, Object> fields = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> field : message.getFields().entrySet()) {
+            if (!Message.RESERVED_FIELDS.contains(field.getKey()) && !Message.FIELD_FULL_MESSAGE.equals(field.getKey())) {
+                fields.put(field.getKey(), field.getValue());
+            }
+        }
+        return fields;
+    }
+
+    private String clientIp() {
+        return "192.168." + random.nextInt(256) + "." + (1 + random.nextInt(254));
+    }
+
+    private <T> T pick(T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> List<T> generate(int count, Function<Integer, T> generator) {
+        final List<T> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(generator.apply(i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.benchmarks;
+
+import com.codahale.metrics.Meter;
+import com.google.common.collect.ImmutableMultimap;
+import org.graylog2.indexer.messages.ImmutableMessage;
+import org.graylog2.indexer.messages.SerializationContext;
+import org.graylog2.outputs.BatchSizeConfig;
+import org.graylog2.outputs.IndexSetAwareMessageOutputBuffer;
+import org.graylog2.outputs.filter.DefaultFilteredMessage;
+import org.graylog2.outputs.filter.FilteredMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes messages for the indexer and appends them to the output buffer, which also serializes them to estimate
+ * the size of the bulk request if the batch size is configured in bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MessageSerializationBenchmark {
+    @Param({"500", "5mb"})
+    public String outputBatchSize;
+
+    private SerializationContext serializationContext;
+    private IndexSetAwareMessageOutputBuffer outputBuffer;
+    private ImmutableMessage[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final MessageCorpus corpus = new MessageCorpus(42);
+        serializationContext = SerializationContext.of(corpus.objectMapper(), new Meter());
+        outputBuffer = new IndexSetAwareMessageOutputBuffer(BatchSizeConfig.parse(outputBatchSize), corpus.objectMapper());
+        messages = corpus.messages(MessageCorpus.SIZE).stream()
+                .map(ImmutableMessage::wrap)
+                .toArray(ImmutableMessage[]::new);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return messages[next++ & MessageCorpus.MASK].serialize(serializationContext);
+    }
+
+    @Benchmark
+    public void appendToOutputBuffer(Blackhole blackhole) {
+        final ImmutableMessage message = messages[next++ & MessageCorpus.MASK];
+        outputBuffer.appendAndFlush(new DefaultFilteredMessage(message, ImmutableMultimap.of()),
+                (List<FilteredMessage> batch) -> blackhole.consume(batch.size()));
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import org.graylog.plugins.pipelineprocessor.ast.Pipeline;
+import org.graylog.plugins.pipelineprocessor.ast.functions.Function;
+import org.graylog.plugins.pipelineprocessor.db.PipelineDao;
+import org.graylog.plugins.pipelineprocessor.db.RuleDao;
+import org.graylog.plugins.pipelineprocessor.db.RuleMetricsConfigDto;
+import org.graylog.plugins.pipelineprocessor.functions.conversion.LongConversion;
+import org.graylog.plugins.pipelineprocessor.functions.conversion.MapConversion;
+import org.graylog.plugins.pipelineprocessor.functions.conversion.StringConversion;
+import org.graylog.plugins.pipelineprocessor.functions.json.JsonFlatten;
+import org.graylog.plugins.pipelineprocessor.functions.json.SetFieldsFromJson;
+import org.graylog.plugins.pipelineprocessor.functions.messages.HasField;
+import org.graylog.plugins.pipelineprocessor.functions.messages.RemoveSingleField;
+import org.graylog.plugins.pipelineprocessor.functions.messages.SetField;
+import org.graylog.plugins.pipelineprocessor.functions.messages.SetFields;
+import org.graylog.plugins.pipelineprocessor.functions.strings.Contains;
+import org.graylog.plugins.pipelineprocessor.functions.strings.KeyValue;
+import org.graylog.plugins.pipelineprocessor.functions.strings.Lowercase;
+import org.graylog.plugins.pipelineprocessor.functions.strings.RegexMatch;
+import org.graylog.plugins.pipelineprocessor.functions.strings.SetFieldsFromKeyValue;
+import org.graylog.plugins.pipelineprocessor.parser.FunctionRegistry;
+import org.graylog.plugins.pipelineprocessor.parser.PipelineRuleParser;
+import org.graylog.plugins.pipelineprocessor.processors.PipelineInterpreter;
+import org.graylog.plugins.pipelineprocessor.processors.PipelineMetricRegistry;
+import org.graylog.plugins.pipelineprocessor.processors.PipelineResolver;
+import org.graylog.plugins.pipelineprocessor.processors.PipelineResolverConfig;
+import org.graylog.plugins.pipelineprocessor.processors.listeners.NoopInterpreterListener;
+import org.graylog.plugins.pipelineprocessor.rest.PipelineConnections;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageCollection;
+import org.graylog2.plugin.Messages;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.shared.messageq.noop.NoopMessageQueueAcknowledger;
+import org.graylog2.streams.StreamImpl;
+import org.graylog2.streams.StreamMock;
+import org.graylog2.utilities.PatternCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a batch of messages through a pipeline with rules that parse JSON and key=value bodies, match regular
+ * expressions and set fields. The rules either use the classic function combinations or the fused functions which
+ * set the parsed fields directly.
+ * <p>
+ * The rules modify the messages, so every invocation processes a fresh batch of messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PipelineBenchmark {
+    private static final String STREAM_ID = "000000000000000000000042";
+
+    private static final String CLASSIC_PARSE_RULES = """
+            rule "parse json"
+            when
+              has_field("json_body")
+            then
+              set_fields(to_map(flatten_json(to_string($message.json_body), "flatten")), "app_");
+            end
+
+            rule "parse key value"
+            when
+              has_field("kv_body")
+            then
+              set_fields(key_value(value: to_string($message.kv_body), trim_value_chars: "\\"'"), "fw_");
+            end
+            """;
+
+    private static final String FUSED_PARSE_RULES = """
+            rule "parse json"
+            when
+              has_field("json_body")
+            then
+              set_fields_from_json(value: to_string($message.json_body), prefix: "app_");
+            end
+
+            rule "parse key value"
+            when
+              has_field("kv_body")
+            then
+              set_fields_from_key_value(value: to_string($message.kv_body), trim_value_chars: "\\"'", prefix: "fw_");
+            end
+            """;
+
+    private static final String COMMON_RULES = """
+            rule "extract status"
+            when
+              contains(to_string($message.message), "[")
+            then
+              let m = regex("\\\\[(\\\\d{3})\\\\] (\\\\d+)ms$", to_string($message.message));
+              set_field("status", to_long(m["0"]));
+              set_field("duration", to_long(m["1"]));
+            end
+
+            rule "flag slow requests"
+            when
+              to_long($message.took_ms) > 500
+            then
+              set_field("slow", true);
+            end
+
+            rule "normalize"
+            when
+              has_field("http_method")
+            then
+              set_field("http_method_lower", lowercase(to_string($message.http_method)));
+              remove_single_field("json_body");
+              remove_single_field("kv_body");
+            end
+            """;
+
+    private static final String PIPELINE = """
+            pipeline "benchmark"
+            stage 0 match either
+              rule "parse json"
+              rule "parse key value"
+            stage 1 match either
+              rule "extract status"
+              rule "flag slow requests"
+            stage 2 match either
+              rule "normalize"
+            end
+            """;
+
+    @Param({"classic", "fused"})
+    public String functions;
+
+    private final MessageCorpus corpus = new MessageCorpus(42);
+    private final Stream stream = stream();
+    private PipelineInterpreter interpreter;
+    private PipelineInterpreter.State state;
+    private List<String> jsonBodies;
+    private List<String> keyValueBodies;
+    private Messages batch;
+
+    @Setup
+    public void setUp() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final String parseRules = "fused".equals(functions) ? FUSED_PARSE_RULES : CLASSIC_PARSE_RULES;
+
+        final List<RuleDao> rules = new ArrayList<>();
+        for (String source : (parseRules + COMMON_RULES).split("(?m)^end$")) {
+            if (!source.isBlank()) {
+                rules.add(RuleDao.create("rule-" + rules.size(), "rule-" + rules.size(), null, source.strip() + "\nend",
+                        Tools.nowUTC(), null, null, null));
+            }
+        }
+        final PipelineDao pipeline = PipelineDao.create("pipeline-1", null, "benchmark", null, PIPELINE, Tools.nowUTC(), null);
+        final PipelineConnections connections = PipelineConnections.create("connections-1", STREAM_ID, Set.of("pipeline-1"));
+
+        final PipelineResolver resolver = new PipelineResolver(
+                new PipelineRuleParser(new FunctionRegistry(functions(corpus.objectMapper(), metricRegistry))),
+                PipelineResolverConfig.of(rules::stream, () -> java.util.stream.Stream.of(pipeline),
+                        () -> java.util.stream.Stream.of(connections)));
+        final ImmutableMap<String, Pipeline> pipelines = resolver.resolvePipelines(
+                PipelineMetricRegistry.create(metricRegistry, Pipeline.class.getName(), "rules"));
+        final ImmutableSetMultimap<String, Pipeline> streamConnections = resolver.resolveStreamConnections(pipelines);
+
+        state = new PipelineInterpreter.State(pipelines, streamConnections, RuleMetricsConfigDto.createDefault(),
+                metricRegistry, 1, true);
+        interpreter = new PipelineInterpreter(new NoopMessageQueueAcknowledger(), metricRegistry, null);
+        jsonBodies = corpus.jsonBodies(MessageCorpus.SIZE);
+        keyValueBodies = corpus.keyValueBodies(MessageCorpus.SIZE);
+    }
+
+    @Setup(Level.Invocation)
+    public void createBatch() {
+        final List<Message> messages = corpus.messages(MessageCorpus.SIZE);
+        for (int i = 0; i < messages.size(); i++) {
+            final Message message = messages.get(i);
+            if (i % 2 == 0) {
+                message.addField("json_body", jsonBodies.get(i));
+            } else {
+                message.addField("kv_body", keyValueBodies.get(i));
+            }
+            message.addStream(stream);
+        }
+        batch = new MessageCollection(messages);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MessageCorpus.SIZE)
+    public Messages process() {
+        return interpreter.process(batch, new NoopInterpreterListener(), state);
+    }
+
+    private static Map<String, Function<?>> functions(ObjectMapper objectMapper, MetricRegistry metricRegistry) {
+        final PatternCache patternCache = new PatternCache(metricRegistry);
+        final Map<String, Function<?>> functions = new HashMap<>();
+        functions.put(HasField.NAME, new HasField());
+        functions.put(SetField.NAME, new SetField());
+        functions.put(SetFields.NAME, new SetFields());
+        functions.put(RemoveSingleField.NAME, new RemoveSingleField());
+        functions.put(StringConversion.NAME, new StringConversion());
+        functions.put(LongConversion.NAME, new LongConversion());
+        functions.put(MapConversion.NAME, new MapConversion());
+        functions.put(Contains.NAME, new Contains());
+        functions.put(Lowercase.NAME, new Lowercase());
+        functions.put(RegexMatch.NAME, new RegexMatch(patternCache));
+        functions.put(KeyValue.NAME, new KeyValue());
+        functions.put(SetFieldsFromKeyValue.NAME, new SetFieldsFromKeyValue());
+        functions.put(JsonFlatten.NAME, new JsonFlatten(objectMapper));
+        functions.put(SetFieldsFromJson.NAME, new SetFieldsFromJson(objectMapper));
+        return functions;
+    }
+
+    private static Stream stream() {
+        final Map<String, Object> fields = new HashMap<>();
+        fields.put("_id", STREAM_ID);
+        fields.put(StreamImpl.FIELD_TITLE, "Benchmark");
+        return new StreamMock(fields);
+    }
+}
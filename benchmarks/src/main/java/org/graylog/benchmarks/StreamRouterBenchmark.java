@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.bson.types.ObjectId;
+import org.graylog2.Configuration;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.plugin.streams.StreamRule;
+import org.graylog2.plugin.streams.StreamRuleType;
+import org.graylog2.streams.StreamFaultManager;
+import org.graylog2.streams.StreamImpl;
+import org.graylog2.streams.StreamMetrics;
+import org.graylog2.streams.StreamMock;
+import org.graylog2.streams.StreamRouterEngine;
+import org.graylog2.streams.StreamRuleImpl;
+import org.graylog2.streams.matchers.StreamRuleMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Routes messages with a growing number of streams. Every stream has a mix of the common rule types, so a part of
+ * the streams match every message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StreamRouterBenchmark {
+    private static final String[] CONTROLLERS = {"PostsController", "LoginController", "UsersController", "FooController"};
+
+    @Param({"10", "100", "500"})
+    public int streams;
+
+    private ExecutorService executor;
+    private StreamRouterEngine engine;
+    private Message[] messages;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        final MessageCorpus corpus = new MessageCorpus(42);
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final StreamMetrics streamMetrics = new StreamMetrics(metricRegistry);
+        final StreamFaultManager streamFaultManager = new StreamFaultManager(new Configuration(), streamMetrics, null, null);
+
+        final List<Stream> streamList = new ArrayList<>(streams);
+        for (int i = 0; i < streams; i++) {
+            streamList.add(stream(i));
+        }
+
+        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("stream-router-%d").setDaemon(true).build());
+        engine = new StreamRouterEngine(streamList, executor, streamFaultManager, streamMetrics,
+                () -> mock(Stream.class), metricRegistry);
+        messages = corpus.messages(MessageCorpus.SIZE).toArray(Message[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public List<Stream> match() {
+        return engine.match(messages[next++ & MessageCorpus.MASK]);
+    }
+
+    private static Stream stream(int i) {
+        final String streamId = new ObjectId().toHexString();
+        final Stream.MatchingType matchingType = i % 3 == 0 ? Stream.MatchingType.OR : Stream.MatchingType.AND;
+        final List<StreamRule> rules = switch (i % 5) {
+            case 0 -> List.of(
+                    rule(streamId, StreamRuleType.EXACT, "http_method", i % 2 == 0 ? "GET" : "POST"),
+                    rule(streamId, StreamRuleType.GREATER, "took_ms", String.valueOf(50 + i % 200)));
+            case 1 -> List.of(
+                    rule(streamId, StreamRuleType.EXACT, "controller", CONTROLLERS[i % CONTROLLERS.length]),
+                    rule(streamId, StreamRuleType.PRESENCE, "user_id", null));
+            case 2 -> List.of(
+                    rule(streamId, StreamRuleType.REGEX, "message", "\\[(4|5)0\\d\\]"),
+                    rule(streamId, StreamRuleType.EXACT, "source", "web-0" + (1 + i % 3)));
+            case 3 -> List.of(
+                    rule(streamId, StreamRuleType.CONTAINS, "user_agent", i % 2 == 0 ? "Firefox" : "curl"),
+                    rule(streamId, StreamRuleType.SMALLER, "http_response_code", "400"));
+            default -> List.of(
+                    rule(streamId, StreamRuleType.REGEX, "client_ip", "^192\\.168\\." + (i % 256) + "\\."),
+                    rule(streamId, StreamRuleType.PRESENCE, "not_existing_" + i, null));
+        };
+
+        final Map<String, Object> fields = new HashMap<>();
+        fields.put("_id", new ObjectId(streamId));
+        fields.put(StreamImpl.FIELD_TITLE, "Stream " + i);
+        fields.put(StreamImpl.FIELD_MATCHING_TYPE, matchingType);
+        return new StreamMock(fields, rules);
+    }
+
+    private static StreamRule rule(String streamId, StreamRuleType type, String field, String value) {
+        final Map<String, Object> fields = new HashMap<>();
+        fields.put("_id", new ObjectId());
+        fields.put(StreamRuleImpl.FIELD_TYPE, type.toInteger());
+        fields.put(StreamRuleImpl.FIELD_FIELD, field);
+        fields.put(StreamRuleImpl.FIELD_VALUE, value);
+        fields.put(StreamRuleImpl.FIELD_INVERTED, false);
+        fields.put(StreamRuleImpl.FIELD_STREAM_ID, streamId);
+        return new StreamRuleMock(fields);
+    }
+}
@@ -33,6 +33,7 @@ import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.search.MultiSe
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.search.SearchRequest;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.search.SearchResponse;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.support.PlainActionFuture;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.client.Cancellable;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.client.Request;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.client.RequestOptions;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.client.Response;
@@ -135,8 +136,8 @@ public class ElasticsearchClient {
 
         searchRequests.forEach(multiSearchRequest::add);
 
-        final PlainActionFuture<MultiSearchResponse> future = new PlainActionFuture<>();
-        client.msearchAsync(multiSearchRequest, requestOptions(), future);
+        final CancellableRequestFuture<MultiSearchResponse> future = new CancellableRequestFuture<>();
+        future.setRequest(client.msearchAsync(multiSearchRequest, requestOptions(), future));
 
         return future;
     }
@@ -290,4 +291,28 @@ public class ElasticsearchClient {
         }
         return Optional.empty();
     }
+
+    /**
+     * Aborts the HTTP request when the future gets cancelled, so the search backend stops working on it.
+     */
+    private static class CancellableRequestFuture<T> extends PlainActionFuture<T> {
+        private volatile Cancellable request;
+
+        private void setRequest(Cancellable request) {
+            this.request = request;
+            if (isCancelled()) {
+                request.cancel();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            final Cancellable currentRequest = request;
+            if (cancelled && currentRequest != null) {
+                currentRequest.cancel();
+            }
+            return cancelled;
+        }
+    }
 }
@@ -20,6 +20,7 @@ import com.codahale.metrics.Timer;
 import com.google.common.collect.Iterables;
 import org.graylog.storage.elasticsearch7.mapping.FieldMappingApi;
 import org.graylog2.Configuration;
+import org.graylog2.indexer.ElasticsearchException;
 import org.graylog2.indexer.IndexNotFoundException;
 import org.graylog2.indexer.fieldtypes.FieldTypeDTO;
 import org.graylog2.indexer.fieldtypes.IndexFieldTypePollerAdapter;
@@ -30,7 +31,9 @@ import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -67,6 +70,30 @@ public class IndexFieldTypePollerAdapterES7 implements IndexFieldTypePollerAdapt
             return Optional.empty();
         }
 
+        return Optional.of(toFieldTypes(indexName, fieldTypes));
+    }
+
+    @Override
+    public Map<String, Set<FieldTypeDTO>> pollIndices(Collection<String> indexNames, Timer pollTimer) {
+        final Map<String, Set<FieldTypeDTO>> result = new HashMap<>();
+        for (final List<String> batch : Iterables.partition(indexNames, MAX_INDICES_PER_MAPPING_REQUEST)) {
+            final Map<String, Map<String, FieldMappingApi.FieldMapping>> fieldTypes;
+            try (final Timer.Context ignored = pollTimer.time()) {
+                fieldTypes = fieldMappingApi.fieldTypes(batch);
+            } catch (ElasticsearchException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.error("Couldn't get mappings for indices <{}>", batch, e);
+                } else {
+                    LOG.error("Couldn't get mappings for indices <{}>: {}", batch, ExceptionUtils.getRootCauseMessage(e));
+                }
+                continue;
+            }
+            fieldTypes.forEach((indexName, indexFieldTypes) -> result.put(indexName, toFieldTypes(indexName, indexFieldTypes)));
+        }
+        return result;
+    }
+
+    private Set<FieldTypeDTO> toFieldTypes(String indexName, Map<String, FieldMappingApi.FieldMapping> fieldTypes) {
         final Map<String, FieldMappingApi.FieldMapping> filteredFieldTypes = fieldTypes.entrySet()
                 .stream()
                 // The "type" value is empty if we deal with a nested data type
@@ -75,12 +102,12 @@ public class IndexFieldTypePollerAdapterES7 implements IndexFieldTypePollerAdapt
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
 
         if (!streamAwareFieldTypes) {
-            return Optional.of(filteredFieldTypes.entrySet()
+            return filteredFieldTypes.entrySet()
                     .stream()
                     .map(field -> fromFieldNameAndMapping(field.getKey(), field.getValue())
                             .streams(Set.of())
                             .build())
-                    .collect(Collectors.toSet()));
+                    .collect(Collectors.toSet());
         } else {
             Set<FieldTypeDTO> result = new HashSet<>();
             final Iterable<List<Map.Entry<String, FieldMappingApi.FieldMapping>>> partitioned = Iterables.partition(filteredFieldTypes.entrySet(), MAX_SEARCHES_PER_MULTI_SEARCH);
@@ -94,9 +121,8 @@ public class IndexFieldTypePollerAdapterES7 implements IndexFieldTypePollerAdapt
                         .forEach(result::add);
 
             }
-            return Optional.of(result);
+            return result;
         }
-
     }
 
     private FieldTypeDTO.Builder fromFieldNameAndMapping(final String fieldName, final FieldMappingApi.FieldMapping mapping) {
@@ -60,6 +60,7 @@ import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.aggregations.b
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.aggregations.bucket.filter.Filter;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.aggregations.metrics.Max;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.aggregations.metrics.Min;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.builder.SearchSourceBuilder;
@@ -69,6 +70,7 @@ import org.graylog.storage.elasticsearch7.cluster.ClusterStateApi;
 import org.graylog.storage.elasticsearch7.stats.ClusterStatsApi;
 import org.graylog.storage.elasticsearch7.stats.StatsApi;
 import org.graylog2.datatiering.WarmIndexInfo;
+import org.graylog2.indexer.ElasticsearchException;
 import org.graylog2.indexer.IndexNotFoundException;
 import org.graylog2.indexer.indices.HealthStatus;
 import org.graylog2.indexer.indices.IndexMoveResult;
@@ -560,7 +562,49 @@ public class IndicesAdapterES7 implements IndicesAdapter {
         final Filter f = result.getAggregations().get("agg");
         if (f == null) {
             throw new IndexNotFoundException("Couldn't build index range of index " + index + " because it doesn't exist.");
-        } else if (f.getDocCount() == 0L) {
+        }
+        return indexRangeStats(index, f);
+    }
+
+    @Override
+    public Map<String, IndexRangeStats> indexRangeStatsOfIndices(Collection<String> indices) {
+        final TermsAggregationBuilder builder = AggregationBuilders.terms("indices").size(indices.size()).field("_index")
+                .subAggregation(AggregationBuilders.filter("agg", QueryBuilders.existsQuery(Message.FIELD_TIMESTAMP))
+                        .subAggregation(AggregationBuilders.min("ts_min").field(Message.FIELD_TIMESTAMP))
+                        .subAggregation(AggregationBuilders.max("ts_max").field(Message.FIELD_TIMESTAMP))
+                        .subAggregation(AggregationBuilders.terms("streams").size(Integer.MAX_VALUE).field(Message.FIELD_STREAMS)));
+        final SearchSourceBuilder query = SearchSourceBuilder.searchSource()
+                .aggregation(builder)
+                .size(0);
+
+        final SearchRequest request = new SearchRequest()
+                .source(query)
+                .indices(indices.toArray(new String[0]))
+                .searchType(SearchType.DFS_QUERY_THEN_FETCH)
+                // Missing or closed indices fail the request instead of being reported as empty
+                .indicesOptions(IndicesOptions.strictExpandOpenAndForbidClosed());
+
+        final SearchResponse result = client.execute((c, requestOptions) -> c.search(request, requestOptions),
+                "Couldn't build index ranges of indices " + indices);
+
+        // Ranges of partially searched indices would be wrong
+        if (result.getTotalShards() == 0 || result.getFailedShards() > 0 || result.getAggregations() == null) {
+            throw new ElasticsearchException("Couldn't build index ranges of indices " + indices + " because not all shards could be searched.");
+        }
+
+        // All indices have been searched, so indices without a bucket don't have any documents
+        final Map<String, IndexRangeStats> stats = new HashMap<>();
+        indices.forEach(index -> stats.put(index, IndexRangeStats.EMPTY));
+        final Terms indicesAgg = result.getAggregations().get("indices");
+        for (final Terms.Bucket bucket : indicesAgg.getBuckets()) {
+            final String index = bucket.getKeyAsString();
+            stats.put(index, indexRangeStats(index, bucket.getAggregations().get("agg")));
+        }
+        return stats;
+    }
+
+    private IndexRangeStats indexRangeStats(String index, Filter f) {
+        if (f.getDocCount() == 0L) {
             LOG.debug("No documents with attribute \"timestamp\" found in index <{}>", index);
             return IndexRangeStats.EMPTY;
         }
@@ -64,6 +64,7 @@ import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -279,7 +280,7 @@ public class ElasticsearchBackend implements QueryBackend<ESGeneratedQueryContex
         //ES does not support per-request cancel_after_time_interval. We have to use simplified solution - the whole multi-search will be cancelled if it takes more than configured max. exec. time.
         final PlainActionFuture<MultiSearchResponse> mSearchFuture = client.cancellableMsearch(searches);
         job.setQueryExecutionFuture(query.id(), mSearchFuture);
-        final List<MultiSearchResponse.Item> results = getResults(mSearchFuture, job.getCancelAfterSeconds(), searches.size());
+        final List<MultiSearchResponse.Item> results = getResults(mSearchFuture, job.getRemainingTimeUntilCancellation(), searches.size());
 
         for (SearchType searchType : query.searchTypes()) {
             final String searchTypeId = searchType.id();
@@ -330,15 +331,19 @@ public class ElasticsearchBackend implements QueryBackend<ESGeneratedQueryContex
 
     @NotNull
     private static List<MultiSearchResponse.Item> getResults(PlainActionFuture<MultiSearchResponse> mSearchFuture,
-                                                             final Integer cancelAfterSeconds,
+                                                             final Optional<Duration> remainingTime,
                                                              final int numSearchTypes) {
         try {
-            if (!SearchJob.NO_CANCELLATION.equals(cancelAfterSeconds)) {
-                return Arrays.asList(mSearchFuture.get(cancelAfterSeconds, TimeUnit.SECONDS).getResponses());
+            if (remainingTime.isPresent()) {
+                return Arrays.asList(mSearchFuture.get(Math.max(remainingTime.get().toMillis(), 1), TimeUnit.MILLISECONDS).getResponses());
             } else {
                 return Arrays.asList(mSearchFuture.get().getResponses());
             }
-        } catch (TimeoutException | InterruptedException | ExecutionException e) {
+        } catch (TimeoutException e) {
+            // aborts the multi search request
+            mSearchFuture.cancel(true);
+            return Collections.nCopies(numSearchTypes, new MultiSearchResponse.Item(null, e));
+        } catch (InterruptedException | ExecutionException e) {
             return Collections.nCopies(numSearchTypes, new MultiSearchResponse.Item(null, e));
         }
     }
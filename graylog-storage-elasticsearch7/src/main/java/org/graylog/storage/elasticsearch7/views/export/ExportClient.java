@@ -18,44 +18,120 @@ package org.graylog.storage.elasticsearch7.views.export;
 
 import jakarta.inject.Inject;
 import org.graylog.plugins.views.search.export.ExportException;
+import org.graylog.plugins.views.search.export.SearchResponseStreamParser;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.ShardOperationFailedException;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.search.ClearScrollRequest;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.search.SearchRequest;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.search.SearchResponse;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.search.SearchScrollRequest;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.client.Request;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.client.RequestOptions;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.client.RestHighLevelClient;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.common.unit.TimeValue;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.graylog.storage.elasticsearch7.ElasticsearchClient;
 import org.graylog.storage.elasticsearch7.ThrowingBiFunction;
 import org.graylog2.indexer.ElasticsearchException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 public class ExportClient {
     private final ElasticsearchClient client;
+    private final SearchResponseStreamParser responseParser;
 
     @Inject
-    public ExportClient(ElasticsearchClient client) {
+    public ExportClient(ElasticsearchClient client, SearchResponseStreamParser responseParser) {
         this.client = client;
+        this.responseParser = responseParser;
     }
 
     public SearchResponse search(SearchRequest request, String errorMessage) {
         try {
-            final SearchResponse response = this.client.search(request, errorMessage);
-            if (response.getFailedShards() > 0) {
-                final List<String> errors = Arrays.stream(response.getShardFailures())
-                        .map(ShardOperationFailedException::getCause)
-                        .map(Throwable::getMessage)
-                        .distinct()
-                        .toList();
-                throw new ElasticsearchException("Unable to perform export query: ", errors);
-            }
-            return response;
+            return failOnShardFailures(this.client.search(request, errorMessage));
         } catch (Exception e) {
             throw wrapException(e);
         }
     }
 
+    /**
+     * Executes the initial request of a scroll. Scroll requests can't be sent as part of a multi search request.
+     */
+    public SearchResponse scrollSearch(SearchRequest request, String errorMessage) {
+        try {
+            return failOnShardFailures(this.client.singleSearch(request, errorMessage));
+        } catch (Exception e) {
+            throw wrapException(e);
+        }
+    }
+
+    public SearchResponse scroll(String scrollId, TimeValue keepAlive, String errorMessage) {
+        final SearchScrollRequest request = new SearchScrollRequest(scrollId).scroll(keepAlive);
+        try {
+            return failOnShardFailures(this.client.execute((c, requestOptions) -> c.scroll(request, requestOptions), errorMessage));
+        } catch (Exception e) {
+            throw wrapException(e);
+        }
+    }
+
+    public void clearScroll(Collection<String> scrollIds) {
+        final ClearScrollRequest request = new ClearScrollRequest();
+        request.scrollIds(List.copyOf(scrollIds));
+        execute((c, requestOptions) -> c.clearScroll(request, requestOptions), "Unable to clear scroll of export");
+    }
+
+    /**
+     * Executes a search request and parses the response while it is received, so neither the body nor the hits are
+     * ever all in memory at the same time.
+     */
+    public SearchResponseStreamParser.Result streamingSearch(Set<String> indices,
+                                                             SearchSourceBuilder source,
+                                                             SearchResponseStreamParser.HitConsumer consumer,
+                                                             String errorMessage) {
+        final Request request = new Request("POST", "/" + String.join(",", indices) + "/_search");
+        // Same as the indices options of regular export requests
+        request.addParameter("ignore_unavailable", "false");
+        request.addParameter("allow_no_indices", "false");
+        request.addParameter("expand_wildcards", "open");
+        request.setJsonEntity(source.toString());
+        try {
+            return this.client.execute((c, requestOptions) -> {
+                final StreamingResponse response = new StreamingResponse();
+                final RequestOptions.Builder options = requestOptions.toBuilder();
+                options.setHttpAsyncResponseConsumerFactory(response);
+                request.setOptions(options);
+
+                // The synchronous client only returns after the whole body has been buffered
+                response.setRequest(c.getLowLevelClient().performRequestAsync(request, response));
+                try (InputStream body = response.body()) {
+                    final SearchResponseStreamParser.Result result = responseParser.parse(body, consumer);
+                    if (!result.stopped()) {
+                        response.awaitCompletion();
+                    }
+                    return result;
+                }
+            }, errorMessage);
+        } catch (Exception e) {
+            throw wrapException(e);
+        }
+    }
+
+    private SearchResponse failOnShardFailures(SearchResponse response) {
+        if (response.getFailedShards() > 0) {
+            final List<String> errors = Arrays.stream(response.getShardFailures())
+                    .map(ShardOperationFailedException::getCause)
+                    .map(Throwable::getMessage)
+                    .distinct()
+                    .toList();
+            throw new ElasticsearchException("Unable to perform export query: ", errors);
+        }
+        return response;
+    }
+
     private ExportException wrapException(Exception e) {
         return new ExportException("Unable to complete export: ", new ElasticsearchException(e));
     }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.storage.elasticsearch7.views.export;
+
+import org.graylog.plugins.views.search.export.SlicedExportRunner;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.search.SearchRequest;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.search.SearchResponse;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.common.unit.TimeValue;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.SearchHit;
+import org.graylog.shaded.elasticsearch7.org.elasticsearch.search.slice.SliceBuilder;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * One slice of a sliced scroll. All slices of a sliced scroll together return the same hits as a regular search,
+ * but can be fetched in parallel.
+ */
+public class ScrollSlice implements SlicedExportRunner.Slice<SearchHit> {
+    private final ExportClient client;
+    private final TimeValue keepAlive;
+    private final SearchRequest initialRequest;
+    private boolean started = false;
+    @Nullable
+    private volatile String scrollId;
+
+    public ScrollSlice(ExportClient client, SearchRequest request, TimeValue keepAlive, int id, int max) {
+        this.client = client;
+        this.keepAlive = keepAlive;
+        // Every request extends the scroll, so the keep alive only has to last until the next page is fetched
+        this.initialRequest = request.scroll(keepAlive);
+        request.source().slice(new SliceBuilder(id, max));
+        SearchAfter.configureSort(request.source());
+    }
+
+    @Override
+    public List<SearchHit> nextChunk() {
+        if (started && scrollId == null) {
+            // Without available indices, the response doesn't contain a scroll ID
+            return List.of();
+        }
+        final SearchResponse response = started
+                ? client.scroll(scrollId, keepAlive, "Failed to execute sliced export request")
+                : client.scrollSearch(initialRequest, "Failed to execute sliced export request");
+        started = true;
+        scrollId = response.getScrollId();
+        return Arrays.asList(response.getHits().getHits());
+    }
+
+    /**
+     * Returns the ID of the scroll, so it can be cleared after the export.
+     */
+    public Optional<String> scrollId() {
+        return Optional.ofNullable(scrollId);
+    }
+}
@@ -16,13 +16,17 @@
  */
 package org.graylog.storage.elasticsearch7.views.export;
 
+import com.codahale.metrics.MetricRegistry;
+import com.github.joschi.jadconfig.util.Duration;
 import com.google.common.collect.ImmutableSet;
 import jakarta.annotation.Nonnull;
 import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
 import org.graylog.plugins.views.search.elasticsearch.IndexLookup;
 import org.graylog.plugins.views.search.export.ExportException;
 import org.graylog.plugins.views.search.export.ExportMessagesCommand;
+import org.graylog.plugins.views.search.export.SearchResponseStreamParser;
 import org.graylog.plugins.views.search.export.SimpleMessageChunk;
+import org.graylog.plugins.views.search.export.SlicedExportRunner;
 import org.graylog.plugins.views.search.searchfilters.db.IgnoreSearchFilters;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.action.support.master.AcknowledgedResponse;
 import org.graylog.shaded.elasticsearch7.org.elasticsearch.client.indices.PutMappingRequest;
@@ -33,6 +37,7 @@ import org.graylog.testing.elasticsearch.SkipDefaultIndexTemplate;
 import org.graylog2.indexer.ElasticsearchException;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
 import org.joda.time.DateTimeZone;
 import org.junit.After;
 import org.junit.Before;
@@ -73,7 +78,8 @@ public class ElasticsearchExportBackendIT extends ElasticsearchBaseTest {
     @Before
     public void setUp() {
         indexLookup = mock(IndexLookup.class);
-        backend = new ElasticsearchExportBackend(indexLookup, requestStrategy(), false, new IgnoreSearchFilters());
+        backend = new ElasticsearchExportBackend(indexLookup, requestStrategy(), exportClient(), new SlicedExportRunner(1, Duration.minutes(1), new MetricRegistry()), false,
+                false, new IgnoreSearchFilters());
         helper = new ElasticsearchExportITHelper(indexLookup, backend);
 
     }
@@ -84,8 +90,17 @@ public class ElasticsearchExportBackendIT extends ElasticsearchBaseTest {
     }
 
     private RequestStrategy requestStrategy() {
-        final ExportClient exportClient = new ExportClient(elasticsearch.elasticsearchClient());
-        return new SearchAfter(exportClient);
+        return new SearchAfter(exportClient());
+    }
+
+    private ElasticsearchExportITHelper slicedHelper(int slices) {
+        final ElasticsearchExportBackend slicedBackend = new ElasticsearchExportBackend(indexLookup, requestStrategy(), exportClient(),
+                new SlicedExportRunner(slices, Duration.minutes(1), new MetricRegistry()), false, false, new IgnoreSearchFilters());
+        return new ElasticsearchExportITHelper(indexLookup, slicedBackend);
+    }
+
+    private ExportClient exportClient() {
+        return new ExportClient(elasticsearch.elasticsearchClient(), new SearchResponseStreamParser(new ObjectMapperProvider().get()));
     }
 
     @Test
@@ -229,6 +244,52 @@ public class ElasticsearchExportBackendIT extends ElasticsearchBaseTest {
                 "graylog_0, 2015-01-01T04:00:00.000Z, source-2, Ho");
     }
 
+    @Test
+    public void sortsByTimestampAscendingAcrossSlices() {
+        importFixture("messages.json");
+        final ElasticsearchExportITHelper slicedHelper = slicedHelper(3);
+
+        ExportMessagesCommand command = slicedHelper.commandBuilderWithAllTestDefaultStreams().chunkSize(1).build();
+        slicedHelper.mockIndexLookupFor(command, "graylog_0", "graylog_1");
+
+        slicedHelper.runWithExpectedResult(command, "timestamp,source,message",
+                "graylog_0, 2015-01-01T01:00:00.000Z, source-1, Ha",
+                "graylog_1, 2015-01-01T01:59:59.999Z, source-2, He",
+                "graylog_0, 2015-01-01T03:00:00.000Z, source-1, Hi",
+                "graylog_0, 2015-01-01T04:00:00.000Z, source-2, Ho");
+    }
+
+    @Test
+    public void exportsAllMessagesOfAllSlicesIfUnordered() {
+        importFixture("messages.json");
+        final ElasticsearchExportITHelper slicedHelper = slicedHelper(3);
+
+        ExportMessagesCommand command = slicedHelper.commandBuilderWithAllTestDefaultStreams()
+                .chunkSize(1)
+                .allowUnordered(true)
+                .build();
+        slicedHelper.mockIndexLookupFor(command, "graylog_0", "graylog_1");
+
+        slicedHelper.runWithExpectedResultIgnoringSort(command, "timestamp,source,message",
+                "graylog_0, 2015-01-01T01:00:00.000Z, source-1, Ha",
+                "graylog_1, 2015-01-01T01:59:59.999Z, source-2, He",
+                "graylog_0, 2015-01-01T03:00:00.000Z, source-1, Hi",
+                "graylog_0, 2015-01-01T04:00:00.000Z, source-2, Ho");
+    }
+
+    @Test
+    public void respectsResultLimitAcrossSlices() {
+        importFixture("messages.json");
+        final ElasticsearchExportITHelper slicedHelper = slicedHelper(2);
+
+        ExportMessagesCommand command = slicedHelper.commandBuilderWithAllTestDefaultStreams().chunkSize(1).limit(3).build();
+        slicedHelper.mockIndexLookupFor(command, "graylog_0", "graylog_1");
+
+        SimpleMessageChunk totalResult = slicedHelper.collectTotalResult(command);
+
+        assertThat(totalResult.messages()).hasSize(3);
+    }
+
     @Test
     public void usesProvidedTimeZone() {
         importFixture("messages.json");
@@ -33,6 +33,7 @@ import org.graylog.shaded.opensearch2.org.opensearch.action.search.MultiSearchRe
 import org.graylog.shaded.opensearch2.org.opensearch.action.search.SearchRequest;
 import org.graylog.shaded.opensearch2.org.opensearch.action.search.SearchResponse;
 import org.graylog.shaded.opensearch2.org.opensearch.action.support.PlainActionFuture;
+import org.graylog.shaded.opensearch2.org.opensearch.client.Cancellable;
 import org.graylog.shaded.opensearch2.org.opensearch.client.Request;
 import org.graylog.shaded.opensearch2.org.opensearch.client.RequestOptions;
 import org.graylog.shaded.opensearch2.org.opensearch.client.Response;
@@ -135,8 +136,8 @@ public class OpenSearchClient {
 
         searchRequests.forEach(multiSearchRequest::add);
 
-        final PlainActionFuture<MultiSearchResponse> future = new PlainActionFuture<>();
-        client.msearchAsync(multiSearchRequest, requestOptions(), future);
+        final CancellableRequestFuture<MultiSearchResponse> future = new CancellableRequestFuture<>();
+        future.setRequest(client.msearchAsync(multiSearchRequest, requestOptions(), future));
 
         return future;
     }
@@ -290,4 +291,28 @@ public class OpenSearchClient {
         }
         return Optional.empty();
     }
+
+    /**
+     * Aborts the HTTP request when the future gets cancelled, so the search backend stops working on it.
+     */
+    private static class CancellableRequestFuture<T> extends PlainActionFuture<T> {
+        private volatile Cancellable request;
+
+        private void setRequest(Cancellable request) {
+            this.request = request;
+            if (isCancelled()) {
+                request.cancel();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            final Cancellable currentRequest = request;
+            if (cancelled && currentRequest != null) {
+                currentRequest.cancel();
+            }
+            return cancelled;
+        }
+    }
 }
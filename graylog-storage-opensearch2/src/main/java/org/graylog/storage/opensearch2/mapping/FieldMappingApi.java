@@ -24,6 +24,7 @@ import org.graylog.shaded.opensearch2.org.opensearch.client.Request;
 import org.graylog.storage.opensearch2.OpenSearchClient;
 
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -49,7 +50,27 @@ public class FieldMappingApi {
 
     public Map<String, FieldMapping> fieldTypes(final String index) {
         final JsonNode result = client.executeRequest(request(index), "Unable to retrieve field types of index " + index);
-        final JsonNode fields = result.path(index).path("mappings").path("properties");
+        return fieldTypes(result.path(index));
+    }
+
+    /**
+     * Returns the field types of several indices with one request. Indices which don't exist are skipped.
+     *
+     * @param indices the names of the indices
+     * @return the field types by index name
+     */
+    public Map<String, Map<String, FieldMapping>> fieldTypes(final Collection<String> indices) {
+        final String indexList = String.join(",", indices);
+        final Request request = request(indexList);
+        request.addParameter("ignore_unavailable", "true");
+        final JsonNode result = client.executeRequest(request, "Unable to retrieve field types of indices " + indexList);
+        //noinspection UnstableApiUsage
+        return Streams.stream(result.fields())
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> fieldTypes(entry.getValue())));
+    }
+
+    private Map<String, FieldMapping> fieldTypes(final JsonNode indexMapping) {
+        final JsonNode fields = indexMapping.path("mappings").path("properties");
         //noinspection UnstableApiUsage
         return Streams.stream(fields.fields())
                 .collect(Collectors.toMap(Map.Entry::getKey, entry -> {
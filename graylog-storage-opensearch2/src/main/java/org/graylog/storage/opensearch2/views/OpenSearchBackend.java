@@ -275,9 +275,9 @@ public class OpenSearchBackend implements QueryBackend<OSGeneratedQueryContext>
                             .source(searchTypeQueries.get(searchTypeId))
                             .indices(indices.toArray(new String[0]))
                             .indicesOptions(IndicesOptions.LENIENT_EXPAND_OPEN);
-                    if (!SearchJob.NO_CANCELLATION.equals(job.getCancelAfterSeconds())) {
-                        searchRequest.setCancelAfterTimeInterval(new TimeValue(job.getCancelAfterSeconds(), TimeUnit.SECONDS));
-                    }
+                    // the time the query has been queued for is already deducted from the remaining time
+                    job.getRemainingTimeUntilCancellation().ifPresent(remaining -> searchRequest.setCancelAfterTimeInterval(
+                            new TimeValue(Math.max(remaining.toMillis(), 1), TimeUnit.MILLISECONDS)));
                     return searchRequest;
                 })
                 .map(request -> request.preference(job.getId()))
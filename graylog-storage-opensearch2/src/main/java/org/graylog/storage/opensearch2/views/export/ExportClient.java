@@ -18,44 +18,115 @@ package org.graylog.storage.opensearch2.views.export;
 
 import jakarta.inject.Inject;
 import org.graylog.plugins.views.search.export.ExportException;
+import org.graylog.plugins.views.search.export.SearchResponseStreamParser;
+import org.graylog.shaded.opensearch2.org.opensearch.action.search.CreatePitRequest;
+import org.graylog.shaded.opensearch2.org.opensearch.action.search.DeletePitRequest;
 import org.graylog.shaded.opensearch2.org.opensearch.action.search.SearchRequest;
 import org.graylog.shaded.opensearch2.org.opensearch.action.search.SearchResponse;
+import org.graylog.shaded.opensearch2.org.opensearch.client.Request;
 import org.graylog.shaded.opensearch2.org.opensearch.client.RequestOptions;
 import org.graylog.shaded.opensearch2.org.opensearch.client.RestHighLevelClient;
+import org.graylog.shaded.opensearch2.org.opensearch.common.unit.TimeValue;
 import org.graylog.shaded.opensearch2.org.opensearch.core.action.ShardOperationFailedException;
+import org.graylog.shaded.opensearch2.org.opensearch.search.builder.SearchSourceBuilder;
 import org.graylog.storage.opensearch2.OpenSearchClient;
 import org.graylog.storage.opensearch2.ThrowingBiFunction;
 import org.graylog2.indexer.ElasticsearchException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 public class ExportClient {
     private final OpenSearchClient client;
+    private final SearchResponseStreamParser responseParser;
 
     @Inject
-    public ExportClient(OpenSearchClient client) {
+    public ExportClient(OpenSearchClient client, SearchResponseStreamParser responseParser) {
         this.client = client;
+        this.responseParser = responseParser;
     }
 
     public SearchResponse search(SearchRequest request, String errorMessage) {
         try {
-            final SearchResponse response = this.client.search(request, errorMessage);
-            if (response.getFailedShards() > 0) {
-                final List<String> errors = Arrays.stream(response.getShardFailures())
-                        .map(ShardOperationFailedException::getCause)
-                        .map(Throwable::getMessage)
-                        .distinct()
-                        .toList();
-                throw new ElasticsearchException("Unable to perform export query: ", errors);
-            }
-            return response;
+            return failOnShardFailures(this.client.search(request, errorMessage));
         } catch (Exception e) {
             throw wrapException(e);
         }
     }
 
+    /**
+     * Executes a search request which uses a point-in-time. These can't be sent as part of a multi search request.
+     */
+    public SearchResponse pointInTimeSearch(SearchRequest request, String errorMessage) {
+        try {
+            return failOnShardFailures(this.client.singleSearch(request, errorMessage));
+        } catch (Exception e) {
+            throw wrapException(e);
+        }
+    }
+
+    public String openPointInTime(Set<String> indices, TimeValue keepAlive) {
+        final CreatePitRequest request = new CreatePitRequest(keepAlive, false, indices.toArray(new String[0]));
+        return execute((c, requestOptions) -> c.createPit(request, requestOptions), "Unable to open point-in-time for export")
+                .getId();
+    }
+
+    public void closePointInTime(String pointInTimeId) {
+        final DeletePitRequest request = new DeletePitRequest(pointInTimeId);
+        execute((c, requestOptions) -> c.deletePit(request, requestOptions), "Unable to close point-in-time of export");
+    }
+
+    /**
+     * Executes a search request and parses the response while it is received, so neither the body nor the hits are
+     * ever all in memory at the same time.
+     */
+    public SearchResponseStreamParser.Result streamingSearch(Set<String> indices,
+                                                             SearchSourceBuilder source,
+                                                             SearchResponseStreamParser.HitConsumer consumer,
+                                                             String errorMessage) {
+        final Request request = new Request("POST", "/" + String.join(",", indices) + "/_search");
+        // Same as the indices options of regular export requests
+        request.addParameter("ignore_unavailable", "false");
+        request.addParameter("allow_no_indices", "false");
+        request.addParameter("expand_wildcards", "open");
+        request.setJsonEntity(source.toString());
+        try {
+            return this.client.execute((c, requestOptions) -> {
+                final StreamingResponse response = new StreamingResponse();
+                final RequestOptions.Builder options = requestOptions.toBuilder();
+                options.setHttpAsyncResponseConsumerFactory(response);
+                request.setOptions(options);
+
+                // The synchronous client only returns after the whole body has been buffered
+                response.setRequest(c.getLowLevelClient().performRequestAsync(request, response));
+                try (InputStream body = response.body()) {
+                    final SearchResponseStreamParser.Result result = responseParser.parse(body, consumer);
+                    if (!result.stopped()) {
+                        response.awaitCompletion();
+                    }
+                    return result;
+                }
+            }, errorMessage);
+        } catch (Exception e) {
+            throw wrapException(e);
+        }
+    }
+
+    private SearchResponse failOnShardFailures(SearchResponse response) {
+        if (response.getFailedShards() > 0) {
+            final List<String> errors = Arrays.stream(response.getShardFailures())
+                    .map(ShardOperationFailedException::getCause)
+                    .map(Throwable::getMessage)
+                    .distinct()
+                    .toList();
+            throw new ElasticsearchException("Unable to perform export query: ", errors);
+        }
+        return response;
+    }
+
     private ExportException wrapException(Exception e) {
         return new ExportException("Unable to complete export: ", new ElasticsearchException(e));
     }
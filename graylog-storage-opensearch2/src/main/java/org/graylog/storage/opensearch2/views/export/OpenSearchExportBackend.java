@@ -20,14 +20,18 @@ import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
 import org.graylog.plugins.views.search.elasticsearch.IndexLookup;
+import org.graylog.plugins.views.search.export.ChunkAssembler;
 import org.graylog.plugins.views.search.export.ExportBackend;
 import org.graylog.plugins.views.search.export.ExportMessagesCommand;
+import org.graylog.plugins.views.search.export.SearchResponseStreamParser;
 import org.graylog.plugins.views.search.export.SimpleMessage;
 import org.graylog.plugins.views.search.export.SimpleMessageChunk;
+import org.graylog.plugins.views.search.export.SlicedExportRunner;
 import org.graylog.plugins.views.search.searchfilters.db.UsedSearchFiltersToQueryStringsMapper;
 import org.graylog.plugins.views.search.searchfilters.model.UsedSearchFilter;
 import org.graylog.shaded.opensearch2.org.opensearch.action.search.SearchRequest;
 import org.graylog.shaded.opensearch2.org.opensearch.action.support.IndicesOptions;
+import org.graylog.shaded.opensearch2.org.opensearch.common.unit.TimeValue;
 import org.graylog.shaded.opensearch2.org.opensearch.index.query.BoolQueryBuilder;
 import org.graylog.shaded.opensearch2.org.opensearch.index.query.QueryBuilder;
 import org.graylog.shaded.opensearch2.org.opensearch.index.query.QueryBuilders;
@@ -43,10 +47,12 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toCollection;
@@ -59,8 +65,14 @@ import static org.graylog.shaded.opensearch2.org.opensearch.index.query.QueryBui
 public class OpenSearchExportBackend implements ExportBackend {
     private static final Logger LOG = LoggerFactory.getLogger(OpenSearchExportBackend.class);
 
+    // Maximum number of messages per chunk when streaming search responses
+    private static final int STREAMED_CHUNK_SIZE = 500;
+
     private final IndexLookup indexLookup;
     private final RequestStrategy requestStrategy;
+    private final ExportClient exportClient;
+    private final SlicedExportRunner slicedExportRunner;
+    private final boolean streamResponses;
     private final boolean allowLeadingWildcard;
 
     private final UsedSearchFiltersToQueryStringsMapper usedSearchFiltersToQueryStringsMapper;
@@ -68,16 +80,34 @@ public class OpenSearchExportBackend implements ExportBackend {
     @Inject
     public OpenSearchExportBackend(IndexLookup indexLookup,
                                    RequestStrategy requestStrategy,
+                                   ExportClient exportClient,
+                                   SlicedExportRunner slicedExportRunner,
+                                   @Named("export_stream_responses") boolean streamResponses,
                                    @Named("allow_leading_wildcard_searches") boolean allowLeadingWildcard,
                                    final UsedSearchFiltersToQueryStringsMapper usedSearchFiltersToQueryStringsMapper) {
         this.indexLookup = indexLookup;
         this.requestStrategy = requestStrategy;
+        this.exportClient = exportClient;
+        this.slicedExportRunner = slicedExportRunner;
+        this.streamResponses = streamResponses;
         this.allowLeadingWildcard = allowLeadingWildcard;
         this.usedSearchFiltersToQueryStringsMapper = usedSearchFiltersToQueryStringsMapper;
     }
 
     @Override
     public void run(ExportMessagesCommand command, Consumer<SimpleMessageChunk> chunkCollector) {
+        if (slicedExportRunner.isEnabled() || streamResponses) {
+            final Set<String> indices = indicesFor(command);
+            if (!indices.isEmpty()) {
+                if (slicedExportRunner.isEnabled()) {
+                    runSliced(command, indices, chunkCollector);
+                } else {
+                    runStreaming(command, indices, chunkCollector);
+                }
+                return;
+            }
+        }
+
         boolean isFirstChunk = true;
         int totalCount = 0;
 
@@ -105,6 +135,59 @@ public class OpenSearchExportBackend implements ExportBackend {
         }
     }
 
+    private void runSliced(ExportMessagesCommand command, Set<String> indices, Consumer<SimpleMessageChunk> chunkCollector) {
+        final TimeValue keepAlive = TimeValue.timeValueMillis(slicedExportRunner.keepAlive().toMilliseconds());
+        final String pointInTimeId = exportClient.openPointInTime(indices, keepAlive);
+        try {
+            final int sliceCount = slicedExportRunner.slices();
+            final List<PointInTimeSlice> slices = IntStream.range(0, sliceCount)
+                    .mapToObj(id -> new PointInTimeSlice(exportClient, pointInTimeId, keepAlive, id, sliceCount, searchSourceBuilderFrom(command)))
+                    .toList();
+            final Comparator<SearchHit> order = command.allowUnordered()
+                    ? null
+                    : Comparator.comparing(SearchHit::getSortValues, SlicedExportRunner.SORT_VALUES_ORDER);
+
+            slicedExportRunner.run(slices, order, command.chunkSize(), command.limit(),
+                    (hits, chunkOrder) -> publishChunk(chunkCollector, hits, command.fieldsInOrder(), command.timeZone(), chunkOrder));
+        } finally {
+            try {
+                exportClient.closePointInTime(pointInTimeId);
+            } catch (Exception e) {
+                LOG.warn("Unable to close point-in-time of export, it will expire on its own", e);
+            }
+        }
+    }
+
+    private void runStreaming(ExportMessagesCommand command, Set<String> indices, Consumer<SimpleMessageChunk> chunkCollector) {
+        final ChunkAssembler<SimpleMessage> chunks = new ChunkAssembler<>(Math.min(command.chunkSize(), STREAMED_CHUNK_SIZE),
+                command.limit(), (messages, chunkOrder) -> publishMessages(chunkCollector, messages, command.fieldsInOrder(), chunkOrder));
+
+        List<Object> searchAfterValues = null;
+        while (true) {
+            final SearchSourceBuilder source = searchSourceBuilderFrom(command);
+            SearchAfter.configureSort(source);
+            if (searchAfterValues != null) {
+                source.searchAfter(searchAfterValues.toArray());
+            }
+
+            final SearchResponseStreamParser.Result result = exportClient.streamingSearch(indices, source,
+                    (index, hitSource, sortValues) -> chunks.add(buildHitWithAllFields(hitSource, index, command.timeZone())),
+                    "Failed to execute streaming Search After request");
+            if (result.stopped()) {
+                return;
+            }
+            if (result.hits() == 0 || result.lastSortValues() == null) {
+                chunks.finish();
+                return;
+            }
+            // Don't hold back the end of the page while the next page is requested
+            if (!chunks.flush()) {
+                return;
+            }
+            searchAfterValues = result.lastSortValues();
+        }
+    }
+
     private List<SearchHit> search(ExportMessagesCommand command) {
         SearchRequest search = prepareSearchRequest(command);
 
@@ -112,7 +195,7 @@ public class OpenSearchExportBackend implements ExportBackend {
     }
 
     private SearchRequest prepareSearchRequest(ExportMessagesCommand command) {
-        SearchSourceBuilder ssb = searchSourceBuilderFrom(command);
+        SearchSourceBuilder ssb = requestStrategy.configure(searchSourceBuilderFrom(command));
 
         Set<String> indices = indicesFor(command);
         return new SearchRequest()
@@ -131,7 +214,7 @@ public class OpenSearchExportBackend implements ExportBackend {
             ssb = ssb.fetchSource(command.fieldsInOrder().toArray(new String[]{}), null);
         }
 
-        return requestStrategy.configure(ssb);
+        return ssb;
     }
 
     private QueryBuilder queryFrom(ExportMessagesCommand command) {
@@ -179,8 +262,18 @@ public class OpenSearchExportBackend implements ExportBackend {
     }
 
     private boolean publishChunk(Consumer<SimpleMessageChunk> chunkCollector, List<SearchHit> hits, LinkedHashSet<String> desiredFieldsInOrder, DateTimeZone timeZone, SimpleMessageChunk.ChunkOrder chunkOrder) {
-        SimpleMessageChunk chunk = chunkFrom(hits, desiredFieldsInOrder, timeZone, chunkOrder);
+        return publish(chunkCollector, chunkFrom(hits, desiredFieldsInOrder, timeZone, chunkOrder));
+    }
+
+    private boolean publishMessages(Consumer<SimpleMessageChunk> chunkCollector, List<SimpleMessage> messages, LinkedHashSet<String> desiredFieldsInOrder, SimpleMessageChunk.ChunkOrder chunkOrder) {
+        return publish(chunkCollector, SimpleMessageChunk.builder()
+                .fieldsInOrder(desiredFieldsInOrder)
+                .messages(new LinkedHashSet<>(messages))
+                .chunkOrder(chunkOrder)
+                .build());
+    }
 
+    private boolean publish(Consumer<SimpleMessageChunk> chunkCollector, SimpleMessageChunk chunk) {
         try {
             chunkCollector.accept(chunk);
             return true;
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.storage.opensearch2.views.export;
+
+import org.graylog.plugins.views.search.export.SlicedExportRunner;
+import org.graylog.shaded.opensearch2.org.opensearch.action.search.SearchRequest;
+import org.graylog.shaded.opensearch2.org.opensearch.action.search.SearchResponse;
+import org.graylog.shaded.opensearch2.org.opensearch.common.unit.TimeValue;
+import org.graylog.shaded.opensearch2.org.opensearch.search.SearchHit;
+import org.graylog.shaded.opensearch2.org.opensearch.search.builder.PointInTimeBuilder;
+import org.graylog.shaded.opensearch2.org.opensearch.search.builder.SearchSourceBuilder;
+import org.graylog.shaded.opensearch2.org.opensearch.search.slice.SliceBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One slice of a point-in-time search, which is paged through with search after. All slices of a point-in-time
+ * search together return the same hits as a regular search, but can be fetched in parallel.
+ */
+public class PointInTimeSlice implements SlicedExportRunner.Slice<SearchHit> {
+    private final ExportClient client;
+    private final SearchSourceBuilder source;
+
+    public PointInTimeSlice(ExportClient client, String pointInTimeId, TimeValue keepAlive, int id, int max, SearchSourceBuilder source) {
+        this.client = client;
+        // Every request extends the point-in-time, so the keep alive only has to last until the next page is fetched
+        this.source = source
+                .pointInTimeBuilder(new PointInTimeBuilder(pointInTimeId).setKeepAlive(keepAlive))
+                .slice(new SliceBuilder(id, max));
+        SearchAfter.configureSort(this.source);
+    }
+
+    @Override
+    public List<SearchHit> nextChunk() {
+        // Requests with a point-in-time must not specify indices
+        final SearchResponse response = client.pointInTimeSearch(new SearchRequest().source(source),
+                "Failed to execute sliced export request");
+        final List<SearchHit> hits = Arrays.asList(response.getHits().getHits());
+        if (!hits.isEmpty()) {
+            source.searchAfter(hits.get(hits.size() - 1).getSortValues());
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.storage.opensearch2.views.export;
+
+import org.graylog.shaded.opensearch2.org.apache.http.Header;
+import org.graylog.shaded.opensearch2.org.apache.http.HttpEntity;
+import org.graylog.shaded.opensearch2.org.apache.http.HttpResponse;
+import org.graylog.shaded.opensearch2.org.apache.http.entity.ContentType;
+import org.graylog.shaded.opensearch2.org.apache.http.nio.ContentDecoder;
+import org.graylog.shaded.opensearch2.org.apache.http.nio.IOControl;
+import org.graylog.shaded.opensearch2.org.apache.http.nio.entity.ContentBufferEntity;
+import org.graylog.shaded.opensearch2.org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.graylog.shaded.opensearch2.org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.graylog.shaded.opensearch2.org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.graylog.shaded.opensearch2.org.apache.http.nio.util.SharedInputBuffer;
+import org.graylog.shaded.opensearch2.org.apache.http.nio.util.SimpleInputBuffer;
+import org.graylog.shaded.opensearch2.org.apache.http.protocol.HttpContext;
+import org.graylog.shaded.opensearch2.org.opensearch.client.Cancellable;
+import org.graylog.shaded.opensearch2.org.opensearch.client.HttpAsyncResponseConsumerFactory;
+import org.graylog.shaded.opensearch2.org.opensearch.client.Response;
+import org.graylog.shaded.opensearch2.org.opensearch.client.ResponseListener;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Hands the body of a successful response to the caller while it is still being received. The default response
+ * consumer of the low-level REST client buffers the whole body before the request completes.
+ * <p>
+ * The body is passed through a bounded buffer. Reading from the connection is suspended while the buffer is full, so
+ * at most {@link #BUFFER_SIZE} bytes of the body are held in memory. Error responses are buffered as usual, so the
+ * client can turn them into a {@code ResponseException}. Closing the body before the response has been received
+ * completely aborts the request.
+ */
+class StreamingResponse implements HttpAsyncResponseConsumerFactory, ResponseListener {
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int ERROR_BUFFER_SIZE = 4 * 1024;
+
+    private final CompletableFuture<HttpResponse> streamedResponse = new CompletableFuture<>();
+    private final CompletableFuture<Response> completion = new CompletableFuture<>();
+    private volatile Cancellable request;
+
+    @Override
+    public HttpAsyncResponseConsumer<HttpResponse> createHttpAsyncResponseConsumer() {
+        // The client creates a consumer for every node it sends the request to
+        return new StreamingConsumer();
+    }
+
+    void setRequest(Cancellable request) {
+        this.request = request;
+    }
+
+    @Override
+    public void onSuccess(Response response) {
+        completion.complete(response);
+    }
+
+    @Override
+    public void onFailure(Exception exception) {
+        streamedResponse.completeExceptionally(exception);
+        completion.completeExceptionally(exception);
+    }
+
+    /**
+     * Waits until a successful response has been received and returns its body, which is read while it is received.
+     *
+     * @throws IOException if the request failed, e.g. with an error response
+     */
+    InputStream body() throws IOException {
+        final HttpEntity entity;
+        try {
+            entity = await(streamedResponse).getEntity();
+        } catch (IOException | RuntimeException e) {
+            abort();
+            throw e;
+        }
+        if (entity == null) {
+            throw new IOException("Response has no body");
+        }
+        final InputStream content = new FilterInputStream(entity.getContent()) {
+            @Override
+            public void close() throws IOException {
+                // Closing the content reads the rest of the response, unless the request has been aborted
+                if (!completion.isDone()) {
+                    abort();
+                }
+                super.close();
+            }
+        };
+        final Header contentEncoding = entity.getContentEncoding();
+        if (contentEncoding != null && "gzip".equalsIgnoreCase(contentEncoding.getValue())) {
+            try {
+                return new GZIPInputStream(content);
+            } catch (IOException e) {
+                content.close();
+                throw e;
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Waits until the whole response has been received.
+     */
+    void awaitCompletion() throws IOException {
+        await(completion);
+    }
+
+    private void abort() {
+        final Cancellable currentRequest = request;
+        if (currentRequest != null) {
+            currentRequest.cancel();
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static boolean isSuccessful(HttpResponse response) {
+        return response.getStatusLine().getStatusCode() < 300;
+    }
+
+    private class StreamingConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+        private volatile HttpResponse response;
+        private volatile SharedInputBuffer streamingBuffer;
+        private volatile SimpleInputBuffer errorBuffer;
+        private volatile boolean received = false;
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+            if (isSuccessful(response)) {
+                streamingBuffer = new SharedInputBuffer(BUFFER_SIZE, HeapByteBufferAllocator.INSTANCE);
+                response.setEntity(new ContentBufferEntity(entity, streamingBuffer));
+                streamedResponse.complete(response);
+            } else {
+                errorBuffer = new SimpleInputBuffer(ERROR_BUFFER_SIZE, HeapByteBufferAllocator.INSTANCE);
+                response.setEntity(new ContentBufferEntity(entity, errorBuffer));
+            }
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+            if (streamingBuffer != null) {
+                streamingBuffer.consumeContent(decoder, ioControl);
+            } else {
+                errorBuffer.consumeContent(decoder);
+            }
+        }
+
+        @Override
+        protected HttpResponse buildResult(HttpContext context) {
+            received = true;
+            // Successful responses without a body haven't been handed out yet
+            if (isSuccessful(response)) {
+                streamedResponse.complete(response);
+            }
+            return response;
+        }
+
+        @Override
+        protected void releaseResources() {
+            // Wakes up the reader if the response couldn't be received completely
+            if (!received && streamingBuffer != null) {
+                streamingBuffer.shutdown();
+            }
+        }
+    }
+}
@@ -40,6 +40,7 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import static org.graylog.events.processor.EventProcessorStateDto.FIELD_EVENT_DEFINITION_ID;
 import static org.graylog.events.processor.EventProcessorStateDto.FIELD_MAX_PROCESSED_TIMESTAMP;
 import static org.graylog.events.processor.EventProcessorStateDto.FIELD_MIN_PROCESSED_TIMESTAMP;
+import static org.graylog.events.processor.EventProcessorStateDto.FIELD_STREAMING_SINCE;
 
 /**
  * Manages database state for {@link EventProcessor}s.
@@ -135,6 +136,51 @@ public class DBEventProcessorStateService {
                 update, new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER)));
     }
 
+    /**
+     * Marks the given event definition as evaluated at ingest time for messages processed at or after the given
+     * timestamp. An existing marker is kept to make sure that all nodes agree on the same timestamp. The marker is
+     * only set once the event processor has a state record.
+     *
+     * @param eventDefinitionId the related event definition ID
+     * @param streamingSince    the processing time from which on messages are evaluated at ingest time
+     * @return the effective streaming start or an empty optional if there is no state record yet
+     */
+    public Optional<DateTime> startStreaming(String eventDefinitionId, DateTime streamingSince) {
+        checkArgument(!isNullOrEmpty(eventDefinitionId), "eventDefinitionId cannot be null or empty");
+        checkArgument(streamingSince != null, "streamingSince cannot be null");
+
+        collection.updateOne(Filters.and(
+                        Filters.eq(FIELD_EVENT_DEFINITION_ID, eventDefinitionId),
+                        Filters.exists(FIELD_STREAMING_SINCE, false)),
+                Updates.set(FIELD_STREAMING_SINCE, streamingSince));
+
+        return getStreamingSince(eventDefinitionId);
+    }
+
+    /**
+     * Removes the ingest time evaluation marker for the given event definition.
+     *
+     * @param eventDefinitionId the related event definition ID
+     */
+    public void stopStreaming(String eventDefinitionId) {
+        checkArgument(!isNullOrEmpty(eventDefinitionId), "eventDefinitionId cannot be null or empty");
+
+        collection.updateOne(Filters.and(
+                        Filters.eq(FIELD_EVENT_DEFINITION_ID, eventDefinitionId),
+                        Filters.exists(FIELD_STREAMING_SINCE, true)),
+                Updates.unset(FIELD_STREAMING_SINCE));
+    }
+
+    /**
+     * Returns the processing time from which on messages for the given event definition are evaluated at ingest time.
+     *
+     * @param eventDefinitionId the related event definition ID
+     * @return the streaming start or an empty optional if the event definition isn't evaluated at ingest time
+     */
+    public Optional<DateTime> getStreamingSince(String eventDefinitionId) {
+        return findByEventDefinitionId(eventDefinitionId).map(EventProcessorStateDto::streamingSince);
+    }
+
     /**
      * Delete state objects for the given event definition ID.
      *
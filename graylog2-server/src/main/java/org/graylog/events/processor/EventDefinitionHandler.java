@@ -102,6 +102,7 @@ public class EventDefinitionHandler {
             throw e;
         }
 
+        clusterEventBus.post(new EventDefinitionUpdated(eventDefinition.id()));
         return eventDefinition;
     }
 
@@ -138,7 +139,9 @@ public class EventDefinitionHandler {
      * @return the created event definition
      */
     public EventDefinitionDto createWithoutSchedule(EventDefinitionDto unsavedEventDefinition, Optional<User> user) {
-        return createEventDefinition(unsavedEventDefinition, user);
+        final EventDefinitionDto eventDefinition = createEventDefinition(unsavedEventDefinition, user);
+        clusterEventBus.post(new EventDefinitionUpdated(eventDefinition.id()));
+        return eventDefinition;
     }
 
     /**
@@ -161,7 +164,7 @@ public class EventDefinitionHandler {
                     createJobDefinitionAndTriggerIfScheduledType(eventDefinition);
                 }
             } else {
-                unschedule(eventDefinition.id());
+                unscheduleEventDefinition(eventDefinition.id());
             }
         } catch (Exception e) {
             // Cleanup if anything goes wrong
@@ -246,6 +249,7 @@ public class EventDefinitionHandler {
         final EventDefinitionDto eventDefinition = getEventDefinitionOrThrowIAE(eventDefinitionId);
 
         createJobDefinitionAndTriggerIfScheduledType(eventDefinition);
+        clusterEventBus.post(new EventDefinitionUpdated(eventDefinitionId));
     }
 
     /**
@@ -254,6 +258,11 @@ public class EventDefinitionHandler {
      * @param eventDefinitionId the event definition to unschedule
      */
     public void unschedule(String eventDefinitionId) {
+        unscheduleEventDefinition(eventDefinitionId);
+        clusterEventBus.post(new EventDefinitionUpdated(eventDefinitionId));
+    }
+
+    private void unscheduleEventDefinition(String eventDefinitionId) {
         final EventDefinitionDto eventDefinition = getEventDefinitionOrThrowIAE(eventDefinitionId);
 
         if (NonDeletableSystemScope.NAME.equals(eventDefinition.scope())) {
@@ -116,6 +116,27 @@ public class EventProcessorEngine {
         }
     }
 
+    /**
+     * Emits events for the given event definition that have been created outside of a scheduled event processor
+     * execution. The events go through the same field, key, modifier, notification and storage handling.
+     *
+     * @param definition        the event definition the events belong to
+     * @param eventsWithContext the events to emit
+     * @throws EventProcessorException if the events couldn't be emitted
+     */
+    public void emitEvents(EventDefinition definition, List<EventWithContext> eventsWithContext) throws EventProcessorException {
+        final EventProcessor.Factory factory = eventProcessorFactories.get(definition.config().type());
+
+        if (factory == null) {
+            throw new EventProcessorException("Couldn't find event processor factory for type " + definition.config().type(), true, definition.id(), definition);
+        }
+
+        final EventProcessor eventProcessor = factory.create(definition);
+
+        metrics.registerEventProcessor(eventProcessor, definition.id());
+        emitEvents(eventProcessor, eventProcessor.preprocessEventDefinition(definition), eventsWithContext);
+    }
+
     private void emitEvents(EventProcessor eventProcessor, EventDefinition eventDefinition, List<EventWithContext> eventsWithContext) throws EventProcessorException {
         if (eventsWithContext.isEmpty()) {
             return;
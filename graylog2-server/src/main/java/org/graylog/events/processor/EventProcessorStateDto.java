@@ -34,6 +34,7 @@ public abstract class EventProcessorStateDto implements MongoEntity {
     static final String FIELD_EVENT_DEFINITION_ID = "event_definition_id";
     static final String FIELD_MIN_PROCESSED_TIMESTAMP = "min_processed_timestamp";
     static final String FIELD_MAX_PROCESSED_TIMESTAMP = "max_processed_timestamp";
+    static final String FIELD_STREAMING_SINCE = "streaming_since";
 
     @Id
     @ObjectId
@@ -50,6 +51,15 @@ public abstract class EventProcessorStateDto implements MongoEntity {
     @JsonProperty(FIELD_MAX_PROCESSED_TIMESTAMP)
     public abstract DateTime maxProcessedTimestamp();
 
+    /**
+     * Processing time from which on messages are evaluated at ingest time instead of by the scheduled search.
+     *
+     * @return the streaming start or null if the event definition isn't evaluated at ingest time
+     */
+    @Nullable
+    @JsonProperty(FIELD_STREAMING_SINCE)
+    public abstract DateTime streamingSince();
+
     public static Builder builder() {
         return Builder.create();
     }
@@ -77,6 +87,9 @@ public abstract class EventProcessorStateDto implements MongoEntity {
         @JsonProperty(FIELD_MAX_PROCESSED_TIMESTAMP)
         public abstract Builder maxProcessedTimestamp(DateTime maxProcessedTimestamp);
 
+        @JsonProperty(FIELD_STREAMING_SINCE)
+        public abstract Builder streamingSince(@Nullable DateTime streamingSince);
+
         public abstract EventProcessorStateDto build();
     }
 }
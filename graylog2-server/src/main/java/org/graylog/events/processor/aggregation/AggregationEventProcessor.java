@@ -36,6 +36,7 @@ import org.graylog.events.processor.EventProcessorException;
 import org.graylog.events.processor.EventProcessorParameters;
 import org.graylog.events.processor.EventProcessorPreconditionException;
 import org.graylog.events.processor.EventStreamService;
+import org.graylog.events.processor.streaming.StreamingFilterEventEvaluator;
 import org.graylog.events.search.MoreSearch;
 import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
 import org.graylog.plugins.views.search.errors.ParameterExpansionError;
@@ -47,15 +48,21 @@ import org.graylog2.indexer.results.ResultMessage;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.MessageFactory;
 import org.graylog2.plugin.MessageSummary;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.cluster.ClusterConfigService;
 import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
 import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.graylog2.shared.buffers.processors.TimeStampConfig;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -80,6 +87,8 @@ public class AggregationEventProcessor implements EventProcessor {
     private final Messages messages;
     private final PermittedStreams permittedStreams;
     private final AggregationSearchUtils aggregationSearchUtils;
+    private final StreamingFilterEventEvaluator streamingEvaluator;
+    private final ClusterConfigService clusterConfigService;
 
     @Inject
     public AggregationEventProcessor(@Assisted EventDefinition eventDefinition,
@@ -91,7 +100,9 @@ public class AggregationEventProcessor implements EventProcessor {
                                      Messages messages,
                                      PermittedStreams permittedStreams,
                                      Set<EventQuerySearchTypeSupplier> eventQueryModifiers,
-                                     MessageFactory messageFactory) {
+                                     MessageFactory messageFactory,
+                                     StreamingFilterEventEvaluator streamingEvaluator,
+                                     ClusterConfigService clusterConfigService) {
         this.eventDefinition = eventDefinition;
         this.config = (AggregationEventProcessorConfig) eventDefinition.config();
         this.dependencyCheck = dependencyCheck;
@@ -100,6 +111,8 @@ public class AggregationEventProcessor implements EventProcessor {
         this.eventStreamService = eventStreamService;
         this.messages = messages;
         this.permittedStreams = permittedStreams;
+        this.streamingEvaluator = streamingEvaluator;
+        this.clusterConfigService = clusterConfigService;
         // If this is a simple Filter search there is no need to initialize aggregationSearchUtils
         this.aggregationSearchUtils = config.series().isEmpty() ? null : new AggregationSearchUtils(
                 eventDefinition,
@@ -235,6 +248,25 @@ public class AggregationEventProcessor implements EventProcessor {
             streams = new HashSet<>(permittedStreams.loadAllMessageStreams(streamId -> true));
         }
 
+        // Messages processed after the streaming start have already been evaluated at ingest time.
+        // See StreamingFilterEventEvaluator for details.
+        String queryString = config.query();
+        final Optional<DateTime> streamingSince = streamingEvaluator.streamingSince(eventDefinition.id());
+        if (streamingSince.isPresent()) {
+            // The timestamp of a message is at most one grace period newer than its processing time, so time ranges
+            // that start later can't contain messages processed before the streaming start.
+            final Duration gracePeriod = clusterConfigService.getOrDefault(TimeStampConfig.class, TimeStampConfig.getDefault()).gracePeriod();
+            if (gracePeriod != null && parameters.timerange().getFrom().isAfter(streamingSince.get().plus(gracePeriod.toMillis()))) {
+                LOG.debug("Skipping search for event definition <{}/{}>, messages are evaluated at ingest time since <{}>",
+                        eventDefinition.title(), eventDefinition.id(), streamingSince.get());
+                return;
+            }
+            queryString = ElasticsearchQueryString.of(queryString)
+                    .concatenate(ElasticsearchQueryString.of("NOT " + Message.FIELD_GL2_PROCESSING_TIMESTAMP
+                            + ":[\"" + Tools.buildElasticSearchTimeFormat(streamingSince.get()) + "\" TO *]"))
+                    .queryString();
+        }
+
         final AtomicInteger messageCount = new AtomicInteger(0);
         final MoreSearch.ScrollCallback callback = (messages, continueScrolling) -> {
             final ImmutableList.Builder<EventWithContext> eventsWithContext = ImmutableList.builder();
@@ -268,7 +300,7 @@ public class AggregationEventProcessor implements EventProcessor {
         };
 
         try {
-            moreSearch.scrollQuery(config.query(), streams, config.filters(), config.queryParameters(),
+            moreSearch.scrollQuery(queryString, streams, config.filters(), config.queryParameters(),
                     parameters.timerange(), parameters.batchSize(), callback);
         } catch (EventLimitReachedException e) {
             LOG.debug("Event limit reached at {} for '{}/{}' event definition.", config.eventLimit(), eventDefinition.title(), eventDefinition.id());
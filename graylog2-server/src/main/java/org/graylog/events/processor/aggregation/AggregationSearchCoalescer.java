@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.aggregation;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.graylog.plugins.views.search.Filter;
+import org.graylog.plugins.views.search.Query;
+import org.graylog.plugins.views.search.QueryResult;
+import org.graylog.plugins.views.search.Search;
+import org.graylog.plugins.views.search.SearchJob;
+import org.graylog.plugins.views.search.SearchType;
+import org.graylog.plugins.views.search.db.SearchJobService;
+import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
+import org.graylog.plugins.views.search.engine.QueryEngine;
+import org.graylog.plugins.views.search.engine.QueryWorkload;
+import org.graylog.plugins.views.search.errors.SearchError;
+import org.graylog.plugins.views.search.errors.SearchTypeError;
+import org.graylog.plugins.views.search.filter.OrFilter;
+import org.graylog.plugins.views.search.filter.StreamFilter;
+import org.graylog.plugins.views.search.searchfilters.model.UsedSearchFilter;
+import org.graylog.plugins.views.search.searchtypes.pivot.Pivot;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toSet;
+import static org.graylog.plugins.views.search.SearchJob.NO_CANCELLATION;
+
+/**
+ * Combines the searches of aggregation event definitions that are executed at the same time into a single search.
+ * <p>
+ * Event definitions with the same execution interval and search window get the same time range when they are
+ * executed. Instead of sending one search per event definition to the indexer, the searches that arrive within the
+ * configured coalescing window are merged into one query. The search types of every event definition carry their
+ * own query string, streams and search filters, so the search backend sends them as a single multi-search request.
+ * The results are split up again and returned to the event definitions that submitted the searches.
+ * <p>
+ * Only searches without query parameters, with stream-only query filters and with pivot search types can be
+ * combined. All other searches are executed as they are.
+ */
+@Singleton
+public class AggregationSearchCoalescer {
+    private static final Logger LOG = LoggerFactory.getLogger(AggregationSearchCoalescer.class);
+
+    @VisibleForTesting
+    static final String COALESCED_QUERY_ID = "coalesced-query";
+
+    private final QueryEngine queryEngine;
+    private final SearchJobService searchJobService;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final Map<BatchKey, Batch> pendingBatches = new ConcurrentHashMap<>();
+    private final Histogram batchSizes;
+    private final Meter savedSearches;
+
+    @Inject
+    public AggregationSearchCoalescer(QueryEngine queryEngine,
+                                      SearchJobService searchJobService,
+                                      @Named("event_aggregation_search_coalescing_window") Duration window,
+                                      @Named("event_aggregation_search_coalescing_max_batch_size") int maxBatchSize,
+                                      MetricRegistry metricRegistry) {
+        this.queryEngine = queryEngine;
+        this.searchJobService = searchJobService;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = isEnabled() ? Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("aggregation-search-coalescer-%d")
+                .build()) : null;
+        this.batchSizes = metricRegistry.histogram(MetricRegistry.name(getClass(), "batch-size"));
+        this.savedSearches = metricRegistry.meter(MetricRegistry.name(getClass(), "saved-searches"));
+    }
+
+    public boolean isEnabled() {
+        return !window.isZero() && !window.isNegative() && maxBatchSize > 1;
+    }
+
+    /**
+     * Submits the given search for execution. The search might be combined with other searches that are submitted
+     * within the coalescing window.
+     *
+     * @param search the search to execute, the queries must already contain the streams to search in
+     * @param user   the user that owns the search
+     * @return the query results of the given search, keyed by query ID
+     */
+    public CompletableFuture<Map<String, QueryResult>> submit(Search search, AggregationSearch.User user) {
+        final Set<TimeRange> timeRanges = search.queries().stream().map(Query::timerange).collect(toSet());
+        if (!isEnabled() || timeRanges.size() != 1 || !search.parameters().isEmpty()
+                || !search.queries().stream().allMatch(AggregationSearchCoalescer::canCoalesce)) {
+            return execute(search, user);
+        }
+
+        final Member member = new Member(search, new CompletableFuture<>());
+        final BatchKey key = new BatchKey(timeRanges.iterator().next(), user.name(), user.timezone());
+        final Batch newBatch = new Batch();
+        final boolean[] isFull = {false};
+        final Batch batch = pendingBatches.compute(key, (k, pending) -> {
+            final Batch current = pending == null ? newBatch : pending;
+            current.members.add(member);
+            isFull[0] = current.members.size() >= maxBatchSize;
+            return current;
+        });
+
+        if (isFull[0]) {
+            flush(key, batch);
+        } else if (batch == newBatch) {
+            scheduler.schedule(() -> flush(key, batch), window.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        return member.result();
+    }
+
+    private void flush(BatchKey key, Batch batch) {
+        // Only the caller that removes the batch executes it. A batch that reached the maximum size might already
+        // be gone when the scheduled flush runs.
+        if (pendingBatches.remove(key, batch)) {
+            execute(key, batch.members);
+        }
+    }
+
+    private void execute(BatchKey key, List<Member> members) {
+        batchSizes.update(members.size());
+
+        if (members.size() == 1) {
+            final Member member = members.get(0);
+            execute(member.search(), new AggregationSearch.User(key.username(), key.timezone()))
+                    .whenComplete((results, throwable) -> complete(member, results, throwable));
+            return;
+        }
+
+        try {
+            final Search search = combine(key.timeRange(), members);
+            final SearchJob searchJob = queryEngine.execute(searchJobService.create(search, key.username(), NO_CANCELLATION),
+                    Collections.emptySet(), key.timezone(), null, QueryWorkload.EVENT_PROCESSING);
+            savedSearches.mark(members.size() - 1);
+
+            searchJob.getResultFuture().whenComplete((ignored, throwable) -> {
+                if (throwable != null) {
+                    members.forEach(member -> member.result().completeExceptionally(throwable));
+                    return;
+                }
+                final QueryResult combinedResult = searchJob.results().get(COALESCED_QUERY_ID);
+                for (int i = 0; i < members.size(); i++) {
+                    final Member member = members.get(i);
+                    member.result().complete(demultiplex(i, member.search(), combinedResult));
+                }
+            });
+        } catch (Exception e) {
+            LOG.error("Couldn't execute combined search for {} aggregation searches", members.size(), e);
+            members.forEach(member -> member.result().completeExceptionally(e));
+        }
+    }
+
+    private void complete(Member member, Map<String, QueryResult> results, Throwable throwable) {
+        if (throwable != null) {
+            member.result().completeExceptionally(throwable);
+        } else {
+            member.result().complete(results);
+        }
+    }
+
+    private CompletableFuture<Map<String, QueryResult>> execute(Search search, AggregationSearch.User user) {
+        try {
+            final SearchJob searchJob = queryEngine.execute(searchJobService.create(search, user.name(), NO_CANCELLATION),
+                    Collections.emptySet(), user.timezone(), null, QueryWorkload.EVENT_PROCESSING);
+            return searchJob.getResultFuture().thenApply(ignored -> searchJob.results());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @VisibleForTesting
+    static Search combine(TimeRange timeRange, List<Member> members) {
+        final ImmutableSet.Builder<SearchType> searchTypes = ImmutableSet.builder();
+        final Set<String> streams = new HashSet<>();
+
+        for (int i = 0; i < members.size(); i++) {
+            for (final Query query : members.get(i).search().queries()) {
+                streams.addAll(query.usedStreamIds());
+                for (final SearchType searchType : query.searchTypes()) {
+                    // Everything that was defined on the query level needs to be moved into the search type
+                    searchTypes.add(((Pivot) searchType).toBuilder()
+                            .id(searchTypeId(i, query.id(), searchType.id()))
+                            .query(query.query())
+                            .streams(query.usedStreamIds())
+                            .filters(ImmutableList.<UsedSearchFilter>builder()
+                                    .addAll(query.filters())
+                                    .addAll(searchType.filters())
+                                    .build())
+                            .build());
+                }
+            }
+        }
+
+        final Query query = Query.builder()
+                .id(COALESCED_QUERY_ID)
+                .timerange(timeRange)
+                .query(ElasticsearchQueryString.empty())
+                .filter(OrFilter.builder()
+                        .filters(streams.stream().map(StreamFilter::ofId).collect(toSet()))
+                        .build())
+                .searchTypes(searchTypes.build())
+                .build();
+
+        return Search.builder()
+                .queries(ImmutableSet.of(query))
+                .build();
+    }
+
+    @VisibleForTesting
+    static Map<String, QueryResult> demultiplex(int memberIndex, Search search, QueryResult combinedResult) {
+        final Map<String, QueryResult> results = new HashMap<>();
+        final Set<SearchError> combinedErrors = combinedResult.errors() == null ? Collections.emptySet() : combinedResult.errors();
+
+        for (final Query query : search.queries()) {
+            final Set<String> searchTypeIds = new HashSet<>();
+            final Map<String, SearchType.Result> searchTypeResults = new HashMap<>();
+            for (final SearchType searchType : query.searchTypes()) {
+                final String combinedId = searchTypeId(memberIndex, query.id(), searchType.id());
+                searchTypeIds.add(combinedId);
+                final SearchType.Result result = combinedResult.searchTypes().get(combinedId);
+                if (result != null) {
+                    searchTypeResults.put(searchType.id(), result);
+                }
+            }
+
+            // Errors of other members' search types must not fail this query, errors of the whole query do
+            final Set<SearchError> errors = combinedErrors.stream()
+                    .filter(error -> !(error instanceof SearchTypeError searchTypeError)
+                            || searchTypeIds.contains(searchTypeError.searchTypeId()))
+                    .collect(toSet());
+
+            results.put(query.id(), combinedResult.toBuilder()
+                    .query(query)
+                    .searchTypes(searchTypeResults)
+                    .errors(errors)
+                    .build());
+        }
+
+        return results;
+    }
+
+    private static String searchTypeId(int memberIndex, String queryId, String searchTypeId) {
+        return "member-" + memberIndex + "-" + queryId + "-" + searchTypeId;
+    }
+
+    @VisibleForTesting
+    static boolean canCoalesce(Query query) {
+        if (!ElasticsearchQueryString.NAME.equals(query.query().type())
+                || query.usedStreamIds().isEmpty()
+                || !query.usedStreamCategories().isEmpty()
+                || !isStreamFilter(query.filter())) {
+            return false;
+        }
+        return query.searchTypes().stream().allMatch(searchType -> searchType instanceof Pivot
+                && searchType.query().isEmpty()
+                && searchType.timerange().isEmpty()
+                && searchType.filter() == null
+                && searchType.streams().isEmpty()
+                && !searchType.hasStreamCategories());
+    }
+
+    private static boolean isStreamFilter(Filter filter) {
+        if (filter instanceof StreamFilter) {
+            return true;
+        }
+        return filter instanceof OrFilter
+                && filter.filters() != null
+                && filter.filters().stream().allMatch(f -> f instanceof StreamFilter);
+    }
+
+    // Members are only added while holding the map entry lock and only read after the batch has been removed
+    private static class Batch {
+        private final List<Member> members = new ArrayList<>();
+    }
+
+    private record BatchKey(TimeRange timeRange, String username, DateTimeZone timezone) {}
+
+    @VisibleForTesting
+    record Member(Search search, CompletableFuture<Map<String, QueryResult>> result) {}
+}
@@ -39,6 +39,7 @@ import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
 import org.graylog.plugins.views.search.elasticsearch.QueryStringDecorators;
 import org.graylog.plugins.views.search.engine.BackendQuery;
 import org.graylog.plugins.views.search.engine.QueryEngine;
+import org.graylog.plugins.views.search.engine.QueryWorkload;
 import org.graylog.plugins.views.search.engine.normalization.SearchNormalization;
 import org.graylog.plugins.views.search.errors.EmptyParameterError;
 import org.graylog.plugins.views.search.errors.QueryError;
@@ -72,6 +73,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -105,6 +107,7 @@ public class PivotAggregationSearch implements AggregationSearch {
     private final QueryStringDecorators queryStringDecorators;
     private final StreamService streamService;
     private final SearchNormalization searchNormalization;
+    private final AggregationSearchCoalescer searchCoalescer;
     private final boolean isCloud;
 
     @Inject
@@ -121,6 +124,7 @@ public class PivotAggregationSearch implements AggregationSearch {
                                   QueryStringDecorators queryStringDecorators,
                                   StreamService streamService,
                                   SearchNormalization searchNormalization,
+                                  AggregationSearchCoalescer searchCoalescer,
                                   @Named("is_cloud") boolean isCloud) {
         this.config = config;
         this.parameters = parameters;
@@ -135,6 +139,7 @@ public class PivotAggregationSearch implements AggregationSearch {
         this.queryStringDecorators = queryStringDecorators;
         this.streamService = streamService;
         this.searchNormalization = searchNormalization;
+        this.searchCoalescer = searchCoalescer;
         this.isCloud = isCloud;
     }
 
@@ -144,9 +149,9 @@ public class PivotAggregationSearch implements AggregationSearch {
 
     @Override
     public AggregationResult doSearch() throws EventProcessorException {
-        final SearchJob searchJob = getSearchJob(parameters, searchOwner, config.searchWithinMs(), config.executeEveryMs());
-        final QueryResult queryResult = searchJob.results().get(QUERY_ID);
-        final QueryResult streamQueryResult = searchJob.results().get(STREAMS_QUERY_ID);
+        final Map<String, QueryResult> results = getSearchResults(parameters, searchOwner, config.searchWithinMs(), config.executeEveryMs());
+        final QueryResult queryResult = results.get(QUERY_ID);
+        final QueryResult streamQueryResult = results.get(STREAMS_QUERY_ID);
         final Map<String, SearchType.Result> additionalResults = additionalSearchTypes.stream()
                 .filter(searchType -> queryResult.searchTypes().containsKey(searchType.id()))
                 .map(searchType -> queryResult.searchTypes().get(searchType.id()))
@@ -401,24 +406,45 @@ public class PivotAggregationSearch implements AggregationSearch {
         return permittedStreams.loadAllMessageStreams((streamId) -> true);
     }
 
+    private Map<String, QueryResult> getSearchResults(AggregationEventProcessorParameters parameters, User user,
+                                                      long searchWithinMs, long executeEveryMs) throws EventProcessorException {
+        // Additional search types are provided by plugins and might rely on their own result IDs, so we don't
+        // combine them with other searches.
+        if (!searchCoalescer.isEnabled() || !additionalSearchTypes.isEmpty()) {
+            return getSearchJob(parameters, user, searchWithinMs, executeEveryMs).results();
+        }
+        return awaitResult(searchCoalescer.submit(buildSearch(parameters, searchWithinMs, executeEveryMs), user));
+    }
+
     protected SearchJob getSearchJob(AggregationEventProcessorParameters parameters, User user,
                            long searchWithinMs, long executeEveryMs) throws EventProcessorException {
         final var username = user.name();
+        final Search search = buildSearch(parameters, searchWithinMs, executeEveryMs);
+        final SearchJob searchJob = queryEngine.execute(searchJobService.create(search, username, NO_CANCELLATION), Collections.emptySet(), user.timezone(),
+                null, QueryWorkload.EVENT_PROCESSING);
+        awaitResult(searchJob.getResultFuture());
+
+        return searchJob;
+    }
+
+    private Search buildSearch(AggregationEventProcessorParameters parameters, long searchWithinMs, long executeEveryMs) {
         final Query queryWithSearchFilters = searchNormalization.postValidation(
                 getAggregationQuery(parameters, searchWithinMs, executeEveryMs),
                 ParameterProvider.of(config.queryParameters()));
-        Search search = Search.builder()
+        final Search search = Search.builder()
                 .queries(ImmutableSet.of(queryWithSearchFilters, getSourceStreamsQuery(parameters)))
                 .parameters(config.queryParameters())
                 .build();
         // This adds all streams if none were provided
         // TODO: Once we introduce "EventProcessor owners" this should only load the permitted streams of the
         //       user who created this EventProcessor.
-        search = search.addStreamsToQueriesWithoutStreams(this::loadAllStreams);
-        final SearchJob searchJob = queryEngine.execute(searchJobService.create(search, username, NO_CANCELLATION), Collections.emptySet(), user.timezone());
+        return search.addStreamsToQueriesWithoutStreams(this::loadAllStreams);
+    }
+
+    private <T> T awaitResult(Future<T> future) throws EventProcessorException {
         try {
-            Uninterruptibles.getUninterruptibly(
-                    searchJob.getResultFuture(),
+            return Uninterruptibles.getUninterruptibly(
+                    future,
                     configurationProvider.get().eventsSearchTimeout(),
                     TimeUnit.MILLISECONDS);
         } catch (ExecutionException e) {
@@ -428,8 +454,6 @@ public class PivotAggregationSearch implements AggregationSearch {
         } catch (Exception e) {
             throw new EventProcessorException("Unhandled exception in search job.", false, eventDefinition, e);
         }
-
-        return searchJob;
     }
 
     /**
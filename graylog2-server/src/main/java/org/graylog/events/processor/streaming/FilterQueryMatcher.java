@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.streaming;
+
+import com.google.common.primitives.Doubles;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.BytesRef;
+import org.graylog2.indexer.fieldtypes.FieldTypeDTO;
+import org.graylog2.indexer.fieldtypes.IndexFieldTypesDTO;
+import org.graylog2.plugin.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * Compiles search query strings into predicates that can be evaluated against a {@link Message} in memory.
+ * <p>
+ * Only a subset of the query language is supported: boolean operators, exact terms, phrases, prefixes, wildcards,
+ * ranges and existence checks on explicit fields. Terms are compared like the search backend compares them, which
+ * is only known for fields that are mapped as keyword or numeric in every index the query runs on. Queries that use
+ * the default field, other field mappings (e.g. analyzed text fields), unknown fields, regular expressions or fuzzy
+ * searches can't be evaluated with the same semantics as the search backend and are not compiled.
+ */
+public class FilterQueryMatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(FilterQueryMatcher.class);
+
+    private static final String DEFAULT_FIELD = "_default_";
+    private static final String EXISTS_FIELD = "_exists_";
+
+    /**
+     * The field mappings which can be matched in memory.
+     */
+    public enum FieldKind {
+        KEYWORD,
+        /**
+         * Integer and double mappings. Floats are left out because the search backend stores them with less
+         * precision.
+         */
+        NUMERIC;
+
+        private static final Map<String, FieldKind> PHYSICAL_TYPES = Map.of(
+                "keyword", KEYWORD,
+                "long", NUMERIC,
+                "integer", NUMERIC,
+                "short", NUMERIC,
+                "byte", NUMERIC,
+                "double", NUMERIC);
+    }
+
+    private final Map<String, FieldKind> fieldKinds;
+
+    private FilterQueryMatcher(Map<String, FieldKind> fieldKinds) {
+        this.fieldKinds = fieldKinds;
+    }
+
+    /**
+     * Collects the fields which are mapped as keyword or numeric in all the given indices.
+     *
+     * @param indexFieldTypes the stored field types of the indices a query runs on
+     * @return the kind of every field with the same supported mapping in all indices
+     */
+    public static Map<String, FieldKind> fieldKinds(Collection<IndexFieldTypesDTO> indexFieldTypes) {
+        final Map<String, FieldKind> fieldKinds = new HashMap<>();
+        final Set<String> unsupported = new HashSet<>();
+        for (final IndexFieldTypesDTO types : indexFieldTypes) {
+            for (final FieldTypeDTO fieldType : types.fields()) {
+                final FieldKind kind = FieldKind.PHYSICAL_TYPES.get(fieldType.physicalType());
+                final FieldKind previous = kind == null ? null : fieldKinds.putIfAbsent(fieldType.fieldName(), kind);
+                if (kind == null || (previous != null && previous != kind)) {
+                    unsupported.add(fieldType.fieldName());
+                }
+            }
+        }
+        fieldKinds.keySet().removeAll(unsupported);
+        return fieldKinds;
+    }
+
+    /**
+     * Compiles the given query string.
+     *
+     * @param queryString the query string to compile
+     * @param fieldKinds  the fields that can be matched in memory (see {@link #fieldKinds(Collection)})
+     * @return the compiled predicate or an empty {@link Optional} if the query can't be evaluated in memory
+     */
+    public static Optional<Predicate<Message>> compile(String queryString, Map<String, FieldKind> fieldKinds) {
+        if (isNullOrEmpty(queryString) || queryString.trim().equals("*")) {
+            return Optional.of(message -> true);
+        }
+
+        final QueryParser parser = new QueryParser(DEFAULT_FIELD, new KeywordAnalyzer());
+        parser.setSplitOnWhitespace(true);
+        parser.setAllowLeadingWildcard(true);
+
+        try {
+            return new FilterQueryMatcher(fieldKinds).compile(parser.parse(queryString));
+        } catch (ParseException e) {
+            LOG.debug("Couldn't parse query <{}>", queryString, e);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<Predicate<Message>> compile(Query query) {
+        if (query instanceof MatchAllDocsQuery) {
+            return Optional.of(message -> true);
+        } else if (query instanceof BooleanQuery booleanQuery) {
+            return compileBoolean(booleanQuery);
+        } else if (query instanceof TermQuery termQuery) {
+            final String field = termQuery.getTerm().field();
+            final String text = termQuery.getTerm().text();
+            if (EXISTS_FIELD.equals(field)) {
+                return existsPredicate(text);
+            }
+            final FieldKind kind = fieldKind(field);
+            if (kind == FieldKind.KEYWORD) {
+                return compileField(field, value -> String.valueOf(value).equals(text));
+            } else if (kind == FieldKind.NUMERIC) {
+                final Double term = Doubles.tryParse(text);
+                return term == null ? Optional.empty() : compileField(field, value -> Integer.valueOf(0).equals(numericCompare(value, term)));
+            }
+            return Optional.empty();
+        } else if (query instanceof PrefixQuery prefixQuery) {
+            final String prefix = prefixQuery.getPrefix().text();
+            return fieldKind(prefixQuery.getField()) == FieldKind.KEYWORD
+                    ? compileField(prefixQuery.getField(), value -> String.valueOf(value).startsWith(prefix))
+                    : Optional.empty();
+        } else if (query instanceof WildcardQuery wildcardQuery) {
+            final String text = wildcardQuery.getTerm().text();
+            if (text.equals("*")) {
+                return existsPredicate(wildcardQuery.getField());
+            }
+            if (fieldKind(wildcardQuery.getField()) != FieldKind.KEYWORD) {
+                return Optional.empty();
+            }
+            final Pattern pattern = wildcardPattern(text);
+            return compileField(wildcardQuery.getField(), value -> pattern.matcher(String.valueOf(value)).matches());
+        } else if (query instanceof TermRangeQuery rangeQuery) {
+            return rangePredicate(rangeQuery).flatMap(predicate -> compileField(rangeQuery.getField(), predicate));
+        }
+
+        return Optional.empty();
+    }
+
+    private Optional<Predicate<Message>> compileBoolean(BooleanQuery query) {
+        final List<Predicate<Message>> required = new ArrayList<>();
+        final List<Predicate<Message>> optional = new ArrayList<>();
+        final List<Predicate<Message>> prohibited = new ArrayList<>();
+
+        for (final BooleanClause clause : query.clauses()) {
+            final Optional<Predicate<Message>> compiled = compile(clause.getQuery());
+            if (compiled.isEmpty()) {
+                return Optional.empty();
+            }
+            switch (clause.getOccur()) {
+                case MUST, FILTER -> required.add(compiled.get());
+                case SHOULD -> optional.add(compiled.get());
+                case MUST_NOT -> prohibited.add(compiled.get());
+            }
+        }
+
+        // Optional clauses only need to match if there are no required clauses. A query with only prohibited
+        // clauses matches everything else, like the search backend does it.
+        final int minimumShouldMatch = Math.max(query.getMinimumNumberShouldMatch(), required.isEmpty() && !optional.isEmpty() ? 1 : 0);
+
+        return Optional.of(message -> {
+            for (final Predicate<Message> predicate : required) {
+                if (!predicate.test(message)) {
+                    return false;
+                }
+            }
+            for (final Predicate<Message> predicate : prohibited) {
+                if (predicate.test(message)) {
+                    return false;
+                }
+            }
+            if (minimumShouldMatch == 0) {
+                return true;
+            }
+            int matches = 0;
+            for (final Predicate<Message> predicate : optional) {
+                if (predicate.test(message) && ++matches >= minimumShouldMatch) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    private static Optional<Predicate<Message>> compileField(String field, Predicate<Object> valuePredicate) {
+        return Optional.of(message -> {
+            final Object value = message.getField(field);
+            if (value == null) {
+                return false;
+            }
+            // Multi-value fields match if any of the values matches
+            if (value instanceof Collection<?> values) {
+                return values.stream().anyMatch(v -> v != null && valuePredicate.test(v));
+            }
+            return valuePredicate.test(value);
+        });
+    }
+
+    // Existence doesn't depend on the mapping of a field
+    private static Optional<Predicate<Message>> existsPredicate(String field) {
+        if (DEFAULT_FIELD.equals(field) || field.contains("*")) {
+            return Optional.empty();
+        }
+        return Optional.of(message -> message.hasField(field));
+    }
+
+    @Nullable
+    private FieldKind fieldKind(String field) {
+        return fieldKinds.get(field);
+    }
+
+    /**
+     * Compares the value of a numeric field with the given number. The search backend converts numeric strings when
+     * it indexes them, other values can't be indexed in numeric fields and never match.
+     *
+     * @return the comparison result or {@code null} if the value isn't a number
+     */
+    @Nullable
+    private static Integer numericCompare(Object value, double number) {
+        final Double numericValue = value instanceof Number n ? Double.valueOf(n.doubleValue()) : Doubles.tryParse(String.valueOf(value).trim());
+        return numericValue == null ? null : Double.compare(numericValue, number);
+    }
+
+    private Optional<Predicate<Object>> rangePredicate(TermRangeQuery query) {
+        final String lower = toString(query.getLowerTerm());
+        final String upper = toString(query.getUpperTerm());
+        final boolean includeLower = query.includesLower();
+        final boolean includeUpper = query.includesUpper();
+
+        final FieldKind kind = fieldKind(query.getField());
+        if (kind == FieldKind.KEYWORD) {
+            return Optional.of(value -> {
+                final String string = String.valueOf(value);
+                return inRange(lower == null ? 1 : string.compareTo(lower), upper == null ? -1 : string.compareTo(upper),
+                        includeLower || lower == null, includeUpper || upper == null);
+            });
+        } else if (kind == FieldKind.NUMERIC) {
+            final Double lowerNumber = lower == null ? null : Doubles.tryParse(lower);
+            final Double upperNumber = upper == null ? null : Doubles.tryParse(upper);
+            if ((lower != null && lowerNumber == null) || (upper != null && upperNumber == null)) {
+                return Optional.empty();
+            }
+            return Optional.of(value -> {
+                final Integer compareToLower = lowerNumber == null ? Integer.valueOf(1) : numericCompare(value, lowerNumber);
+                final Integer compareToUpper = upperNumber == null ? Integer.valueOf(-1) : numericCompare(value, upperNumber);
+                return compareToLower != null && compareToUpper != null
+                        && inRange(compareToLower, compareToUpper, includeLower || lower == null, includeUpper || upper == null);
+            });
+        }
+        return Optional.empty();
+    }
+
+    private static boolean inRange(int compareToLower, int compareToUpper, boolean includeLower, boolean includeUpper) {
+        return (includeLower ? compareToLower >= 0 : compareToLower > 0) && (includeUpper ? compareToUpper <= 0 : compareToUpper < 0);
+    }
+
+    private static String toString(BytesRef bytesRef) {
+        return bytesRef == null ? null : bytesRef.utf8ToString();
+    }
+
+    private static Pattern wildcardPattern(String wildcard) {
+        final StringBuilder regex = new StringBuilder();
+        final StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < wildcard.length(); i++) {
+            final char c = wildcard.charAt(i);
+            if (c == '*' || c == '?') {
+                if (!literal.isEmpty()) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else if (c == '\\' && i + 1 < wildcard.length()) {
+                literal.append(wildcard.charAt(++i));
+            } else {
+                literal.append(c);
+            }
+        }
+        if (!literal.isEmpty()) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.streaming;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Provider;
+import jakarta.inject.Singleton;
+import org.graylog.events.event.Event;
+import org.graylog.events.event.EventOriginContext;
+import org.graylog.events.event.EventProcessorEventFactory;
+import org.graylog.events.event.EventReplayInfo;
+import org.graylog.events.event.EventWithContext;
+import org.graylog.events.processor.DBEventDefinitionService;
+import org.graylog.events.processor.DBEventProcessorStateService;
+import org.graylog.events.processor.EventDefinition;
+import org.graylog.events.processor.EventDefinitionDeleted;
+import org.graylog.events.processor.EventDefinitionDto;
+import org.graylog.events.processor.EventDefinitionUpdated;
+import org.graylog.events.processor.EventProcessorEngine;
+import org.graylog.events.processor.EventProcessorException;
+import org.graylog.events.processor.EventStreamService;
+import org.graylog.events.processor.aggregation.AggregationEventProcessorConfig;
+import org.graylog.events.processor.streaming.FilterQueryMatcher.FieldKind;
+import org.graylog2.events.ClusterEventBus;
+import org.graylog2.indexer.fieldtypes.IndexFieldTypesService;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesChangedEvent;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.streams.StreamService;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Evaluates filter event definitions against messages while they are processed, instead of periodically searching
+ * for matching messages.
+ * <p>
+ * An event definition is evaluated at ingest time if it doesn't aggregate, selects at least one stream, doesn't use
+ * stream categories, search filters or query parameters and has a query that can be compiled by
+ * {@link FilterQueryMatcher}. To avoid duplicate or missing events, the nodes agree on a processing time from which on
+ * messages are evaluated at ingest time. The scheduled search of the event definition only returns messages that have
+ * been processed before that time. (see {@link DBEventProcessorStateService#startStreaming(String, DateTime)})
+ * <p>
+ * The eligible event definitions are reloaded when event definitions or the field types of index sets change.
+ * Matches are emitted by a background thread. If it can't keep up, the event definition falls back to the scheduled
+ * search, so message processing is never blocked.
+ */
+@Singleton
+public class StreamingFilterEventEvaluator {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingFilterEventEvaluator.class);
+
+    private static final int QUEUE_SIZE = 10_000;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final long DRAIN_INTERVAL_MS = 100;
+
+    private final boolean enabled;
+    private final Duration activationDelay;
+    private final DBEventDefinitionService eventDefinitionService;
+    private final DBEventProcessorStateService stateService;
+    private final EventProcessorEngine eventProcessorEngine;
+    private final EventStreamService eventStreamService;
+    private final StreamService streamService;
+    private final IndexFieldTypesService indexFieldTypesService;
+    private final Provider<EventProcessorEventFactory> eventFactoryProvider;
+    private final ClusterEventBus clusterEventBus;
+    private final BlockingQueue<Match> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+    private final Meter matchedMessages;
+    private final Meter fallbacks;
+    private final Timer evaluationTime;
+    private final ScheduledExecutorService executor;
+
+    private volatile List<StreamingDefinition> definitions = List.of();
+    private ScheduledFuture<?> pendingReload;
+
+    @Inject
+    public StreamingFilterEventEvaluator(@Named("event_streaming_filter_evaluation_enabled") boolean enabled,
+                                         @Named("event_streaming_filter_evaluation_activation_delay") Duration activationDelay,
+                                         DBEventDefinitionService eventDefinitionService,
+                                         DBEventProcessorStateService stateService,
+                                         EventProcessorEngine eventProcessorEngine,
+                                         EventStreamService eventStreamService,
+                                         StreamService streamService,
+                                         IndexFieldTypesService indexFieldTypesService,
+                                         Provider<EventProcessorEventFactory> eventFactoryProvider,
+                                         MetricRegistry metricRegistry,
+                                         EventBus serverEventBus,
+                                         ClusterEventBus clusterEventBus) {
+        this.enabled = enabled;
+        this.activationDelay = activationDelay;
+        this.eventDefinitionService = eventDefinitionService;
+        this.stateService = stateService;
+        this.eventProcessorEngine = eventProcessorEngine;
+        this.eventStreamService = eventStreamService;
+        this.streamService = streamService;
+        this.indexFieldTypesService = indexFieldTypesService;
+        this.eventFactoryProvider = eventFactoryProvider;
+        this.clusterEventBus = clusterEventBus;
+        this.matchedMessages = metricRegistry.meter(name(getClass(), "matched-messages"));
+        this.fallbacks = metricRegistry.meter(name(getClass(), "fallbacks"));
+        this.evaluationTime = metricRegistry.timer(name(getClass(), "evaluation-time"));
+
+        if (enabled) {
+            this.executor = Executors.newScheduledThreadPool(2, new ThreadFactoryBuilder()
+                    .setNameFormat("streaming-filter-event-evaluator-%d")
+                    .setDaemon(true)
+                    .build());
+            executor.submit(this::reloadDefinitions);
+            executor.scheduleWithFixedDelay(this::drain, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            serverEventBus.register(this);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the processing time from which on messages for the given event definition are evaluated at ingest time.
+     * Removes the marker if ingest time evaluation is disabled on this node.
+     *
+     * @param eventDefinitionId the event definition ID
+     * @return the streaming start or an empty optional if the event definition isn't evaluated at ingest time
+     */
+    public Optional<DateTime> streamingSince(String eventDefinitionId) {
+        final Optional<DateTime> streamingSince = stateService.getStreamingSince(eventDefinitionId);
+        if (streamingSince.isPresent() && !enabled) {
+            LOG.info("Ingest time evaluation is disabled, falling back to scheduled search for event definition <{}>", eventDefinitionId);
+            stateService.stopStreaming(eventDefinitionId);
+            return Optional.empty();
+        }
+        return streamingSince;
+    }
+
+    /**
+     * Evaluates all eligible event definitions against the given message. The processing time of the message must be
+     * set. Matches are emitted asynchronously.
+     *
+     * @param message the processed message
+     */
+    public void evaluate(Message message) {
+        final List<StreamingDefinition> current = definitions;
+        if (current.isEmpty() || message.getProcessingTime() == null) {
+            return;
+        }
+
+        try (final Timer.Context ignored = evaluationTime.time()) {
+            final long processingTime = message.getProcessingTime().getMillis();
+            final Set<String> streamIds = message.getStreamIds();
+
+            for (final StreamingDefinition definition : current) {
+                if (processingTime < definition.streamingSince().getMillis()
+                        || streamIds.stream().noneMatch(definition.streams()::contains)
+                        || !definition.predicate().test(message)
+                        || !definition.tryAcquireEvent(processingTime)) {
+                    continue;
+                }
+                matchedMessages.mark();
+                if (!queue.offer(new Match(definition, message))) {
+                    fallBackToScheduledSearch(definition);
+                }
+            }
+        }
+    }
+
+    @Subscribe
+    @SuppressWarnings("unused")
+    public void handleEventDefinitionUpdated(EventDefinitionUpdated event) {
+        executor.submit(this::reloadDefinitions);
+    }
+
+    @Subscribe
+    @SuppressWarnings("unused")
+    public void handleEventDefinitionDeleted(EventDefinitionDeleted event) {
+        executor.submit(this::reloadDefinitions);
+    }
+
+    // Queries on fields which are no longer mapped as keyword or numeric can't be evaluated at ingest time anymore
+    @Subscribe
+    @SuppressWarnings("unused")
+    public void handleIndexFieldTypesChanged(IndexFieldTypesChangedEvent event) {
+        executor.submit(this::reloadDefinitions);
+    }
+
+    @VisibleForTesting
+    synchronized void reloadDefinitions() {
+        try {
+            final ImmutableList.Builder<StreamingDefinition> loaded = ImmutableList.builder();
+            final DateTime activation = Tools.nowUTC().plus(activationDelay.toMillis());
+            final Map<Set<String>, Map<String, FieldKind>> fieldKindsByIndexSets = new HashMap<>();
+            final AtomicBoolean pending = new AtomicBoolean(false);
+
+            try (final java.util.stream.Stream<EventDefinitionDto> stream = eventDefinitionService.streamAll()) {
+                stream.forEach(definition -> {
+                    final Optional<Predicate<Message>> predicate = eligiblePredicate(definition, fieldKindsByIndexSets);
+                    if (predicate.isEmpty()) {
+                        stateService.stopStreaming(definition.id());
+                        return;
+                    }
+                    final Optional<DateTime> streamingSince = stateService.startStreaming(definition.id(), activation);
+                    streamingSince.ifPresent(since -> loaded.add(new StreamingDefinition(definition, predicate.get(), since)));
+                    if (streamingSince.isEmpty()) {
+                        pending.set(true);
+                    }
+                });
+            }
+
+            definitions = loaded.build();
+            LOG.debug("Evaluating {} event definitions at ingest time", definitions.size());
+
+            // Eligible definitions get activated once their event processor ran for the first time. Only check
+            // again while there are such definitions.
+            if (pending.get() && (pendingReload == null || pendingReload.isDone())) {
+                pendingReload = executor.schedule(this::reloadDefinitions, Math.max(1000, activationDelay.toMillis()), TimeUnit.MILLISECONDS);
+            }
+        } catch (Exception e) {
+            LOG.error("Couldn't load event definitions for ingest time evaluation", e);
+        }
+    }
+
+    private Optional<Predicate<Message>> eligiblePredicate(EventDefinitionDto definition,
+                                                           Map<Set<String>, Map<String, FieldKind>> fieldKindsByIndexSets) {
+        if (!isEligible(definition)) {
+            return Optional.empty();
+        }
+        final AggregationEventProcessorConfig config = (AggregationEventProcessorConfig) definition.config();
+        // The query is only compiled if all fields it compares are mapped as keyword or numeric in every index of
+        // the streams, so that the results are the same as the ones of the scheduled search.
+        final Map<String, FieldKind> fieldKinds = fieldKindsByIndexSets.computeIfAbsent(
+                streamService.indexSetIdsByIds(config.streams()),
+                indexSetIds -> FilterQueryMatcher.fieldKinds(indexFieldTypesService.findForIndexSets(indexSetIds)));
+        return FilterQueryMatcher.compile(config.query(), fieldKinds);
+    }
+
+    @VisibleForTesting
+    static boolean isEligible(EventDefinitionDto definition) {
+        if (definition.state() != EventDefinition.State.ENABLED
+                || !(definition.config() instanceof AggregationEventProcessorConfig config)) {
+            return false;
+        }
+        return config.series().isEmpty() && config.groupBy().isEmpty() && !config.streams().isEmpty()
+                && config.streamCategories().isEmpty() && config.filters().isEmpty()
+                && config.queryParameters().isEmpty();
+    }
+
+    /**
+     * Stops evaluating the event definition at ingest time if the queue of matches is full. The streaming marker is
+     * removed, so the scheduled search covers all messages processed from now on. All nodes reload their event
+     * definitions, which starts ingest time evaluation again after the activation delay.
+     */
+    private void fallBackToScheduledSearch(StreamingDefinition definition) {
+        if (!definition.fallBack()) {
+            return;
+        }
+        fallbacks.mark();
+        LOG.warn("Couldn't keep up with emitting events for event definition <{}/{}>, falling back to scheduled search",
+                definition.eventDefinition().id(), definition.eventDefinition().title());
+        definitions = definitions.stream().filter(d -> d != definition).collect(ImmutableList.toImmutableList());
+        executor.submit(() -> {
+            try {
+                stateService.stopStreaming(definition.eventDefinition().id());
+                clusterEventBus.post(new EventDefinitionUpdated(definition.eventDefinition().id()));
+            } catch (Exception e) {
+                LOG.error("Couldn't fall back to scheduled search for event definition <{}>", definition.eventDefinition().id(), e);
+            }
+        });
+    }
+
+    private void drain() {
+        try {
+            final List<Match> matches = new ArrayList<>(MAX_BATCH_SIZE);
+            while (queue.drainTo(matches, MAX_BATCH_SIZE) > 0) {
+                emit(matches);
+                matches.clear();
+            }
+        } catch (Exception e) {
+            LOG.error("Couldn't emit events for ingest time evaluated event definitions", e);
+        }
+    }
+
+    private void emit(List<Match> matches) {
+        final EventProcessorEventFactory eventFactory = eventFactoryProvider.get();
+        final Map<StreamingDefinition, List<Match>> byDefinition = matches.stream()
+                .collect(Collectors.groupingBy(Match::definition, LinkedHashMap::new, Collectors.toList()));
+
+        byDefinition.forEach((definition, definitionMatches) -> {
+            if (definition.hasFallenBack()) {
+                // The scheduled search finds these messages now
+                return;
+            }
+            final EventDefinition eventDefinition = definition.eventDefinition();
+            final List<EventWithContext> eventsWithContext = definitionMatches.stream()
+                    .map(match -> createEvent(eventFactory, definition, match.message()))
+                    .toList();
+            try {
+                eventProcessorEngine.emitEvents(eventDefinition, eventsWithContext);
+            } catch (EventProcessorException e) {
+                LOG.error("Couldn't emit {} events for event definition <{}/{}>",
+                        eventsWithContext.size(), eventDefinition.title(), eventDefinition.id(), e);
+            }
+        });
+    }
+
+    private EventWithContext createEvent(EventProcessorEventFactory eventFactory, StreamingDefinition definition, Message message) {
+        final EventDefinition eventDefinition = definition.eventDefinition();
+        final AggregationEventProcessorConfig config = (AggregationEventProcessorConfig) eventDefinition.config();
+        final Event event = eventFactory.createEvent(eventDefinition, message.getTimestamp(), eventDefinition.title());
+
+        // The message hasn't been indexed yet, so we only know the index set it is written to. The write index alias
+        // of the first matching stream is used to look it up.
+        message.getStreams().stream()
+                .filter(stream -> definition.streams().contains(stream.getId()))
+                .map(Stream::getIndexSet)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .ifPresent(indexSet -> event.setOriginContext(EventOriginContext.elasticsearchMessage(indexSet.getWriteIndexAlias(), message.getId())));
+
+        // Ensure the event has values in the "source_streams" field for permission checks to work
+        eventStreamService.buildEventSourceStreams(definition.streams(), ImmutableSet.copyOf(message.getStreamIds()))
+                .forEach(event::addSourceStream);
+
+        event.setReplayInfo(EventReplayInfo.builder()
+                .timerangeStart(message.getTimestamp().minus(config.searchWithinMs()))
+                .timerangeEnd(message.getTimestamp())
+                .query(config.query())
+                .streams(event.getSourceStreams())
+                .filters(config.filters())
+                .build());
+
+        return EventWithContext.create(event, message);
+    }
+
+    private record Match(StreamingDefinition definition, Message message) {
+    }
+
+    private static class StreamingDefinition {
+        private final EventDefinition eventDefinition;
+        private final Predicate<Message> predicate;
+        private final DateTime streamingSince;
+        private final ImmutableSet<String> streams;
+        private final int eventLimit;
+        private final long windowMs;
+        private final AtomicBoolean fallenBack = new AtomicBoolean(false);
+        private long currentWindow = -1;
+        private int windowEvents = 0;
+
+        StreamingDefinition(EventDefinition eventDefinition, Predicate<Message> predicate, DateTime streamingSince) {
+            final AggregationEventProcessorConfig config = (AggregationEventProcessorConfig) eventDefinition.config();
+            this.eventDefinition = eventDefinition;
+            this.predicate = predicate;
+            this.streamingSince = streamingSince;
+            this.streams = config.streams();
+            this.eventLimit = config.eventLimit();
+            this.windowMs = Math.max(1, config.executeEveryMs());
+        }
+
+        EventDefinition eventDefinition() {
+            return eventDefinition;
+        }
+
+        Predicate<Message> predicate() {
+            return predicate;
+        }
+
+        DateTime streamingSince() {
+            return streamingSince;
+        }
+
+        ImmutableSet<String> streams() {
+            return streams;
+        }
+
+        /**
+         * @return true if the definition hasn't fallen back to the scheduled search before
+         */
+        boolean fallBack() {
+            return fallenBack.compareAndSet(false, true);
+        }
+
+        boolean hasFallenBack() {
+            return fallenBack.get();
+        }
+
+        // The event limit of filter definitions applies to each execution of the scheduled search. Streamed
+        // events are limited per "execute every" interval of processing time instead.
+        synchronized boolean tryAcquireEvent(long processingTime) {
+            if (eventLimit <= 0) {
+                return true;
+            }
+            final long window = processingTime / windowMs;
+            if (window != currentWindow) {
+                currentWindow = window;
+                windowEvents = 0;
+            }
+            if (windowEvents >= eventLimit) {
+                return false;
+            }
+            windowEvents++;
+            return true;
+        }
+    }
+}
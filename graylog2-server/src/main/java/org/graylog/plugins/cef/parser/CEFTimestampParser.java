@@ -16,6 +16,8 @@
  */
 package org.graylog.plugins.cef.parser;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.Longs;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
@@ -25,6 +27,13 @@ import org.joda.time.format.ISODateTimeFormat;
 import javax.annotation.Nullable;
 import java.util.Locale;
 
+/**
+ * Parses the timestamp formats found in CEF messages.
+ * <p>
+ * The layout of the timestamp is identified in a single pass over the input and the matching formatter is used
+ * directly, so that well-formed timestamps are parsed without trying (and failing) other formatters first.
+ * Timestamps that cannot be classified fall back to trying all supported formatters in order.
+ */
 public class CEFTimestampParser {
     private static final DateTimeFormatter[] DATE_TIME_FORMATTERS = {
             ISODateTimeFormat.dateTime(),
@@ -47,27 +56,47 @@ public class CEFTimestampParser {
             DateTimeFormat.longDateTime()
     };
 
+    // Indices into DATE_TIME_FORMATTERS returned by classify()
+    private static final int ISO_EXTENDED = 0;
+    private static final int ISO_BASIC = 2;
+    private static final int MONTH_DAY = 4;
+    private static final int MONTH_DAY_YEAR = 8;
+    // Offsets added to the base index of a layout family
+    private static final int ISO_NO_MILLIS_OFFSET = 1;
+    private static final int MONTH_DAY_NO_MILLIS_OFFSET = 2;
+    private static final int MONTH_DAY_NO_ZONE_OFFSET = 1;
+
+    private static final int EPOCH_MILLIS = -1;
+    private static final int UNKNOWN = -2;
+
     @Nullable
     public static DateTime parse(String s, DateTimeZone timeZone, Locale locale) {
         // Trim input string and consolidate repeating blanks
-        final String text = s.trim().replaceAll("\\s{2,}", " ");
+        final String text = consolidateBlanks(s.trim());
 
-        // First try UNIX epoch millisecond timestamp
-        try {
-            final long l = Long.parseLong(text);
-            return new DateTime(l, DateTimeZone.UTC);
-        } catch (NumberFormatException e) {
-            // ignore
-        }
-
-        for (DateTimeFormatter dateTimeFormatter : DATE_TIME_FORMATTERS) {
-            try {
-                return dateTimeFormatter
-                        .withZone(timeZone)
-                        .withLocale(locale)
-                        .parseDateTime(text);
-            } catch (Exception e) {
-                // ignore
+        final int layout = classify(text);
+        if (layout == EPOCH_MILLIS) {
+            // Long.parseLong() accepts a leading plus sign, Longs.tryParse() doesn't.
+            final Long epochMillis = Longs.tryParse(text.charAt(0) == '+' ? text.substring(1) : text);
+            if (epochMillis != null) {
+                return new DateTime(epochMillis.longValue(), DateTimeZone.UTC);
+            }
+        }
+        if (layout >= 0) {
+            final DateTime dateTime = parse(DATE_TIME_FORMATTERS[layout], text, timeZone, locale);
+            if (dateTime != null) {
+                return dateTime;
+            }
+        }
+
+        // The layout couldn't be identified or the identified formatter failed, try everything.
+        for (int i = 0; i < DATE_TIME_FORMATTERS.length; i++) {
+            if (i == layout) {
+                continue;
+            }
+            final DateTime dateTime = parse(DATE_TIME_FORMATTERS[i], text, timeZone, locale);
+            if (dateTime != null) {
+                return dateTime;
             }
         }
         return null;
@@ -77,4 +106,140 @@ public class CEFTimestampParser {
     public static DateTime parse(String text) {
         return parse(text, DateTimeZone.UTC, Locale.ROOT);
     }
+
+    @Nullable
+    private static DateTime parse(DateTimeFormatter dateTimeFormatter, String text, DateTimeZone timeZone, Locale locale) {
+        try {
+            return dateTimeFormatter
+                    .withZone(timeZone)
+                    .withLocale(locale)
+                    .parseDateTime(text);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Identifies the layout of the given timestamp by looking at the character classes of its components.
+     *
+     * @return the index of the formatter for the layout, {@link #EPOCH_MILLIS} or {@link #UNKNOWN}
+     */
+    @VisibleForTesting
+    static int classify(String text) {
+        final int length = text.length();
+        if (length == 0) {
+            return UNKNOWN;
+        }
+
+        final char first = text.charAt(0);
+        if (isDigit(first) || ((first == '-' || first == '+') && length > 1)) {
+            return classifyNumeric(text);
+        }
+        if (Character.isLetter(first)) {
+            return classifyMonthDay(text);
+        }
+        return UNKNOWN;
+    }
+
+    // 1505741140123, 2017-09-18T13:25:40.123+01:00, 20170918T132540+01:00
+    private static int classifyNumeric(String text) {
+        final int length = text.length();
+        int timeSeparator = -1;
+        boolean hasFraction = false;
+        boolean digitsOnly = true;
+        for (int i = 1; i < length; i++) {
+            final char c = text.charAt(i);
+            if (isDigit(c)) {
+                continue;
+            }
+            digitsOnly = false;
+            if (c == 'T' && timeSeparator < 0) {
+                timeSeparator = i;
+            } else if (c == '.' && timeSeparator > 0) {
+                hasFraction = true;
+            }
+        }
+
+        if (digitsOnly) {
+            return EPOCH_MILLIS;
+        }
+        if (timeSeparator < 0 || !isDigit(text.charAt(0))) {
+            return UNKNOWN;
+        }
+        final int family = length > 4 && text.charAt(4) == '-' ? ISO_EXTENDED : ISO_BASIC;
+        return hasFraction ? family : family + ISO_NO_MILLIS_OFFSET;
+    }
+
+    // Sep 18 13:25:40.123 CET, Sep 18 2017 13:25:40
+    private static int classifyMonthDay(String text) {
+        final int length = text.length();
+        int tokens = 1;
+        int timeToken = -1;
+        boolean hasFraction = false;
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                tokens++;
+            } else if (c == ':' && timeToken < 0) {
+                timeToken = tokens;
+            } else if (c == '.' && tokens == timeToken) {
+                hasFraction = true;
+            }
+        }
+
+        // The time is either the third (without year) or the fourth (with year) token, optionally followed by a zone.
+        final int family;
+        if (timeToken == 3) {
+            family = MONTH_DAY;
+        } else if (timeToken == 4) {
+            family = MONTH_DAY_YEAR;
+        } else {
+            return UNKNOWN;
+        }
+
+        final boolean hasZone;
+        if (tokens == timeToken + 1) {
+            hasZone = true;
+        } else if (tokens == timeToken) {
+            hasZone = false;
+        } else {
+            return UNKNOWN;
+        }
+
+        return family + (hasFraction ? 0 : MONTH_DAY_NO_MILLIS_OFFSET) + (hasZone ? 0 : MONTH_DAY_NO_ZONE_OFFSET);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Replaces runs of two or more whitespace characters with a single blank. Only allocates if there is such a run.
+     */
+    private static String consolidateBlanks(String text) {
+        final int length = text.length();
+        int i = 1;
+        while (i < length && !(Character.isWhitespace(text.charAt(i)) && Character.isWhitespace(text.charAt(i - 1)))) {
+            i++;
+        }
+        if (i >= length) {
+            return text;
+        }
+
+        final StringBuilder sb = new StringBuilder(length);
+        int pos = 0;
+        while (pos < length) {
+            final char c = text.charAt(pos);
+            if (Character.isWhitespace(c) && pos + 1 < length && Character.isWhitespace(text.charAt(pos + 1))) {
+                sb.append(' ');
+                while (pos < length && Character.isWhitespace(text.charAt(pos))) {
+                    pos++;
+                }
+            } else {
+                sb.append(c);
+                pos++;
+            }
+        }
+        return sb.toString();
+    }
 }
@@ -17,10 +17,16 @@
 package org.graylog.plugins.pipelineprocessor;
 
 import com.github.joschi.jadconfig.Parameter;
+import org.graylog2.configuration.converters.JavaDurationConverter;
 import org.graylog2.plugin.PluginConfigBean;
 
+import java.time.Duration;
+
 public class PipelineConfig implements PluginConfigBean {
 
     @Parameter("cached_stageiterators")
     private boolean cachedStageIterators = true;
+
+    @Parameter(value = "pipeline_state_update_delay", converter = JavaDurationConverter.class)
+    private Duration stateUpdateDelay = Duration.ofMillis(500);
 }
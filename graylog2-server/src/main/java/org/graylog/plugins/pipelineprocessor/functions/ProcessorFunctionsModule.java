@@ -84,6 +84,7 @@ import org.graylog.plugins.pipelineprocessor.functions.json.IsJson;
 import org.graylog.plugins.pipelineprocessor.functions.json.JsonFlatten;
 import org.graylog.plugins.pipelineprocessor.functions.json.JsonParse;
 import org.graylog.plugins.pipelineprocessor.functions.json.SelectJsonPath;
+import org.graylog.plugins.pipelineprocessor.functions.json.SetFieldsFromJson;
 import org.graylog.plugins.pipelineprocessor.functions.lookup.ListCount;
 import org.graylog.plugins.pipelineprocessor.functions.lookup.ListGet;
 import org.graylog.plugins.pipelineprocessor.functions.lookup.Lookup;
@@ -128,6 +129,7 @@ import org.graylog.plugins.pipelineprocessor.functions.strings.FirstNonNull;
 import org.graylog.plugins.pipelineprocessor.functions.strings.GrokMatch;
 import org.graylog.plugins.pipelineprocessor.functions.strings.Join;
 import org.graylog.plugins.pipelineprocessor.functions.strings.KeyValue;
+import org.graylog.plugins.pipelineprocessor.functions.strings.SetFieldsFromKeyValue;
 import org.graylog.plugins.pipelineprocessor.functions.strings.Length;
 import org.graylog.plugins.pipelineprocessor.functions.strings.Lowercase;
 import org.graylog.plugins.pipelineprocessor.functions.strings.MultiGrokMatch;
@@ -222,6 +224,7 @@ public class ProcessorFunctionsModule extends PluginModule {
         addMessageProcessorFunction(Uppercase.NAME, Uppercase.class);
         addMessageProcessorFunction(Concat.NAME, Concat.class);
         addMessageProcessorFunction(KeyValue.NAME, KeyValue.class);
+        addMessageProcessorFunction(SetFieldsFromKeyValue.NAME, SetFieldsFromKeyValue.class);
         addMessageProcessorFunction(Join.NAME, Join.class);
         addMessageProcessorFunction(Split.NAME, Split.class);
         addMessageProcessorFunction(StartsWith.NAME, StartsWith.class);
@@ -233,6 +236,7 @@ public class ProcessorFunctionsModule extends PluginModule {
         // json
         addMessageProcessorFunction(JsonParse.NAME, JsonParse.class);
         addMessageProcessorFunction(JsonFlatten.NAME, JsonFlatten.class);
+        addMessageProcessorFunction(SetFieldsFromJson.NAME, SetFieldsFromJson.class);
         addMessageProcessorFunction(SelectJsonPath.NAME, SelectJsonPath.class);
 
         // dates
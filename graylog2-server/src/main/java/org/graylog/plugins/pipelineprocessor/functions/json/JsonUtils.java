@@ -16,7 +16,10 @@
  */
 package org.graylog.plugins.pipelineprocessor.functions.json;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -36,6 +39,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static org.graylog2.plugin.utilities.ratelimitedlog.RateLimitedLogFactory.createDefaultRateLimitedLog;
@@ -71,6 +75,83 @@ public class JsonUtils {
         return resultRoot;
     }
 
+    /**
+     * Extracts the same fields as {@link #extractJson(String, ObjectMapper, ExtractFlags, boolean)}, but streams them
+     * to the given consumer while parsing instead of building a JSON tree first.
+     * <p>
+     * In contrast to the tree, duplicate keys in the JSON are passed to the consumer once for every occurrence. For
+     * scalar values the last one wins like before, nested objects with duplicate keys are merged.
+     *
+     * @param consumer receives the key and the value of every extracted field
+     * @throws IOException if the value isn't a valid JSON object. The consumer might have received fields already.
+     */
+    public static void extractFields(String value, ObjectMapper mapper, ExtractFlags extractFlags, boolean stringify,
+                                     BiConsumer<String, Object> consumer) throws IOException {
+        if (isNullOrEmpty(value)) {
+            throw new IOException("null result");
+        }
+        final BiConsumer<String, Object> fieldConsumer = stringify
+                ? (key, fieldValue) -> consumer.accept(key, fieldValue.toString())
+                : consumer;
+        try (JsonParser parser = mapper.getFactory().createParser(value)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("JSON value is not an object");
+            }
+            streamObject(parser, null, mapper, extractFlags, fieldConsumer);
+        }
+    }
+
+    private static void streamObject(JsonParser parser, @Nullable String prefix, ObjectMapper mapper,
+                                     ExtractFlags extractFlags, BiConsumer<String, Object> consumer) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.currentName();
+            final String key = prefix == null ? name : prefix + KEY_SEPARATOR + name;
+            parser.nextToken();
+            streamValue(parser, key, mapper, extractFlags, consumer);
+        }
+    }
+
+    private static void streamValue(JsonParser parser, String key, ObjectMapper mapper, ExtractFlags extractFlags,
+                                    BiConsumer<String, Object> consumer) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_STRING -> consumer.accept(key, parser.getText());
+            case VALUE_NUMBER_INT -> consumer.accept(key, mapper.isEnabled(DeserializationFeature.USE_BIG_INTEGER_FOR_INTS)
+                    ? parser.getBigIntegerValue()
+                    : mapper.isEnabled(DeserializationFeature.USE_LONG_FOR_INTS) && parser.getNumberType() == JsonParser.NumberType.INT
+                    ? Long.valueOf(parser.getLongValue())
+                    : parser.getNumberValue());
+            case VALUE_NUMBER_FLOAT -> consumer.accept(key, mapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                    ? parser.getDecimalValue()
+                    : parser.getDoubleValue());
+            case VALUE_TRUE -> consumer.accept(key, Boolean.TRUE);
+            case VALUE_FALSE -> consumer.accept(key, Boolean.FALSE);
+            case START_OBJECT -> {
+                if (extractFlags.flattenObjects()) {
+                    streamObject(parser, key, mapper, extractFlags, consumer);
+                } else {
+                    final Map<String, Object> object = mapper.readValue(parser, TypeReferences.MAP_STRING_OBJECT);
+                    parseObject(key, object, mapper, extractFlags).forEach(entry -> consumer.accept(entry.key(), entry.value()));
+                }
+            }
+            case START_ARRAY -> {
+                if (extractFlags.deleteArrays()) {
+                    parser.skipChildren();
+                } else if (extractFlags.escapeArrays()) {
+                    consumer.accept(key, mapper.writeValueAsString(mapper.readValue(parser, List.class)));
+                } else {
+                    int index = 0;
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        streamValue(parser, key + KEY_SEPARATOR + index, mapper, extractFlags, consumer);
+                        index++;
+                    }
+                }
+            }
+            default -> {
+                // Ignore null values, so we don't try to create fields for that in the message.
+            }
+        }
+    }
+
     private static Collection<Entry> parseValue(
             String key, Object value, ObjectMapper mapper, ExtractFlags extractFlags)
             throws JsonProcessingException {
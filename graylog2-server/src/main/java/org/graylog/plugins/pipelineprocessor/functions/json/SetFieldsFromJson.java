@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.pipelineprocessor.functions.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swrve.ratelimitedlogger.RateLimitedLog;
+import jakarta.inject.Inject;
+import org.graylog.plugins.pipelineprocessor.EvaluationContext;
+import org.graylog.plugins.pipelineprocessor.ast.functions.AbstractFunction;
+import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionArgs;
+import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionDescriptor;
+import org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor;
+import org.graylog2.plugin.Message;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.collect.ImmutableList.of;
+import static org.graylog2.plugin.utilities.ratelimitedlog.RateLimitedLogFactory.createDefaultRateLimitedLog;
+
+/**
+ * Does the same as {@code set_fields(flatten_json(...))}, but sets the fields while parsing the JSON value instead of
+ * building a JSON tree and a map of fields first.
+ */
+public class SetFieldsFromJson extends AbstractFunction<Void> {
+    private static final RateLimitedLog LOG = createDefaultRateLimitedLog(SetFieldsFromJson.class);
+    public static final String NAME = "set_fields_from_json";
+    private static final String OPTION_JSON = "json";
+    private static final String OPTION_FLATTEN = "flatten";
+    private static final String OPTION_IGNORE = "ignore";
+
+    private final ObjectMapper objectMapper;
+    private final ParameterDescriptor<String, String> valueParam;
+    private final ParameterDescriptor<String, String> arrayHandlerParam;
+    private final ParameterDescriptor<Boolean, Boolean> stringifyParam;
+    private final ParameterDescriptor<String, String> prefixParam;
+    private final ParameterDescriptor<String, String> suffixParam;
+    private final ParameterDescriptor<Boolean, Boolean> cleanFieldsParam;
+    private final ParameterDescriptor<Message, Message> messageParam;
+
+    @Inject
+    public SetFieldsFromJson(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        valueParam = ParameterDescriptor.string("value").description("The string to parse as a JSON tree").build();
+        arrayHandlerParam = ParameterDescriptor.string("array_handler").optional().description("Determines how arrays are processed, defaults to 'flatten'").build();
+        stringifyParam = ParameterDescriptor.bool("stringify").optional().description("Convert all extracted values to strings").build();
+        prefixParam = ParameterDescriptor.string("prefix").optional().description("The prefix for the field names").build();
+        suffixParam = ParameterDescriptor.string("suffix").optional().description("The suffix for the field names").build();
+        cleanFieldsParam = ParameterDescriptor.bool("clean_fields").optional().description("Substitute invalid characters in field names with underscores").build();
+        messageParam = ParameterDescriptor.type("message", Message.class).optional().description("The message to use, defaults to '$message'").build();
+    }
+
+    @Override
+    public Void evaluate(FunctionArgs args, EvaluationContext context) {
+        final String value = valueParam.required(args, context);
+        final String arrayHandler = arrayHandlerParam.optional(args, context).orElse(OPTION_FLATTEN);
+        final boolean stringify = stringifyParam.optional(args, context).orElse(false);
+        final Optional<String> prefix = prefixParam.optional(args, context);
+        final Optional<String> suffix = suffixParam.optional(args, context);
+        final boolean cleanFields = cleanFieldsParam.optional(args, context).orElse(false);
+        final Message message = messageParam.optional(args, context).orElse(context.currentMessage());
+
+        final JsonUtils.ExtractFlags flags;
+        switch (arrayHandler) {
+            case OPTION_IGNORE -> flags = JsonFlatten.FLAGS_IGNORE;
+            case OPTION_JSON -> flags = JsonFlatten.FLAGS_JSON;
+            case OPTION_FLATTEN -> flags = JsonFlatten.FLAGS_FLATTEN;
+            default -> {
+                LOG.warn(context.pipelineErrorMessage("Unknown parameter array_handler: " + arrayHandler));
+                return null;
+            }
+        }
+
+        // Collect the fields first, so invalid JSON doesn't leave a message with only some of the fields
+        final List<Map.Entry<String, Object>> fields = new ArrayList<>();
+        try {
+            JsonUtils.extractFields(value, objectMapper, flags, stringify, (key, fieldValue) -> fields.add(Map.entry(key, fieldValue)));
+        } catch (IOException e) {
+            LOG.warn(context.pipelineErrorMessage("Unable to parse JSON"), e);
+            return null;
+        }
+
+        for (Map.Entry<String, Object> field : fields) {
+            String name = field.getKey();
+            if (prefix.isPresent()) {
+                name = prefix.get() + name;
+            }
+            if (suffix.isPresent()) {
+                name = name + suffix.get();
+            }
+            if (cleanFields) {
+                name = Message.cleanKey(name);
+            }
+            message.addField(name, field.getValue());
+        }
+        return null;
+    }
+
+    @Override
+    public FunctionDescriptor<Void> descriptor() {
+        return FunctionDescriptor.<Void>builder()
+                .name(NAME)
+                .returnType(Void.class)
+                .params(of(
+                        valueParam, arrayHandlerParam, stringifyParam, prefixParam, suffixParam, cleanFieldsParam, messageParam
+                ))
+                .description("Parses a string as a JSON tree and sets all values as flattened fields in a message. If no specific message is provided, it sets the fields in the currently processed message")
+                .build();
+    }
+}
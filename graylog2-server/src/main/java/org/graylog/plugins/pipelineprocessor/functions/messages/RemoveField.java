@@ -17,6 +17,7 @@
 package org.graylog.plugins.pipelineprocessor.functions.messages;
 
 import com.google.common.collect.ImmutableList;
+import jakarta.inject.Inject;
 import org.graylog.plugins.pipelineprocessor.EvaluationContext;
 import org.graylog.plugins.pipelineprocessor.ast.functions.AbstractFunction;
 import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionArgs;
@@ -24,6 +25,7 @@ import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionDescriptor;
 import org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor;
 import org.graylog.plugins.pipelineprocessor.rulebuilder.RuleBuilderFunctionGroup;
 import org.graylog2.plugin.Message;
+import org.graylog2.utilities.PatternCache;
 
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -38,9 +40,10 @@ public class RemoveField extends AbstractFunction<Void> {
     private final ParameterDescriptor<Message, Message> messageParam;
     private final ParameterDescriptor<Boolean, Boolean> invertParam;
 
-    public RemoveField() {
+    @Inject
+    public RemoveField(PatternCache patternCache) {
         fieldParam = ParameterDescriptor.string(FIELD, Pattern.class)
-                .transform(Pattern::compile)
+                .transform(patternCache::regex)
                 .description("The field(s) to remove (name or regex)").build();
         messageParam = type("message", Message.class).optional().description("The message to use, defaults to '$message'").build();
         invertParam = ParameterDescriptor.bool(INVERT).optional().description("Invert: keep matching field(s) and remove all others").build();
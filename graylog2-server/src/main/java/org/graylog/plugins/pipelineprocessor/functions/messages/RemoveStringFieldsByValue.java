@@ -18,6 +18,7 @@ package org.graylog.plugins.pipelineprocessor.functions.messages;
 
 import com.google.common.collect.ImmutableList;
 import com.swrve.ratelimitedlogger.RateLimitedLog;
+import jakarta.inject.Inject;
 import org.graylog.plugins.pipelineprocessor.EvaluationContext;
 import org.graylog.plugins.pipelineprocessor.ast.functions.AbstractFunction;
 import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionArgs;
@@ -25,6 +26,7 @@ import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionDescriptor;
 import org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor;
 import org.graylog.plugins.pipelineprocessor.rulebuilder.RuleBuilderFunctionGroup;
 import org.graylog2.plugin.Message;
+import org.graylog2.utilities.PatternCache;
 
 import java.util.List;
 import java.util.Optional;
@@ -43,10 +45,11 @@ public class RemoveStringFieldsByValue extends AbstractFunction<Void> {
     private final ParameterDescriptor<List, List> valuesParam;
     private final ParameterDescriptor<Message, Message> messageParam;
 
-    public RemoveStringFieldsByValue() {
+    @Inject
+    public RemoveStringFieldsByValue(PatternCache patternCache) {
         regexParam = ParameterDescriptor.string(PATTERN_ARG, Pattern.class)
                 .optional()
-                .transform(Pattern::compile)
+                .transform(patternCache::regex)
                 .description("A regex specifying field values to be removed").build();
         valuesParam = type(VALUES_ARG, List.class).optional().description("A list of exact values of fields to be removed").build();
         messageParam = type("message", Message.class).optional().description("The message to use, defaults to '$message'").build();
@@ -17,8 +17,6 @@
 package org.graylog.plugins.pipelineprocessor.functions.strings;
 
 import com.google.common.reflect.TypeToken;
-import io.krakens.grok.api.Grok;
-import io.krakens.grok.api.Match;
 import jakarta.inject.Inject;
 import org.graylog.plugins.pipelineprocessor.EvaluationContext;
 import org.graylog.plugins.pipelineprocessor.ast.functions.AbstractFunction;
@@ -26,6 +24,7 @@ import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionArgs;
 import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionDescriptor;
 import org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor;
 import org.graylog2.grok.GrokPatternRegistry;
+import org.graylog2.grok.MultiGrokMatcher;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -70,15 +69,12 @@ public class MultiGrokMatch extends AbstractFunction<GrokMatch.GrokResult> {
             return null;
         }
 
-        for (String pattern : patterns) {
-            final Grok grok = grokPatternRegistry.cachedGrokForPattern(pattern, onlyNamedCaptures);
-
-            final Match match = grok.match(value);
-            if (!match.isNull()) {
-                return new GrokMatch.GrokResult(match.captureFlattened());
-            }
+        final MultiGrokMatcher matcher = grokPatternRegistry.cachedMultiMatcherForPatterns(patterns, onlyNamedCaptures);
+        final MultiGrokMatcher.IndexedMatch match = matcher.match(value);
+        if (match.index() < 0) {
+            return new GrokMatch.GrokResult(Map.of());
         }
-        return new GrokMatch.GrokResult(Map.of());
+        return new GrokMatch.GrokResult(match.match().captureFlattened());
     }
 
     private List<String> transformToList(Object value) {
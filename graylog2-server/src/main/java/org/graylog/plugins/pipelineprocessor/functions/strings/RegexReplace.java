@@ -16,12 +16,14 @@
  */
 package org.graylog.plugins.pipelineprocessor.functions.strings;
 
+import jakarta.inject.Inject;
 import org.graylog.plugins.pipelineprocessor.EvaluationContext;
 import org.graylog.plugins.pipelineprocessor.ast.functions.AbstractFunction;
 import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionArgs;
 import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionDescriptor;
 import org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor;
 import org.graylog.plugins.pipelineprocessor.rulebuilder.RuleBuilderFunctionGroup;
+import org.graylog2.utilities.PatternCache;
 
 import java.util.regex.Pattern;
 
@@ -36,8 +38,9 @@ public class RegexReplace extends AbstractFunction<String> {
     private final ParameterDescriptor<String, String> replacementParam;
     private final ParameterDescriptor<Boolean, Boolean> replaceAllParam;
 
-    public RegexReplace() {
-        patternParam = ParameterDescriptor.string("pattern", Pattern.class).transform(Pattern::compile).description("The regular expression to which the \"value\" string is to be matched; uses Java regex syntax").build();
+    @Inject
+    public RegexReplace(PatternCache patternCache) {
+        patternParam = ParameterDescriptor.string("pattern", Pattern.class).transform(patternCache::regex).description("The regular expression to which the \"value\" string is to be matched; uses Java regex syntax").build();
         valueParam = ParameterDescriptor.string("value").ruleBuilderVariable().description("The string to match the pattern against").build();
         replacementParam = ParameterDescriptor.string("replacement").description("The string to be substituted for the first or all matches").build();
         replaceAllParam = ParameterDescriptor.bool("replace_all").optional().description("Replace all matches if \"true\", otherwise only replace the first match. Default: true").build();
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.pipelineprocessor.functions.strings;
+
+import com.google.common.collect.ImmutableList;
+import org.graylog.plugins.pipelineprocessor.EvaluationContext;
+import org.graylog.plugins.pipelineprocessor.ast.functions.AbstractFunction;
+import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionArgs;
+import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionDescriptor;
+import org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor;
+import org.graylog2.plugin.Message;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor.bool;
+import static org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor.string;
+import static org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor.type;
+
+/**
+ * Does the same as {@code set_fields(key_value(...))} in a single function call. It takes all parameters of
+ * {@link KeyValue} and sets the extracted pairs as fields without going through a rule variable.
+ */
+public class SetFieldsFromKeyValue extends AbstractFunction<Void> {
+
+    public static final String NAME = "set_fields_from_key_value";
+
+    private final KeyValue keyValue = new KeyValue();
+    private final ParameterDescriptor<String, String> prefixParam;
+    private final ParameterDescriptor<String, String> suffixParam;
+    private final ParameterDescriptor<Boolean, Boolean> cleanFieldsParam;
+    private final ParameterDescriptor<Message, Message> messageParam;
+
+    public SetFieldsFromKeyValue() {
+        prefixParam = string("prefix").optional().description("The prefix for the field names").build();
+        suffixParam = string("suffix").optional().description("The suffix for the field names").build();
+        cleanFieldsParam = bool("clean_fields").optional().description("Substitute invalid characters in field names with underscores").build();
+        messageParam = type("message", Message.class).optional().description("The message to use, defaults to '$message'").build();
+    }
+
+    @Override
+    public Void evaluate(FunctionArgs args, EvaluationContext context) {
+        // The parameters of key_value are part of our descriptor, so the arguments can be passed on as they are
+        final Map<String, String> pairs = keyValue.evaluate(args, context);
+        if (pairs.isEmpty()) {
+            return null;
+        }
+        final Optional<String> prefix = prefixParam.optional(args, context);
+        final Optional<String> suffix = suffixParam.optional(args, context);
+        final boolean cleanFields = cleanFieldsParam.optional(args, context).orElse(false);
+        final Message message = messageParam.optional(args, context).orElse(context.currentMessage());
+
+        pairs.forEach((key, value) -> {
+            if (prefix.isPresent()) {
+                key = prefix.get() + key;
+            }
+            if (suffix.isPresent()) {
+                key = key + suffix.get();
+            }
+            if (cleanFields) {
+                key = Message.cleanKey(key);
+            }
+            message.addField(key, value);
+        });
+        return null;
+    }
+
+    @Override
+    public FunctionDescriptor<Void> descriptor() {
+        return FunctionDescriptor.<Void>builder()
+                .name(NAME)
+                .returnType(Void.class)
+                .params(ImmutableList.<ParameterDescriptor>builder()
+                        .addAll(keyValue.descriptor().params())
+                        .add(prefixParam, suffixParam, cleanFieldsParam, messageParam)
+                        .build())
+                .description("Extracts key/value pairs from a string and sets them as fields in a message. If no specific message is provided, it sets the fields in the currently processed message")
+                .build();
+    }
+}
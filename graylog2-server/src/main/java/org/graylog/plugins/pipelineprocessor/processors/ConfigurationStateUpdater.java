@@ -16,7 +16,9 @@
  */
 package org.graylog.plugins.pipelineprocessor.processors;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.eventbus.EventBus;
@@ -37,13 +39,23 @@ import org.graylog.plugins.pipelineprocessor.events.PipelinesChangedEvent;
 import org.graylog.plugins.pipelineprocessor.events.RuleMetricsConfigChangedEvent;
 import org.graylog.plugins.pipelineprocessor.events.RulesChangedEvent;
 import org.graylog.plugins.pipelineprocessor.parser.PipelineRuleParser;
+import org.graylog2.shared.metrics.MetricUtils;
 
+import java.time.Duration;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static com.codahale.metrics.MetricRegistry.name;
 import static org.graylog2.plugin.utilities.ratelimitedlog.RateLimitedLogFactory.createDefaultRateLimitedLog;
 
+/**
+ * Keeps the {@link PipelineInterpreter.State} up to date with the stored rules, pipelines and stream connections.
+ * <p>
+ * Change events are debounced: all events received within the configured update delay result in a single state
+ * update. Only rules and pipelines which changed are parsed again (see {@link PipelineResolver}).
+ */
 @Singleton
 public class ConfigurationStateUpdater {
     private static final RateLimitedLog log = createDefaultRateLimitedLog(ConfigurationStateUpdater.class);
@@ -58,6 +70,9 @@ public class ConfigurationStateUpdater {
     private final AtomicReference<PipelineInterpreter.State> latestState = new AtomicReference<>();
     private final PipelineResolver pipelineResolver;
     private final PipelineMetricRegistry pipelineMetricRegistry;
+    private final Duration updateDelay;
+    private final AtomicBoolean updateScheduled = new AtomicBoolean(false);
+    private final Timer updateTimer;
 
     @Inject
     public ConfigurationStateUpdater(RuleService ruleService,
@@ -69,9 +84,11 @@ public class ConfigurationStateUpdater {
                                      MetricRegistry metricRegistry,
                                      @Named("daemonScheduler") ScheduledExecutorService scheduler,
                                      EventBus serverEventBus,
-                                     PipelineInterpreter.State.Factory stateFactory) {
+                                     PipelineInterpreter.State.Factory stateFactory,
+                                     @Named("pipeline_state_update_delay") Duration updateDelay) {
         this.ruleMetricsConfigService = ruleMetricsConfigService;
         this.scheduler = scheduler;
+        this.updateDelay = updateDelay;
         this.serverEventBus = serverEventBus;
         this.stateFactory = stateFactory;
         this.pipelineResolver = pipelineResolverFactory.create(
@@ -85,6 +102,11 @@ public class ConfigurationStateUpdater {
                 pipelineRuleParser
         );
         this.pipelineMetricRegistry = PipelineMetricRegistry.create(metricRegistry, Pipeline.class.getName(), Rule.class.getName());
+        this.updateTimer = metricRegistry.timer(name(getClass(), "state-update-time"));
+        MetricUtils.safelyRegister(metricRegistry, name(getClass(), "pipelines"),
+                (Gauge<Integer>) () -> latestState.get() == null ? 0 : latestState.get().getCurrentPipelines().size());
+        MetricUtils.safelyRegister(metricRegistry, name(getClass(), "stream-connections"),
+                (Gauge<Integer>) () -> latestState.get() == null ? 0 : latestState.get().getStreamPipelineConnections().size());
 
         // listens to cluster wide Rule, Pipeline and pipeline stream connection changes
         serverEventBus.register(this);
@@ -95,13 +117,25 @@ public class ConfigurationStateUpdater {
     // only the singleton instance should mutate itself, others are welcome to reload a new state, but we don't
     // currently allow direct global state updates from external sources (if you need to, send an event on the bus instead)
     private synchronized PipelineInterpreter.State reloadAndSave() {
-        final ImmutableMap<String, Pipeline> currentPipelines = pipelineResolver.resolvePipelines(pipelineMetricRegistry);
-        final ImmutableSetMultimap<String, Pipeline> streamPipelineConnections = pipelineResolver.resolveStreamConnections(currentPipelines);
+        try (final Timer.Context ignored = updateTimer.time()) {
+            final ImmutableMap<String, Pipeline> currentPipelines = pipelineResolver.resolvePipelines(pipelineMetricRegistry);
+            final ImmutableSetMultimap<String, Pipeline> streamPipelineConnections = pipelineResolver.resolveStreamConnections(currentPipelines);
+
+            final RuleMetricsConfigDto ruleMetricsConfig = ruleMetricsConfigService.get();
+            final PipelineInterpreter.State newState = stateFactory.newState(currentPipelines, streamPipelineConnections, ruleMetricsConfig);
+            latestState.set(newState);
+            return newState;
+        }
+    }
 
-        final RuleMetricsConfigDto ruleMetricsConfig = ruleMetricsConfigService.get();
-        final PipelineInterpreter.State newState = stateFactory.newState(currentPipelines, streamPipelineConnections, ruleMetricsConfig);
-        latestState.set(newState);
-        return newState;
+    private void scheduleReload() {
+        // Events which arrive before the scheduled update starts are covered by it
+        if (updateScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                updateScheduled.set(false);
+                serverEventBus.post(reloadAndSave());
+            }, updateDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
     }
 
 
@@ -115,7 +149,6 @@ public class ConfigurationStateUpdater {
         return latestState.get();
     }
 
-    // TODO avoid reloading everything on every change, certain changes can get away with doing less work
     @Subscribe
     public void handleRuleChanges(RulesChangedEvent event) {
         event.deletedRules().forEach(ref -> {
@@ -123,7 +156,7 @@ public class ConfigurationStateUpdater {
             pipelineMetricRegistry.removeRuleMetrics(ref.id());
         });
         event.updatedRules().forEach(ref -> log.debug("Refreshing rule {}", ref.id()));
-        scheduler.schedule(() -> serverEventBus.post(reloadAndSave()), 0, TimeUnit.SECONDS);
+        scheduleReload();
     }
 
     @Subscribe
@@ -133,13 +166,13 @@ public class ConfigurationStateUpdater {
             pipelineMetricRegistry.removePipelineMetrics(id);
         });
         event.updatedPipelineIds().forEach(id -> log.debug("Refreshing pipeline {}", id));
-        scheduler.schedule(() -> serverEventBus.post(reloadAndSave()), 0, TimeUnit.SECONDS);
+        scheduleReload();
     }
 
     @Subscribe
     public void handlePipelineConnectionChanges(PipelineConnectionsChangedEvent event) {
         log.debug("Pipeline stream connection changed: {}", event);
-        scheduler.schedule(() -> serverEventBus.post(reloadAndSave()), 0, TimeUnit.SECONDS);
+        scheduleReload();
     }
 
     @Subscribe
@@ -150,6 +183,6 @@ public class ConfigurationStateUpdater {
     @Subscribe
     public void handleRuleMetricsConfigChange(RuleMetricsConfigChangedEvent event) {
         log.debug("Rule metrics config changed: {}", event);
-        scheduler.schedule(() -> serverEventBus.post(reloadAndSave()), 0, TimeUnit.SECONDS);
+        scheduleReload();
     }
 }
@@ -42,6 +42,7 @@ import org.graylog.plugins.pipelineprocessor.db.RuleMetricsConfigDto;
 import org.graylog.plugins.pipelineprocessor.processors.listeners.InterpreterListener;
 import org.graylog.plugins.pipelineprocessor.processors.listeners.NoopInterpreterListener;
 import org.graylog.plugins.pipelineprocessor.processors.listeners.RuleMetricsListener;
+import org.graylog2.Configuration;
 import org.graylog2.metrics.CacheStatsSet;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.MessageCollection;
@@ -82,17 +83,32 @@ public class PipelineInterpreter implements MessageProcessor {
     private final Timer executionTime;
     private final MetricRegistry metricRegistry;
     private final ConfigurationStateUpdater stateUpdater;
+    private final int ruleTimerSampleRate;
 
-    @Inject
     public PipelineInterpreter(MessageQueueAcknowledger messageQueueAcknowledger,
                                MetricRegistry metricRegistry,
                                ConfigurationStateUpdater stateUpdater) {
+        this(messageQueueAcknowledger, metricRegistry, stateUpdater, 1);
+    }
+
+    @Inject
+    public PipelineInterpreter(MessageQueueAcknowledger messageQueueAcknowledger,
+                               MetricRegistry metricRegistry,
+                               ConfigurationStateUpdater stateUpdater,
+                               Configuration configuration) {
+        this(messageQueueAcknowledger, metricRegistry, stateUpdater, configuration.getPipelineRulesTimerSampleRate());
+    }
 
+    private PipelineInterpreter(MessageQueueAcknowledger messageQueueAcknowledger,
+                                MetricRegistry metricRegistry,
+                                ConfigurationStateUpdater stateUpdater,
+                                int ruleTimerSampleRate) {
         this.messageQueueAcknowledger = messageQueueAcknowledger;
         this.filteredOutMessages = metricRegistry.meter(name(ProcessBufferProcessor.class, "filteredOutMessages"));
         this.executionTime = metricRegistry.timer(name(PipelineInterpreter.class, "executionTime"));
         this.metricRegistry = metricRegistry;
         this.stateUpdater = stateUpdater;
+        this.ruleTimerSampleRate = ruleTimerSampleRate;
     }
 
     /**
@@ -104,7 +120,7 @@ public class PipelineInterpreter implements MessageProcessor {
         try (Timer.Context ignored = executionTime.time()) {
             final State latestState = stateUpdater.getLatestState();
             if (latestState.enableRuleMetrics()) {
-                return process(messages, new RuleMetricsListener(metricRegistry), latestState);
+                return process(messages, new RuleMetricsListener(metricRegistry, ruleTimerSampleRate), latestState);
             }
             return process(messages, new NoopInterpreterListener(), latestState);
         }
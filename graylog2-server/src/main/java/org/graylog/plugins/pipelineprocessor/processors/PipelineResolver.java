@@ -34,9 +34,14 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -45,6 +50,9 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * Resolves pipelines, pipeline rules, and pipeline stream connections from database objects to pipeline AST objects.
+ * <p>
+ * The resolver remembers the rules and pipelines of the previous run. Rules with an unchanged source aren't parsed
+ * again, and pipelines with an unchanged source whose referenced rules didn't change are reused as they are.
  */
 public class PipelineResolver {
     public interface Factory {
@@ -65,6 +73,8 @@ public class PipelineResolver {
     private final Supplier<Stream<RuleDao>> ruleDaoSupplier;
     private final Supplier<Stream<PipelineDao>> pipelineDaoSupplier;
     private final Supplier<Stream<PipelineConnections>> pipelineConnectionsSupplier;
+    private final Map<String, ParsedRule> parsedRules = new ConcurrentHashMap<>();
+    private final Map<String, ResolvedPipeline> resolvedPipelines = new ConcurrentHashMap<>();
 
     @Inject
     public PipelineResolver(@Assisted PipelineRuleParser ruleParser,
@@ -95,7 +105,7 @@ public class PipelineResolver {
      */
     public ImmutableMap<String, Pipeline> resolveFunctions(Collection<Pipeline> pipelines,
                                                            PipelineMetricRegistry pipelineMetricRegistry) {
-        final Map<String, Rule> ruleNameMap = resolveRules();
+        final Map<String, ParsedRule> ruleNameMap = resolveRules();
         final ImmutableMap.Builder<String, Pipeline> pipelineIdMap = ImmutableMap.builder();
 
         for (final var pipeline : pipelines) {
@@ -106,23 +116,34 @@ public class PipelineResolver {
         return pipelineIdMap.build();
     }
 
-    private Map<String, Rule> resolveRules() {
-        // Read all rules and parse them
-        final Map<String, Rule> ruleNameMap = Maps.newHashMap();
+    private Map<String, ParsedRule> resolveRules() {
+        // Read all rules and parse the ones which changed since the last run
+        final Map<String, ParsedRule> ruleNameMap = Maps.newHashMap();
+        final Set<String> ruleIds = new HashSet<>();
+        final AtomicInteger parsedCount = new AtomicInteger();
 
         try (final var ruleStream = ruleDaoSupplier.get()) {
             ruleStream.forEach(ruleDao -> {
-                Rule rule;
-                try {
-                    rule = ruleParser.parseRule(ruleDao.id(), ruleDao.source(), false);
-                } catch (ParseException e) {
-                    LOG.warn("Ignoring non parseable rule <{}/{}> with errors <{}>", ruleDao.title(), ruleDao.id(), e.getErrors());
-                    rule = Rule.alwaysFalse("Failed to parse rule: " + ruleDao.id());
+                ruleIds.add(ruleDao.id());
+                ParsedRule parsedRule = parsedRules.get(ruleDao.id());
+                if (parsedRule == null || !Objects.equals(parsedRule.source(), ruleDao.source())) {
+                    parsedCount.incrementAndGet();
+                    try {
+                        parsedRule = new ParsedRule(ruleDao.source(), ruleParser.parseRule(ruleDao.id(), ruleDao.source(), false));
+                        parsedRules.put(ruleDao.id(), parsedRule);
+                    } catch (ParseException e) {
+                        LOG.warn("Ignoring non parseable rule <{}/{}> with errors <{}>", ruleDao.title(), ruleDao.id(), e.getErrors());
+                        // Not remembered, so the rule is parsed again on the next run
+                        parsedRule = new ParsedRule(ruleDao.source(), Rule.alwaysFalse("Failed to parse rule: " + ruleDao.id()));
+                        parsedRules.remove(ruleDao.id());
+                    }
                 }
-                ruleNameMap.put(rule.name(), rule);
+                ruleNameMap.put(parsedRule.rule().name(), parsedRule);
             });
         }
+        parsedRules.keySet().retainAll(ruleIds);
 
+        LOG.debug("Parsed {} of {} rules", parsedCount.get(), ruleIds.size());
         return ruleNameMap;
     }
 
@@ -132,12 +153,23 @@ public class PipelineResolver {
      * @return a map of pipeline ID to pipeline instances
      */
     public ImmutableMap<String, Pipeline> resolvePipelines(PipelineMetricRegistry pipelineMetricRegistry) {
-        final Map<String, Rule> ruleNameMap = resolveRules();
+        final Map<String, ParsedRule> ruleNameMap = resolveRules();
 
-        // Read all pipelines and parse them
+        // Read all pipelines and parse the ones which changed or reference changed rules since the last run
         final ImmutableMap.Builder<String, Pipeline> pipelineIdMap = ImmutableMap.builder();
+        final Set<String> pipelineIds = new HashSet<>();
+        final AtomicInteger reusedCount = new AtomicInteger();
         try (final var pipelineStream = pipelineDaoSupplier.get()) {
             pipelineStream.forEach(pipelineDao -> {
+                pipelineIds.add(pipelineDao.id());
+                final ResolvedPipeline resolvedPipeline = resolvedPipelines.get(pipelineDao.id());
+                if (resolvedPipeline != null && resolvedPipeline.isUpToDate(pipelineDao.source(), pipelineMetricRegistry, ruleNameMap)) {
+                    reusedCount.incrementAndGet();
+                    //noinspection ConstantConditions
+                    pipelineIdMap.put(pipelineDao.id(), resolvedPipeline.pipeline());
+                    return;
+                }
+
                 Pipeline pipeline;
                 try {
                     pipeline = ruleParser.parsePipeline(pipelineDao.id(), pipelineDao.source());
@@ -145,11 +177,17 @@ public class PipelineResolver {
                     LOG.warn("Ignoring non parseable pipeline <{}/{}> with errors <{}>", pipelineDao.title(), pipelineDao.id(), e.getErrors());
                     pipeline = Pipeline.empty("Failed to parse pipeline: " + pipelineDao.id());
                 }
+                pipeline = resolvePipeline(pipelineMetricRegistry, pipeline, ruleNameMap);
+                //noinspection ConstantConditions
+                resolvedPipelines.put(pipelineDao.id(), new ResolvedPipeline(pipelineDao.source(), pipelineMetricRegistry,
+                        referencedRules(pipeline, ruleNameMap), pipeline));
                 //noinspection ConstantConditions
-                pipelineIdMap.put(pipelineDao.id(), resolvePipeline(pipelineMetricRegistry, pipeline, ruleNameMap));
+                pipelineIdMap.put(pipelineDao.id(), pipeline);
             });
         }
+        resolvedPipelines.keySet().retainAll(pipelineIds);
 
+        LOG.debug("Reused {} of {} pipelines", reusedCount.get(), pipelineIds.size());
         return pipelineIdMap.build();
     }
 
@@ -178,13 +216,14 @@ public class PipelineResolver {
     @Nonnull
     private Pipeline resolvePipeline(PipelineMetricRegistry pipelineMetricRegistry,
                                      Pipeline pipeline,
-                                     Map<String, Rule> ruleNameMap) {
+                                     Map<String, ParsedRule> ruleNameMap) {
         LOG.debug("Resolving pipeline <{}>", pipeline.name());
 
         pipeline.stages().forEach(stage -> {
             final List<Rule> resolvedRules = stage.ruleReferences().stream()
                     .map(ref -> {
-                        Rule rule = ruleNameMap.get(ref);
+                        final ParsedRule parsedRule = ruleNameMap.get(ref);
+                        Rule rule = parsedRule == null ? null : parsedRule.rule();
                         if (rule == null) {
                             LOG.warn("Cannot resolve rule <{}> referenced by stage #{} within pipeline <{}>",
                                     ref, stage.stage(), pipeline.id());
@@ -207,4 +246,29 @@ public class PipelineResolver {
 
         return pipeline;
     }
+
+    private static Map<String, ParsedRule> referencedRules(Pipeline pipeline, Map<String, ParsedRule> ruleNameMap) {
+        // Unresolved rules are kept as null values, so the pipeline is resolved again once they exist
+        final Map<String, ParsedRule> referencedRules = new HashMap<>();
+        pipeline.stages().stream()
+                .filter(stage -> stage.ruleReferences() != null)
+                .forEach(stage -> stage.ruleReferences().forEach(ref -> referencedRules.put(ref, ruleNameMap.get(ref))));
+        return referencedRules;
+    }
+
+    private record ParsedRule(String source, Rule rule) {
+    }
+
+    private record ResolvedPipeline(String source,
+                                    PipelineMetricRegistry metricRegistry,
+                                    Map<String, ParsedRule> rules,
+                                    Pipeline pipeline) {
+        boolean isUpToDate(String currentSource,
+                           PipelineMetricRegistry currentMetricRegistry,
+                           Map<String, ParsedRule> ruleNameMap) {
+            return Objects.equals(source, currentSource)
+                    && metricRegistry == currentMetricRegistry
+                    && rules.equals(referencedRules(pipeline, ruleNameMap));
+        }
+    }
 }
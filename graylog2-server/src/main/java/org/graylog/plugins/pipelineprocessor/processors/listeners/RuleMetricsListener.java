@@ -22,7 +22,7 @@ import org.graylog.plugins.pipelineprocessor.ast.Pipeline;
 import org.graylog.plugins.pipelineprocessor.ast.Rule;
 import org.graylog.plugins.pipelineprocessor.ast.Stage;
 import org.graylog2.plugin.Message;
-import org.graylog2.shared.metrics.MetricUtils;
+import org.graylog2.shared.metrics.SampledTimer;
 
 import javax.annotation.Nullable;
 import java.util.HashMap;
@@ -43,11 +43,17 @@ public class RuleMetricsListener implements InterpreterListener {
     }
 
     private final MetricRegistry metricRegistry;
+    private final int timerSampleRate;
     private final Map<TimerMapKey, Timer.Context> evaluateTimers = new HashMap<>();
     private final Map<TimerMapKey, Timer.Context> executeTimers = new HashMap<>();
 
     public RuleMetricsListener(MetricRegistry metricRegistry) {
+        this(metricRegistry, 1);
+    }
+
+    public RuleMetricsListener(MetricRegistry metricRegistry, int timerSampleRate) {
         this.metricRegistry = metricRegistry;
+        this.timerSampleRate = timerSampleRate;
     }
 
     public static String getMetricName(String name, Type type) {
@@ -63,7 +69,7 @@ public class RuleMetricsListener implements InterpreterListener {
     }
 
     private void startTimerForKey(TimerMapKey key, String metricName, Map<TimerMapKey, Timer.Context> timers) {
-        final Timer timer = MetricUtils.getOrRegister(metricRegistry, metricName, new Timer());
+        final Timer timer = SampledTimer.timer(metricRegistry, metricName, timerSampleRate);
         timers.put(key, timer.time());
     }
 
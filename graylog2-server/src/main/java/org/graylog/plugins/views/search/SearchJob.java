@@ -28,13 +28,16 @@ import one.util.streamex.EntryStream;
 import org.graylog.plugins.views.search.errors.SearchError;
 import org.graylog.plugins.views.search.rest.ExecutionInfo;
 
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 @JsonAutoDetect
 // execution must come before results, as it signals the overall "done" state
@@ -48,7 +51,9 @@ public class SearchJob implements ParameterProvider {
 
     private final Search search;
 
-    private Map<String, Future<?>> queryExecutionFutures;
+    // Queries are scheduled by the caller, while the backends register their requests from the scheduler threads
+    private final Map<String, Future<?>> querySchedulerFutures = new ConcurrentHashMap<>();
+    private final Map<String, Future<?>> queryExecutionFutures = new ConcurrentHashMap<>();
 
     private CompletableFuture<Void> resultFuture;
 
@@ -58,6 +63,9 @@ public class SearchJob implements ParameterProvider {
 
     private final Integer cancelAfterSeconds;
 
+    @Nullable
+    private final Instant deadline;
+
     public SearchJob(String id,
                      Search search,
                      String owner,
@@ -74,7 +82,7 @@ public class SearchJob implements ParameterProvider {
         this.search = search;
         this.searchJobIdentifier = new SearchJobIdentifier(id, search.id(), owner, executingNodeId);
         this.cancelAfterSeconds = cancelAfterSeconds != null ? cancelAfterSeconds : NO_CANCELLATION;
-        this.queryExecutionFutures = new HashMap<>();
+        this.deadline = this.cancelAfterSeconds > 0 ? Instant.now().plusSeconds(this.cancelAfterSeconds) : null;
     }
 
     @JsonIgnore //covered by @JsonUnwrapped
@@ -92,6 +100,23 @@ public class SearchJob implements ParameterProvider {
         return cancelAfterSeconds;
     }
 
+    /**
+     * The time after which the search job gets cancelled, if {@link #getCancelAfterSeconds()} is set.
+     */
+    @JsonIgnore
+    public Optional<Instant> getDeadline() {
+        return Optional.ofNullable(deadline);
+    }
+
+    /**
+     * The time which is left until the search job gets cancelled. Search backends should use this instead of
+     * {@link #getCancelAfterSeconds()}, because the time the queries have been queued is already deducted.
+     */
+    @JsonIgnore
+    public Optional<Duration> getRemainingTimeUntilCancellation() {
+        return getDeadline().map(d -> Duration.between(Instant.now(), d));
+    }
+
     @JsonIgnore
     public SearchJobIdentifier getSearchJobIdentifier() {
         return searchJobIdentifier;
@@ -122,15 +147,33 @@ public class SearchJob implements ParameterProvider {
         queryResults.put(queryId, resultFuture);
     }
 
+    /**
+     * Registers the future of a query which has been handed to the query scheduler, so cancelling the search job
+     * also removes the query from the queue.
+     */
+    @JsonIgnore
+    public void setQuerySchedulerFuture(final String queryId, final Future<?> future) {
+        this.querySchedulerFutures.put(queryId, future);
+    }
+
     @JsonIgnore
     public void setQueryExecutionFuture(final String queryId, final Future<?> future) {
         this.queryExecutionFutures.put(queryId, future);
     }
 
     public void cancel() {
-        this.queryExecutionFutures.values().stream()
-                .filter(Objects::nonNull)
-                .forEach(f -> f.cancel(true));
+        allQueryFutures().forEach(f -> f.cancel(true));
+    }
+
+    // The request of the backend once a query runs, the scheduled query before
+    private Stream<Future<?>> currentQueryFutures() {
+        return Stream.concat(querySchedulerFutures.keySet().stream(), queryExecutionFutures.keySet().stream())
+                .distinct()
+                .map(queryId -> queryExecutionFutures.getOrDefault(queryId, querySchedulerFutures.get(queryId)));
+    }
+
+    private Stream<Future<?>> allQueryFutures() {
+        return Stream.concat(querySchedulerFutures.values().stream(), queryExecutionFutures.values().stream());
     }
 
     @JsonProperty("results")
@@ -144,8 +187,8 @@ public class SearchJob implements ParameterProvider {
 
     @JsonProperty("execution")
     public ExecutionInfo execution() {
-        final boolean isDone = (resultFuture == null || resultFuture.isDone()) && (queryExecutionFutures.values().stream().allMatch(f -> f == null || f.isDone()));
-        final boolean isCancelled = (!queryExecutionFutures.isEmpty() && queryExecutionFutures.values().stream().allMatch(f -> f != null && f.isCancelled()) || (resultFuture != null && resultFuture.isCancelled()));
+        final boolean isDone = (resultFuture == null || resultFuture.isDone()) && allQueryFutures().allMatch(Future::isDone);
+        final boolean isCancelled = (!(querySchedulerFutures.isEmpty() && queryExecutionFutures.isEmpty()) && currentQueryFutures().allMatch(Future::isCancelled) || (resultFuture != null && resultFuture.isCancelled()));
         return new ExecutionInfo(isDone, isCancelled, !errors.isEmpty());
     }
 
@@ -73,7 +73,7 @@ public class IndexLookup {
         var nonDataStreamIds = streamIds.stream().filter(s -> !s.startsWith(Stream.DATASTREAM_PREFIX)).collect(Collectors.toSet());
 
         final Set<Stream> usedStreams = streamService.loadByIds(nonDataStreamIds);
-        final SortedSet<IndexRange> candidateIndices = indexRangeService.find(timeRange.getFrom(), timeRange.getTo());
+        final SortedSet<IndexRange> candidateIndices = indexRangeService.find(timeRange.getFrom(), timeRange.getTo(), nonDataStreamIds);
 
         return candidateIndices.stream()
                 .filter(i -> indexRangeContainsOneOfStreams.test(i, usedStreams))
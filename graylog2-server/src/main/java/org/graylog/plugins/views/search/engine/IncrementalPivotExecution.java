@@ -0,0 +1,444 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.graylog.plugins.views.search.Query;
+import org.graylog.plugins.views.search.QueryResult;
+import org.graylog.plugins.views.search.Search;
+import org.graylog.plugins.views.search.SearchType;
+import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
+import org.graylog.plugins.views.search.errors.SearchError;
+import org.graylog.plugins.views.search.errors.SearchTypeError;
+import org.graylog.plugins.views.search.searchtypes.pivot.BucketSpec;
+import org.graylog.plugins.views.search.searchtypes.pivot.Pivot;
+import org.graylog.plugins.views.search.searchtypes.pivot.PivotResult;
+import org.graylog.plugins.views.search.searchtypes.pivot.SeriesSpec;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.DateInterval;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.Time;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.TimeUnitInterval;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Count;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Max;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Min;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Sum;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.indexer.searches.timeranges.RelativeRange;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Executes date histogram pivots over relative time ranges incrementally.
+ * <p>
+ * The rows of completed time buckets are kept after a pivot has been executed. When the same pivot is executed
+ * again (e.g. by an auto-refreshing dashboard), only the leading time bucket (which is cut by the start of the time
+ * range), the trailing buckets which weren't complete yet and the new buckets are queried. Buckets which dropped out
+ * of the time range are evicted.
+ * <p>
+ * Only pivots which group by a single {@code timestamp} bucket and only use series which can be merged exactly
+ * (count, sum, min and max) are executed incrementally. The rollup row and the total are computed from the rows.
+ */
+@Singleton
+public class IncrementalPivotExecution {
+    private static final Logger LOG = LoggerFactory.getLogger(IncrementalPivotExecution.class);
+
+    private static final Set<String> MERGEABLE_SERIES = Set.of(Count.NAME, Sum.NAME, Min.NAME, Max.NAME);
+    private static final Map<String, Long> INTERVAL_UNITS = Map.of(
+            "s", TimeUnit.SECONDS.toMillis(1),
+            "m", TimeUnit.MINUTES.toMillis(1),
+            "h", TimeUnit.HOURS.toMillis(1),
+            "d", TimeUnit.DAYS.toMillis(1));
+    private static final String DOCUMENT_COUNT_SERIES = "incremental-document-count";
+
+    private final boolean enabled;
+    private final Duration gracePeriod;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, State> states;
+    private final Meter incrementalExecutions;
+    private final Meter fullExecutions;
+
+    @Inject
+    public IncrementalPivotExecution(@Named("search_incremental_pivots_enabled") boolean enabled,
+                                     @Named("search_incremental_pivots_grace_period") Duration gracePeriod,
+                                     @Named("search_incremental_pivots_max_states") int maxStates,
+                                     ObjectMapper objectMapper,
+                                     MetricRegistry metricRegistry) {
+        this.enabled = enabled;
+        this.gracePeriod = gracePeriod;
+        this.objectMapper = objectMapper;
+        this.states = Caffeine.newBuilder()
+                .maximumSize(maxStates)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        this.incrementalExecutions = metricRegistry.meter(name(getClass(), "incremental-executions"));
+        this.fullExecutions = metricRegistry.meter(name(getClass(), "full-executions"));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Rewrites all pivots of the given query that can be executed incrementally.
+     *
+     * @param search                      the search the query belongs to
+     * @param query                       the query to execute
+     * @param permittedStreamsFingerprint fingerprint of all streams the user can read
+     * @return the plan for the query or an empty optional if none of its pivots can be executed incrementally
+     */
+    public Optional<Plan> plan(Search search, Query query, String permittedStreamsFingerprint) {
+        if (!enabled || !query.query().type().equals(ElasticsearchQueryString.NAME)
+                || !(query.timerange() instanceof RelativeRange relativeRange) || relativeRange.isAllMessages()) {
+            return Optional.empty();
+        }
+
+        final Query pinnedQuery = pinTimeRange(query, relativeRange);
+        final long from = pinnedQuery.timerange().getFrom().getMillis();
+        final long to = pinnedQuery.timerange().getTo().getMillis();
+
+        final Map<String, PivotPlan> pivotPlans = new HashMap<>();
+        final ImmutableSet.Builder<SearchType> searchTypes = ImmutableSet.builder();
+        for (final SearchType searchType : pinnedQuery.searchTypes()) {
+            final Optional<PivotPlan> pivotPlan = searchType instanceof Pivot pivot
+                    ? planPivot(search, pinnedQuery, relativeRange, pivot, from, to, permittedStreamsFingerprint)
+                    : Optional.empty();
+            pivotPlan.ifPresentOrElse(p -> {
+                pivotPlans.put(searchType.id(), p);
+                searchTypes.add(p.rewrittenPivot());
+            }, () -> searchTypes.add(searchType));
+        }
+
+        if (pivotPlans.isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new Plan(pinnedQuery.toBuilder().searchTypes(searchTypes.build()).build(), pinnedQuery, from, to, pivotPlans));
+    }
+
+    private Query pinTimeRange(Query query, RelativeRange relativeRange) {
+        if (relativeRange.nowUTC() != null) {
+            return query;
+        }
+
+        final TimeRange pinnedRange = relativeRange.withReferenceDate(Tools.nowUTC());
+        final Query.Builder builder = query.toBuilder().timerange(pinnedRange);
+        query.globalOverride()
+                .filter(override -> override.timerange().isPresent())
+                .ifPresent(override -> builder.globalOverride(override.toBuilder().timerange(pinnedRange).build()));
+        return builder.build();
+    }
+
+    private Optional<PivotPlan> planPivot(Search search, Query query, RelativeRange relativeRange, Pivot pivot,
+                                          long from, long to, String permittedStreamsFingerprint) {
+        if (!isEligible(pivot)) {
+            return Optional.empty();
+        }
+
+        final Time time = (Time) pivot.rowGroups().get(0);
+        final Optional<DateInterval> dateInterval = Optional.ofNullable(time.interval().toDateInterval(query.effectiveTimeRange(pivot)));
+        final Optional<Long> intervalMillis = dateInterval.flatMap(IncrementalPivotExecution::toMillis);
+        if (dateInterval.isEmpty() || intervalMillis.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final Optional<String> key = key(search, query, relativeRange, pivot, permittedStreamsFingerprint);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final long interval = intervalMillis.get();
+        final long firstCompleteBucket = ceil(from, interval);
+        final State state = states.getIfPresent(key.get());
+        final boolean incremental = state != null
+                && state.intervalMillis() == interval
+                && state.from() <= from
+                && state.completeUntil() > firstCompleteBucket
+                && state.completeUntil() <= to;
+
+        final Pivot.Builder rewrittenPivot = pivot.toBuilder()
+                .rowGroups(List.of(Time.builder()
+                        .fields(time.fields())
+                        .interval(TimeUnitInterval.Builder.builder().timeunit(dateInterval.get().toString()).build())
+                        .build()))
+                .series(ImmutableList.<SeriesSpec>builder()
+                        .addAll(pivot.series())
+                        .add(Count.builder().id(DOCUMENT_COUNT_SERIES).build())
+                        .build())
+                .rollup(false);
+
+        if (incremental) {
+            // The retained buckets don't have to be queried again
+            final ElasticsearchQueryString retainedBuckets = ElasticsearchQueryString.of("NOT " + Message.FIELD_TIMESTAMP
+                    + ":[\"" + Tools.buildElasticSearchTimeFormat(new DateTime(firstCompleteBucket, DateTimeZone.UTC))
+                    + "\" TO \"" + Tools.buildElasticSearchTimeFormat(new DateTime(state.completeUntil(), DateTimeZone.UTC)) + "\"}");
+            rewrittenPivot.query(pivot.query()
+                    .map(ElasticsearchQueryString.class::cast)
+                    .map(pivotQuery -> pivotQuery.concatenate(retainedBuckets))
+                    .orElse(retainedBuckets));
+            incrementalExecutions.mark();
+        } else {
+            fullExecutions.mark();
+        }
+
+        return Optional.of(new PivotPlan(pivot, rewrittenPivot.build(), key.get(), interval, incremental ? state : null));
+    }
+
+    @VisibleForTesting
+    static boolean isEligible(Pivot pivot) {
+        if (pivot.rowGroups().size() != 1 || !pivot.columnGroups().isEmpty() || !pivot.sort().isEmpty()
+                || pivot.timerange().isPresent() || pivot.series().isEmpty()) {
+            return false;
+        }
+        final BucketSpec rowGroup = pivot.rowGroups().get(0);
+        if (!(rowGroup instanceof Time time) || !time.fields().equals(List.of(Message.FIELD_TIMESTAMP))) {
+            return false;
+        }
+        if (pivot.query().isPresent() && !pivot.query().get().type().equals(ElasticsearchQueryString.NAME)) {
+            return false;
+        }
+        return pivot.series().stream()
+                .allMatch(series -> MERGEABLE_SERIES.contains(series.type()) && !series.id().equals(DOCUMENT_COUNT_SERIES));
+    }
+
+    private static Optional<Long> toMillis(DateInterval interval) {
+        final Long unitMillis = INTERVAL_UNITS.get(interval.getUnit());
+        if (unitMillis == null || !(interval.getQuantity() instanceof Integer quantity) || quantity <= 0) {
+            // Calendar based intervals (weeks, months) aren't aligned with fixed time buckets
+            return Optional.empty();
+        }
+        return Optional.of(quantity * unitMillis);
+    }
+
+    private Optional<String> key(Search search, Query query, RelativeRange relativeRange, Pivot pivot,
+                                 String permittedStreamsFingerprint) {
+        final Map<String, Object> key = new LinkedHashMap<>();
+        key.put("pivot", pivot);
+        key.put("query", query.query());
+        key.put("filter", query.filter());
+        key.put("filters", query.filters());
+        key.put("streams", new TreeSet<>(query.effectiveStreams(pivot)));
+        // Serializes without the reference date
+        key.put("timerange", relativeRange);
+        key.put("parameters", search.parameters());
+        key.put("permitted_streams", permittedStreamsFingerprint);
+
+        try {
+            return Optional.of(Hashing.sha256().hashBytes(objectMapper.writeValueAsBytes(key)).toString());
+        } catch (JsonProcessingException e) {
+            LOG.debug("Couldn't build incremental execution key for pivot <{}>", pivot.id(), e);
+            return Optional.empty();
+        }
+    }
+
+    private static long floor(long timestamp, long interval) {
+        return Math.floorDiv(timestamp, interval) * interval;
+    }
+
+    private static long ceil(long timestamp, long interval) {
+        return -Math.floorDiv(-timestamp, interval) * interval;
+    }
+
+    private static Object merge(String seriesType, List<Object> values) {
+        final List<Number> numbers = values.stream()
+                .filter(value -> value instanceof Number)
+                .map(Number.class::cast)
+                .filter(number -> !(number instanceof Double d && d.isInfinite()))
+                .toList();
+
+        return switch (seriesType) {
+            case Count.NAME -> numbers.stream().mapToLong(Number::longValue).sum();
+            case Sum.NAME -> numbers.stream().mapToDouble(Number::doubleValue).sum();
+            case Min.NAME -> numbers.stream().mapToDouble(Number::doubleValue).min().orElse(Double.POSITIVE_INFINITY);
+            case Max.NAME -> numbers.stream().mapToDouble(Number::doubleValue).max().orElse(Double.NEGATIVE_INFINITY);
+            default -> throw new IllegalArgumentException("Series type <" + seriesType + "> can't be merged");
+        };
+    }
+
+    @VisibleForTesting
+    long stateCount() {
+        states.cleanUp();
+        return states.estimatedSize();
+    }
+
+    private record State(long intervalMillis, long from, long completeUntil, NavigableMap<Long, PivotResult.Row> rows) {
+    }
+
+    private record PivotPlan(Pivot pivot, Pivot rewrittenPivot, String key, long intervalMillis,
+                             @Nullable State previousState) {
+    }
+
+    /**
+     * The rewritten query for an incremental execution.
+     */
+    public class Plan {
+        private final Query query;
+        private final Query pinnedQuery;
+        private final long from;
+        private final long to;
+        private final Map<String, PivotPlan> pivotPlans;
+
+        private Plan(Query query, Query pinnedQuery, long from, long to, Map<String, PivotPlan> pivotPlans) {
+            this.query = query;
+            this.pinnedQuery = pinnedQuery;
+            this.from = from;
+            this.to = to;
+            this.pivotPlans = pivotPlans;
+        }
+
+        /**
+         * Returns the query which needs to be executed instead of the original one.
+         */
+        public Query query() {
+            return query;
+        }
+
+        /**
+         * Merges the rows of the previous executions into the result of the rewritten query.
+         *
+         * @param result the result of the rewritten query
+         * @return the result for the original query
+         */
+        public QueryResult complete(QueryResult result) {
+            final Set<SearchError> errors = result.errors() == null ? Set.of() : result.errors();
+            final boolean queryFailed = errors.stream().anyMatch(error -> !(error instanceof SearchTypeError));
+            final Map<String, SearchType.Result> searchTypeResults = new HashMap<>(result.searchTypes());
+
+            pivotPlans.forEach((searchTypeId, pivotPlan) -> {
+                final boolean failed = queryFailed || errors.stream()
+                        .anyMatch(error -> error instanceof SearchTypeError searchTypeError && searchTypeError.searchTypeId().equals(searchTypeId));
+                if (failed || !(searchTypeResults.get(searchTypeId) instanceof PivotResult pivotResult)) {
+                    states.invalidate(pivotPlan.key());
+                    return;
+                }
+                try {
+                    searchTypeResults.put(searchTypeId, complete(pivotPlan, pivotResult));
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Couldn't merge incremental result of pivot <{}>", searchTypeId, e);
+                    states.invalidate(pivotPlan.key());
+                    searchTypeResults.remove(searchTypeId);
+                }
+            });
+
+            return result.toBuilder()
+                    .query(pinnedQuery)
+                    .searchTypes(searchTypeResults)
+                    .build();
+        }
+
+        private PivotResult complete(PivotPlan pivotPlan, PivotResult result) {
+            final long interval = pivotPlan.intervalMillis();
+            final long firstBucket = floor(from, interval);
+            final long firstCompleteBucket = ceil(from, interval);
+            final State previousState = pivotPlan.previousState();
+
+            final NavigableMap<Long, PivotResult.Row> rows = new TreeMap<>();
+            if (previousState != null) {
+                rows.putAll(previousState.rows().subMap(firstCompleteBucket, true, previousState.completeUntil(), false));
+            }
+            for (final PivotResult.Row row : result.rows()) {
+                if (row.key().size() != 1) {
+                    throw new IllegalArgumentException("Unexpected row key " + row.key());
+                }
+                final long bucket = DateTime.parse(row.key().get(0)).getMillis();
+                final boolean retained = previousState != null && bucket >= firstCompleteBucket && bucket < previousState.completeUntil();
+                if (!retained && bucket >= firstBucket && bucket <= to) {
+                    rows.put(bucket, row);
+                }
+            }
+
+            final long completeUntil = floor(to - gracePeriod.toMillis(), interval);
+            if (completeUntil > firstCompleteBucket) {
+                states.put(pivotPlan.key(), new State(interval, from, completeUntil, rows));
+            } else {
+                states.invalidate(pivotPlan.key());
+            }
+
+            final Pivot pivot = pivotPlan.pivot();
+            final PivotResult.Builder resultBuilder = PivotResult.builder()
+                    .id(result.id())
+                    .effectiveTimerange(result.effectiveTimerange());
+            result.name().ifPresent(resultBuilder::name);
+            if (result.columnNames() != null) {
+                resultBuilder.columnNames(result.columnNames().stream()
+                        .filter(columnName -> !columnName.equals(DOCUMENT_COUNT_SERIES))
+                        .toList());
+            }
+
+            long total = 0;
+            final Map<String, List<Object>> seriesValues = new HashMap<>();
+            for (final PivotResult.Row row : rows.values()) {
+                final PivotResult.Row.Builder rowBuilder = PivotResult.Row.builder()
+                        .key(row.key())
+                        .source(row.source());
+                for (final PivotResult.Value value : row.values()) {
+                    final String seriesId = value.key().get(value.key().size() - 1);
+                    if (seriesId.equals(DOCUMENT_COUNT_SERIES)) {
+                        total += value.value() instanceof Number count ? count.longValue() : 0;
+                    } else {
+                        rowBuilder.addValue(value);
+                        seriesValues.computeIfAbsent(seriesId, id -> new ArrayList<>()).add(value.value());
+                    }
+                }
+                resultBuilder.addRow(rowBuilder.build());
+            }
+
+            if (pivot.rollup()) {
+                final PivotResult.Row.Builder rollupRow = PivotResult.Row.builder()
+                        .key(ImmutableList.of())
+                        .source("non-leaf");
+                pivot.series().stream()
+                        .distinct()
+                        .forEach(series -> rollupRow.addValue(PivotResult.Value.create(List.of(series.id()),
+                                merge(series.type(), seriesValues.getOrDefault(series.id(), List.of())), true, "row-inner")));
+                resultBuilder.addRow(rollupRow.build());
+            }
+
+            return resultBuilder.total(total).build();
+        }
+    }
+}
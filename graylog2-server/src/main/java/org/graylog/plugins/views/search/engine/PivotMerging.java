@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.graylog.plugins.views.search.Query;
+import org.graylog.plugins.views.search.QueryResult;
+import org.graylog.plugins.views.search.SearchType;
+import org.graylog.plugins.views.search.errors.SearchError;
+import org.graylog.plugins.views.search.errors.SearchTypeError;
+import org.graylog.plugins.views.search.searchtypes.pivot.BucketSpec;
+import org.graylog.plugins.views.search.searchtypes.pivot.Pivot;
+import org.graylog.plugins.views.search.searchtypes.pivot.PivotResult;
+import org.graylog.plugins.views.search.searchtypes.pivot.SeriesSpec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Merges pivots of a query which only differ in their series, so they are sent to the search backend as a single
+ * aggregation request.
+ * <p>
+ * Widgets of a dashboard often group by the same fields with the same filters and only show different metrics.
+ * Pivots with identical bucket specs, sorting, filters, query, streams and time range are replaced by one pivot with
+ * the union of their series. The result of the merged pivot is split up into the results of the original pivots
+ * afterward.
+ */
+@Singleton
+public class PivotMerging {
+    private static final String MERGED_ID_PREFIX = "merged-";
+
+    private final boolean enabled;
+    private final Meter mergedPivots;
+
+    @Inject
+    public PivotMerging(@Named("search_merge_pivots") boolean enabled, MetricRegistry metricRegistry) {
+        this.enabled = enabled;
+        this.mergedPivots = metricRegistry.meter(name(getClass(), "merged-pivots"));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Merges all pivots of the given query that can be merged.
+     *
+     * @param query            the query to execute
+     * @param validationErrors the validation errors of the search, pivots with errors are never merged
+     * @return the plan for the query or an empty optional if none of its pivots can be merged
+     */
+    public Optional<Plan> plan(Query query, Collection<SearchError> validationErrors) {
+        if (!enabled || query.searchTypes().size() < 2) {
+            return Optional.empty();
+        }
+
+        final Set<String> searchTypesWithErrors = validationErrors.stream()
+                .filter(error -> error instanceof SearchTypeError)
+                .map(error -> ((SearchTypeError) error).searchTypeId())
+                .collect(Collectors.toSet());
+
+        // Pivots are grouped by everything but their series. Pivots of a group are merged unless they use
+        // different series with the same ID.
+        final Map<Pivot, List<Group>> groupsByKey = new LinkedHashMap<>();
+        for (final SearchType searchType : query.searchTypes()) {
+            if (searchType instanceof Pivot pivot && !searchTypesWithErrors.contains(pivot.id())) {
+                final List<Group> groups = groupsByKey.computeIfAbsent(mergeKey(pivot), key -> new ArrayList<>());
+                groups.stream()
+                        .filter(group -> group.accepts(pivot))
+                        .findFirst()
+                        .orElseGet(() -> {
+                            final Group group = new Group();
+                            groups.add(group);
+                            return group;
+                        })
+                        .add(pivot);
+            }
+        }
+
+        final Map<String, List<Pivot>> mergedPivots = new HashMap<>();
+        final Set<String> mergedSearchTypeIds = new HashSet<>();
+        final ImmutableSet.Builder<SearchType> searchTypes = ImmutableSet.builder();
+        groupsByKey.values().stream()
+                .flatMap(List::stream)
+                .filter(group -> group.pivots.size() > 1)
+                .forEach(group -> {
+                    final Pivot first = group.pivots.get(0);
+                    final Pivot merged = first.toBuilder()
+                            .id(MERGED_ID_PREFIX + first.id())
+                            .name(null)
+                            .series(List.copyOf(group.series.values()))
+                            .build();
+                    mergedPivots.put(merged.id(), group.pivots);
+                    group.pivots.forEach(pivot -> mergedSearchTypeIds.add(pivot.id()));
+                    searchTypes.add(merged);
+                });
+
+        if (mergedPivots.isEmpty()) {
+            return Optional.empty();
+        }
+
+        query.searchTypes().stream()
+                .filter(searchType -> !mergedSearchTypeIds.contains(searchType.id()))
+                .forEach(searchTypes::add);
+        this.mergedPivots.mark(mergedSearchTypeIds.size() - mergedPivots.size());
+
+        return Optional.of(new Plan(query, query.toBuilder().searchTypes(searchTypes.build()).build(), mergedPivots));
+    }
+
+    private static Pivot mergeKey(Pivot pivot) {
+        return pivot.toBuilder()
+                .id(MERGED_ID_PREFIX)
+                .name(null)
+                .series(List.of())
+                .build();
+    }
+
+    private static class Group {
+        private final List<Pivot> pivots = new ArrayList<>();
+        private final Map<String, SeriesSpec> series = new LinkedHashMap<>();
+
+        private boolean accepts(Pivot pivot) {
+            return pivot.series().stream()
+                    .allMatch(seriesSpec -> !series.containsKey(seriesSpec.id()) || series.get(seriesSpec.id()).equals(seriesSpec));
+        }
+
+        private void add(Pivot pivot) {
+            pivots.add(pivot);
+            pivot.series().forEach(seriesSpec -> series.putIfAbsent(seriesSpec.id(), seriesSpec));
+        }
+    }
+
+    /**
+     * The rewritten query with merged pivots.
+     */
+    public static class Plan {
+        private final Query originalQuery;
+        private final Query query;
+        private final Map<String, List<Pivot>> mergedPivots;
+
+        private Plan(Query originalQuery, Query query, Map<String, List<Pivot>> mergedPivots) {
+            this.originalQuery = originalQuery;
+            this.query = query;
+            this.mergedPivots = mergedPivots;
+        }
+
+        /**
+         * Returns the query which needs to be executed instead of the original one.
+         */
+        public Query query() {
+            return query;
+        }
+
+        /**
+         * Splits the results of the merged pivots up into the results of the original pivots.
+         *
+         * @param result the result of the rewritten query
+         * @return the result for the original query
+         */
+        public QueryResult split(QueryResult result) {
+            final Map<String, SearchType.Result> searchTypeResults = new HashMap<>(result.searchTypes());
+            mergedPivots.forEach((mergedId, pivots) -> {
+                if (searchTypeResults.remove(mergedId) instanceof PivotResult mergedResult) {
+                    pivots.forEach(pivot -> searchTypeResults.put(pivot.id(), split(mergedResult, pivot)));
+                }
+            });
+
+            final QueryResult.Builder builder = result.toBuilder()
+                    .query(originalQuery)
+                    .searchTypes(searchTypeResults);
+            if (result.errors() != null) {
+                builder.errors(splitErrors(result.errors()));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Replaces errors of merged pivots with errors for each of the original pivots.
+         */
+        public Set<SearchError> splitErrors(Collection<SearchError> errors) {
+            final Set<SearchError> splitErrors = new HashSet<>();
+            for (final SearchError error : errors) {
+                if (error instanceof SearchTypeError searchTypeError && mergedPivots.containsKey(searchTypeError.searchTypeId())) {
+                    mergedPivots.get(searchTypeError.searchTypeId()).forEach(pivot -> splitErrors.add(new SearchTypeError(
+                            originalQuery, pivot.id(), searchTypeError.description(), searchTypeError.fatal())));
+                } else {
+                    splitErrors.add(error);
+                }
+            }
+            return splitErrors;
+        }
+
+        private static PivotResult split(PivotResult mergedResult, Pivot pivot) {
+            final Set<String> seriesIds = pivot.series().stream().map(SeriesSpec::id).collect(Collectors.toSet());
+
+            final PivotResult.Builder builder = PivotResult.builder()
+                    .id(pivot.id())
+                    .total(mergedResult.total())
+                    .effectiveTimerange(mergedResult.effectiveTimerange());
+            pivot.name().ifPresent(builder::name);
+
+            // The last element of a value key is always the ID of its series
+            for (final PivotResult.Row row : mergedResult.rows()) {
+                builder.addRow(PivotResult.Row.builder()
+                        .key(row.key())
+                        .source(row.source())
+                        .values(row.values().stream()
+                                .filter(value -> !value.key().isEmpty() && seriesIds.contains(value.key().get(value.key().size() - 1)))
+                                .collect(ImmutableList.toImmutableList()))
+                        .build());
+            }
+
+            if (mergedResult.columnNames() != null) {
+                // Column names start with the grouping fields, followed by the series or column keys and series
+                final int fieldCount = (int) pivot.rowGroups().stream().map(BucketSpec::fields).mapToLong(List::size).sum();
+                final List<String> columnNames = mergedResult.columnNames();
+                final List<String> splitColumnNames = new ArrayList<>(columnNames.subList(0, Math.min(fieldCount, columnNames.size())));
+                columnNames.stream()
+                        .skip(fieldCount)
+                        .filter(columnName -> seriesIds.stream()
+                                .anyMatch(seriesId -> columnName.equals(seriesId) || columnName.endsWith(", " + seriesId)))
+                        .forEach(splitColumnNames::add);
+                builder.columnNames(splitColumnNames);
+            }
+
+            return builder.build();
+        }
+    }
+}
@@ -16,7 +16,8 @@
  */
 package org.graylog.plugins.views.search.engine;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableSet;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
@@ -27,26 +28,27 @@ import org.graylog.plugins.views.search.QueryMetadataDecorator;
 import org.graylog.plugins.views.search.QueryResult;
 import org.graylog.plugins.views.search.Search;
 import org.graylog.plugins.views.search.SearchJob;
+import org.graylog.plugins.views.search.SearchType;
 import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
 import org.graylog.plugins.views.search.errors.QueryError;
 import org.graylog.plugins.views.search.errors.SearchError;
 import org.graylog.plugins.views.search.errors.SearchException;
+import org.graylog.plugins.views.search.errors.SearchTypeError;
 import org.graylog2.Configuration;
 import org.graylog2.storage.providers.ElasticsearchBackendProvider;
 import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 import static org.graylog.plugins.views.search.engine.validation.DataLakeSearchValidator.containsDataLakeSearchElements;
@@ -57,43 +59,50 @@ public class QueryEngine {
     private final Set<QueryMetadataDecorator> queryMetadataDecorators;
     private final QueryParser queryParser;
 
-    // TODO proper thread pool with tunable settings
-    private final Executor indexerJobsQueryPool;
-    private final Executor dataLakeJobsQueryPool;
+    private final QueryScheduler indexerJobsScheduler;
+    private final QueryScheduler dataLakeJobsScheduler;
     private final ElasticsearchBackendProvider elasticsearchBackendProvider;
     private final Map<String, QueryBackend<? extends GeneratedQueryContext>> unversionedBackends;
+    private final SearchTypeResultCache resultCache;
+    private final IncrementalPivotExecution incrementalPivotExecution;
+    private final PivotMerging pivotMerging;
 
     @Inject
     public QueryEngine(Configuration configuration,
                        ElasticsearchBackendProvider elasticsearchBackendProvider,
                        Map<String, QueryBackend<? extends GeneratedQueryContext>> unversionedBackends,
                        Set<QueryMetadataDecorator> queryMetadataDecorators,
-                       QueryParser queryParser) {
+                       QueryParser queryParser,
+                       SearchTypeResultCache resultCache,
+                       IncrementalPivotExecution incrementalPivotExecution,
+                       PivotMerging pivotMerging,
+                       MetricRegistry metricRegistry) {
         this.elasticsearchBackendProvider = elasticsearchBackendProvider;
         this.unversionedBackends = unversionedBackends;
         this.queryMetadataDecorators = queryMetadataDecorators;
         this.queryParser = queryParser;
+        this.resultCache = resultCache;
+        this.incrementalPivotExecution = incrementalPivotExecution;
+        this.pivotMerging = pivotMerging;
 
-        this.indexerJobsQueryPool = createThreadPool(
+        final Map<QueryWorkload, Integer> weights = Map.of(
+                QueryWorkload.INTERACTIVE, configuration.searchQueryEngineInteractiveWeight(),
+                QueryWorkload.EVENT_PROCESSING, configuration.searchQueryEngineEventProcessingWeight(),
+                QueryWorkload.EXPORT, configuration.searchQueryEngineExportWeight());
+        this.indexerJobsScheduler = new QueryScheduler("indexer-jobs",
                 configuration.searchQueryEngineIndexerJobsPoolSize(),
                 configuration.searchQueryEngineIndexerJobsQueueSize(),
-                "query-engine-indexer-jobs-%d");
-        this.dataLakeJobsQueryPool = createThreadPool(
+                configuration.searchQueryEngineMaxConcurrentQueriesPerUser(),
+                configuration.searchQueryEngineMaxConcurrentQueriesPerSearch(),
+                weights,
+                metricRegistry);
+        this.dataLakeJobsScheduler = new QueryScheduler("data-lake-jobs",
                 configuration.searchQueryEngineDataLakeJobsPoolSize(),
                 configuration.searchQueryEngineDataLakeJobsQueueSize(),
-                "query-engine-data-lake-jobs-%d");
-    }
-
-    private Executor createThreadPool(final int poolSize,
-                                      final int queueSize,
-                                      final String nameFormat) {
-        return new ThreadPoolExecutor(poolSize, poolSize,
-                0L, TimeUnit.MILLISECONDS,
-                queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new LinkedBlockingQueue<>(),
-                new ThreadFactoryBuilder()
-                        .setNameFormat(nameFormat)
-                        .build()
-        );
+                configuration.searchQueryEngineMaxConcurrentQueriesPerUser(),
+                configuration.searchQueryEngineMaxConcurrentQueriesPerSearch(),
+                weights,
+                metricRegistry);
     }
 
     public QueryMetadata parse(Search search, Query query) {
@@ -117,35 +126,64 @@ public class QueryEngine {
         return new ExplainResults(searchJob.getSearchId(), new ExplainResults.SearchResult(queries), validationErrors);
     }
 
-    @WithSpan
     public SearchJob execute(SearchJob searchJob, Set<SearchError> validationErrors, DateTimeZone timezone) {
+        return execute(searchJob, validationErrors, timezone, null);
+    }
+
+    public SearchJob execute(SearchJob searchJob, Set<SearchError> validationErrors, DateTimeZone timezone,
+                             @Nullable SearchTypeResultCache.Scope resultCacheScope) {
+        return execute(searchJob, validationErrors, timezone, resultCacheScope, QueryWorkload.INTERACTIVE);
+    }
+
+    /**
+     * Executes the given search job.
+     *
+     * @param resultCacheScope the settings to use the {@link SearchTypeResultCache} and the
+     *                         {@link IncrementalPivotExecution} with, or null to always execute all search types
+     * @param workload         the workload the queries of the search job are scheduled as
+     */
+    @WithSpan
+    public SearchJob execute(SearchJob searchJob, Set<SearchError> validationErrors, DateTimeZone timezone,
+                             @Nullable SearchTypeResultCache.Scope resultCacheScope, QueryWorkload workload) {
         final Set<Query> validQueries = searchJob.getSearch().queries()
                 .stream()
                 .filter(query -> !isQueryWithError(validationErrors, query))
                 .collect(Collectors.toSet());
 
 
-        validQueries.forEach(query -> searchJob.addQueryResultFuture(query.id(),
-                // generate and run each query, making sure we never let an exception escape
-                // if need be we default to an empty result with a failed state and the wrapped exception
-                CompletableFuture.supplyAsync(() -> prepareAndRun(searchJob, query, validationErrors, timezone),
-                                containsDataLakeSearchElements(query) ? dataLakeJobsQueryPool : indexerJobsQueryPool)
-                        .handle((queryResult, throwable) -> {
-                            if (throwable != null) {
-                                final Throwable cause = throwable.getCause();
-                                final SearchError error;
-                                if (cause instanceof SearchException) {
-                                    error = ((SearchException) cause).error();
-                                } else {
-                                    error = new QueryError(query, cause);
+        final QueryScheduler.Request request = new QueryScheduler.Request(workload, searchJob.getOwner(),
+                searchJob.getId(), searchJob.getDeadline().orElse(null), searchJob::cancel);
+
+        validQueries.forEach(query -> {
+            // registered before the query is queued, so cancelling the search job also removes queued queries
+            final CompletableFuture<QueryResult> execution = new CompletableFuture<>();
+            searchJob.setQuerySchedulerFuture(query.id(), execution);
+            searchJob.addQueryResultFuture(query.id(),
+                    // generate and run each query, making sure we never let an exception escape
+                    // if need be we default to an empty result with a failed state and the wrapped exception
+                    (containsDataLakeSearchElements(query) ? dataLakeJobsScheduler : indexerJobsScheduler)
+                            .submit(request, () -> resultCacheScope != null
+                                            ? prepareAndRunCached(searchJob, query, validationErrors, timezone, resultCacheScope)
+                                            : prepareAndRun(searchJob, query, validationErrors, timezone),
+                                    execution)
+                            .handle((queryResult, throwable) -> {
+                                if (throwable != null) {
+                                    final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                                            ? throwable.getCause()
+                                            : throwable;
+                                    final SearchError error;
+                                    if (cause instanceof SearchException) {
+                                        error = ((SearchException) cause).error();
+                                    } else {
+                                        error = new QueryError(query, cause);
+                                    }
+                                    LOG.debug("Running query {} failed: {}", query.id(), cause);
+                                    searchJob.addError(error);
+                                    return QueryResult.failedQueryWithError(query, error);
                                 }
-                                LOG.debug("Running query {} failed: {}", query.id(), cause);
-                                searchJob.addError(error);
-                                return QueryResult.failedQueryWithError(query, error);
-                            }
-                            return queryResult;
-                        })
-        ));
+                                return queryResult;
+                            }));
+        });
 
         LOG.debug("Search job {} executing", searchJob.getId());
         return searchJob.seal();
@@ -157,14 +195,83 @@ public class QueryEngine {
         // with all the results done, we can execute the current query and eventually complete our own result
         // if any of this throws an exception, the handle in #execute will convert it to an error and return a "failed" result instead
         // if the backend already returns a "failed result" then nothing special happens here
-        final GeneratedQueryContext generatedQueryContext = backend.generate(query, validationErrors, timezone);
+        // pivots which only differ in their series are sent as a single aggregation
+        final Optional<PivotMerging.Plan> mergePlan = pivotMerging.plan(query, validationErrors);
+        final Query executedQuery = mergePlan.map(PivotMerging.Plan::query).orElse(query);
+        final GeneratedQueryContext generatedQueryContext = backend.generate(executedQuery, validationErrors, timezone);
         LOG.trace("[{}] Generated query {}, running it on backend {}", query.id(), generatedQueryContext, backend);
-        final QueryResult result = backend.run(searchJob, query, generatedQueryContext);
+        final QueryResult result = backend.run(searchJob, executedQuery, generatedQueryContext);
         LOG.debug("[{}] Query returned {}", query.id(), result);
         if (!generatedQueryContext.errors().isEmpty()) {
-            generatedQueryContext.errors().forEach(searchJob::addError);
+            mergePlan.map(plan -> (Collection<SearchError>) plan.splitErrors(generatedQueryContext.errors()))
+                    .orElse(generatedQueryContext.errors())
+                    .forEach(searchJob::addError);
+        }
+        return mergePlan.map(plan -> plan.split(result)).orElse(result);
+    }
+
+    private QueryResult prepareAndRunCached(SearchJob searchJob, Query query, Set<SearchError> validationErrors,
+                                            DateTimeZone timezone, SearchTypeResultCache.Scope scope) {
+        if (!resultCache.isCacheable(query)) {
+            return prepareAndRunIncremental(searchJob, query, validationErrors, timezone, scope);
         }
-        return result;
+        final Query alignedQuery = resultCache.alignTimeRange(query);
+        final Map<String, String> keys = new HashMap<>();
+        final Map<String, SearchType.Result> cachedResults = new HashMap<>();
+
+        for (final SearchType searchType : alignedQuery.searchTypes()) {
+            resultCache.key(searchJob.getSearch(), alignedQuery, searchType, timezone, scope.permittedStreamsFingerprint())
+                    .ifPresent(key -> {
+                        keys.put(searchType.id(), key);
+                        resultCache.get(key).ifPresent(result -> cachedResults.put(searchType.id(), result));
+                    });
+        }
+
+        if (cachedResults.size() == alignedQuery.searchTypes().size()) {
+            LOG.debug("[{}] All search type results are cached", query.id());
+            return QueryResult.builder()
+                    .query(alignedQuery)
+                    .searchTypes(cachedResults)
+                    .build();
+        }
+
+        final Query remainingQuery = alignedQuery.toBuilder()
+                .searchTypes(alignedQuery.searchTypes().stream()
+                        .filter(searchType -> !cachedResults.containsKey(searchType.id()))
+                        .collect(ImmutableSet.toImmutableSet()))
+                .build();
+        final QueryResult result = prepareAndRunIncremental(searchJob, remainingQuery, validationErrors, timezone, scope);
+
+        // The backends add all errors to the result. A query error can affect all search types, so nothing
+        // gets cached in that case.
+        final Set<SearchError> errors = result.errors() == null ? Set.of() : result.errors();
+        if (errors.stream().allMatch(error -> error instanceof SearchTypeError)) {
+            final Set<String> failedSearchTypes = errors.stream()
+                    .map(error -> ((SearchTypeError) error).searchTypeId())
+                    .collect(Collectors.toSet());
+            result.searchTypes().forEach((searchTypeId, searchTypeResult) -> {
+                if (!failedSearchTypes.contains(searchTypeId) && keys.containsKey(searchTypeId)) {
+                    resultCache.put(keys.get(searchTypeId), searchTypeResult);
+                }
+            });
+        }
+
+        if (cachedResults.isEmpty()) {
+            return result;
+        }
+        final Map<String, SearchType.Result> searchTypeResults = new HashMap<>(result.searchTypes());
+        cachedResults.forEach(searchTypeResults::putIfAbsent);
+        return result.toBuilder()
+                .query(alignedQuery)
+                .searchTypes(searchTypeResults)
+                .build();
+    }
+
+    private QueryResult prepareAndRunIncremental(SearchJob searchJob, Query query, Set<SearchError> validationErrors,
+                                                 DateTimeZone timezone, SearchTypeResultCache.Scope scope) {
+        return incrementalPivotExecution.plan(searchJob.getSearch(), query, scope.permittedStreamsFingerprint())
+                .map(plan -> plan.complete(prepareAndRun(searchJob, plan.query(), validationErrors, timezone)))
+                .orElseGet(() -> prepareAndRun(searchJob, query, validationErrors, timezone));
     }
 
     private boolean isQueryWithError(Collection<SearchError> validationErrors, Query query) {
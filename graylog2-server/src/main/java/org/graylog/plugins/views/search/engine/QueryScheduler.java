@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Runs queries of search jobs on a fixed number of threads.
+ * <p>
+ * Queued queries are selected by weighted fair queuing between the {@link QueryWorkload workloads}: every workload
+ * gets a share of the threads which is proportional to its weight as long as it has queries waiting. Within a
+ * workload, the users take turns, so a single user with a large dashboard can't delay the searches of everybody
+ * else. Optionally, the number of queries running at the same time can be limited per user and per search job.
+ * <p>
+ * Queries with a deadline fail without being run if they are still queued when it passes. If they are already
+ * running, the given deadline callback is invoked, which is expected to cancel the requests to the search backend.
+ */
+public class QueryScheduler {
+    private static final Logger LOG = LoggerFactory.getLogger(QueryScheduler.class);
+
+    private static final long STRIDE = 1L << 20;
+    private static final int UNLIMITED = 0;
+
+    private final String name;
+    private final int poolSize;
+    private final int queueSize;
+    private final int maxQueriesPerUser;
+    private final int maxQueriesPerSearch;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService deadlineTimer;
+    private final Map<QueryWorkload, WorkloadQueue> queues = new EnumMap<>(QueryWorkload.class);
+    private final Map<String, Integer> runningPerUser = new HashMap<>();
+    private final Map<String, Integer> runningPerSearch = new HashMap<>();
+
+    // Guarded by "this"
+    private int queued = 0;
+    private int running = 0;
+    private long virtualTime = 0;
+
+    /**
+     * @param name                scheduler name, used for thread and metric names
+     * @param poolSize            number of queries which are run at the same time
+     * @param queueSize           maximum number of queued queries, 0 means unbounded
+     * @param maxQueriesPerUser   maximum number of running queries per user, 0 means unlimited
+     * @param maxQueriesPerSearch maximum number of running queries per search job, 0 means unlimited
+     * @param weights             weight of every workload
+     */
+    public QueryScheduler(String name,
+                          int poolSize,
+                          int queueSize,
+                          int maxQueriesPerUser,
+                          int maxQueriesPerSearch,
+                          Map<QueryWorkload, Integer> weights,
+                          MetricRegistry metricRegistry) {
+        this.name = name;
+        this.poolSize = poolSize;
+        this.queueSize = queueSize;
+        this.maxQueriesPerUser = maxQueriesPerUser;
+        this.maxQueriesPerSearch = maxQueriesPerSearch;
+        this.executor = Executors.newFixedThreadPool(poolSize, new ThreadFactoryBuilder()
+                .setNameFormat("query-engine-" + name + "-%d")
+                .build());
+        final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("query-engine-" + name + "-deadlines-%d")
+                .setDaemon(true)
+                .build());
+        timer.setRemoveOnCancelPolicy(true);
+        this.deadlineTimer = timer;
+
+        for (QueryWorkload workload : QueryWorkload.values()) {
+            final int weight = weights.getOrDefault(workload, 1);
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weight of workload " + workload + " must be positive, but was " + weight);
+            }
+            queues.put(workload, new WorkloadQueue(workload, STRIDE / weight, metricRegistry));
+        }
+        metricRegistry.register(name(QueryScheduler.class, name, "queued"), (Gauge<Integer>) this::queued);
+        metricRegistry.register(name(QueryScheduler.class, name, "running"), (Gauge<Integer>) this::running);
+    }
+
+    /**
+     * Queues a query.
+     *
+     * @param request the request describing who the query is run for
+     * @param work    the query to run
+     * @param result  the future which gets completed with the result of the query. Cancelling it removes a queued
+     *                query from the queue.
+     * @return the given result future
+     */
+    public <T> CompletableFuture<T> submit(Request request, Supplier<T> work, CompletableFuture<T> result) {
+        final Task<T> task = new Task<>(request, work, result);
+        final WorkloadQueue queue = queues.get(request.workload());
+
+        if (request.deadline() != null && !request.deadline().isAfter(Instant.now())) {
+            queue.deadlineExceeded.mark();
+            result.completeExceptionally(deadlineExceeded(request));
+            return result;
+        }
+
+        synchronized (this) {
+            if (queueSize > 0 && queued >= queueSize) {
+                queue.rejected.mark();
+                result.completeExceptionally(new RejectedExecutionException(
+                        "Too many queued queries, the limit of " + queueSize + " queued queries has been reached"));
+                return result;
+            }
+            if (queue.isEmpty()) {
+                // Don't let a workload which has been idle catch up on the time it didn't use
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+            queue.add(task);
+            queued++;
+        }
+
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                remove(task);
+            }
+        });
+        if (request.deadline() != null) {
+            task.deadlineFuture = deadlineTimer.schedule(() -> deadlineReached(task),
+                    Math.max(Duration.between(Instant.now(), request.deadline()).toMillis(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        dispatch();
+        return result;
+    }
+
+    private synchronized void dispatch() {
+        while (running < poolSize) {
+            final Task<?> task = next();
+            if (task == null) {
+                return;
+            }
+            queued--;
+            running++;
+            runningPerUser.merge(task.request.owner(), 1, Integer::sum);
+            runningPerSearch.merge(task.request.searchJobId(), 1, Integer::sum);
+            task.started = true;
+            executor.execute(() -> run(task));
+        }
+    }
+
+    /**
+     * Selects the workload with the smallest pass value which has an eligible query and advances its pass by its
+     * stride, so workloads are selected proportionally to their weights.
+     */
+    @Nullable
+    private Task<?> next() {
+        final List<WorkloadQueue> candidates = queues.values().stream()
+                .filter(queue -> !queue.isEmpty())
+                .sorted(Comparator.comparingLong(queue -> queue.pass))
+                .toList();
+        for (WorkloadQueue queue : candidates) {
+            final Task<?> task = queue.pollEligible();
+            if (task != null) {
+                virtualTime = queue.pass;
+                queue.pass += queue.stride;
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private boolean isEligible(Task<?> task) {
+        return (maxQueriesPerUser == UNLIMITED || runningPerUser.getOrDefault(task.request.owner(), 0) < maxQueriesPerUser)
+                && (maxQueriesPerSearch == UNLIMITED || runningPerSearch.getOrDefault(task.request.searchJobId(), 0) < maxQueriesPerSearch);
+    }
+
+    private <T> void run(Task<T> task) {
+        final WorkloadQueue queue = queues.get(task.request.workload());
+        queue.queueWait.update(System.nanoTime() - task.queuedAt, TimeUnit.NANOSECONDS);
+        try (final Timer.Context ignored = queue.execution.time()) {
+            if (!task.result.isDone()) {
+                task.result.complete(task.work.get());
+            }
+        } catch (Exception e) {
+            task.result.completeExceptionally(e);
+        } finally {
+            if (task.deadlineFuture != null) {
+                task.deadlineFuture.cancel(false);
+            }
+            finished(task);
+            dispatch();
+        }
+    }
+
+    private synchronized void finished(Task<?> task) {
+        running--;
+        runningPerUser.computeIfPresent(task.request.owner(), (owner, count) -> count > 1 ? count - 1 : null);
+        runningPerSearch.computeIfPresent(task.request.searchJobId(), (id, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private synchronized boolean remove(Task<?> task) {
+        if (!task.started && queues.get(task.request.workload()).remove(task)) {
+            queued--;
+            return true;
+        }
+        return false;
+    }
+
+    private void deadlineReached(Task<?> task) {
+        if (task.result.isDone()) {
+            return;
+        }
+        queues.get(task.request.workload()).deadlineExceeded.mark();
+        if (remove(task)) {
+            LOG.debug("Query of search job <{}> exceeded its deadline while being queued", task.request.searchJobId());
+            task.result.completeExceptionally(deadlineExceeded(task.request));
+            return;
+        }
+        LOG.debug("Query of search job <{}> exceeded its deadline while running, cancelling it", task.request.searchJobId());
+        task.result.completeExceptionally(deadlineExceeded(task.request));
+        try {
+            task.request.onDeadlineExceeded().run();
+        } catch (Exception e) {
+            LOG.warn("Couldn't cancel query of search job <{}>", task.request.searchJobId(), e);
+        }
+    }
+
+    private static TimeoutException deadlineExceeded(Request request) {
+        return new TimeoutException("Search job <" + request.searchJobId() + "> exceeded its deadline");
+    }
+
+    @VisibleForTesting
+    synchronized int queued() {
+        return queued;
+    }
+
+    @VisibleForTesting
+    synchronized int running() {
+        return running;
+    }
+
+    /**
+     * Describes who a query is run for.
+     *
+     * @param workload           the workload the query belongs to
+     * @param owner              the user the query is run for
+     * @param searchJobId        the ID of the search job the query belongs to
+     * @param deadline           the time after which the query should be cancelled, or null if it should never be
+     *                           cancelled
+     * @param onDeadlineExceeded invoked when the deadline passes while the query is running
+     */
+    public record Request(QueryWorkload workload, String owner, String searchJobId, @Nullable Instant deadline,
+                          Runnable onDeadlineExceeded) {
+    }
+
+    private static class Task<T> {
+        private final Request request;
+        private final Supplier<T> work;
+        private final CompletableFuture<T> result;
+        private final long queuedAt = System.nanoTime();
+        // Guarded by the scheduler
+        private boolean started = false;
+        private volatile ScheduledFuture<?> deadlineFuture;
+
+        private Task(Request request, Supplier<T> work, CompletableFuture<T> result) {
+            this.request = request;
+            this.work = work;
+            this.result = result;
+        }
+    }
+
+    /**
+     * The queued queries of a workload. The queries of every user are kept in separate queues, which take turns.
+     */
+    private class WorkloadQueue {
+        private final long stride;
+        private final Map<String, ArrayDeque<Task<?>>> tasksPerUser = new LinkedHashMap<>();
+        private final Timer queueWait;
+        private final Timer execution;
+        private final Meter rejected;
+        private final Meter deadlineExceeded;
+        private long pass = 0;
+
+        private WorkloadQueue(QueryWorkload workload, long stride, MetricRegistry metricRegistry) {
+            this.stride = stride;
+            final String workloadName = workload.name().toLowerCase(Locale.ROOT);
+            this.queueWait = metricRegistry.timer(name(QueryScheduler.class, name, workloadName, "queue-wait"));
+            this.execution = metricRegistry.timer(name(QueryScheduler.class, name, workloadName, "execution"));
+            this.rejected = metricRegistry.meter(name(QueryScheduler.class, name, workloadName, "rejected"));
+            this.deadlineExceeded = metricRegistry.meter(name(QueryScheduler.class, name, workloadName, "deadline-exceeded"));
+        }
+
+        private boolean isEmpty() {
+            return tasksPerUser.isEmpty();
+        }
+
+        private void add(Task<?> task) {
+            tasksPerUser.computeIfAbsent(task.request.owner(), owner -> new ArrayDeque<>()).add(task);
+        }
+
+        private boolean remove(Task<?> task) {
+            final ArrayDeque<Task<?>> tasks = tasksPerUser.get(task.request.owner());
+            if (tasks == null || !tasks.remove(task)) {
+                return false;
+            }
+            if (tasks.isEmpty()) {
+                tasksPerUser.remove(task.request.owner());
+            }
+            return true;
+        }
+
+        @Nullable
+        private Task<?> pollEligible() {
+            final Iterator<Map.Entry<String, ArrayDeque<Task<?>>>> users = tasksPerUser.entrySet().iterator();
+            while (users.hasNext()) {
+                final Map.Entry<String, ArrayDeque<Task<?>>> entry = users.next();
+                final Iterator<Task<?>> tasks = entry.getValue().iterator();
+                while (tasks.hasNext()) {
+                    final Task<?> task = tasks.next();
+                    if (isEligible(task)) {
+                        tasks.remove();
+                        // The user goes to the end of the line
+                        users.remove();
+                        if (!entry.getValue().isEmpty()) {
+                            tasksPerUser.put(entry.getKey(), entry.getValue());
+                        }
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
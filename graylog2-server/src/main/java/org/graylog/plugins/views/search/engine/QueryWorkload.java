@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine;
+
+/**
+ * The kind of work a search job is executed for. The {@link QueryScheduler} shares its threads between the
+ * workloads according to their configured weights.
+ */
+public enum QueryWorkload {
+    /**
+     * Searches a user is waiting for, e. g. search pages and dashboards.
+     */
+    INTERACTIVE,
+    /**
+     * Searches of event processors running in the background.
+     */
+    EVENT_PROCESSING,
+    /**
+     * Searches which retrieve data for further processing outside of Graylog, e. g. through the scripting API.
+     */
+    EXPORT
+}
@@ -35,6 +35,7 @@ import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -50,18 +51,24 @@ public class SearchExecutor {
     private final QueryEngine queryEngine;
     private final SearchValidation searchValidation;
     private final SearchNormalization searchNormalization;
+    private final SearchTypeResultCache resultCache;
+    private final IncrementalPivotExecution incrementalPivotExecution;
 
     @Inject
     public SearchExecutor(SearchDomain searchDomain,
                           SearchJobService searchJobService,
                           QueryEngine queryEngine,
                           SearchValidation searchValidation,
-                          SearchNormalization searchNormalization) {
+                          SearchNormalization searchNormalization,
+                          SearchTypeResultCache resultCache,
+                          IncrementalPivotExecution incrementalPivotExecution) {
         this.searchDomain = searchDomain;
         this.searchJobService = searchJobService;
         this.queryEngine = queryEngine;
         this.searchValidation = searchValidation;
         this.searchNormalization = searchNormalization;
+        this.resultCache = resultCache;
+        this.incrementalPivotExecution = incrementalPivotExecution;
     }
 
     public SearchJob executeSync(String searchId, SearchUser searchUser, ExecutionState executionState) {
@@ -76,9 +83,13 @@ public class SearchExecutor {
                 .orElseThrow(() -> new NotFoundException("No search found with id <" + searchId + ">."));
     }
 
-    @WithSpan
     public SearchJob executeSync(Search search, SearchUser searchUser, ExecutionState executionState) {
-        final SearchJob searchJob = prepareAndExecuteSearchJob(search, searchUser, executionState);
+        return executeSync(search, searchUser, executionState, QueryWorkload.INTERACTIVE);
+    }
+
+    @WithSpan
+    public SearchJob executeSync(Search search, SearchUser searchUser, ExecutionState executionState, QueryWorkload workload) {
+        final SearchJob searchJob = prepareAndExecuteSearchJob(search, searchUser, executionState, workload);
 
         try {
             final CompletableFuture<Void> resultFuture = searchJob.getResultFuture();
@@ -107,12 +118,13 @@ public class SearchExecutor {
 
     @WithSpan
     public SearchJob executeAsync(Search search, SearchUser searchUser, ExecutionState executionState) {
-        return prepareAndExecuteSearchJob(search, searchUser, executionState);
+        return prepareAndExecuteSearchJob(search, searchUser, executionState, QueryWorkload.INTERACTIVE);
     }
 
     private SearchJob prepareAndExecuteSearchJob(final Search search,
                                                  final SearchUser searchUser,
-                                                 final ExecutionState executionState) {
+                                                 final ExecutionState executionState,
+                                                 final QueryWorkload workload) {
         final Search preValidationSearch = searchNormalization.preValidation(search, searchUser, executionState);
 
         final Set<SearchError> validationErrors = searchValidation.validate(preValidationSearch, searchUser);
@@ -122,11 +134,19 @@ public class SearchExecutor {
         }
 
         final Search normalizedSearch = searchNormalization.postValidation(preValidationSearch, searchUser, executionState);
-        final SearchJob searchJob = queryEngine.execute(searchJobService.create(normalizedSearch, searchUser.username(), executionState.cancelAfterSeconds()), validationErrors, searchUser.timeZone().orElse(DEFAULT_TIMEZONE));
+        final SearchJob searchJob = queryEngine.execute(searchJobService.create(normalizedSearch, searchUser.username(), executionState.cancelAfterSeconds()), validationErrors, searchUser.timeZone().orElse(DEFAULT_TIMEZONE), resultCacheScope(searchUser, executionState), workload);
         validationErrors.forEach(searchJob::addError);
         return searchJob;
     }
 
+    @Nullable
+    private SearchTypeResultCache.Scope resultCacheScope(SearchUser searchUser, ExecutionState executionState) {
+        if ((!resultCache.isEnabled() && !incrementalPivotExecution.isEnabled()) || executionState.bypassResultCache()) {
+            return null;
+        }
+        return new SearchTypeResultCache.Scope(SearchTypeResultCache.fingerprint(searchUser.streams().loadAllStreams()));
+    }
+
     public ExplainResults explain(String searchId, SearchUser searchUser, ExecutionState executionState) {
         return searchDomain.getForUser(searchId, searchUser)
                 .map(s -> explain(s, searchUser, executionState))
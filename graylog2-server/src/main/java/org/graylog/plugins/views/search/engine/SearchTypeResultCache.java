@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.joschi.jadconfig.util.Size;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.graylog.plugins.views.search.Query;
+import org.graylog.plugins.views.search.Search;
+import org.graylog.plugins.views.search.SearchType;
+import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
+import org.graylog.plugins.views.search.searchtypes.MessageList;
+import org.graylog.plugins.views.search.searchtypes.events.EventList;
+import org.graylog.plugins.views.search.searchtypes.pivot.Pivot;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.indexer.searches.timeranges.RelativeRange;
+import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Caches the results of search types, so identical widgets don't have to be executed again. This mostly helps
+ * dashboards which are open for many users at the same time.
+ * <p>
+ * The cache key includes everything the result of a search type depends on: the search type itself, the query
+ * string, filters and streams of its query, the search parameters, the time zone and the time range. To make cache
+ * hits possible for relative time ranges, they are aligned to a configurable time bucket before the query is
+ * executed. The fingerprint of the user's readable streams is part of the key, so results are only shared between
+ * users with the same stream permissions.
+ */
+@Singleton
+public class SearchTypeResultCache {
+    private static final Logger LOG = LoggerFactory.getLogger(SearchTypeResultCache.class);
+
+    private static final Set<String> CACHEABLE_SEARCH_TYPES = Set.of(Pivot.NAME, MessageList.NAME, EventList.NAME);
+
+    private final Duration ttl;
+    private final Duration timeBucket;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, CachedResult> cache;
+    private final Meter hits;
+    private final Meter misses;
+
+    @Inject
+    public SearchTypeResultCache(@Named("search_result_cache_ttl") Duration ttl,
+                                 @Named("search_result_cache_max_size") Size maxSize,
+                                 @Named("search_result_cache_time_bucket") Duration timeBucket,
+                                 ObjectMapper objectMapper,
+                                 MetricRegistry metricRegistry) {
+        this.ttl = ttl;
+        this.timeBucket = timeBucket;
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl.isZero() ? Duration.ofNanos(1) : ttl)
+                .maximumWeight(maxSize.toBytes())
+                .<String, CachedResult>weigher((key, value) -> value.weight())
+                .build();
+        this.hits = metricRegistry.meter(name(getClass(), "hits"));
+        this.misses = metricRegistry.meter(name(getClass(), "misses"));
+        metricRegistry.register(name(getClass(), "size"), (Gauge<Long>) cache::estimatedSize);
+    }
+
+    public boolean isEnabled() {
+        return !ttl.isZero();
+    }
+
+    /**
+     * Returns true if the results of the given query can be cached.
+     */
+    public boolean isCacheable(Query query) {
+        return isEnabled() && query.query().type().equals(ElasticsearchQueryString.NAME);
+    }
+
+    /**
+     * Aligns a relative time range of the given query to the configured time bucket. The aligned query needs to be
+     * executed instead of the original one to make sure cached and new results cover the same time range.
+     *
+     * @param query the query to align
+     * @return the query with an aligned time range
+     */
+    public Query alignTimeRange(Query query) {
+        if (!(query.timerange() instanceof RelativeRange relativeRange) || relativeRange.nowUTC() != null
+                || timeBucket.isZero()) {
+            return query;
+        }
+
+        final long bucketMillis = timeBucket.toMillis();
+        final DateTime alignedNow = new DateTime((Tools.nowUTC().getMillis() / bucketMillis) * bucketMillis, DateTimeZone.UTC);
+        final TimeRange alignedRange = relativeRange.withReferenceDate(alignedNow);
+
+        final Query.Builder builder = query.toBuilder().timerange(alignedRange);
+        query.globalOverride()
+                .filter(override -> override.timerange().isPresent())
+                .ifPresent(override -> builder.globalOverride(override.toBuilder().timerange(alignedRange).build()));
+        return builder.build();
+    }
+
+    /**
+     * Builds the cache key for a search type of an aligned query.
+     *
+     * @return the key or an empty optional if the result of the search type can't be cached
+     */
+    public Optional<String> key(Search search, Query query, SearchType searchType, DateTimeZone timezone,
+                                String permittedStreamsFingerprint) {
+        if (!CACHEABLE_SEARCH_TYPES.contains(searchType.type()) || searchType.timerange().isPresent()) {
+            return Optional.empty();
+        }
+
+        final Map<String, Object> key = new LinkedHashMap<>();
+        key.put("search_type", searchType);
+        key.put("query", query.query());
+        key.put("filter", query.filter());
+        key.put("filters", query.filters());
+        key.put("streams", new TreeSet<>(query.effectiveStreams(searchType)));
+        key.put("from", query.timerange().getFrom().getMillis());
+        key.put("to", query.timerange().getTo().getMillis());
+        key.put("timezone", timezone.getID());
+        key.put("parameters", search.parameters());
+        key.put("permitted_streams", permittedStreamsFingerprint);
+
+        try {
+            return Optional.of(Hashing.sha256().hashBytes(objectMapper.writeValueAsBytes(key)).toString());
+        } catch (JsonProcessingException e) {
+            LOG.debug("Couldn't build cache key for search type <{}>", searchType.id(), e);
+            return Optional.empty();
+        }
+    }
+
+    public Optional<SearchType.Result> get(String key) {
+        final CachedResult cachedResult = cache.getIfPresent(key);
+        if (cachedResult == null) {
+            misses.mark();
+            return Optional.empty();
+        }
+        hits.mark();
+        return Optional.of(cachedResult.result());
+    }
+
+    public void put(String key, SearchType.Result result) {
+        try {
+            // The serialized size is a good approximation of the memory the result needs
+            cache.put(key, new CachedResult(result, objectMapper.writeValueAsBytes(result).length));
+        } catch (JsonProcessingException e) {
+            LOG.debug("Couldn't cache result of search type <{}>", result.id(), e);
+        }
+    }
+
+    /**
+     * Creates a fingerprint of the given stream IDs that doesn't depend on their order.
+     */
+    public static String fingerprint(Set<String> streamIds) {
+        return Hashing.sha256().hashString(String.join(",", new TreeSet<>(streamIds)), StandardCharsets.UTF_8).toString();
+    }
+
+    @VisibleForTesting
+    long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private record CachedResult(SearchType.Result result, int weight) {
+    }
+
+    /**
+     * Per search settings for the result cache.
+     *
+     * @param permittedStreamsFingerprint fingerprint of all streams the user can read
+     *                                    (see {@link #fingerprint(Set)})
+     */
+    public record Scope(String permittedStreamsFingerprint) {
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.export;
+
+import com.codahale.metrics.Meter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Collects the hits of an export into chunks and publishes them, taking care of the chunk order and the limit of
+ * the export.
+ */
+public class ChunkAssembler<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(ChunkAssembler.class);
+
+    private final int chunkSize;
+    private final OptionalInt limit;
+    private final Publisher<T> publisher;
+    @Nullable
+    private final Meter exportedMessages;
+    private final List<T> chunk = new ArrayList<>();
+    private boolean isFirstChunk = true;
+    private int totalCount = 0;
+
+    public ChunkAssembler(int chunkSize, OptionalInt limit, Publisher<T> publisher) {
+        this(chunkSize, limit, publisher, null);
+    }
+
+    public ChunkAssembler(int chunkSize, OptionalInt limit, Publisher<T> publisher, @Nullable Meter exportedMessages) {
+        this.chunkSize = chunkSize;
+        this.limit = limit;
+        this.publisher = publisher;
+        this.exportedMessages = exportedMessages;
+    }
+
+    /**
+     * Adds a hit to the current chunk and publishes the chunk once it is full.
+     *
+     * @return false if no more hits should be added, because the limit has been reached or publishing failed
+     */
+    public boolean add(T hit) {
+        chunk.add(hit);
+        totalCount++;
+        if (limit.isPresent() && totalCount >= limit.getAsInt()) {
+            LOG.info("Limit of {} reached. Stopping message retrieval.", limit.getAsInt());
+            if (flush()) {
+                finish();
+            }
+            return false;
+        }
+        return chunk.size() < chunkSize || flush();
+    }
+
+    /**
+     * Publishes the current chunk, even if it isn't full yet.
+     *
+     * @return false if publishing failed
+     */
+    public boolean flush() {
+        if (chunk.isEmpty()) {
+            return true;
+        }
+        final boolean success = publisher.publish(List.copyOf(chunk),
+                isFirstChunk ? SimpleMessageChunk.ChunkOrder.FIRST : SimpleMessageChunk.ChunkOrder.INTERMEDIATE);
+        if (exportedMessages != null) {
+            exportedMessages.mark(chunk.size());
+        }
+        chunk.clear();
+        isFirstChunk = false;
+        return success;
+    }
+
+    /**
+     * Publishes the remaining hits and the last chunk.
+     */
+    public void finish() {
+        if (flush()) {
+            publisher.publish(List.of(), SimpleMessageChunk.ChunkOrder.LAST);
+        }
+    }
+
+    public interface Publisher<T> {
+        /**
+         * Publishes a chunk of hits.
+         *
+         * @return false if the export should be stopped
+         */
+        boolean publish(List<T> hits, SimpleMessageChunk.ChunkOrder chunkOrder);
+    }
+}
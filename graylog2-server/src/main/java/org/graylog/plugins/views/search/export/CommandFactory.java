@@ -46,7 +46,8 @@ public class CommandFactory {
                 .queryString(request.queryString())
                 .streams(request.streams())
                 .fieldsInOrder(request.fieldsInOrder())
-                .chunkSize(request.chunkSize());
+                .chunkSize(request.chunkSize())
+                .allowUnordered(request.allowUnordered());
 
         request.timeZone().ifPresent(builder::timeZone);
         request.limit().ifPresent(builder::limit);
@@ -112,7 +113,8 @@ public class CommandFactory {
 
     private ExportMessagesCommand.Builder builderFrom(ResultFormat resultFormat) {
         ExportMessagesCommand.Builder requestBuilder = ExportMessagesCommand.builder()
-                .fieldsInOrder(resultFormat.fieldsInOrder());
+                .fieldsInOrder(resultFormat.fieldsInOrder())
+                .allowUnordered(resultFormat.allowUnordered());
 
         resultFormat.limit().ifPresent(requestBuilder::limit);
         resultFormat.timeZone().ifPresent(requestBuilder::timeZone);
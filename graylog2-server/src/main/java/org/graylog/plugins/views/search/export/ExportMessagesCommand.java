@@ -79,6 +79,11 @@ public abstract class ExportMessagesCommand {
 
     public abstract DateTimeZone timeZone();
 
+    /**
+     * Returns true if the messages may be exported in any order instead of being sorted by timestamp.
+     */
+    public abstract boolean allowUnordered();
+
     public static ExportMessagesCommand withDefaults() {
         return builder().build();
     }
@@ -119,6 +124,8 @@ public abstract class ExportMessagesCommand {
 
         public abstract Builder timeZone(DateTimeZone timeZone);
 
+        public abstract Builder allowUnordered(boolean allowUnordered);
+
         abstract ExportMessagesCommand autoBuild();
 
         public ExportMessagesCommand build() {
@@ -135,7 +142,8 @@ public abstract class ExportMessagesCommand {
                     .fieldsInOrder(DEFAULT_FIELDS)
                     .decorators(Collections.emptyList())
                     .chunkSize(DEFAULT_CHUNK_SIZE)
-                    .timeZone(DEFAULT_TIME_ZONE);
+                    .timeZone(DEFAULT_TIME_ZONE)
+                    .allowUnordered(false);
         }
     }
 }
@@ -51,6 +51,7 @@ public abstract class MessagesRequest {
     private static final String FIELD_FIELDS = "fields_in_order";
     private static final String FIELD_CHUNK_SIZE = "chunk_size";
     private static final String FIELD_TIME_ZONE = "time_zone";
+    private static final String FIELD_ALLOW_UNORDERED = "allow_unordered";
 
     @JsonProperty(FIELD_TIMERANGE)
     public abstract TimeRange timeRange();
@@ -75,6 +76,9 @@ public abstract class MessagesRequest {
     @Positive
     public abstract OptionalInt limit();
 
+    @JsonProperty(FIELD_ALLOW_UNORDERED)
+    public abstract boolean allowUnordered();
+
     public static MessagesRequest withDefaults() {
         return builder().build();
     }
@@ -120,6 +124,9 @@ public abstract class MessagesRequest {
         @JsonProperty
         public abstract Builder limit(Integer limit);
 
+        @JsonProperty(FIELD_ALLOW_UNORDERED)
+        public abstract Builder allowUnordered(boolean allowUnordered);
+
         public abstract MessagesRequest build();
 
         @JsonCreator
@@ -129,7 +136,8 @@ public abstract class MessagesRequest {
                     .streams(DEFAULT_STREAMS)
                     .queryString(DEFAULT_QUERY)
                     .fieldsInOrder(DEFAULT_FIELDS)
-                    .chunkSize(DEFAULT_CHUNK_SIZE);
+                    .chunkSize(DEFAULT_CHUNK_SIZE)
+                    .allowUnordered(false);
         }
     }
 }
@@ -41,6 +41,7 @@ import static org.graylog.plugins.views.search.export.LinkedHashSetUtil.linkedHa
 @JsonDeserialize(builder = ResultFormat.Builder.class)
 public abstract class ResultFormat {
     private static final String FIELD_FIELDS = "fields_in_order";
+    private static final String FIELD_ALLOW_UNORDERED = "allow_unordered";
 
     @JsonProperty(FIELD_FIELDS)
     @NotEmpty
@@ -61,6 +62,9 @@ public abstract class ResultFormat {
     @JsonProperty
     public abstract Optional<DateTimeZone> timeZone();
 
+    @JsonProperty(FIELD_ALLOW_UNORDERED)
+    public abstract boolean allowUnordered();
+
     public static ResultFormat.Builder builder() {
         return ResultFormat.Builder.create();
     }
@@ -99,13 +103,17 @@ public abstract class ResultFormat {
         @JsonProperty
         public abstract Builder timeZone(@Nullable DateTimeZone timeZone);
 
+        @JsonProperty(FIELD_ALLOW_UNORDERED)
+        public abstract Builder allowUnordered(boolean allowUnordered);
+
         public abstract ResultFormat build();
 
         @JsonCreator
         public static ResultFormat.Builder create() {
             return new AutoValue_ResultFormat.Builder()
                     .fieldsInOrder(DEFAULT_FIELDS)
-                    .executionState(ExecutionState.empty());
+                    .executionState(ExecutionState.empty())
+                    .allowUnordered(false);
         }
     }
 }
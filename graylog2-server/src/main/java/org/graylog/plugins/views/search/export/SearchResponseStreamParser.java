@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.export;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.inject.Inject;
+import org.graylog2.indexer.ElasticsearchException;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses the body of a search response token by token and hands every hit to a consumer as soon as it has been read.
+ * Unlike parsing the whole response into a search response object, this never holds more than a single hit in memory.
+ * <p>
+ * Only the parts of the response which are needed for exports are read: the shard failures, and the index, source and
+ * sort values of every hit. Everything else is skipped.
+ */
+public class SearchResponseStreamParser {
+    private static final TypeReference<Map<String, Object>> SOURCE_TYPE = new TypeReference<>() {};
+    private static final TypeReference<List<Object>> SORT_VALUES_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public SearchResponseStreamParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Parses a search response.
+     *
+     * @param inputStream the body of the response
+     * @param consumer    receives every hit of the response
+     * @return a summary of the parsed hits
+     * @throws ElasticsearchException if the search failed on some shards
+     */
+    public Result parse(InputStream inputStream, HitConsumer consumer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+
+            int hits = 0;
+            List<Object> lastSortValues = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "_shards" -> failOnShardFailures(parser);
+                    case "hits" -> {
+                        final Result result = parseHits(parser, consumer);
+                        if (result.stopped()) {
+                            return result;
+                        }
+                        hits = result.hits();
+                        lastSortValues = result.lastSortValues();
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            return new Result(hits, lastSortValues, false);
+        }
+    }
+
+    private Result parseHits(JsonParser parser, HitConsumer consumer) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+
+        int hits = 0;
+        List<Object> lastSortValues = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.currentName();
+            final JsonToken value = parser.nextToken();
+            if (!field.equals("hits") || value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                final Hit hit = parseHit(parser);
+                hits++;
+                lastSortValues = hit.sortValues();
+                if (!consumer.accept(hit.index(), hit.source(), hit.sortValues())) {
+                    return new Result(hits, lastSortValues, true);
+                }
+            }
+        }
+        return new Result(hits, lastSortValues, false);
+    }
+
+    private Hit parseHit(JsonParser parser) throws IOException {
+        String index = null;
+        Map<String, Object> source = Map.of();
+        List<Object> sortValues = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "_index" -> index = parser.getText();
+                case "_source" -> source = objectMapper.readValue(parser, SOURCE_TYPE);
+                case "sort" -> sortValues = objectMapper.readValue(parser, SORT_VALUES_TYPE);
+                default -> parser.skipChildren();
+            }
+        }
+        return new Hit(index, source, sortValues);
+    }
+
+    private void failOnShardFailures(JsonParser parser) throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+
+        int failedShards = 0;
+        final Set<String> errors = new LinkedHashSet<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "failed" -> failedShards = parser.getIntValue();
+                case "failures" -> {
+                    final List<Map<String, Object>> failures = objectMapper.readValue(parser, new TypeReference<>() {});
+                    failures.forEach(failure -> errors.add(reasonOf(failure)));
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (failedShards > 0) {
+            throw new ElasticsearchException("Unable to perform export query: ", new ArrayList<>(errors));
+        }
+    }
+
+    private static String reasonOf(Map<String, Object> failure) {
+        if (failure.get("reason") instanceof Map<?, ?> reason && reason.get("reason") != null) {
+            return String.valueOf(reason.get("reason"));
+        }
+        return String.valueOf(failure.get("reason"));
+    }
+
+    private static void expect(@Nullable JsonToken token, JsonToken expected) throws IOException {
+        if (token != expected) {
+            throw new IOException("Unexpected token in search response: expected " + expected + " but got " + token);
+        }
+    }
+
+    public interface HitConsumer {
+        /**
+         * Receives a single hit of the response.
+         *
+         * @return false to stop parsing the response
+         */
+        boolean accept(String index, Map<String, Object> source, @Nullable List<Object> sortValues);
+    }
+
+    /**
+     * @param hits           the number of hits which have been parsed
+     * @param lastSortValues the sort values of the last parsed hit, used to request the next page with search after
+     * @param stopped        true if the consumer stopped parsing before the end of the response
+     */
+    public record Result(int hits, @Nullable List<Object> lastSortValues, boolean stopped) {
+    }
+
+    private record Hit(String index, Map<String, Object> source, @Nullable List<Object> sortValues) {
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.export;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.joschi.jadconfig.util.Duration;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Runs message exports which are split into slices that are fetched concurrently. Export backends split their
+ * search into slices (e.g. with a point-in-time or a sliced scroll) and this class fetches the slices in parallel,
+ * merges their hits and forwards them in chunks.
+ * <p>
+ * Each slice can only buffer a few chunks before its fetcher has to wait for the exporting thread, so a slow
+ * consumer of the export slows down the requests to the search backend instead of filling up the heap.
+ */
+@Singleton
+public class SlicedExportRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(SlicedExportRunner.class);
+
+    static final int BUFFERED_CHUNKS_PER_SLICE = 2;
+
+    /**
+     * Orders hits by the sort values the search backend returned for them. Numbers are compared by value, all other
+     * sort values by their string representation.
+     */
+    public static final Comparator<Object[]> SORT_VALUES_ORDER = (a, b) -> {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            final int result = compareSortValue(a[i], b[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    };
+
+    private final int slices;
+    private final Duration keepAlive;
+    private final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("export-slice-%d")
+            .setDaemon(true)
+            .build();
+    private final Meter exportedMessages;
+    private final Timer sliceRequests;
+
+    @Inject
+    public SlicedExportRunner(@Named("export_slices") int slices,
+                              @Named("export_slice_keep_alive") Duration keepAlive,
+                              MetricRegistry metricRegistry) {
+        this.slices = slices;
+        this.keepAlive = keepAlive;
+        this.exportedMessages = metricRegistry.meter(name(getClass(), "exported-messages"));
+        this.sliceRequests = metricRegistry.timer(name(getClass(), "slice-requests"));
+    }
+
+    /**
+     * Returns true if exports should be split into slices.
+     */
+    public boolean isEnabled() {
+        return slices > 1;
+    }
+
+    public int slices() {
+        return slices;
+    }
+
+    /**
+     * Returns how long the search backend has to keep the search context of a slice open between two of its requests.
+     */
+    public Duration keepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * Fetches the given slices concurrently and publishes their hits in chunks.
+     *
+     * @param slices     the slices of the export
+     * @param order      the order of the hits in every slice. The hits of all slices are merged in this order. If it
+     *                   is {@code null}, the hits are published in the order in which they arrive.
+     * @param chunkSize  the maximum number of hits per chunk
+     * @param limit      the maximum number of hits to publish
+     * @param publisher  publishes a chunk of hits
+     */
+    public <T> void run(List<? extends Slice<T>> slices,
+                        @Nullable Comparator<T> order,
+                        int chunkSize,
+                        OptionalInt limit,
+                        ChunkAssembler.Publisher<T> publisher) {
+        final ExecutorService executor = Executors.newFixedThreadPool(slices.size(), threadFactory);
+        try {
+            final ChunkAssembler<T> assembler = new ChunkAssembler<>(chunkSize, limit, publisher, exportedMessages);
+            if (order == null) {
+                final BlockingQueue<Batch<T>> queue = new ArrayBlockingQueue<>(slices.size() * BUFFERED_CHUNKS_PER_SLICE);
+                slices.forEach(slice -> executor.execute(() -> fetch(slice, queue)));
+                runUnordered(queue, slices.size(), assembler);
+            } else {
+                final List<Cursor<T>> cursors = new ArrayList<>(slices.size());
+                for (Slice<T> slice : slices) {
+                    final Cursor<T> cursor = new Cursor<>(new ArrayBlockingQueue<>(BUFFERED_CHUNKS_PER_SLICE));
+                    executor.execute(() -> fetch(slice, cursor.queue));
+                    cursors.add(cursor);
+                }
+                runOrdered(cursors, order, assembler);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExportException("Export was interrupted", e);
+        } finally {
+            // Stops the fetchers if the export ended early, e.g. because the limit has been reached
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> void runUnordered(BlockingQueue<Batch<T>> queue, int sliceCount, ChunkAssembler<T> assembler) throws InterruptedException {
+        int completedSlices = 0;
+        while (completedSlices < sliceCount) {
+            final Batch<T> batch = queue.take().orThrow();
+            if (batch.hits().isEmpty()) {
+                completedSlices++;
+                continue;
+            }
+            for (T hit : batch.hits()) {
+                if (!assembler.add(hit)) {
+                    return;
+                }
+            }
+            // Don't hold back hits which already arrived while waiting for the other slices
+            if (!assembler.flush()) {
+                return;
+            }
+        }
+        assembler.finish();
+    }
+
+    private <T> void runOrdered(List<Cursor<T>> cursors, Comparator<T> order, ChunkAssembler<T> assembler) throws InterruptedException {
+        final PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(cursors.size(), (a, b) -> order.compare(a.head(), b.head()));
+        for (Cursor<T> cursor : cursors) {
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        while (!heads.isEmpty()) {
+            final Cursor<T> cursor = heads.poll();
+            if (!assembler.add(cursor.head())) {
+                return;
+            }
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        assembler.finish();
+    }
+
+    private static int compareSortValue(@Nullable Object a, @Nullable Object b) {
+        if (a == null || b == null) {
+            // Missing values are sorted last
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        if (a instanceof Number numberA && b instanceof Number numberB) {
+            if (isIntegral(numberA) && isIntegral(numberB)) {
+                return Long.compare(numberA.longValue(), numberB.longValue());
+            }
+            return Double.compare(numberA.doubleValue(), numberB.doubleValue());
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    private <T> void fetch(Slice<T> slice, BlockingQueue<Batch<T>> queue) {
+        try {
+            while (true) {
+                final List<T> hits;
+                try (Timer.Context ignored = sliceRequests.time()) {
+                    hits = slice.nextChunk();
+                } catch (Exception e) {
+                    queue.put(Batch.failed(e));
+                    return;
+                }
+                queue.put(Batch.of(hits));
+                if (hits.isEmpty()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("Stopped fetching export slice");
+        }
+    }
+
+    /**
+     * A part of an export which is fetched independently of the other parts.
+     */
+    public interface Slice<T> {
+        /**
+         * Fetches the next chunk of hits. An empty list signals that the slice has been fetched completely.
+         */
+        List<T> nextChunk();
+    }
+
+    private record Batch<T>(List<T> hits, @Nullable Exception failure) {
+        static <T> Batch<T> of(List<T> hits) {
+            return new Batch<>(hits, null);
+        }
+
+        static <T> Batch<T> failed(Exception failure) {
+            return new Batch<>(List.of(), failure);
+        }
+
+        Batch<T> orThrow() {
+            if (failure == null) {
+                return this;
+            }
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ExportException("Unable to complete export: ", failure);
+        }
+    }
+
+    /**
+     * Iterates over the hits of a single slice, waiting for its fetcher if necessary.
+     */
+    private static class Cursor<T> {
+        private final BlockingQueue<Batch<T>> queue;
+        private List<T> hits = List.of();
+        private int position = 0;
+
+        Cursor(BlockingQueue<Batch<T>> queue) {
+            this.queue = queue;
+        }
+
+        T head() {
+            return hits.get(position);
+        }
+
+        /**
+         * Moves to the next hit of the slice.
+         *
+         * @return false if the slice has no more hits
+         */
+        boolean advance() throws InterruptedException {
+            if (position + 1 < hits.size()) {
+                position++;
+                return true;
+            }
+            hits = queue.take().orThrow().hits();
+            position = 0;
+            return !hits.isEmpty();
+        }
+    }
+}
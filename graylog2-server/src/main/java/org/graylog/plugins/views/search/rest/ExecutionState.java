@@ -49,6 +49,12 @@ public abstract class ExecutionState {
     @Nullable
     public abstract Integer cancelAfterSeconds();
 
+    /**
+     * Executes all search types, even if their results are cached.
+     */
+    @JsonProperty("bypass_result_cache")
+    public abstract boolean bypassResultCache();
+
     public static ExecutionState empty() {
         return builder().build();
     }
@@ -68,7 +74,7 @@ public abstract class ExecutionState {
     }
 
     public static Builder builder() {
-        return new AutoValue_ExecutionState.Builder();
+        return new AutoValue_ExecutionState.Builder().setBypassResultCache(false);
     }
 
     public abstract Builder toBuilder();
@@ -87,6 +93,9 @@ public abstract class ExecutionState {
         @JsonProperty("cancel_after_seconds")
         public abstract Builder setCancelAfterSeconds(@Nullable Integer cancelAfterSeconds);
 
+        @JsonProperty("bypass_result_cache")
+        public abstract Builder setBypassResultCache(boolean bypassResultCache);
+
         public abstract ExecutionStateGlobalOverride.Builder globalOverrideBuilder();
 
         @JsonProperty
@@ -21,6 +21,7 @@ import jakarta.inject.Inject;
 import org.apache.shiro.subject.Subject;
 import org.graylog.plugins.views.search.Search;
 import org.graylog.plugins.views.search.SearchJob;
+import org.graylog.plugins.views.search.engine.QueryWorkload;
 import org.graylog.plugins.views.search.engine.SearchExecutor;
 import org.graylog.plugins.views.search.events.SearchJobExecutionEvent;
 import org.graylog.plugins.views.search.permissions.SearchUser;
@@ -62,7 +63,7 @@ public class ScriptingApiServiceImpl implements ScriptingApiService {
         Search search = searchCreator.mapToSearch(messagesRequestSpec, searchUser);
 
         //Step 2: execute search as we usually do
-        final SearchJob searchJob = searchExecutor.executeSync(search, searchUser, ExecutionState.empty());
+        final SearchJob searchJob = searchExecutor.executeSync(search, searchUser, ExecutionState.empty(), QueryWorkload.EXPORT);
         postAuditEvent(searchJob, searchUser.getUser());
 
         //Step 3: take complex response and try to map it to simpler, tabular form
@@ -74,7 +75,7 @@ public class ScriptingApiServiceImpl implements ScriptingApiService {
         Search search = searchCreator.mapToSearch(aggregationRequestSpec, searchUser);
 
         //Step 2: execute search as we usually do
-        final SearchJob searchJob = searchExecutor.executeSync(search, searchUser, ExecutionState.empty());
+        final SearchJob searchJob = searchExecutor.executeSync(search, searchUser, ExecutionState.empty(), QueryWorkload.EXPORT);
         postAuditEvent(searchJob, searchUser.getUser());
 
         //Step 3: take complex response and try to map it to simpler, tabular form
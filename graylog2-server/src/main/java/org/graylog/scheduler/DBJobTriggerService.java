@@ -67,6 +67,7 @@ import static com.mongodb.client.model.Filters.lte;
 import static com.mongodb.client.model.Filters.ne;
 import static com.mongodb.client.model.Filters.not;
 import static com.mongodb.client.model.Filters.or;
+import static com.mongodb.client.model.Projections.include;
 import static com.mongodb.client.model.Sorts.ascending;
 import static com.mongodb.client.model.Sorts.descending;
 import static com.mongodb.client.model.Updates.combine;
@@ -355,12 +356,97 @@ public class DBJobTriggerService {
     public Optional<JobTriggerDto> nextRunnableTrigger() {
         final DateTime now = clock.nowUTC();
 
+        // We want to lock the trigger with the oldest next time
+        final var sort = ascending(FIELD_NEXT_TIME);
+
+        // Atomically update, lock and return the next runnable trigger
+        final JobTriggerDto trigger = collection.findOneAndUpdate(runnableTriggersFilter(now), lockUpdate(now),
+                new FindOneAndUpdateOptions().sort(sort).returnDocument(ReturnDocument.AFTER)
+        );
+
+        return Optional.ofNullable(trigger);
+    }
+
+    /**
+     * Locks and returns up to {@code limit} runnable triggers, ordered by their next time. The caller needs to take
+     * care of releasing the trigger locks.
+     * <p>
+     * This needs three database round-trips regardless of the number of triggers: one to select the candidates,
+     * one to lock them and one to load the locked triggers. Every trigger is still locked atomically. Candidates that
+     * have been locked by another node in the meantime are not part of the result.
+     *
+     * @param limit the maximum number of triggers to lock
+     * @return the locked triggers, an empty list if there are no runnable triggers
+     */
+    public List<JobTriggerDto> nextRunnableTriggers(int limit) {
+        if (limit < 1) {
+            return List.of();
+        }
+        if (limit == 1) {
+            return nextRunnableTrigger().map(List::of).orElse(List.of());
+        }
+
+        final DateTime now = clock.nowUTC();
+        final Bson filter = runnableTriggersFilter(now);
+
+        final List<ObjectId> candidateIds;
+        try (final Stream<Document> candidates = stream(collection.find(filter, Document.class)
+                .sort(ascending(FIELD_NEXT_TIME))
+                .limit(limit)
+                .projection(include(FIELD_ID)))) {
+            candidateIds = candidates.map(document -> document.getObjectId(FIELD_ID)).toList();
+        }
+        if (candidateIds.isEmpty()) {
+            return List.of();
+        }
+
+        // The filter is applied again to make sure we don't steal triggers that got locked since we selected them.
+        if (collection.updateMany(and(in(FIELD_ID, candidateIds), filter), lockUpdate(now)).getModifiedCount() == 0) {
+            return List.of();
+        }
+
+        // Only triggers locked by this node with this lock time can be the ones we just locked. Triggers locked by
+        // earlier calls have been excluded from the candidates by the filter.
+        try (final Stream<JobTriggerDto> lockedTriggers = stream(collection.find(and(
+                in(FIELD_ID, candidateIds),
+                eq(FIELD_LOCK_OWNER, nodeId),
+                eq(FIELD_STATUS, JobTriggerStatus.RUNNING),
+                eq(FIELD_TRIGGERED_AT, Optional.of(now))
+        )).sort(ascending(FIELD_NEXT_TIME)))) {
+            return lockedTriggers.toList();
+        }
+    }
+
+    /**
+     * Returns the earliest next time in the future of all unlocked runnable triggers that can be executed on this
+     * node. The scheduler uses this to avoid sleeping past the next time of a trigger.
+     *
+     * @return the earliest future next time if any runnable trigger exists, an empty {@link Optional} otherwise
+     */
+    public Optional<DateTime> nextRunnableTriggerTime() {
+        final DateTime now = clock.nowUTC();
+        final var filter = and(
+                eq(FIELD_LOCK_OWNER, null),
+                eq(FIELD_STATUS, JobTriggerStatus.RUNNABLE),
+                constraintsFilter(),
+                gt(FIELD_NEXT_TIME, now)
+        );
+
+        return Optional.ofNullable(collection.find(filter).sort(ascending(FIELD_NEXT_TIME)).first())
+                .map(JobTriggerDto::nextTime);
+    }
+
+    private Bson constraintsFilter() {
         // exclude triggers which require a constraint that is not satisfied by this node
-        final var constraintsQuery = not(
+        return not(
                 elemMatch(FIELD_CONSTRAINTS, new Document("$nin", schedulerCapabilitiesService.getNodeCapabilities()))
         );
+    }
+
+    private Bson runnableTriggersFilter(DateTime now) {
+        final var constraintsQuery = constraintsFilter();
 
-        final var filter = or(and(
+        return or(and(
                         // We cannot lock a trigger that is already locked by another node
                         eq(FIELD_LOCK_OWNER, null),
                         eq(FIELD_STATUS, JobTriggerStatus.RUNNABLE),
@@ -382,23 +468,16 @@ public class DBJobTriggerService {
                         constraintsQuery,
                         lt(FIELD_LAST_LOCK_TIME, now.minus(lockExpirationDuration.toMilliseconds())))
         );
-        // We want to lock the trigger with the oldest next time
-        final var sort = ascending(FIELD_NEXT_TIME);
+    }
 
-        final var lockUpdate = combine(
+    private Bson lockUpdate(DateTime now) {
+        return combine(
                 set(FIELD_LOCK_OWNER, nodeId),
                 set(FIELD_LAST_LOCK_OWNER, nodeId),
                 set(FIELD_STATUS, JobTriggerStatus.RUNNING),
                 set(FIELD_TRIGGERED_AT, Optional.of(now)),
                 set(FIELD_LAST_LOCK_TIME, now)
         );
-
-        // Atomically update, lock and return the next runnable trigger
-        final JobTriggerDto trigger = collection.findOneAndUpdate(filter, lockUpdate,
-                new FindOneAndUpdateOptions().sort(sort).returnDocument(ReturnDocument.AFTER)
-        );
-
-        return Optional.ofNullable(trigger);
     }
 
     /**
@@ -51,4 +51,9 @@ public class DefaultJobSchedulerConfig implements JobSchedulerConfig {
     public Map<String, Integer> concurrencyLimits() {
         return ImmutableMap.copyOf(config.getConcurrencyLimits());
     }
+
+    @Override
+    public int maxTriggersPerAcquisition() {
+        return config.getMaxTriggersPerAcquisition();
+    }
 }
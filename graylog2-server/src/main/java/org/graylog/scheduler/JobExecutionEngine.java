@@ -18,6 +18,7 @@ package org.graylog.scheduler;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
@@ -32,6 +33,7 @@ import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.annotation.Nullable;
 import jakarta.inject.Inject;
 import one.util.streamex.EntryStream;
+import org.graylog.scheduler.clock.JobSchedulerClock;
 import org.graylog.scheduler.eventbus.JobCompletedEvent;
 import org.graylog.scheduler.eventbus.JobSchedulerEventBus;
 import org.graylog.scheduler.worker.JobWorkerPool;
@@ -44,6 +46,7 @@ import org.joda.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -77,6 +80,8 @@ public class JobExecutionEngine {
     private final JobWorkerPool workerPool;
     private final RefreshingLockService.Factory refreshingLockServiceFactory;
     private final Map<String, Integer> concurrencyLimits;
+    private final int maxTriggersPerAcquisition;
+    private final JobSchedulerClock clock;
     private final long backoffMillis;
 
     private final Counter executionSuccessful;
@@ -84,6 +89,9 @@ public class JobExecutionEngine {
     private final Meter executionDenied;
     private final Meter executionRescheduled;
     private final Timer executionTime;
+    private final Timer triggerAcquisitionTime;
+    private final Histogram triggersAcquired;
+    private final Timer triggerLag;
     private final LoadingCache<String, Long> gaugeCache;
 
     private final AtomicBoolean isRunning = new AtomicBoolean(true);
@@ -99,9 +107,10 @@ public class JobExecutionEngine {
                               Map<String, Job.Factory> jobFactory,
                               @Assisted JobWorkerPool workerPool,
                               JobSchedulerConfig schedulerConfig,
-                              MetricRegistry metricRegistry) {
+                              MetricRegistry metricRegistry,
+                              JobSchedulerClock clock) {
         this(jobTriggerService, jobDefinitionService, eventBus, scheduleStrategies, jobTriggerUpdatesFactory,
-                refreshingLockServiceFactory, jobFactory, workerPool, schedulerConfig, metricRegistry, DEFAULT_BACKOFF);
+                refreshingLockServiceFactory, jobFactory, workerPool, schedulerConfig, metricRegistry, clock, DEFAULT_BACKOFF);
     }
 
     @VisibleForTesting
@@ -115,6 +124,7 @@ public class JobExecutionEngine {
                               JobWorkerPool workerPool,
                               JobSchedulerConfig schedulerConfig,
                               MetricRegistry metricRegistry,
+                              JobSchedulerClock clock,
                               long backoffMillis) {
         this.jobTriggerService = jobTriggerService;
         this.jobDefinitionService = jobDefinitionService;
@@ -125,6 +135,8 @@ public class JobExecutionEngine {
         this.workerPool = workerPool;
         this.refreshingLockServiceFactory = refreshingLockServiceFactory;
         this.concurrencyLimits = schedulerConfig.concurrencyLimits();
+        this.maxTriggersPerAcquisition = schedulerConfig.maxTriggersPerAcquisition();
+        this.clock = clock;
         this.backoffMillis = backoffMillis;
 
         this.executionSuccessful = metricRegistry.counter(MetricRegistry.name(getClass(), "executions", "successful"));
@@ -132,6 +144,10 @@ public class JobExecutionEngine {
         this.executionDenied = metricRegistry.meter(MetricRegistry.name(getClass(), "executions", "denied"));
         this.executionRescheduled = metricRegistry.meter(MetricRegistry.name(getClass(), "executions", "rescheduled"));
         this.executionTime = metricRegistry.timer(MetricRegistry.name(getClass(), "executions", "time"));
+        this.triggerAcquisitionTime = metricRegistry.timer(MetricRegistry.name(getClass(), "triggers", "acquisition", "time"));
+        this.triggersAcquired = metricRegistry.histogram(MetricRegistry.name(getClass(), "triggers", "acquired"));
+        // Time between the next time of a trigger and the time it got locked by the scheduler
+        this.triggerLag = metricRegistry.timer(MetricRegistry.name(getClass(), "triggers", "lag"));
 
         // We use a cache to avoid having every gauge metric hitting the database.
         this.gaugeCache = Caffeine.newBuilder()
@@ -194,10 +210,19 @@ public class JobExecutionEngine {
 
         // We want to avoid a call to the database if there are no free slots in the pool or the engine is shutting down
         if (isRunning.get() && workerPool.hasFreeSlots()) {
-            final Optional<JobTriggerDto> triggerOptional = jobTriggerService.nextRunnableTrigger();
+            if (maxTriggersPerAcquisition > 1) {
+                return executeBatch(Math.min(workerPool.freeSlots(), maxTriggersPerAcquisition));
+            }
+
+            final Optional<JobTriggerDto> triggerOptional;
+            try (final Timer.Context ignored = triggerAcquisitionTime.time()) {
+                triggerOptional = jobTriggerService.nextRunnableTrigger();
+            }
+            triggersAcquired.update(triggerOptional.isPresent() ? 1 : 0);
 
             if (triggerOptional.isPresent()) {
                 final JobTriggerDto trigger = triggerOptional.get();
+                recordLag(trigger);
 
                 if (!workerPool.execute(() -> handleTriggerWithConcurrencyLimit(trigger))) {
                     // The job couldn't be executed so we have to release the trigger again with the same nextTime
@@ -213,6 +238,55 @@ public class JobExecutionEngine {
         return false;
     }
 
+    private boolean executeBatch(int limit) {
+        final List<JobTriggerDto> triggers;
+        try (final Timer.Context ignored = triggerAcquisitionTime.time()) {
+            triggers = jobTriggerService.nextRunnableTriggers(limit);
+        }
+        triggersAcquired.update(triggers.size());
+
+        if (triggers.isEmpty()) {
+            executionDenied.mark();
+            return false;
+        }
+
+        boolean executedAny = false;
+        for (final JobTriggerDto trigger : triggers) {
+            recordLag(trigger);
+            if (workerPool.execute(() -> handleTriggerWithConcurrencyLimit(trigger))) {
+                executedAny = true;
+            } else {
+                // The job couldn't be executed so we have to release the trigger again with the same nextTime
+                jobTriggerService.releaseTrigger(trigger, JobTriggerUpdate.withNextTime(trigger.nextTime()));
+                executionDenied.mark();
+            }
+        }
+        return executedAny;
+    }
+
+    private void recordLag(JobTriggerDto trigger) {
+        final long lagMillis = clock.nowUTC().getMillis() - trigger.nextTime().getMillis();
+        triggerLag.update(Math.max(0, lagMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns how long the scheduler can sleep before the next trigger is due. Only looks up the next trigger time
+     * if batched trigger acquisition is enabled and there are free worker slots. Otherwise, the given maximum is
+     * returned and the scheduler relies on job completion events to wake up early.
+     *
+     * @param maxSleepMillis the maximum sleep duration in milliseconds
+     * @return the sleep duration in milliseconds, between zero and the given maximum
+     */
+    public long millisUntilNextTrigger(long maxSleepMillis) {
+        if (maxTriggersPerAcquisition <= 1 || !isRunning.get() || !workerPool.hasFreeSlots()) {
+            return maxSleepMillis;
+        }
+        return jobTriggerService.nextRunnableTriggerTime()
+                .map(nextTime -> nextTime.getMillis() - clock.nowUTC().getMillis())
+                .map(millis -> Math.max(0, Math.min(millis, maxSleepMillis)))
+                .orElse(maxSleepMillis);
+    }
+
     public void updateLockedJobs() {
         if (workerPool.anySlotsUsed()) {
             jobTriggerService.updateLockedJobTriggers();
@@ -45,4 +45,15 @@ public interface JobSchedulerConfig {
      * entry signifies unlimited concurrency (up to numberOfWorkerThreads)
      */
     Map<String, Integer> concurrencyLimits();
+
+    /**
+     * Maximum number of triggers to lock with a single acquisition. Values greater than one enable batched trigger
+     * acquisition, which also makes the scheduler wake up when the next trigger is due instead of sleeping for the
+     * full loop sleep duration.
+     *
+     * @return max number of triggers to lock at once
+     */
+    default int maxTriggersPerAcquisition() {
+        return 1;
+    }
 }
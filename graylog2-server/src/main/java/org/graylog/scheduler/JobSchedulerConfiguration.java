@@ -21,6 +21,7 @@ import com.github.joschi.jadconfig.ValidationException;
 import com.github.joschi.jadconfig.Validator;
 import com.github.joschi.jadconfig.util.Duration;
 import com.github.joschi.jadconfig.validators.PositiveDurationValidator;
+import com.github.joschi.jadconfig.validators.PositiveIntegerValidator;
 import org.graylog2.configuration.converters.MapConverter;
 import org.graylog2.plugin.PluginConfigBean;
 
@@ -34,6 +35,7 @@ public class JobSchedulerConfiguration implements PluginConfigBean {
     public static final String LOOP_SLEEP_DURATION = "job_scheduler_loop_sleep_duration";
     public static final String LOCK_EXPIRATION_DURATION = "job_scheduler_lock_expiration_duration";
     public static final String CONCURRENCY_LIMITS = "job_scheduler_concurrency_limits";
+    public static final String MAX_TRIGGERS_PER_ACQUISITION = "job_scheduler_max_triggers_per_acquisition";
 
     @Parameter(value = LOOP_SLEEP_DURATION, validators = PositiveDurationValidator.class)
     private Duration loopSleepDuration = Duration.seconds(1);
@@ -44,6 +46,9 @@ public class JobSchedulerConfiguration implements PluginConfigBean {
     @Parameter(value = CONCURRENCY_LIMITS, converter = MapConverter.StringInteger.class)
     private Map<String, Integer> concurrencyLimits = Map.of();
 
+    @Parameter(value = MAX_TRIGGERS_PER_ACQUISITION, validators = PositiveIntegerValidator.class)
+    private int maxTriggersPerAcquisition = 1;
+
     /**
      * Concurrency limits per job type. A missing entry signifies unlimited concurrency. (up to the number of worker threads)
      *
@@ -53,6 +58,16 @@ public class JobSchedulerConfiguration implements PluginConfigBean {
         return concurrencyLimits;
     }
 
+    /**
+     * Maximum number of triggers the scheduler locks in one go. The scheduler never locks more triggers than it
+     * has free worker slots.
+     *
+     * @return max number of triggers to lock per scheduler loop iteration
+     */
+    public int getMaxTriggersPerAcquisition() {
+        return maxTriggersPerAcquisition;
+    }
+
     public Duration getLoopSleepDuration() {
         return loopSleepDuration;
     }
@@ -122,11 +122,12 @@ public class JobSchedulerService extends AbstractExecutionThreadService implemen
             try {
                 if (!jobExecutionEngine.execute() && isRunning()) {
                     // When the execution engine returned false, there are either no free worker threads or no
-                    // runnable triggers. To avoid busy spinning we sleep for the configured duration or until
-                    // we receive a job completion event via the scheduler event bus.
-                    if (sleeper.sleep(loopSleepDuration.getQuantity(), loopSleepDuration.getUnit())) {
-                        LOG.debug("Waited for {} {} because there are either no free worker threads or no runnable triggers",
-                                loopSleepDuration.getQuantity(), loopSleepDuration.getUnit());
+                    // runnable triggers. To avoid busy spinning we sleep for the configured duration, until the
+                    // next trigger is due or until we receive a job completion event via the scheduler event bus.
+                    final long sleepMillis = jobExecutionEngine.millisUntilNextTrigger(loopSleepDuration.toMilliseconds());
+                    if (sleeper.sleep(sleepMillis, TimeUnit.MILLISECONDS)) {
+                        LOG.debug("Waited for {} ms because there are either no free worker threads or no runnable triggers",
+                                sleepMillis);
                     }
                 }
             } catch (InterruptedException e) {
@@ -23,6 +23,7 @@ import com.github.joschi.jadconfig.ValidatorMethod;
 import com.github.joschi.jadconfig.converters.StringSetConverter;
 import com.github.joschi.jadconfig.converters.TrimmedStringSetConverter;
 import com.github.joschi.jadconfig.util.Duration;
+import com.github.joschi.jadconfig.util.Size;
 import com.github.joschi.jadconfig.validators.PositiveDurationValidator;
 import com.github.joschi.jadconfig.validators.PositiveIntegerValidator;
 import com.github.joschi.jadconfig.validators.PositiveLongValidator;
@@ -132,6 +133,28 @@ public class Configuration extends CaConfiguration implements CommonNodeConfigur
     @Parameter(value = "stream_processing_max_faults", validators = PositiveIntegerValidator.class)
     private int streamProcessingMaxFaults = 3;
 
+    @Parameter(value = "grok_literal_prefilter")
+    private boolean grokLiteralPrefilter = true;
+
+    /**
+     * Don't use @{@link jakarta.inject.Named} injection for the subsystem specific sample rates but the getters
+     * (e.g. getExtractorsTimerSampleRate()) instead. They fall back to the global sample rate.
+     **/
+    @Parameter(value = "metrics_timer_sample_rate", validators = PositiveIntegerValidator.class)
+    private int metricsTimerSampleRate = 1;
+
+    @Parameter(value = "extractors_timer_sample_rate", validators = PositiveIntegerValidator.class)
+    private Integer extractorsTimerSampleRate;
+
+    @Parameter(value = "stream_rules_timer_sample_rate", validators = PositiveIntegerValidator.class)
+    private Integer streamRulesTimerSampleRate;
+
+    @Parameter(value = "pipeline_rules_timer_sample_rate", validators = PositiveIntegerValidator.class)
+    private Integer pipelineRulesTimerSampleRate;
+
+    @Parameter(value = "processing_latency_sample_rate", validators = PositiveIntegerValidator.class)
+    private int processingLatencySampleRate = 100;
+
     @Parameter(value = "output_module_timeout", validators = PositiveLongValidator.class)
     private long outputModuleTimeout = 10000;
 
@@ -190,6 +213,15 @@ public class Configuration extends CaConfiguration implements CommonNodeConfigur
     @Parameter(value = "index_ranges_cleanup_interval", validators = PositiveDurationValidator.class)
     private Duration indexRangesCleanupInterval = Duration.hours(1L);
 
+    @Parameter(value = "index_ranges_rebuild_concurrency", validators = PositiveIntegerValidator.class)
+    private int indexRangesRebuildConcurrency = 1;
+
+    @Parameter(value = "index_ranges_rebuild_batch_size", validators = PositiveIntegerValidator.class)
+    private int indexRangesRebuildBatchSize = 1;
+
+    @Parameter(value = "index_ranges_rebuild_skip_unchanged")
+    private boolean indexRangesRebuildSkipUnchanged = false;
+
     @Parameter(value = "trusted_proxies", converter = IPSubnetConverter.class)
     private Set<IpSubnet> trustedProxies = Collections.emptySet();
 
@@ -269,6 +301,63 @@ public class Configuration extends CaConfiguration implements CommonNodeConfigur
     @Parameter("search_query_engine_data_lake_jobs_queue_size")
     private int searchQueryEngineDataLakeJobsQueueSize = 0;
 
+    @Parameter("search_query_engine_max_concurrent_queries_per_user")
+    private int searchQueryEngineMaxConcurrentQueriesPerUser = 0;
+
+    @Parameter("search_query_engine_max_concurrent_queries_per_search")
+    private int searchQueryEngineMaxConcurrentQueriesPerSearch = 0;
+
+    @Parameter(value = "search_query_engine_interactive_weight", validators = PositiveIntegerValidator.class)
+    private int searchQueryEngineInteractiveWeight = 8;
+
+    @Parameter(value = "search_query_engine_event_processing_weight", validators = PositiveIntegerValidator.class)
+    private int searchQueryEngineEventProcessingWeight = 4;
+
+    @Parameter(value = "search_query_engine_export_weight", validators = PositiveIntegerValidator.class)
+    private int searchQueryEngineExportWeight = 1;
+
+    @Parameter(value = "search_result_cache_ttl", converter = JavaDurationConverter.class)
+    private java.time.Duration searchResultCacheTtl = java.time.Duration.ZERO;
+
+    @Parameter(value = "search_result_cache_max_size")
+    private Size searchResultCacheMaxSize = Size.megabytes(64);
+
+    @Parameter(value = "search_result_cache_time_bucket", converter = JavaDurationConverter.class)
+    private java.time.Duration searchResultCacheTimeBucket = java.time.Duration.ofSeconds(10);
+
+    @Parameter(value = "search_incremental_pivots_enabled")
+    private boolean searchIncrementalPivotsEnabled = false;
+
+    @Parameter(value = "search_incremental_pivots_grace_period", converter = JavaDurationConverter.class)
+    private java.time.Duration searchIncrementalPivotsGracePeriod = java.time.Duration.ofMinutes(1);
+
+    @Parameter(value = "search_incremental_pivots_max_states", validators = PositiveIntegerValidator.class)
+    private int searchIncrementalPivotsMaxStates = 1000;
+
+    @Parameter(value = "search_merge_pivots")
+    private boolean searchMergePivots = false;
+
+    @Parameter(value = "export_slices", validators = PositiveIntegerValidator.class)
+    private int exportSlices = 1;
+
+    @Parameter(value = "export_slice_keep_alive", validators = PositiveDurationValidator.class)
+    private Duration exportSliceKeepAlive = Duration.minutes(5);
+
+    @Parameter(value = "export_stream_responses")
+    private boolean exportStreamResponses = false;
+
+    @Parameter(value = "event_aggregation_search_coalescing_window", converter = JavaDurationConverter.class)
+    private java.time.Duration eventAggregationSearchCoalescingWindow = java.time.Duration.ZERO;
+
+    @Parameter(value = "event_aggregation_search_coalescing_max_batch_size", validators = PositiveIntegerValidator.class)
+    private int eventAggregationSearchCoalescingMaxBatchSize = 100;
+
+    @Parameter(value = "event_streaming_filter_evaluation_enabled")
+    private boolean eventStreamingFilterEvaluationEnabled = false;
+
+    @Parameter(value = "event_streaming_filter_evaluation_activation_delay", converter = JavaDurationConverter.class)
+    private java.time.Duration eventStreamingFilterEvaluationActivationDelay = java.time.Duration.ofSeconds(30);
+
     @Documentation("""
             Enabling this parameter will activate automatic security configuration. Graylog server will
             set a default 30-day automatic certificate renewal policy and create a self-signed CA. This CA
@@ -428,6 +517,34 @@ public class Configuration extends CaConfiguration implements CommonNodeConfigur
         return streamProcessingMaxFaults;
     }
 
+    public boolean isGrokLiteralPrefilter() {
+        return grokLiteralPrefilter;
+    }
+
+    public int getMetricsTimerSampleRate() {
+        return Math.max(1, metricsTimerSampleRate);
+    }
+
+    public int getExtractorsTimerSampleRate() {
+        return timerSampleRate(extractorsTimerSampleRate);
+    }
+
+    public int getStreamRulesTimerSampleRate() {
+        return timerSampleRate(streamRulesTimerSampleRate);
+    }
+
+    public int getPipelineRulesTimerSampleRate() {
+        return timerSampleRate(pipelineRulesTimerSampleRate);
+    }
+
+    public int getProcessingLatencySampleRate() {
+        return processingLatencySampleRate;
+    }
+
+    private int timerSampleRate(Integer subsystemSampleRate) {
+        return subsystemSampleRate != null ? Math.max(1, subsystemSampleRate) : getMetricsTimerSampleRate();
+    }
+
     public long getOutputModuleTimeout() {
         return outputModuleTimeout;
     }
@@ -498,6 +615,18 @@ public class Configuration extends CaConfiguration implements CommonNodeConfigur
         return indexRangesCleanupInterval;
     }
 
+    public int getIndexRangesRebuildConcurrency() {
+        return indexRangesRebuildConcurrency;
+    }
+
+    public int getIndexRangesRebuildBatchSize() {
+        return indexRangesRebuildBatchSize;
+    }
+
+    public boolean isIndexRangesRebuildSkipUnchanged() {
+        return indexRangesRebuildSkipUnchanged;
+    }
+
     public Set<IpSubnet> getTrustedProxies() {
         return trustedProxies;
     }
@@ -611,6 +740,82 @@ public class Configuration extends CaConfiguration implements CommonNodeConfigur
         return searchQueryEngineDataLakeJobsQueueSize;
     }
 
+    public int searchQueryEngineMaxConcurrentQueriesPerUser() {
+        return searchQueryEngineMaxConcurrentQueriesPerUser;
+    }
+
+    public int searchQueryEngineMaxConcurrentQueriesPerSearch() {
+        return searchQueryEngineMaxConcurrentQueriesPerSearch;
+    }
+
+    public int searchQueryEngineInteractiveWeight() {
+        return searchQueryEngineInteractiveWeight;
+    }
+
+    public int searchQueryEngineEventProcessingWeight() {
+        return searchQueryEngineEventProcessingWeight;
+    }
+
+    public int searchQueryEngineExportWeight() {
+        return searchQueryEngineExportWeight;
+    }
+
+    public java.time.Duration getSearchResultCacheTtl() {
+        return searchResultCacheTtl;
+    }
+
+    public Size getSearchResultCacheMaxSize() {
+        return searchResultCacheMaxSize;
+    }
+
+    public java.time.Duration getSearchResultCacheTimeBucket() {
+        return searchResultCacheTimeBucket;
+    }
+
+    public boolean isSearchIncrementalPivotsEnabled() {
+        return searchIncrementalPivotsEnabled;
+    }
+
+    public java.time.Duration getSearchIncrementalPivotsGracePeriod() {
+        return searchIncrementalPivotsGracePeriod;
+    }
+
+    public int getSearchIncrementalPivotsMaxStates() {
+        return searchIncrementalPivotsMaxStates;
+    }
+
+    public boolean isSearchMergePivots() {
+        return searchMergePivots;
+    }
+
+    public int getExportSlices() {
+        return exportSlices;
+    }
+
+    public Duration getExportSliceKeepAlive() {
+        return exportSliceKeepAlive;
+    }
+
+    public boolean isExportStreamResponses() {
+        return exportStreamResponses;
+    }
+
+    public java.time.Duration getEventAggregationSearchCoalescingWindow() {
+        return eventAggregationSearchCoalescingWindow;
+    }
+
+    public int getEventAggregationSearchCoalescingMaxBatchSize() {
+        return eventAggregationSearchCoalescingMaxBatchSize;
+    }
+
+    public boolean isEventStreamingFilterEvaluationEnabled() {
+        return eventStreamingFilterEvaluationEnabled;
+    }
+
+    public java.time.Duration getEventStreamingFilterEvaluationActivationDelay() {
+        return eventStreamingFilterEvaluationActivationDelay;
+    }
+
     public static class NodeIdFileValidator implements Validator<String> {
         @Override
         public void validate(String name, String path) throws ValidationException {
@@ -36,6 +36,7 @@ import org.graylog2.plugin.Message;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.buffers.MessageEvent;
 import org.graylog2.plugin.outputs.MessageOutput;
+import org.graylog2.shared.buffers.ProcessingStageMetrics;
 import org.graylog2.shared.buffers.WorkHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +71,7 @@ public class OutputBufferProcessor implements WorkHandler<MessageEvent> {
 
     private final OutputRouter outputRouter;
     private final MessageOutput defaultMessageOutput;
+    private final ProcessingStageMetrics processingStageMetrics;
     private final int processorOrdinal;
 
     @Inject
@@ -78,11 +80,13 @@ public class OutputBufferProcessor implements WorkHandler<MessageEvent> {
                                  ServerStatus serverStatus,
                                  OutputRouter outputRouter,
                                  @DefaultMessageOutput MessageOutput defaultMessageOutput,
+                                 ProcessingStageMetrics processingStageMetrics,
                                  @Assisted int processorOrdinal) {
         this.configuration = configuration;
         this.serverStatus = serverStatus;
         this.outputRouter = outputRouter;
         this.defaultMessageOutput = defaultMessageOutput;
+        this.processingStageMetrics = processingStageMetrics;
         this.processorOrdinal = processorOrdinal;
 
         final int corePoolSize = configuration.getOutputBufferProcessorThreadsCorePoolSize();
@@ -157,6 +161,7 @@ public class OutputBufferProcessor implements WorkHandler<MessageEvent> {
             return;
         }
         LOG.trace("Processing message <{}> from OutputBuffer.", msg.getId());
+        processingStageMetrics.finishStage(msg, ProcessingStageMetrics.Stage.OUTPUT_BUFFER);
 
         final Set<MessageOutput> messageOutputs = outputRouter.getStreamOutputsForMessage(msg);
         msg.recordCounter(serverStatus, "matched-outputs", messageOutputs.size());
@@ -16,7 +16,6 @@
  */
 package org.graylog2.filters;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import org.graylog.failure.ProcessingFailureCause;
@@ -40,7 +39,6 @@ import org.slf4j.LoggerFactory;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -52,7 +50,7 @@ public class ExtractorFilter implements MessageFilter {
     private static final Logger LOG = LoggerFactory.getLogger(ExtractorFilter.class);
     private static final String NAME = "Extractor";
 
-    private final ConcurrentMap<String, List<Extractor>> extractors = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ExtractorPlan> extractors = new ConcurrentHashMap<>();
 
     private final InputService inputService;
     private final ScheduledExecutorService scheduler;
@@ -74,8 +72,20 @@ public class ExtractorFilter implements MessageFilter {
             return false;
         }
 
-        for (final Extractor extractor : extractors.getOrDefault(msg.getSourceInputId(), Collections.emptyList())) {
+        final ExtractorPlan plan = extractors.get(msg.getSourceInputId());
+        if (plan == null) {
+            return false;
+        }
+
+        final List<Extractor> inputExtractors = plan.extractors();
+        final ExtractorPlan.Evaluation evaluation = plan.evaluate(msg);
+        for (int i = 0; i < inputExtractors.size(); i++) {
+            final Extractor extractor = inputExtractors.get(i);
             try {
+                if (!evaluation.mayMatch(i)) {
+                    extractor.recordConditionMiss();
+                    continue;
+                }
                 extractor.runExtractor(msg);
             } catch (Exception e) {
                 extractor.incrementExceptions();
@@ -160,7 +170,10 @@ public class ExtractorFilter implements MessageFilter {
                     .sorted(Comparator.comparingLong(Extractor::getOrder))
                     .collect(Collectors.toList());
 
-            extractors.put(inputId, ImmutableList.copyOf(sortedExtractors));
+            final ExtractorPlan plan = ExtractorPlan.of(sortedExtractors);
+            LOG.debug("Loaded {} extractors for input <{}>, {} of their conditions are prefiltered",
+                    sortedExtractors.size(), inputId, plan.prefilteredConditions());
+            extractors.put(inputId, plan);
         } catch (NotFoundException e) {
             LOG.warn("Unable to load input <{}>: {}", inputId, e.getMessage());
         }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.filters;
+
+import com.google.common.collect.ImmutableList;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.inputs.Extractor;
+import org.graylog2.utilities.MultiSubstringMatcher;
+import org.graylog2.utilities.RegexLiterals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The extractors of an input in execution order, together with a prefilter for their conditions.
+ * <p>
+ * All literals the conditions on the same source field require (the value of STRING conditions and the longest
+ * literal of REGEX conditions) are searched with a single {@link MultiSubstringMatcher} pass over the field. An
+ * extractor whose literal doesn't occur in the field can't match and is skipped without evaluating its condition.
+ * The prefilter is evaluated again whenever an extractor changes the source field.
+ */
+class ExtractorPlan {
+    // The prefilter pass only pays off if it replaces several condition checks
+    private static final int MIN_PREFILTERED_CONDITIONS = 2;
+
+    private final List<Extractor> extractors;
+    private final FieldPrefilter[] prefilters;
+    // The prefilter and the index of the literal in it for every extractor, -1 if the extractor isn't prefiltered
+    private final int[] prefilterIndices;
+    private final int[] literalIndices;
+
+    private ExtractorPlan(List<Extractor> extractors, FieldPrefilter[] prefilters, int[] prefilterIndices, int[] literalIndices) {
+        this.extractors = extractors;
+        this.prefilters = prefilters;
+        this.prefilterIndices = prefilterIndices;
+        this.literalIndices = literalIndices;
+    }
+
+    /**
+     * @param extractors the extractors in execution order
+     */
+    static ExtractorPlan of(List<Extractor> extractors) {
+        final Map<String, List<Integer>> extractorsByField = new LinkedHashMap<>();
+        final String[] literals = new String[extractors.size()];
+        for (int i = 0; i < extractors.size(); i++) {
+            final Extractor extractor = extractors.get(i);
+            final Optional<String> literal = conditionLiteral(extractor);
+            if (literal.isPresent() && extractor.getSourceField() != null) {
+                literals[i] = literal.get();
+                extractorsByField.computeIfAbsent(extractor.getSourceField(), field -> new ArrayList<>()).add(i);
+            }
+        }
+
+        final List<FieldPrefilter> prefilters = new ArrayList<>();
+        final int[] prefilterIndices = new int[extractors.size()];
+        final int[] literalIndices = new int[extractors.size()];
+        Arrays.fill(prefilterIndices, -1);
+        extractorsByField.forEach((field, indices) -> {
+            if (indices.size() < MIN_PREFILTERED_CONDITIONS) {
+                return;
+            }
+            final List<String> fieldLiterals = new ArrayList<>(indices.size());
+            for (int index : indices) {
+                prefilterIndices[index] = prefilters.size();
+                literalIndices[index] = fieldLiterals.size();
+                fieldLiterals.add(literals[index]);
+            }
+            prefilters.add(new FieldPrefilter(field, MultiSubstringMatcher.of(fieldLiterals)));
+        });
+
+        return new ExtractorPlan(ImmutableList.copyOf(extractors), prefilters.toArray(new FieldPrefilter[0]),
+                prefilterIndices, literalIndices);
+    }
+
+    private static Optional<String> conditionLiteral(Extractor extractor) {
+        if (extractor.getConditionType() == null || extractor.getConditionValue() == null
+                || extractor.getConditionValue().isEmpty()) {
+            return Optional.empty();
+        }
+        return switch (extractor.getConditionType()) {
+            case STRING -> Optional.of(extractor.getConditionValue());
+            case REGEX -> RegexLiterals.requiredLiteral(extractor.getConditionValue());
+            default -> Optional.empty();
+        };
+    }
+
+    List<Extractor> extractors() {
+        return extractors;
+    }
+
+    int prefilteredConditions() {
+        return (int) Arrays.stream(prefilterIndices).filter(index -> index >= 0).count();
+    }
+
+    /**
+     * Starts the evaluation of the prefilter for a message. The evaluation must only be used by a single thread.
+     */
+    Evaluation evaluate(Message message) {
+        return new Evaluation(message);
+    }
+
+    private record FieldPrefilter(String field, MultiSubstringMatcher matcher) {
+    }
+
+    class Evaluation {
+        private final Message message;
+        // The field values the literals have been searched in, and the literals which have been found
+        private final Object[] values;
+        private final BitSet[] matches;
+
+        private Evaluation(Message message) {
+            this.message = message;
+            this.values = new Object[prefilters.length];
+            this.matches = new BitSet[prefilters.length];
+        }
+
+        /**
+         * Returns false if the condition of the extractor with the given index can't match the message.
+         */
+        boolean mayMatch(int index) {
+            final int prefilterIndex = prefilterIndices[index];
+            if (prefilterIndex < 0) {
+                return true;
+            }
+            final FieldPrefilter prefilter = prefilters[prefilterIndex];
+            final Object value = message.getField(prefilter.field());
+            if (!(value instanceof String text)) {
+                // The extractor handles fields it can't work on
+                return true;
+            }
+            // Strings are immutable, so the result can be reused as long as the field hasn't been replaced
+            if (matches[prefilterIndex] == null || values[prefilterIndex] != value) {
+                values[prefilterIndex] = value;
+                matches[prefilterIndex] = prefilter.matcher().matches(text);
+            }
+            return matches[prefilterIndex].get(literalIndices[index]);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.grok;
+
+import io.krakens.grok.api.Grok;
+import io.krakens.grok.api.Match;
+import org.graylog2.utilities.RegexLiterals;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A compiled Grok pattern with a prefilter for texts it can't match.
+ * <p>
+ * Grok patterns expand to large regular expressions, and the regular expression engine often needs a lot of
+ * backtracking to find out that a text doesn't match. Most patterns contain literal delimiters on their top level
+ * though, like the brackets and quotes of {@code %{COMBINEDAPACHELOG}}. A text which doesn't contain all of them
+ * can't match, which is checked with a few {@link String#indexOf(String)} calls before running the regular expression.
+ */
+public class GrokMatcher {
+    private final Grok grok;
+    private final List<String> requiredLiterals;
+
+    private GrokMatcher(Grok grok, List<String> requiredLiterals) {
+        this.grok = grok;
+        this.requiredLiterals = requiredLiterals;
+    }
+
+    /**
+     * @param grok      the compiled Grok pattern
+     * @param prefilter whether to check the literals of the pattern before matching
+     */
+    public static GrokMatcher of(Grok grok, boolean prefilter) {
+        if (!prefilter || grok.getNamedRegex() == null) {
+            return new GrokMatcher(grok, List.of());
+        }
+        final Set<String> literals = new LinkedHashSet<>(RegexLiterals.requiredLiterals(grok.getNamedRegex()));
+        // Literals which are part of longer ones don't have to be checked separately
+        final List<String> distinctLiterals = literals.stream()
+                .filter(literal -> literals.stream().noneMatch(other -> other.length() > literal.length() && other.contains(literal)))
+                .toList();
+        return new GrokMatcher(grok, distinctLiterals);
+    }
+
+    public Grok grok() {
+        return grok;
+    }
+
+    public List<String> requiredLiterals() {
+        return requiredLiterals;
+    }
+
+    /**
+     * Returns false if the pattern can't match the given text.
+     */
+    public boolean mayMatch(String text) {
+        for (String literal : requiredLiterals) {
+            if (!text.contains(literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Matches the pattern against the given text.
+     *
+     * @return the match or {@link Match#EMPTY} if the pattern doesn't match
+     */
+    public Match match(String text) {
+        if (!mayMatch(text)) {
+            return Match.EMPTY;
+        }
+        return grok.match(text);
+    }
+}
@@ -16,54 +16,74 @@
  */
 package org.graylog2.grok;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.base.Throwables;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
-import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.hash.Hashing;
 import io.krakens.grok.api.Grok;
 import io.krakens.grok.api.GrokCompiler;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
+import org.graylog2.shared.metrics.MetricUtils;
+import org.graylog2.utilities.PatternCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
-import static com.google.common.cache.CacheLoader.asyncReloading;
+import static com.codahale.metrics.MetricRegistry.name;
 
 @Singleton
 public class GrokPatternRegistry {
     private static final Logger log = LoggerFactory.getLogger(GrokPatternRegistry.class);
+    private static final String GROK = "grok";
+    private static final String GROK_NAMED_ONLY = "grok-named-only";
 
     private final GrokPatternService grokPatternService;
-
     private final AtomicReference<Set<GrokPattern>> patterns = new AtomicReference<>(Collections.emptySet());
-    private final LoadingCache<String, Grok> grokCache;
-    private final LoadingCache<String, Grok> grokCacheNamedOnly;
+    private final PatternCache patternCache;
+    private final boolean literalPrefilter;
+    private final MetricRegistry metricRegistry;
+    // Kept separately from the pattern cache because building a multi matcher looks up the single patterns there
+    private final Cache<MultiMatcherKey, MultiGrokMatcher> multiMatchers;
+
+    public GrokPatternRegistry(EventBus serverEventBus,
+                               GrokPatternService grokPatternService,
+                               PatternCache patternCache) {
+        this(serverEventBus, grokPatternService, patternCache, true, new MetricRegistry());
+    }
 
     @Inject
     public GrokPatternRegistry(EventBus serverEventBus,
                                GrokPatternService grokPatternService,
-                               @Named("daemonScheduler") ScheduledExecutorService daemonExecutor) {
+                               PatternCache patternCache,
+                               @Named("grok_literal_prefilter") boolean literalPrefilter,
+                               MetricRegistry metricRegistry) {
         this.grokPatternService = grokPatternService;
-
-        grokCache = CacheBuilder.newBuilder()
-                .expireAfterAccess(1, TimeUnit.MINUTES) // prevent from hanging on to memory forever
-                .build(asyncReloading(new GrokReloader(false), daemonExecutor));
-
-        grokCacheNamedOnly = CacheBuilder.newBuilder()
-                .expireAfterAccess(1, TimeUnit.MINUTES) // prevent from hanging on to memory forever
-                .build(asyncReloading(new GrokReloader(true), daemonExecutor));
+        this.patternCache = patternCache;
+        this.literalPrefilter = literalPrefilter;
+        this.metricRegistry = metricRegistry;
+        this.multiMatchers = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                // Removing the gauges is cheap, so it doesn't need to be deferred to another thread
+                .executor(Runnable::run)
+                .<MultiMatcherKey, MultiGrokMatcher>removalListener((key, matcher, cause) -> {
+                    if (key != null && matcher != null) {
+                        removeHitsGauges(key, matcher);
+                    }
+                })
+                .build();
 
         // trigger initial loading
         reload();
@@ -92,44 +112,92 @@ public class GrokPatternRegistry {
     }
 
     public Grok cachedGrokForPattern(String pattern, boolean namedCapturesOnly) {
+        return cachedMatcherForPattern(pattern, namedCapturesOnly).grok();
+    }
+
+    /**
+     * Returns the compiled Grok pattern together with a prefilter which rules out texts the pattern can't match.
+     * Use {@link GrokMatcher#match(String)} instead of matching the {@link Grok} object directly to benefit from it.
+     */
+    public GrokMatcher cachedMatcherForPattern(String pattern, boolean namedCapturesOnly) {
         try {
             if (namedCapturesOnly) {
-                return grokCacheNamedOnly.get(pattern);
+                return patternCache.get(GROK_NAMED_ONLY, pattern, p -> compile(p, true));
             } else {
-                return grokCache.get(pattern);
+                return patternCache.get(GROK, pattern, p -> compile(p, false));
             }
-        } catch (UncheckedExecutionException | ExecutionException e) {
+        } catch (RuntimeException e) {
             final Throwable rootCause = Throwables.getRootCause(e);
             log.error("Unable to load grok pattern {} into cache", pattern, rootCause);
             throw new RuntimeException(rootCause);
         }
     }
 
+    /**
+     * Returns a matcher for a list of Grok patterns. The matcher learns which patterns match most often, so the same
+     * instance is returned for the same list of patterns until the patterns are reloaded.
+     * <p>
+     * The hits of every pattern are exposed as gauges named
+     * {@code org.graylog2.grok.MultiGrokMatcher.<list id>.pattern.<index>.hits} while the matcher is cached. The list id
+     * is a hash of the pattern list, the index is the position of the pattern in the list.
+     */
+    public MultiGrokMatcher cachedMultiMatcherForPatterns(List<String> patterns, boolean namedCapturesOnly) {
+        return multiMatchers.get(new MultiMatcherKey(List.copyOf(patterns), namedCapturesOnly), key -> {
+            final MultiGrokMatcher matcher = MultiGrokMatcher.compile(key.patterns(),
+                    pattern -> cachedMatcherForPattern(pattern, key.namedCapturesOnly()));
+            for (int i = 0; i < matcher.size(); i++) {
+                // Replaces the gauge of a previous matcher for the same list, which might not have been removed yet
+                MetricUtils.reRegister(metricRegistry, hitsGaugeName(key, i), new HitsGauge(matcher, i));
+            }
+            return matcher;
+        });
+    }
+
+    private void removeHitsGauges(MultiMatcherKey key, MultiGrokMatcher matcher) {
+        for (int i = 0; i < matcher.size(); i++) {
+            final String name = hitsGaugeName(key, i);
+            // A new matcher for the same list might have been registered already
+            if (metricRegistry.getMetrics().get(name) instanceof HitsGauge gauge && gauge.matcher() == matcher) {
+                metricRegistry.remove(name);
+            }
+        }
+    }
+
+    private static String hitsGaugeName(MultiMatcherKey key, int index) {
+        final String listId = Hashing.murmur3_128()
+                .hashString(key.namedCapturesOnly() + "\n" + String.join("\n", key.patterns()), StandardCharsets.UTF_8)
+                .toString()
+                .substring(0, 16);
+        return name(MultiGrokMatcher.class, listId, "pattern", String.valueOf(index), "hits");
+    }
+
     private void reload() {
         final Set<GrokPattern> grokPatterns = grokPatternService.loadAll();
         patterns.set(grokPatterns);
-        grokCache.invalidateAll();
-        grokCacheNamedOnly.invalidateAll();
+        patternCache.invalidate(GROK);
+        patternCache.invalidate(GROK_NAMED_ONLY);
+        multiMatchers.invalidateAll();
     }
 
     public Set<GrokPattern> patterns() {
         return patterns.get();
     }
 
-    private class GrokReloader extends CacheLoader<String, Grok> {
-        private final boolean namedCapturesOnly;
-
-        GrokReloader(boolean namedCapturesOnly) {
-            this.namedCapturesOnly = namedCapturesOnly;
+    private GrokMatcher compile(String pattern, boolean namedCapturesOnly) {
+        final GrokCompiler grokCompiler = GrokCompiler.newInstance();
+        for (GrokPattern grokPattern : patterns()) {
+            grokCompiler.register(grokPattern.name(), grokPattern.pattern());
         }
+        return GrokMatcher.of(grokCompiler.compile(pattern, namedCapturesOnly), literalPrefilter);
+    }
 
+    private record MultiMatcherKey(List<String> patterns, boolean namedCapturesOnly) {
+    }
+
+    private record HitsGauge(MultiGrokMatcher matcher, int index) implements Gauge<Long> {
         @Override
-        public Grok load(@Nonnull String pattern) throws Exception {
-            final GrokCompiler grokCompiler = GrokCompiler.newInstance();
-            for (GrokPattern grokPattern : patterns()) {
-                grokCompiler.register(grokPattern.name(), grokPattern.pattern());
-            }
-            return grokCompiler.compile(pattern, namedCapturesOnly);
+        public Long getValue() {
+            return matcher.hits(index);
         }
     }
 }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.grok;
+
+import io.krakens.grok.api.Match;
+import org.graylog2.utilities.MultiSubstringMatcher;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Matches a list of Grok patterns against a text and returns the match of the first pattern in the list which
+ * matches, like trying them one after the other, but with far fewer attempts.
+ * <p>
+ * The literals of all patterns are searched in a single pass over the text first, which rules out every pattern
+ * with a missing literal. The remaining patterns are tried in the order of how often they matched before, so the
+ * common case needs a single attempt. If a pattern matches, the remaining patterns declared before it are tried in
+ * their declared order to keep the result of overlapping patterns the same. For the same reason, a pattern which can't
+ * be compiled only fails a match if none of the patterns declared before it matches.
+ */
+public class MultiGrokMatcher {
+    // The learned order is updated after this many matches
+    private static final int REORDER_INTERVAL = 1000;
+
+    private final GrokMatcher[] matchers;
+    // Why the pattern with the same index couldn't be compiled, null for valid patterns
+    private final RuntimeException[] compileFailures;
+    private final MultiSubstringMatcher literalMatcher;
+    // The indices of the literals of every pattern in the literal matcher
+    private final int[][] patternLiterals;
+    private final LongAdder[] hits;
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+    private volatile int[] order;
+    private volatile long nextReorder = REORDER_INTERVAL;
+
+    public MultiGrokMatcher(List<GrokMatcher> matchers) {
+        this(matchers.toArray(new GrokMatcher[0]), new RuntimeException[matchers.size()]);
+    }
+
+    private MultiGrokMatcher(GrokMatcher[] matchers, RuntimeException[] compileFailures) {
+        this.matchers = matchers;
+        this.compileFailures = compileFailures;
+
+        final Map<String, Integer> literalIndices = new LinkedHashMap<>();
+        this.patternLiterals = new int[matchers.length][];
+        for (int i = 0; i < matchers.length; i++) {
+            // Patterns which couldn't be compiled are never ruled out
+            patternLiterals[i] = matchers[i] == null ? new int[0] : matchers[i].requiredLiterals().stream()
+                    .mapToInt(literal -> literalIndices.computeIfAbsent(literal, l -> literalIndices.size()))
+                    .toArray();
+        }
+        this.literalMatcher = literalIndices.isEmpty() ? null : MultiSubstringMatcher.of(new ArrayList<>(literalIndices.keySet()));
+
+        this.hits = new LongAdder[matchers.length];
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] = new LongAdder();
+        }
+        this.order = IntStream.range(0, matchers.length).toArray();
+    }
+
+    /**
+     * Compiles the given patterns. Patterns which can't be compiled make {@link #match(String)} fail only if none of
+     * the patterns declared before them matches, like when trying the patterns one after the other.
+     *
+     * @param compiler compiles a single pattern, throws if the pattern is invalid
+     */
+    public static MultiGrokMatcher compile(List<String> patterns, Function<String, GrokMatcher> compiler) {
+        final GrokMatcher[] matchers = new GrokMatcher[patterns.size()];
+        final RuntimeException[] compileFailures = new RuntimeException[patterns.size()];
+        for (int i = 0; i < patterns.size(); i++) {
+            try {
+                matchers[i] = compiler.apply(patterns.get(i));
+            } catch (RuntimeException e) {
+                compileFailures[i] = e;
+            }
+        }
+        return new MultiGrokMatcher(matchers, compileFailures);
+    }
+
+    /**
+     * Matches the patterns against the given text.
+     *
+     * @return the match of the first pattern in the list which matches or {@link Match#EMPTY} if none matches
+     * @throws RuntimeException the compilation failure of the first pattern which couldn't be compiled, if none of
+     *                          the patterns declared before it matches
+     */
+    public IndexedMatch match(String text) {
+        final BitSet candidates = candidates(text);
+
+        for (int index : order) {
+            if (!candidates.get(index)) {
+                continue;
+            }
+            candidates.clear(index);
+            final Match match = compileFailures[index] == null ? attempt(index, text) : null;
+            if (match != null && match.isNull()) {
+                continue;
+            }
+
+            // Patterns declared before the one that matched win if they match as well
+            for (int earlier = candidates.nextSetBit(0); earlier >= 0 && earlier < index; earlier = candidates.nextSetBit(earlier + 1)) {
+                final Match earlierMatch = attempt(earlier, text);
+                if (!earlierMatch.isNull()) {
+                    return matched(earlier, earlierMatch);
+                }
+            }
+            if (match == null) {
+                throw compileFailures[index];
+            }
+            return matched(index, match);
+        }
+        return new IndexedMatch(-1, Match.EMPTY);
+    }
+
+    private BitSet candidates(String text) {
+        final BitSet candidates = new BitSet(matchers.length);
+        final BitSet literals = literalMatcher == null ? new BitSet() : literalMatcher.matches(text);
+        for (int i = 0; i < patternLiterals.length; i++) {
+            if (containsAll(literals, patternLiterals[i])) {
+                candidates.set(i);
+            }
+        }
+        return candidates;
+    }
+
+    private static boolean containsAll(BitSet literals, int[] required) {
+        for (int literal : required) {
+            if (!literals.get(literal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Match attempt(int index, String text) {
+        if (compileFailures[index] != null) {
+            throw compileFailures[index];
+        }
+        attempts.increment();
+        // The literals have been checked already
+        return matchers[index].grok().match(text);
+    }
+
+    private IndexedMatch matched(int index, Match match) {
+        hits[index].increment();
+        matches.increment();
+        final long matchCount = matches.sum();
+        if (matchCount >= nextReorder) {
+            // Concurrent reorders are harmless, they compute the same order
+            nextReorder = matchCount + REORDER_INTERVAL;
+            reorder();
+        }
+        return new IndexedMatch(index, match);
+    }
+
+    private void reorder() {
+        this.order = IntStream.range(0, hits.length)
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer index) -> hits[index].sum()).reversed())
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    public int size() {
+        return matchers.length;
+    }
+
+    /**
+     * Returns how often the pattern with the given index has been the first matching pattern.
+     */
+    public long hits(int index) {
+        return hits[index].sum();
+    }
+
+    /**
+     * Returns the number of patterns which have been run against a text, over all calls of {@link #match(String)}.
+     */
+    public long attempts() {
+        return attempts.sum();
+    }
+
+    /**
+     * The match of the pattern with the given index in the list, -1 if no pattern matched.
+     */
+    public record IndexedMatch(int index, Match match) {
+    }
+}
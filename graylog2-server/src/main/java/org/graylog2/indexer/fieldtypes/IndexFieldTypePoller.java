@@ -24,6 +24,7 @@ import org.graylog2.indexer.indices.Indices;
 import jakarta.inject.Inject;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -61,19 +62,33 @@ public class IndexFieldTypePoller {
      * @return the polled index field type data for the given index set
      */
     public Set<IndexFieldTypesDTO> poll(final IndexSet indexSet, final Set<IndexFieldTypesDTO> existingIndexTypes) {
+        return indicesToPoll(indexSet, indices.getIndices(indexSet, "open"), existingIndexTypes).stream()
+                .map(indexName -> pollIndex(indexName, indexSet.getConfig().id()))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns the names of the indices in the given index set which need to be polled.
+     *
+     * @param indexSet           index set to check
+     * @param openIndices        names of the open indices of the index set
+     * @param existingIndexTypes existing index field type data
+     * @return the names of the indices to poll
+     * @see #poll(IndexSet, Set)
+     */
+    public Set<String> indicesToPoll(final IndexSet indexSet, final Set<String> openIndices, final Set<IndexFieldTypesDTO> existingIndexTypes) {
         final String activeWriteIndex = indexSet.getActiveWriteIndex();
         final Set<String> existingIndexNames = existingIndexTypes.stream()
                 .map(IndexFieldTypesDTO::indexName)
                 .collect(Collectors.toSet());
 
-        return indices.getIndices(indexSet, "open").stream()
+        return openIndices.stream()
                 // We always poll the active write index because the mapping can change for every ingested message.
                 // Other indices will only be polled if we don't have the mapping data already.
                 .filter(indexName -> indexName.equals(activeWriteIndex) || !existingIndexNames.contains(indexName)
                         || (maintainsStreamBasedFieldLists && missesStreamData(existingIndexTypes, indexName)))
-                .map(indexName -> pollIndex(indexName, indexSet.getConfig().id()))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
                 .collect(Collectors.toSet());
     }
 
@@ -100,4 +115,21 @@ public class IndexFieldTypePoller {
                 .hasStreamData(maintainsStreamBasedFieldLists)
                 .build());
     }
+
+    /**
+     * Returns the index field types for the given indices. The mappings of the indices are fetched in batches.
+     *
+     * @param indexSetIds index set IDs by the name of the indices to poll
+     * @return the polled index field type data, indices which couldn't be polled are skipped
+     */
+    public Set<IndexFieldTypesDTO> pollIndices(final Map<String, String> indexSetIds) {
+        return indexFieldTypePollerAdapter.pollIndices(indexSetIds.keySet(), pollTimer).entrySet().stream()
+                .map(entry -> IndexFieldTypesDTO.builder()
+                        .indexSetId(indexSetIds.get(entry.getKey()))
+                        .indexName(entry.getKey())
+                        .fields(entry.getValue())
+                        .hasStreamData(maintainsStreamBasedFieldLists)
+                        .build())
+                .collect(Collectors.toSet());
+    }
 }
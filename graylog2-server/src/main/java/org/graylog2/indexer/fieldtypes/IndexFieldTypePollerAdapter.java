@@ -18,6 +18,9 @@ package org.graylog2.indexer.fieldtypes;
 
 import com.codahale.metrics.Timer;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -25,7 +28,21 @@ public interface IndexFieldTypePollerAdapter {
 
     int MAX_SEARCHES_PER_MULTI_SEARCH = 50;
 
+    int MAX_INDICES_PER_MAPPING_REQUEST = 50;
+
     Optional<Set<FieldTypeDTO>> pollIndex(String indexName, Timer pollTimer);
 
+    /**
+     * Returns the field types of the given indices. Indices which couldn't be polled are missing in the result.
+     * <p>
+     * The default implementation polls every index on its own, implementations should fetch the mappings of
+     * several indices with one request.
+     */
+    default Map<String, Set<FieldTypeDTO>> pollIndices(Collection<String> indexNames, Timer pollTimer) {
+        final Map<String, Set<FieldTypeDTO>> result = new HashMap<>();
+        indexNames.forEach(indexName -> pollIndex(indexName, pollTimer).ifPresent(fields -> result.put(indexName, fields)));
+        return result;
+    }
+
     boolean maintainsStreamBasedFieldLists();
 }
@@ -22,9 +22,11 @@ import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
+import org.graylog2.cluster.leader.LeaderElectionService;
 import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.MongoIndexSet;
 import org.graylog2.indexer.cluster.Cluster;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesPollRequestedEvent;
 import org.graylog2.indexer.indexset.IndexSetConfig;
 import org.graylog2.indexer.indexset.IndexSetService;
 import org.graylog2.indexer.indexset.events.IndexSetCreatedEvent;
@@ -39,9 +41,14 @@ import org.joda.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
@@ -51,6 +58,10 @@ import java.util.stream.Collectors;
 
 /**
  * {@link Periodical} that creates and maintains index field type information in the database.
+ * <p>
+ * In incremental mode the mappings of all indices which need to be polled are fetched in batches and only field types
+ * which differ from the stored ones are written. Index sets are additionally polled on request, e.g. when messages
+ * with new fields have been indexed (see {@link IndexFieldTypesPollRequestedEvent}).
  */
 public class IndexFieldTypePollerPeriodical extends Periodical {
     private static final Logger LOG = LoggerFactory.getLogger(IndexFieldTypePollerPeriodical.class);
@@ -62,7 +73,9 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
     private final MongoIndexSet.Factory mongoIndexSetFactory;
     private final Cluster cluster;
     private final ServerStatus serverStatus;
+    private final LeaderElectionService leaderElectionService;
     private final com.github.joschi.jadconfig.util.Duration fullRefreshInterval;
+    private final boolean incremental;
     private final ScheduledExecutorService scheduler;
 
     private volatile Set<IndexSetConfig> allIndexSetConfigs;
@@ -80,7 +93,9 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
                                           final Cluster cluster,
                                           final EventBus eventBus,
                                           final ServerStatus serverStatus,
+                                          final LeaderElectionService leaderElectionService,
                                           @Named("index_field_type_periodical_full_refresh_interval") final com.github.joschi.jadconfig.util.Duration fullRefreshInterval,
+                                          @Named("index_field_type_periodical_incremental") final boolean incremental,
                                           @Named("daemonScheduler") final ScheduledExecutorService scheduler) {
         this.poller = poller;
         this.dbService = dbService;
@@ -89,7 +104,9 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
         this.mongoIndexSetFactory = mongoIndexSetFactory;
         this.cluster = cluster;
         this.serverStatus = serverStatus;
+        this.leaderElectionService = leaderElectionService;
         this.fullRefreshInterval = fullRefreshInterval;
+        this.incremental = incremental;
         this.scheduler = scheduler;
 
         eventBus.register(this);
@@ -131,7 +148,11 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
 
         if (forceFullRefresh || needsFullRefresh()) {
             try {
-                refreshFieldTypes(allConfigs);
+                if (incremental) {
+                    refreshFieldTypesIncrementally(allConfigs);
+                } else {
+                    refreshFieldTypes(allConfigs);
+                }
             } finally {
                 lastFullRefresh = Instant.now();
             }
@@ -167,21 +188,126 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
         });
     }
 
+    private void refreshFieldTypesIncrementally(Collection<IndexSetConfig> indexSetConfigs) {
+        LOG.debug("Incrementally refreshing index field types for {} index sets.", indexSetConfigs.size());
+
+        final Map<String, String> indexSetIdsByIndexName = new HashMap<>();
+        final Map<String, Set<String>> orphanedIndicesByIndexSetId = new HashMap<>();
+        indexSetConfigs.forEach(indexSetConfig -> {
+            final IndexSet indexSet = mongoIndexSetFactory.create(indexSetConfig);
+            final Set<IndexFieldTypesDTO> existingIndexTypes = ImmutableSet.copyOf(dbService.findForIndexSet(indexSetConfig.id()));
+            final Set<String> openIndices = indices.getIndices(indexSet, "open");
+
+            poller.indicesToPoll(indexSet, openIndices, existingIndexTypes)
+                    .forEach(indexName -> indexSetIdsByIndexName.put(indexName, indexSetConfig.id()));
+            // Open indices obviously exist, only the others need to be checked
+            orphanedIndicesByIndexSetId.put(indexSetConfig.id(), existingIndexTypes.stream()
+                    .map(IndexFieldTypesDTO::indexName)
+                    .filter(indexName -> !openIndices.contains(indexName))
+                    .collect(Collectors.toSet()));
+        });
+
+        try {
+            storeChangedFieldTypes(poller.pollIndices(indexSetIdsByIndexName));
+
+            // Cleanup orphaned field type entries that haven't been removed by the event handler
+            orphanedIndicesByIndexSetId.values().stream()
+                    .flatMap(Set::stream)
+                    .filter(indexName -> !indices.exists(indexName))
+                    .forEach(dbService::delete);
+        } finally {
+            indexSetConfigs.forEach(indexSetConfig -> lastPoll.put(indexSetConfig.id(), Instant.now()));
+        }
+    }
+
     private void poll(Collection<IndexSetConfig> indexSetConfigs) {
-        indexSetConfigs.stream()
+        final List<IndexSetConfig> pendingConfigs = indexSetConfigs.stream()
                 .filter(config -> !config.fieldTypeRefreshInterval().equals(Duration.ZERO))
                 .filter(IndexSetConfig::isWritable)
-                .forEach(config -> {
+                .filter(config -> {
                     final Instant previousPoll = lastPoll.getOrDefault(config.id(), Instant.MIN);
                     final Instant nextPoll = previousPoll.plusSeconds(
                             config.fieldTypeRefreshInterval().getStandardSeconds());
-                    if (!Instant.now().isBefore(nextPoll)) {
-                        LOG.debug("Index set <{}> needs update, current polls in progress: {}", config.title(), this.pollInProgress);
-                        this.poll(config);
+                    return !Instant.now().isBefore(nextPoll);
+                })
+                .toList();
+
+        if (incremental) {
+            if (!pendingConfigs.isEmpty()) {
+                LOG.debug("{} index sets need update, current polls in progress: {}", pendingConfigs.size(), this.pollInProgress);
+                pollActiveWriteIndices(pendingConfigs);
+            }
+        } else {
+            pendingConfigs.forEach(config -> {
+                LOG.debug("Index set <{}> needs update, current polls in progress: {}", config.title(), this.pollInProgress);
+                this.poll(config);
+            });
+        }
+    }
+
+    private void pollActiveWriteIndices(Collection<IndexSetConfig> indexSetConfigs) {
+        scheduler.submit(() -> {
+            final List<IndexSetConfig> claimedConfigs = indexSetConfigs.stream()
+                    .filter(config -> this.pollInProgress.putIfAbsent(config.id(), Boolean.TRUE) == null)
+                    .toList();
+            if (claimedConfigs.isEmpty()) {
+                LOG.debug("Polls for {} index sets are already in progress", indexSetConfigs.size());
+                return;
+            }
+
+            final Stopwatch stopwatch = Stopwatch.createStarted();
+            try {
+                final Map<String, String> indexSetIdsByIndexName = new HashMap<>();
+                for (final IndexSetConfig indexSetConfig : claimedConfigs) {
+                    try {
+                        // Only check the active write index on a regular basis, the others don't change anymore
+                        final String activeWriteIndex = mongoIndexSetFactory.create(indexSetConfig).getActiveWriteIndex();
+                        if (activeWriteIndex != null) {
+                            indexSetIdsByIndexName.put(activeWriteIndex, indexSetConfig.id());
+                        } else {
+                            LOG.warn("Active write index for index set \"{}\" ({}) doesn't exist yet",
+                                    indexSetConfig.title(), indexSetConfig.id());
+                        }
+                    } catch (TooManyAliasesException e) {
+                        LOG.error("Couldn't get active write index", e);
                     }
+                }
+                LOG.debug("Updating index field types for active write indices {}", indexSetIdsByIndexName.keySet());
+                storeChangedFieldTypes(poller.pollIndices(indexSetIdsByIndexName));
+            } catch (Exception e) {
+                LOG.error("Couldn't update field types for {} index sets", claimedConfigs.size(), e);
+            } finally {
+                claimedConfigs.forEach(config -> {
+                    this.pollInProgress.remove(config.id());
+                    lastPoll.put(config.id(), Instant.now());
+                });
+                stopwatch.stop();
+                LOG.debug("Polling {} index sets took {}ms", claimedConfigs.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            }
+        });
+    }
+
+    /**
+     * Writes the polled field types which differ from the stored ones.
+     */
+    private void storeChangedFieldTypes(Collection<IndexFieldTypesDTO> polledIndexTypes) {
+        polledIndexTypes.stream()
+                .collect(Collectors.groupingBy(IndexFieldTypesDTO::indexSetId))
+                .forEach((indexSetId, indexTypes) -> {
+                    final Map<String, IndexFieldTypesDTO> storedIndexTypes = dbService.findForIndexSet(indexSetId).stream()
+                            .collect(Collectors.toMap(IndexFieldTypesDTO::indexName, types -> types, (a, b) -> b));
+                    indexTypes.stream()
+                            .filter(types -> hasChanged(storedIndexTypes.get(types.indexName()), types))
+                            .forEach(dbService::upsert);
                 });
     }
 
+    private static boolean hasChanged(@Nullable IndexFieldTypesDTO storedTypes, IndexFieldTypesDTO polledTypes) {
+        return storedTypes == null
+                || storedTypes.hasStreamData() != polledTypes.hasStreamData()
+                || !storedTypes.fields().equals(polledTypes.fields());
+    }
+
     private void poll(IndexSetConfig indexSetConfig) {
         final String indexSetTitle = indexSetConfig.title();
         final String indexSetId = indexSetConfig.id();
@@ -265,6 +391,29 @@ public class IndexFieldTypePollerPeriodical extends Periodical {
         allIndexSetConfigs = null;
     }
 
+    /**
+     * Polls the active write indices of the requested index sets.
+     *
+     * @param event poll request event
+     */
+    @SuppressWarnings("unused")
+    @Subscribe
+    public void handlePollRequest(final IndexFieldTypesPollRequestedEvent event) {
+        if (!incremental || !leaderElectionService.isLeader() || serverIsNotRunning()) {
+            return;
+        }
+        final List<IndexSetConfig> requestedConfigs = event.indexSetIds().stream()
+                .map(indexSetService::get)
+                .flatMap(Optional::stream)
+                .filter(IndexSetConfig::isWritable)
+                .toList();
+
+        LOG.debug("Polling index field types of {} index sets on request", requestedConfigs.size());
+        if (!requestedConfigs.isEmpty()) {
+            pollActiveWriteIndices(requestedConfigs);
+        }
+    }
+
     /**
      * Removes the index field type data for the deleted index.
      *
@@ -16,7 +16,14 @@
  */
 package org.graylog2.indexer.fieldtypes;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
 import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
@@ -25,19 +32,30 @@ import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.result.UpdateResult;
 import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
 import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.graylog2.database.MongoCollection;
 import org.graylog2.database.MongoCollections;
 import org.graylog2.database.utils.MongoUtils;
+import org.graylog2.events.ClusterEventBus;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
@@ -55,17 +73,49 @@ import static org.graylog2.indexer.indexset.CustomFieldMappings.REVERSE_TYPES;
 
 /**
  * Manages the "index_field_types" MongoDB collection.
+ * <p>
+ * The field types are kept in memory per index set. The cached index sets are updated with every write of this
+ * service. If the stored field types have been changed, other nodes are notified with an
+ * {@link IndexFieldTypesChangedEvent} to drop their copy.
  */
+@Singleton
 public class IndexFieldTypesService {
+    private static final Logger LOG = LoggerFactory.getLogger(IndexFieldTypesService.class);
     private static final String FIELDS_FIELD_NAMES = String.format(Locale.US, "%s.%s", FIELD_FIELDS, FIELD_NAME);
+    // Reload the cached field types periodically in case a cluster event got lost
+    private static final Duration CACHE_MAX_AGE = Duration.ofMinutes(1);
 
     private final MongoCollection<IndexFieldTypesDTO> collection;
     private final MongoUtils<IndexFieldTypesDTO> mongoUtils;
+    private final ClusterEventBus clusterEventBus;
+    // Cluster events are also delivered locally, this node's own events must not drop the entries it just updated
+    private final String instanceId = UUID.randomUUID().toString();
+    // index set ID -> index name -> field types
+    private final LoadingCache<String, ImmutableMap<String, IndexFieldTypesDTO>> typesPerIndexSet;
 
     @Inject
-    public IndexFieldTypesService(MongoCollections mongoCollections) {
+    public IndexFieldTypesService(MongoCollections mongoCollections, EventBus eventBus, ClusterEventBus clusterEventBus) {
         collection = mongoCollections.collection("index_field_types", IndexFieldTypesDTO.class);
         mongoUtils = mongoCollections.utils(collection);
+        this.clusterEventBus = clusterEventBus;
+        this.typesPerIndexSet = Caffeine.newBuilder()
+                .expireAfterWrite(CACHE_MAX_AGE)
+                .build(new CacheLoader<>() {
+                    @Override
+                    public ImmutableMap<String, IndexFieldTypesDTO> load(String indexSetId) {
+                        return byIndexName(findByQuery(eq(FIELD_INDEX_SET_ID, indexSetId)));
+                    }
+
+                    @Override
+                    public Map<String, ImmutableMap<String, IndexFieldTypesDTO>> loadAll(Set<? extends String> indexSetIds) {
+                        final Map<String, List<IndexFieldTypesDTO>> types = findByQuery(in(FIELD_INDEX_SET_ID, indexSetIds)).stream()
+                                .collect(Collectors.groupingBy(IndexFieldTypesDTO::indexSetId));
+                        final Map<String, ImmutableMap<String, IndexFieldTypesDTO>> result = new HashMap<>();
+                        indexSetIds.forEach(id -> result.put(id, byIndexName(types.getOrDefault(id, List.of()))));
+                        return result;
+                    }
+                });
+        eventBus.register(this);
 
         collection.createIndex(ascending(FIELD_INDEX_NAME, FIELD_INDEX_SET_ID), new IndexOptions().unique(true));
         collection.createIndex(ascending(FIELD_INDEX_NAME), new IndexOptions().unique(true));
@@ -121,7 +171,9 @@ public class IndexFieldTypesService {
     }
 
     public IndexFieldTypesDTO save(IndexFieldTypesDTO dto) {
-        return mongoUtils.save(dto);
+        final IndexFieldTypesDTO saved = mongoUtils.save(dto);
+        updateCache(saved, true);
+        return saved;
     }
 
     public Optional<IndexFieldTypesDTO> upsert(IndexFieldTypesDTO dto) {
@@ -136,11 +188,15 @@ public class IndexFieldTypesService {
 
         final var id = updateResult.getUpsertedId();
         if (id != null) {
-            return Optional.of(dto.toBuilder()
+            final IndexFieldTypesDTO inserted = dto.toBuilder()
                     .id(id.asObjectId().getValue().toHexString())
-                    .build());
+                    .build();
+            updateCache(inserted, true);
+            return Optional.of(inserted);
         }
 
+        // The active write indices are upserted on every poll, MongoDB doesn't modify a document if nothing changed
+        updateCache(dto, updateResult.getModifiedCount() > 0);
         return Optional.empty();
     }
 
@@ -151,14 +207,17 @@ public class IndexFieldTypesService {
             // Not an ObjectId, try again with index_name
             collection.deleteOne(eq(FIELD_INDEX_NAME, idOrIndexName));
         }
+        removeFromCache(idOrIndexName);
     }
 
     public Collection<IndexFieldTypesDTO> findForIndexSet(String indexSetId) {
-        return findByQuery(eq(FIELD_INDEX_SET_ID, indexSetId));
+        return typesPerIndexSet.get(indexSetId).values();
     }
 
     public Collection<IndexFieldTypesDTO> findForIndexSets(Collection<String> indexSetIds) {
-        return findByQuery(in(FIELD_INDEX_SET_ID, indexSetIds));
+        return typesPerIndexSet.getAll(indexSetIds).values().stream()
+                .flatMap(types -> types.values().stream())
+                .collect(ImmutableList.toImmutableList());
     }
 
     public Collection<IndexFieldTypesDTO> findForFieldNames(Collection<String> fieldNames) {
@@ -174,6 +233,58 @@ public class IndexFieldTypesService {
         return findByQuery(query);
     }
 
+    private static ImmutableMap<String, IndexFieldTypesDTO> byIndexName(Collection<IndexFieldTypesDTO> types) {
+        return types.stream().collect(ImmutableMap.toImmutableMap(IndexFieldTypesDTO::indexName, t -> t, (a, b) -> b));
+    }
+
+    private void updateCache(IndexFieldTypesDTO dto, boolean changed) {
+        if (!changed) {
+            return;
+        }
+        typesPerIndexSet.asMap().computeIfPresent(dto.indexSetId(), (indexSetId, types) -> {
+            final IndexFieldTypesDTO previous = types.get(dto.indexName());
+            // A replaced document keeps its ID
+            final IndexFieldTypesDTO updated = dto.id() == null && previous != null
+                    ? dto.toBuilder().id(previous.id()).build()
+                    : dto;
+            return ImmutableMap.<String, IndexFieldTypesDTO>builder()
+                    .putAll(types)
+                    .put(dto.indexName(), updated)
+                    .buildKeepingLast();
+        });
+        clusterEventBus.post(IndexFieldTypesChangedEvent.create(dto.indexSetId(), instanceId));
+    }
+
+    private void removeFromCache(String idOrIndexName) {
+        final Optional<String> indexSetId = typesPerIndexSet.asMap().entrySet().stream()
+                .filter(entry -> entry.getValue().values().stream()
+                        .anyMatch(types -> idOrIndexName.equals(types.id()) || idOrIndexName.equals(types.indexName())))
+                .map(Map.Entry::getKey)
+                .findFirst();
+        if (indexSetId.isPresent()) {
+            typesPerIndexSet.invalidate(indexSetId.get());
+            clusterEventBus.post(IndexFieldTypesChangedEvent.create(indexSetId.get(), instanceId));
+        } else {
+            typesPerIndexSet.invalidateAll();
+            clusterEventBus.post(IndexFieldTypesChangedEvent.create(Set.of(), instanceId));
+        }
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void handleIndexFieldTypesChanged(IndexFieldTypesChangedEvent event) {
+        if (instanceId.equals(event.origin())) {
+            // The cache has already been updated when the event was posted
+            return;
+        }
+        LOG.debug("Field types of index sets {} have been changed. Invalidating cached field types.", event.indexSetIds());
+        if (event.indexSetIds().isEmpty()) {
+            typesPerIndexSet.invalidateAll();
+        } else {
+            typesPerIndexSet.invalidateAll(event.indexSetIds());
+        }
+    }
+
     public Collection<IndexFieldTypesDTO> findAll() {
         return findByQuery(Filters.empty());
     }
@@ -16,21 +16,31 @@
  */
 package org.graylog2.indexer.fieldtypes;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.hash.Hashing;
 import jakarta.inject.Inject;
 import org.graylog.plugins.formatting.units.fields.FieldUnitObtainer;
 import org.graylog.plugins.formatting.units.model.UnitId;
 import org.graylog.plugins.views.search.elasticsearch.IndexLookup;
 import org.graylog.plugins.views.search.rest.MappedFieldTypeDTO;
 import org.graylog2.Configuration;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesChangedEvent;
 import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
 import org.graylog2.streams.StreamService;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.ImmutableSet.of;
@@ -39,6 +49,8 @@ import static org.graylog2.indexer.fieldtypes.FieldTypes.Type.createType;
 public class MappedFieldTypesServiceImpl implements MappedFieldTypesService {
     private static final FieldTypes.Type UNKNOWN_TYPE = createType("unknown", of());
     private static final String PROP_COMPOUND_TYPE = "compound";
+    // Field units can change without a field type change, so results are only kept for a short time
+    private static final Duration RESULT_CACHE_TTL = Duration.ofSeconds(10);
 
     private final StreamService streamService;
     private final IndexFieldTypesService indexFieldTypesService;
@@ -46,7 +58,10 @@ public class MappedFieldTypesServiceImpl implements MappedFieldTypesService {
     private final IndexLookup indexLookup;
     private final boolean streamAwareFieldTypes;
     private final FieldUnitObtainer fieldUnitObtainer;
-
+    private final Cache<String, Set<MappedFieldTypeDTO>> resultCache = Caffeine.newBuilder()
+            .expireAfterWrite(RESULT_CACHE_TTL)
+            .maximumSize(1000)
+            .build();
 
     @Inject
     public MappedFieldTypesServiceImpl(final Configuration configuration,
@@ -54,19 +69,27 @@ public class MappedFieldTypesServiceImpl implements MappedFieldTypesService {
                                        final IndexFieldTypesService indexFieldTypesService,
                                        final FieldTypeMapper fieldTypeMapper,
                                        final IndexLookup indexLookup,
-                                       final FieldUnitObtainer fieldUnitObtainer) {
+                                       final FieldUnitObtainer fieldUnitObtainer,
+                                       final EventBus eventBus) {
         this.streamService = streamService;
         this.indexFieldTypesService = indexFieldTypesService;
         this.fieldTypeMapper = fieldTypeMapper;
         this.indexLookup = indexLookup;
         this.streamAwareFieldTypes = configuration.maintainsStreamAwareFieldTypes();
         this.fieldUnitObtainer = fieldUnitObtainer;
+        eventBus.register(this);
     }
 
     @Override
     public Set<MappedFieldTypeDTO> fieldTypesByStreamIds(Collection<String> streamIds, TimeRange timeRange) {
         final Set<String> indexSets = streamService.indexSetIdsByIds(streamIds);
         final Set<String> indexNames = this.indexLookup.indexNamesForStreamsInTimeRange(ImmutableSet.copyOf(streamIds), timeRange);
+        // Different time ranges usually resolve to the same indices, so the result only depends on these
+        return resultCache.get(fingerprint(streamIds, indexSets, indexNames),
+                key -> ImmutableSet.copyOf(fieldTypesByStreamIds(streamIds, indexSets, indexNames)));
+    }
+
+    private Set<MappedFieldTypeDTO> fieldTypesByStreamIds(Collection<String> streamIds, Set<String> indexSets, Set<String> indexNames) {
         final Set<FieldTypeDTO> fieldTypeDTOs = this.indexFieldTypesService.findForIndexSets(indexSets)
                 .stream()
                 .filter(fieldTypes -> indexNames.contains(fieldTypes.indexName()))
@@ -78,6 +101,19 @@ public class MappedFieldTypesServiceImpl implements MappedFieldTypesService {
                 .map(this::mapPhysicalFieldType));
     }
 
+    @Subscribe
+    @AllowConcurrentEvents
+    public void handleIndexFieldTypesChanged(IndexFieldTypesChangedEvent event) {
+        resultCache.invalidateAll();
+    }
+
+    private static String fingerprint(Collection<String> streamIds, Set<String> indexSets, Set<String> indexNames) {
+        final String key = String.join(",", new TreeSet<>(streamIds)) + "|"
+                + String.join(",", new TreeSet<>(indexSets)) + "|"
+                + String.join(",", new TreeSet<>(indexNames));
+        return Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+    }
+
     private MappedFieldTypeDTO mapPhysicalFieldType(FieldTypeDTO fieldType) {
         final FieldTypes.Type mappedFieldType = fieldTypeMapper.mapType(fieldType).orElse(UNKNOWN_TYPE);
         return new MappedFieldTypeDTO(fieldType.fieldName(),
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.fieldtypes;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.graylog2.events.ClusterEventBus;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesChangedEvent;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesPollRequestedEvent;
+import org.graylog2.indexer.messages.MessageWithIndex;
+import org.graylog2.plugin.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detects indexed messages with fields which are missing in the stored field types of their index set and requests
+ * a poll of the active write index of these index sets, so new fields don't have to wait for the next regular poll.
+ * Only active with incremental field type polling.
+ */
+@Singleton
+public class UnknownFieldTypesDetector {
+    private static final Logger LOG = LoggerFactory.getLogger(UnknownFieldTypesDetector.class);
+    // Every poll request is a cluster event, so they are limited per index set
+    private static final Duration MIN_POLL_REQUEST_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration KNOWN_FIELDS_MAX_AGE = Duration.ofMinutes(1);
+
+    private final boolean enabled;
+    private final IndexFieldTypesService indexFieldTypesService;
+    private final ClusterEventBus clusterEventBus;
+    // index set ID -> names of the fields with a known field type
+    private final LoadingCache<String, Set<String>> knownFields;
+    private final Map<String, Instant> lastPollRequest = new ConcurrentHashMap<>();
+
+    @Inject
+    public UnknownFieldTypesDetector(@Named("index_field_type_periodical_incremental") boolean enabled,
+                                     IndexFieldTypesService indexFieldTypesService,
+                                     EventBus eventBus,
+                                     ClusterEventBus clusterEventBus) {
+        this.enabled = enabled;
+        this.indexFieldTypesService = indexFieldTypesService;
+        this.clusterEventBus = clusterEventBus;
+        this.knownFields = Caffeine.newBuilder()
+                .expireAfterWrite(KNOWN_FIELDS_MAX_AGE)
+                .build(this::loadKnownFields);
+        eventBus.register(this);
+    }
+
+    private Set<String> loadKnownFields(String indexSetId) {
+        final Set<String> fieldNames = ConcurrentHashMap.newKeySet();
+        indexFieldTypesService.findForIndexSet(indexSetId)
+                .forEach(indexTypes -> indexTypes.fields().forEach(fieldType -> fieldNames.add(fieldType.fieldName())));
+        return fieldNames;
+    }
+
+    /**
+     * Checks the fields of the given indexed messages and requests a field type poll for index sets which received
+     * unknown fields.
+     *
+     * @param messages the indexed messages
+     */
+    public void check(Collection<MessageWithIndex> messages) {
+        if (!enabled) {
+            return;
+        }
+
+        // Only allocated if there actually are unknown fields, which should be rare
+        Map<String, Set<String>> unknownFields = null;
+        for (final MessageWithIndex messageWithIndex : messages) {
+            final String indexSetId = messageWithIndex.indexSet().getConfig().id();
+            final Set<String> known = knownFields.get(indexSetId);
+            for (final String fieldName : messageWithIndex.message().getFieldNames()) {
+                // The message ID is stored as document ID, it's never part of the mapping
+                if (!known.contains(fieldName) && !Message.FIELD_ID.equals(fieldName)) {
+                    if (unknownFields == null) {
+                        unknownFields = new HashMap<>();
+                    }
+                    unknownFields.computeIfAbsent(indexSetId, id -> new HashSet<>()).add(fieldName);
+                }
+            }
+        }
+
+        if (unknownFields != null) {
+            requestPoll(unknownFields);
+        }
+    }
+
+    private void requestPoll(Map<String, Set<String>> unknownFields) {
+        final Instant now = Instant.now();
+        final Set<String> indexSetIds = new HashSet<>();
+        unknownFields.forEach((indexSetId, fieldNames) -> {
+            if (claimPollRequest(indexSetId, now)) {
+                // Don't request another poll for the same fields until the field types have been changed
+                knownFields.get(indexSetId).addAll(fieldNames);
+                indexSetIds.add(indexSetId);
+            }
+        });
+
+        if (!indexSetIds.isEmpty()) {
+            LOG.debug("Requesting field type poll for index sets {} because of unknown fields {}", indexSetIds, unknownFields);
+            clusterEventBus.post(IndexFieldTypesPollRequestedEvent.create(indexSetIds));
+        }
+    }
+
+    private boolean claimPollRequest(String indexSetId, Instant now) {
+        final boolean[] claimed = {false};
+        lastPollRequest.compute(indexSetId, (id, previous) -> {
+            if (previous != null && now.isBefore(previous.plus(MIN_POLL_REQUEST_INTERVAL))) {
+                return previous;
+            }
+            claimed[0] = true;
+            return now;
+        });
+        return claimed[0];
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void handleIndexFieldTypesChanged(IndexFieldTypesChangedEvent event) {
+        if (event.indexSetIds().isEmpty()) {
+            knownFields.invalidateAll();
+        } else {
+            knownFields.invalidateAll(event.indexSetIds());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.fieldtypes.events;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.autovalue.WithBeanGetter;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+
+/**
+ * Cluster event which is posted when the stored field types of indices have been changed. An empty set of index set
+ * IDs means that the field types of any index set might have been changed. The optional origin identifies the
+ * instance which posted the event, so it can ignore its own events.
+ */
+@JsonAutoDetect
+@AutoValue
+@WithBeanGetter
+public abstract class IndexFieldTypesChangedEvent {
+    private static final String FIELD_INDEX_SET_IDS = "index_set_ids";
+    private static final String FIELD_ORIGIN = "origin";
+
+    @JsonProperty(FIELD_INDEX_SET_IDS)
+    public abstract ImmutableSet<String> indexSetIds();
+
+    @JsonProperty(FIELD_ORIGIN)
+    @Nullable
+    public abstract String origin();
+
+    @JsonCreator
+    public static IndexFieldTypesChangedEvent create(@JsonProperty(FIELD_INDEX_SET_IDS) Set<String> indexSetIds,
+                                                     @JsonProperty(FIELD_ORIGIN) @Nullable String origin) {
+        return new AutoValue_IndexFieldTypesChangedEvent(ImmutableSet.copyOf(indexSetIds), origin);
+    }
+
+    public static IndexFieldTypesChangedEvent create(String indexSetId, @Nullable String origin) {
+        return create(ImmutableSet.of(indexSetId), origin);
+    }
+
+    public static IndexFieldTypesChangedEvent create(String indexSetId) {
+        return create(indexSetId, null);
+    }
+
+    public static IndexFieldTypesChangedEvent all() {
+        return create(ImmutableSet.of(), null);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.fieldtypes.events;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.autovalue.WithBeanGetter;
+
+import java.util.Set;
+
+/**
+ * Cluster event which is posted when messages with fields that are unknown to the stored field types have been
+ * indexed. The field types of the active write indices of the given index sets should be polled again.
+ */
+@JsonAutoDetect
+@AutoValue
+@WithBeanGetter
+public abstract class IndexFieldTypesPollRequestedEvent {
+    private static final String FIELD_INDEX_SET_IDS = "index_set_ids";
+
+    @JsonProperty(FIELD_INDEX_SET_IDS)
+    public abstract ImmutableSet<String> indexSetIds();
+
+    @JsonCreator
+    public static IndexFieldTypesPollRequestedEvent create(@JsonProperty(FIELD_INDEX_SET_IDS) Set<String> indexSetIds) {
+        return new AutoValue_IndexFieldTypesPollRequestedEvent(ImmutableSet.copyOf(indexSetIds));
+    }
+}
@@ -384,6 +384,17 @@ public class Indices {
         return indicesAdapter.indicesStats(indices);
     }
 
+    /**
+     * Returns the number of documents in the primary shards of the given indices. Closed indices are missing.
+     *
+     * @param indices index names or wildcards
+     * @return the document counts by index name
+     */
+    public Map<String, Long> getDocumentCounts(final Collection<String> indices) {
+        return getIndicesStats(indices).stream()
+                .collect(Collectors.toMap(IndexStatistics::index, stats -> stats.primaryShards().documents().count()));
+    }
+
     public List<ShardsInfo> getShardsInfo(String indexName) {
         return indicesAdapter.getShardsInfo(indexName);
     }
@@ -436,6 +447,10 @@ public class Indices {
         return indicesAdapter.indexRangeStatsOfIndex(index);
     }
 
+    public Map<String, IndexRangeStats> indexRangeStatsOfIndices(Collection<String> indices) {
+        return indicesAdapter.indexRangeStatsOfIndices(indices);
+    }
+
     /**
      * Returns ES UUID of the index; null if it does not exist
      */
@@ -128,6 +128,15 @@ public interface IndicesAdapter {
 
     IndexRangeStats indexRangeStatsOfIndex(String index);
 
+    /**
+     * Calculates the range stats of several indices with one request. Fails if any of the indices is missing or
+     * closed, or if not all of their shards could be searched.
+     *
+     * @param indices the names of the indices
+     * @return the range stats by index name
+     */
+    Map<String, IndexRangeStats> indexRangeStatsOfIndices(Collection<String> indices);
+
     HealthStatus waitForRecovery(String index);
     HealthStatus waitForRecovery(String index, int timeout);
 
@@ -22,6 +22,9 @@ import org.graylog2.indexer.IndexSet;
 import org.graylog2.plugin.Message;
 import org.graylog2.shared.messageq.Acknowledgeable;
 
+import javax.annotation.Nullable;
+import java.util.Set;
+
 /**
  * The purpose of this interface is to provide access to certain properties of a {@link Message} while ensuring that
  * it can't be changed anymore. This allows precomputation and re-use of e.g. the serialized JSON of a message (see
@@ -47,6 +50,13 @@ public interface ImmutableMessage extends Indexable, Acknowledgeable {
 
     ImmutableMap<String, Object> getFields();
 
+    /**
+     * Implementations should override this if they can return the field names without copying all fields.
+     */
+    default Set<String> getFieldNames() {
+        return getFields().keySet();
+    }
+
     String getMessage();
 
     Object getField(String key);
@@ -54,4 +64,17 @@ public interface ImmutableMessage extends Indexable, Acknowledgeable {
     String getSource();
 
     ImmutableSet<String> getStreamIds();
+
+    @Nullable
+    String getSourceInputId();
+
+    /**
+     * @see Message#isProcessingLatencySampled()
+     */
+    boolean isProcessingLatencySampled();
+
+    /**
+     * @see Message#getProcessingStageStart()
+     */
+    long getProcessingStageStart();
 }
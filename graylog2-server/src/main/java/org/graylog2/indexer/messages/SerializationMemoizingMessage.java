@@ -34,6 +34,7 @@ import java.time.Duration;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Wraps a {@link Message} by making it immutable and caching the result of {@link #serialize(SerializationContext)}
@@ -197,6 +198,11 @@ public class SerializationMemoizingMessage implements ImmutableMessage {
         return ImmutableMap.copyOf(delegate.getFields());
     }
 
+    @Override
+    public Set<String> getFieldNames() {
+        return delegate.getFieldNames();
+    }
+
     @Override
     public String getMessage() {
         return delegate.getMessage();
@@ -217,6 +223,21 @@ public class SerializationMemoizingMessage implements ImmutableMessage {
         return ImmutableSet.copyOf(delegate.getStreamIds());
     }
 
+    @Override
+    public String getSourceInputId() {
+        return delegate.getSourceInputId();
+    }
+
+    @Override
+    public boolean isProcessingLatencySampled() {
+        return delegate.isProcessingLatencySampled();
+    }
+
+    @Override
+    public long getProcessingStageStart() {
+        return delegate.getProcessingStageStart();
+    }
+
     @Override
     public Object getMessageQueueId() {
         return delegate.getMessageQueueId();
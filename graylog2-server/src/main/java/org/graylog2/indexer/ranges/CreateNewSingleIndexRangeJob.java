@@ -24,6 +24,8 @@ import org.graylog2.shared.system.activities.ActivityWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.util.List;
 import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -31,7 +33,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class CreateNewSingleIndexRangeJob extends RebuildIndexRangesJob {
     private static final Logger LOG = LoggerFactory.getLogger(CreateNewSingleIndexRangeJob.class);
     private final String indexName;
-    private final Indices indices;
 
     public interface Factory {
         CreateNewSingleIndexRangeJob create(Set<IndexSet> indexSets, String indexName);
@@ -43,9 +44,8 @@ public class CreateNewSingleIndexRangeJob extends RebuildIndexRangesJob {
                                         ActivityWriter activityWriter,
                                         Indices indices,
                                         IndexRangeService indexRangeService) {
-        super(indexSets, activityWriter, indexRangeService);
+        super(indexSets, activityWriter, indexRangeService, indices, 1, 1, false);
         this.indexName = checkNotNull(indexName);
-        this.indices = indices;
     }
 
     @Override
@@ -71,7 +71,8 @@ public class CreateNewSingleIndexRangeJob extends RebuildIndexRangesJob {
         LOG.info("Calculating ranges for index {}.", indexName);
         try {
             final IndexRange indexRange = indexRangeService.calculateRange(indexName);
-            indexRangeService.save(indexRange);
+            // Store the document count, so rebuilding the index ranges can skip the index
+            indexRangeService.save(MongoIndexRange.create(indexRange, documentCount()));
             LOG.info("Created ranges for index {}.", indexName);
         } catch (Exception e) {
             LOG.error("Exception during index range calculation for index " + indexName, e);
@@ -93,4 +94,14 @@ public class CreateNewSingleIndexRangeJob extends RebuildIndexRangesJob {
         // Actually we need some sort of queuing for SystemJobs.
         return Integer.MAX_VALUE;
     }
+
+    @Nullable
+    private Long documentCount() {
+        try {
+            return indices.getDocumentCounts(List.of(indexName)).get(indexName);
+        } catch (Exception e) {
+            LOG.debug("Couldn't get document count of index <{}>", indexName, e);
+            return null;
+        }
+    }
 }
@@ -18,6 +18,7 @@ package org.graylog2.indexer.ranges;
 
 import org.joda.time.DateTime;
 
+import javax.annotation.Nullable;
 import java.util.Comparator;
 import java.util.List;
 
@@ -28,6 +29,7 @@ public interface IndexRange {
     String FIELD_BEGIN = "begin";
     String FIELD_INDEX_NAME = "index_name";
     String FIELD_STREAM_IDS = "stream_ids";
+    String FIELD_DOCUMENT_COUNT = "document_count";
     Comparator<IndexRange> COMPARATOR = new IndexRangeComparator();
 
     String indexName();
@@ -41,4 +43,12 @@ public interface IndexRange {
     int calculationDuration();
 
     List<String> streamIds();
+
+    /**
+     * Returns the number of documents in the index when the range has been calculated, if known.
+     */
+    @Nullable
+    default Long documentCount() {
+        return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.ranges;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * Immutable in-memory index of {@link IndexRange index ranges} which answers overlap queries without accessing
+ * the database.
+ * <p>
+ * The index ranges are partitioned by stream. Index ranges without stream information are kept in a separate
+ * partition and are part of every stream query, because they need to be checked against the index sets of the
+ * streams.
+ */
+final class IndexRangeIntervalIndex {
+    private final IntervalTree all;
+    private final IntervalTree withoutStreams;
+    private final Map<String, IntervalTree> byStream;
+
+    private IndexRangeIntervalIndex(IntervalTree all, IntervalTree withoutStreams, Map<String, IntervalTree> byStream) {
+        this.all = all;
+        this.withoutStreams = withoutStreams;
+        this.byStream = byStream;
+    }
+
+    static IndexRangeIntervalIndex of(Collection<? extends IndexRange> indexRanges) {
+        final List<IndexRange> withoutStreams = new ArrayList<>();
+        final Map<String, List<IndexRange>> byStream = new HashMap<>();
+        for (final IndexRange indexRange : indexRanges) {
+            if (indexRange.streamIds() == null) {
+                withoutStreams.add(indexRange);
+            } else {
+                indexRange.streamIds().forEach(streamId -> byStream.computeIfAbsent(streamId, id -> new ArrayList<>()).add(indexRange));
+            }
+        }
+
+        final Map<String, IntervalTree> streamTrees = new HashMap<>(byStream.size());
+        byStream.forEach((streamId, ranges) -> streamTrees.put(streamId, new IntervalTree(ranges)));
+        return new IndexRangeIntervalIndex(new IntervalTree(indexRanges), new IntervalTree(withoutStreams), streamTrees);
+    }
+
+    /**
+     * Returns all index ranges which overlap with the given time range. Like {@link MongoIndexRangeService#find},
+     * index ranges with an unknown time range (begin and end at 0) are always included.
+     */
+    SortedSet<IndexRange> find(long begin, long end) {
+        final ImmutableSortedSet.Builder<IndexRange> result = ImmutableSortedSet.orderedBy(IndexRange.COMPARATOR);
+        all.collect(begin, end, result);
+        return result.build();
+    }
+
+    /**
+     * Returns all index ranges which overlap with the given time range and contain at least one of the given
+     * streams, as well as all overlapping index ranges without stream information.
+     */
+    SortedSet<IndexRange> find(long begin, long end, Set<String> streamIds) {
+        final ImmutableSortedSet.Builder<IndexRange> result = ImmutableSortedSet.orderedBy(IndexRange.COMPARATOR);
+        withoutStreams.collect(begin, end, result);
+        for (final String streamId : streamIds) {
+            final IntervalTree tree = byStream.get(streamId);
+            if (tree != null) {
+                tree.collect(begin, end, result);
+            }
+        }
+        return result.build();
+    }
+
+    int size() {
+        return all.ranges.size();
+    }
+
+    /**
+     * Static interval tree stored in a list sorted by begin. Each subtree is the range of list elements around its
+     * middle element and knows the maximum end of all its elements, so subtrees which end before the queried time
+     * range can be skipped.
+     */
+    private static final class IntervalTree {
+        private final ImmutableList<IndexRange> ranges;
+        private final long[] begins;
+        private final long[] ends;
+        private final long[] maxEnds;
+        private final ImmutableList<IndexRange> unknownRanges;
+
+        IntervalTree(Collection<? extends IndexRange> indexRanges) {
+            this.ranges = indexRanges.stream()
+                    .sorted(Comparator.comparing(IndexRange::begin))
+                    .collect(ImmutableList.toImmutableList());
+            this.begins = ranges.stream().mapToLong(range -> range.begin().getMillis()).toArray();
+            this.ends = ranges.stream().mapToLong(range -> range.end().getMillis()).toArray();
+            this.maxEnds = new long[ranges.size()];
+            computeMaxEnds(0, ranges.size());
+            this.unknownRanges = ranges.stream()
+                    .filter(range -> range.begin().getMillis() <= 0L && range.end().getMillis() >= 0L)
+                    .collect(ImmutableList.toImmutableList());
+        }
+
+        private long computeMaxEnds(int from, int to) {
+            if (from >= to) {
+                return Long.MIN_VALUE;
+            }
+            final int middle = (from + to) >>> 1;
+            maxEnds[middle] = Math.max(ends[middle], Math.max(computeMaxEnds(from, middle), computeMaxEnds(middle + 1, to)));
+            return maxEnds[middle];
+        }
+
+        void collect(long begin, long end, ImmutableSortedSet.Builder<IndexRange> result) {
+            collect(0, ranges.size(), begin, end, result);
+            result.addAll(unknownRanges);
+        }
+
+        private void collect(int from, int to, long begin, long end, ImmutableSortedSet.Builder<IndexRange> result) {
+            if (from >= to) {
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            if (maxEnds[middle] < begin) {
+                return;
+            }
+            collect(from, middle, begin, end, result);
+            if (begins[middle] <= end) {
+                if (ends[middle] >= begin) {
+                    result.add(ranges.get(middle));
+                }
+                collect(middle + 1, to, begin, end, result);
+            }
+        }
+    }
+}
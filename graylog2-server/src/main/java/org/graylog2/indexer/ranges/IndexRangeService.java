@@ -16,10 +16,15 @@
  */
 package org.graylog2.indexer.ranges;
 
+import com.google.common.collect.ImmutableSortedSet;
 import org.bson.conversions.Bson;
 import org.graylog2.database.NotFoundException;
 import org.joda.time.DateTime;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 
 public interface IndexRangeService {
@@ -27,17 +32,41 @@ public interface IndexRangeService {
 
     SortedSet<IndexRange> find(DateTime begin, DateTime end);
 
+    /**
+     * Returns the index ranges which overlap with the given time range and contain at least one of the given
+     * streams. Index ranges without stream information are always returned, because they have to be checked
+     * against the index sets of the streams by the caller.
+     */
+    default SortedSet<IndexRange> find(DateTime begin, DateTime end, Set<String> streamIds) {
+        return find(begin, end).stream()
+                .filter(indexRange -> indexRange.streamIds() == null || !Collections.disjoint(indexRange.streamIds(), streamIds))
+                .collect(ImmutableSortedSet.toImmutableSortedSet(IndexRange.COMPARATOR));
+    }
+
     SortedSet<IndexRange> findAll();
 
     SortedSet<IndexRange> find(Bson query);
 
     void save(IndexRange indexRange);
 
+    /**
+     * Saves several index ranges at once, replacing existing ranges of the same indices.
+     */
+    void saveAll(Collection<IndexRange> indexRanges);
+
     boolean renameIndex(String from, String to);
 
     boolean remove(String index);
 
     IndexRange calculateRange(String index);
 
+    /**
+     * Calculates the ranges of several indices with as few requests as possible.
+     *
+     * @param indices the names of the indices
+     * @return the calculated ranges by index name, indices whose range couldn't be calculated are missing
+     */
+    Map<String, IndexRange> calculateRanges(Collection<String> indices);
+
     IndexRange createUnknownRange(String index);
 }
@@ -76,6 +76,22 @@ public abstract class MongoIndexRange implements IndexRange {
     @Nullable
     public abstract List<String> streamIds();
 
+    @JsonProperty(FIELD_DOCUMENT_COUNT)
+    @Override
+    @Nullable
+    public abstract Long documentCount();
+
+    public static MongoIndexRange create(ObjectId id,
+                                         String indexName,
+                                         DateTime begin,
+                                         DateTime end,
+                                         DateTime calculatedAt,
+                                         int calculationDuration,
+                                         List<String> streamIds,
+                                         @Nullable Long documentCount) {
+        return new AutoValue_MongoIndexRange(id, indexName, begin, end, calculatedAt, calculationDuration, streamIds, documentCount);
+    }
+
     public static MongoIndexRange create(ObjectId id,
                                          String indexName,
                                          DateTime begin,
@@ -83,7 +99,7 @@ public abstract class MongoIndexRange implements IndexRange {
                                          DateTime calculatedAt,
                                          int calculationDuration,
                                          List<String> streamIds) {
-        return new AutoValue_MongoIndexRange(id, indexName, begin, end, calculatedAt, calculationDuration, streamIds);
+        return create(id, indexName, begin, end, calculatedAt, calculationDuration, streamIds, null);
     }
 
     @JsonCreator
@@ -93,11 +109,12 @@ public abstract class MongoIndexRange implements IndexRange {
                                          @JsonProperty(FIELD_END) long endMillis,
                                          @JsonProperty(FIELD_CALCULATED_AT) long calculatedAtMillis,
                                          @JsonProperty(FIELD_TOOK_MS) int calculationDuration,
-                                         @JsonProperty(FIELD_STREAM_IDS) @Nullable List<String> streamIds) {
+                                         @JsonProperty(FIELD_STREAM_IDS) @Nullable List<String> streamIds,
+                                         @JsonProperty(FIELD_DOCUMENT_COUNT) @Nullable Long documentCount) {
         final DateTime begin = new DateTime(beginMillis, DateTimeZone.UTC);
         final DateTime end = new DateTime(endMillis, DateTimeZone.UTC);
         final DateTime calculatedAt = new DateTime(calculatedAtMillis, DateTimeZone.UTC);
-        return create(id, indexName, begin, end, calculatedAt, calculationDuration, streamIds);
+        return create(id, indexName, begin, end, calculatedAt, calculationDuration, streamIds, documentCount);
     }
 
     public static MongoIndexRange create(String indexName,
@@ -119,13 +136,19 @@ public abstract class MongoIndexRange implements IndexRange {
     }
 
     public static MongoIndexRange create(IndexRange indexRange) {
+        return create(indexRange, indexRange.documentCount());
+    }
+
+    public static MongoIndexRange create(IndexRange indexRange, @Nullable Long documentCount) {
         return create(
+                null,
                 indexRange.indexName(),
                 indexRange.begin(),
                 indexRange.end(),
                 indexRange.calculatedAt(),
                 indexRange.calculationDuration(),
-                indexRange.streamIds());
+                indexRange.streamIds(),
+                documentCount);
     }
 
     public static MongoIndexRange create(String indexName,
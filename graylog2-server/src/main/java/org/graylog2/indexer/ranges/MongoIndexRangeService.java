@@ -18,13 +18,17 @@ package org.graylog2.indexer.ranges;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.primitives.Ints;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.Updates;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
@@ -33,28 +37,34 @@ import org.graylog2.audit.AuditActor;
 import org.graylog2.audit.AuditEventSender;
 import org.graylog2.database.MongoCollections;
 import org.graylog2.database.NotFoundException;
+import org.graylog2.events.ClusterEventBus;
 import org.graylog2.indexer.IndexSetRegistry;
 import org.graylog2.indexer.indices.Indices;
 import org.graylog2.indexer.indices.events.IndicesClosedEvent;
 import org.graylog2.indexer.indices.events.IndicesDeletedEvent;
 import org.graylog2.indexer.indices.events.IndicesReopenedEvent;
+import org.graylog2.indexer.ranges.events.IndexRangesChangedEvent;
 import org.graylog2.indexer.searches.IndexRangeStats;
 import org.graylog2.plugin.system.NodeId;
+import org.graylog2.shared.utilities.ExceptionUtils;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
 import static com.mongodb.client.model.Filters.exists;
-import static com.mongodb.client.model.Filters.gte;
 import static com.mongodb.client.model.Filters.in;
-import static com.mongodb.client.model.Filters.lte;
-import static com.mongodb.client.model.Filters.or;
 import static org.graylog2.audit.AuditEventTypes.ES_INDEX_RANGE_CREATE;
 import static org.graylog2.audit.AuditEventTypes.ES_INDEX_RANGE_DELETE;
 import static org.graylog2.indexer.indices.Indices.checkIfHealthy;
@@ -63,12 +73,18 @@ import static org.graylog2.indexer.indices.Indices.checkIfHealthy;
 public class MongoIndexRangeService implements IndexRangeService {
     private static final Logger LOG = LoggerFactory.getLogger(MongoIndexRangeService.class);
     private static final String COLLECTION_NAME = "index_ranges";
+    // Reload the in-memory index periodically in case a cluster event got lost
+    private static final Duration INTERVAL_INDEX_MAX_AGE = Duration.ofMinutes(1);
 
     private final Indices indices;
     private final IndexSetRegistry indexSetRegistry;
     private final AuditEventSender auditEventSender;
     private final NodeId nodeId;
     private final MongoCollection<MongoIndexRange> collection;
+    private final ClusterEventBus clusterEventBus;
+    private final AtomicLong intervalIndexGeneration = new AtomicLong();
+    private final Object intervalIndexLock = new Object();
+    private volatile LoadedIntervalIndex intervalIndex;
 
     @Inject
     public MongoIndexRangeService(MongoCollections mongoCollections,
@@ -76,11 +92,13 @@ public class MongoIndexRangeService implements IndexRangeService {
                                   IndexSetRegistry indexSetRegistry,
                                   AuditEventSender auditEventSender,
                                   NodeId nodeId,
-                                  EventBus eventBus) {
+                                  EventBus eventBus,
+                                  ClusterEventBus clusterEventBus) {
         this.indices = indices;
         this.indexSetRegistry = indexSetRegistry;
         this.auditEventSender = auditEventSender;
         this.nodeId = nodeId;
+        this.clusterEventBus = clusterEventBus;
         this.collection = mongoCollections.nonEntityCollection(COLLECTION_NAME, MongoIndexRange.class);
 
         eventBus.register(this);
@@ -104,20 +122,12 @@ public class MongoIndexRangeService implements IndexRangeService {
 
     @Override
     public SortedSet<IndexRange> find(DateTime begin, DateTime end) {
-        final var query = or(
-                and(
-                        exists("start", false),  // "start" has been used by the old index ranges in MongoDB
-                        lte(IndexRange.FIELD_BEGIN, end.getMillis()),
-                        gte(IndexRange.FIELD_END, begin.getMillis())
-                ),
-                and(
-                        exists("start", false),  // "start" has been used by the old index ranges in MongoDB
-                        lte(IndexRange.FIELD_BEGIN, 0L),
-                        gte(IndexRange.FIELD_END, 0L)
-                )
-        );
+        return intervalIndex().find(begin.getMillis(), end.getMillis());
+    }
 
-        return ImmutableSortedSet.copyOf(IndexRange.COMPARATOR, collection.find(query));
+    @Override
+    public SortedSet<IndexRange> find(DateTime begin, DateTime end, Set<String> streamIds) {
+        return intervalIndex().find(begin.getMillis(), end.getMillis(), streamIds);
     }
 
     @Override
@@ -143,6 +153,38 @@ public class MongoIndexRangeService implements IndexRangeService {
         return MongoIndexRange.create(index, stats.min(), stats.max(), now, duration, stats.streamIds());
     }
 
+    @Override
+    public Map<String, IndexRange> calculateRanges(Collection<String> indexNames) {
+        if (indexNames.size() > 1) {
+            try {
+                final DateTime now = DateTime.now(DateTimeZone.UTC);
+                final Stopwatch sw = Stopwatch.createStarted();
+                final Map<String, IndexRangeStats> stats = indices.indexRangeStatsOfIndices(indexNames);
+                final int duration = Ints.saturatedCast(sw.stop().elapsed(TimeUnit.MILLISECONDS));
+
+                LOG.info("Calculated ranges of {} indices in [{}ms].", indexNames.size(), duration);
+                final Map<String, IndexRange> ranges = new HashMap<>();
+                stats.forEach((index, indexStats) -> ranges.put(index,
+                        MongoIndexRange.create(index, indexStats.min(), indexStats.max(), now, duration, indexStats.streamIds())));
+                return ranges;
+            } catch (Exception e) {
+                LOG.info("Couldn't calculate ranges of indices {} at once, calculating them one by one: {}",
+                        indexNames, ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        // The single index calculation makes sure that the index is healthy
+        final Map<String, IndexRange> ranges = new HashMap<>();
+        for (final String index : indexNames) {
+            try {
+                ranges.put(index, calculateRange(index));
+            } catch (Exception e) {
+                LOG.info("Could not calculate range of index [" + index + "]. Skipping.", e);
+            }
+        }
+        return ranges;
+    }
+
     @Override
     public IndexRange createUnknownRange(String index) {
         final DateTime begin = new DateTime(0L, DateTimeZone.UTC);
@@ -153,21 +195,87 @@ public class MongoIndexRangeService implements IndexRangeService {
 
     @Override
     public void save(IndexRange indexRange) {
-        remove(indexRange.indexName());
+        collection.deleteMany(in(IndexRange.FIELD_INDEX_NAME, indexRange.indexName()));
         collection.insertOne(MongoIndexRange.create(indexRange));
+        indexRangesChanged(ImmutableSet.of(indexRange.indexName()));
+    }
+
+    @Override
+    public void saveAll(Collection<IndexRange> indexRanges) {
+        if (indexRanges.isEmpty()) {
+            return;
+        }
+        final Set<String> indexNames = indexRanges.stream()
+                .map(IndexRange::indexName)
+                .collect(ImmutableSet.toImmutableSet());
+        // Replaced in place, so the ranges are never missing like between deleting and inserting them
+        collection.bulkWrite(indexRanges.stream()
+                        .map(indexRange -> new ReplaceOneModel<>(eq(IndexRange.FIELD_INDEX_NAME, indexRange.indexName()),
+                                MongoIndexRange.create(indexRange), new ReplaceOptions().upsert(true)))
+                        .toList(),
+                new BulkWriteOptions().ordered(false));
+        indexRangesChanged(indexNames);
     }
 
     @Override
     public boolean renameIndex(String from, String to) {
-        return collection.updateMany(
+        final boolean renamed = collection.updateMany(
                         eq(IndexRange.FIELD_INDEX_NAME, from),
                         Updates.set(IndexRange.FIELD_INDEX_NAME, to))
                 .getMatchedCount() > 0;
+        if (renamed) {
+            indexRangesChanged(ImmutableSet.of(from, to));
+        }
+        return renamed;
     }
 
     @Override
     public boolean remove(String index) {
-        return collection.deleteMany(in(IndexRange.FIELD_INDEX_NAME, index)).getDeletedCount() > 0;
+        final boolean removed = collection.deleteMany(in(IndexRange.FIELD_INDEX_NAME, index)).getDeletedCount() > 0;
+        if (removed) {
+            indexRangesChanged(ImmutableSet.of(index));
+        }
+        return removed;
+    }
+
+    private void indexRangesChanged(Set<String> indices) {
+        // Invalidate the local index right away, other nodes will invalidate theirs when they receive the event
+        invalidateIntervalIndex();
+        clusterEventBus.post(IndexRangesChangedEvent.create(indices));
+    }
+
+    private void invalidateIntervalIndex() {
+        intervalIndexGeneration.incrementAndGet();
+        intervalIndex = null;
+    }
+
+    private IndexRangeIntervalIndex intervalIndex() {
+        final LoadedIntervalIndex loaded = intervalIndex;
+        if (loaded != null && !loaded.isExpired()) {
+            return loaded.index();
+        }
+
+        synchronized (intervalIndexLock) {
+            final LoadedIntervalIndex current = intervalIndex;
+            if (current != null && !current.isExpired()) {
+                return current.index();
+            }
+            final long generation = intervalIndexGeneration.get();
+            final IndexRangeIntervalIndex index = IndexRangeIntervalIndex.of(findAll());
+            // Don't keep the index if the index ranges changed while it was loaded
+            if (generation == intervalIndexGeneration.get()) {
+                intervalIndex = new LoadedIntervalIndex(index, System.nanoTime());
+            }
+            LOG.debug("Loaded {} index ranges into memory", index.size());
+            return index;
+        }
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void handleIndexRangesChanged(IndexRangesChangedEvent event) {
+        LOG.debug("Index ranges of {} have been changed. Invalidating in-memory index ranges.", event.indices());
+        invalidateIntervalIndex();
     }
 
     @Subscribe
@@ -222,4 +330,10 @@ public class MongoIndexRangeService implements IndexRangeService {
             save(indexRange);
         }
     }
+
+    private record LoadedIntervalIndex(IndexRangeIntervalIndex index, long loadedAtNanos) {
+        boolean isExpired() {
+            return System.nanoTime() - loadedAtNanos > INTERVAL_INDEX_MAX_AGE.toNanos();
+        }
+    }
 }
@@ -18,11 +18,15 @@ package org.graylog2.indexer.ranges;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.MultimapBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
+import jakarta.inject.Named;
 import org.graylog2.database.NotFoundException;
 import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.indices.Indices;
 import org.graylog2.indexer.indices.TooManyAliasesException;
 import org.graylog2.shared.system.activities.Activity;
 import org.graylog2.shared.system.activities.ActivityWriter;
@@ -30,10 +34,29 @@ import org.graylog2.system.jobs.SystemJob;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Recalculates the ranges of all managed indices of the given index sets.
+ * <p>
+ * Indices are calculated in batches, several batches run in parallel. If enabled, closed indices and indices whose
+ * document count didn't change since their range has been calculated are skipped. This also makes sure that a
+ * cancelled or interrupted rebuild continues where it stopped when it's started again.
+ */
 public class RebuildIndexRangesJob extends SystemJob {
     public interface Factory {
         RebuildIndexRangesJob create(Set<IndexSet> indexSets);
@@ -45,18 +68,31 @@ public class RebuildIndexRangesJob extends SystemJob {
     private volatile boolean cancelRequested = false;
     private volatile int indicesToCalculate = 0;
     private final AtomicInteger indicesCalculated = new AtomicInteger(0);
+    private final AtomicInteger indicesSkipped = new AtomicInteger(0);
 
     protected final Set<IndexSet> indexSets;
     private final ActivityWriter activityWriter;
     protected final IndexRangeService indexRangeService;
+    protected final Indices indices;
+    private final int concurrency;
+    private final int batchSize;
+    private final boolean skipUnchanged;
 
     @AssistedInject
     public RebuildIndexRangesJob(@Assisted Set<IndexSet> indexSets,
                                  ActivityWriter activityWriter,
-                                 IndexRangeService indexRangeService) {
+                                 IndexRangeService indexRangeService,
+                                 Indices indices,
+                                 @Named("index_ranges_rebuild_concurrency") int concurrency,
+                                 @Named("index_ranges_rebuild_batch_size") int batchSize,
+                                 @Named("index_ranges_rebuild_skip_unchanged") boolean skipUnchanged) {
         this.indexSets = indexSets;
         this.activityWriter = activityWriter;
         this.indexRangeService = indexRangeService;
+        this.indices = indices;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+        this.skipUnchanged = skipUnchanged;
     }
 
     @Override
@@ -79,6 +115,15 @@ public class RebuildIndexRangesJob extends SystemJob {
         return "Rebuilds index range information.";
     }
 
+    @Override
+    public String getInfo() {
+        if (indicesToCalculate <= 0) {
+            return super.getInfo();
+        }
+        return "Processed " + indicesCalculated.get() + " of " + indicesToCalculate + " indices, skipped "
+                + indicesSkipped.get() + " unchanged or closed indices.";
+    }
+
     @Override
     public void execute() {
         info("Recalculating index ranges.");
@@ -99,11 +144,16 @@ public class RebuildIndexRangesJob extends SystemJob {
         indicesToCalculate = indexSets.values().size();
 
         Stopwatch sw = Stopwatch.createStarted();
+        final Map<String, IndexRange> existingRanges = !skipUnchanged ? Map.of() : indexRangeService.findAll().stream()
+                .collect(Collectors.toMap(IndexRange::indexName, Function.identity(), (a, b) -> b));
+        final List<String> pendingIndices = new ArrayList<>();
+        final Map<String, Long> documentCounts = new HashMap<>();
         for (IndexSet indexSet : indexSets.keySet()) {
             LOG.info("Recalculating index ranges for index set {} ({}): {} indices affected.",
                     indexSet.getConfig().title(),
                     indexSet.getIndexWildcard(),
                     indexSets.get(indexSet).size());
+            final Map<String, Long> indexSetDocumentCounts = documentCounts(indexSet);
             for (String index : indexSets.get(indexSet)) {
                 try {
                     if (index.equals(indexSet.getActiveWriteIndex())) {
@@ -128,25 +178,102 @@ public class RebuildIndexRangesJob extends SystemJob {
                     indicesCalculated.incrementAndGet();
                     continue;
                 }
-                if (cancelRequested) {
-                    info("Stop requested. Not calculating next index range, not updating ranges.");
-                    sw.stop();
-                    return;
-                }
 
-                try {
-                    final IndexRange indexRange = indexRangeService.calculateRange(index);
-                    indexRangeService.save(indexRange);
-                    LOG.info("Created ranges for index {}: {}", index, indexRange);
-                } catch (Exception e) {
-                    LOG.info("Could not calculate range of index [" + index + "]. Skipping.", e);
-                } finally {
-                    indicesCalculated.incrementAndGet();
+                if (indexSetDocumentCounts != null) {
+                    final Long documentCount = indexSetDocumentCounts.get(index);
+                    if (skipUnchanged && documentCount == null) {
+                        LOG.debug("{} is closed, not calculating index range for it", index);
+                        skip();
+                        continue;
+                    }
+                    if (skipUnchanged && isUnchanged(existingRanges.get(index), documentCount)) {
+                        LOG.debug("Document count of {} didn't change, not calculating index range for it", index);
+                        skip();
+                        continue;
+                    }
+                    if (documentCount != null) {
+                        documentCounts.put(index, documentCount);
+                    }
                 }
+                pendingIndices.add(index);
             }
         }
 
-        info("Done calculating index ranges for " + indicesToCalculate + " indices. Took " + sw.stop().elapsed(TimeUnit.MILLISECONDS) + "ms.");
+        calculateRanges(pendingIndices, documentCounts);
+        if (cancelRequested) {
+            info("Stop requested. Not calculating remaining index ranges.");
+            sw.stop();
+            return;
+        }
+
+        info("Done calculating index ranges for " + indicesToCalculate + " indices (" + indicesSkipped.get()
+                + " skipped). Took " + sw.stop().elapsed(TimeUnit.MILLISECONDS) + "ms.");
+    }
+
+    /**
+     * Returns the document counts of the open indices of the given index set or {@code null} if they couldn't be
+     * determined.
+     */
+    @Nullable
+    private Map<String, Long> documentCounts(IndexSet indexSet) {
+        try {
+            return indices.getDocumentCounts(List.of(indexSet.getIndexWildcard()));
+        } catch (Exception e) {
+            LOG.warn("Couldn't get document counts of index set {}, recalculating all of its index ranges.",
+                    indexSet.getConfig().title(), e);
+            return null;
+        }
+    }
+
+    private static boolean isUnchanged(@Nullable IndexRange existingRange, long documentCount) {
+        return existingRange != null && Objects.equals(existingRange.documentCount(), documentCount);
+    }
+
+    private void skip() {
+        indicesSkipped.incrementAndGet();
+        indicesCalculated.incrementAndGet();
+    }
+
+    private void calculateRanges(List<String> pendingIndices, Map<String, Long> documentCounts) {
+        if (pendingIndices.isEmpty()) {
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+                .setNameFormat("rebuild-index-ranges-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            final List<Future<?>> batches = Lists.partition(pendingIndices, batchSize).stream()
+                    .<Future<?>>map(batch -> executor.submit(() -> calculateBatch(batch, documentCounts)))
+                    .toList();
+            for (Future<?> batch : batches) {
+                batch.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            requestCancel();
+        } catch (ExecutionException e) {
+            LOG.error("Couldn't calculate index ranges", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void calculateBatch(List<String> batch, Map<String, Long> documentCounts) {
+        if (cancelRequested) {
+            return;
+        }
+        try {
+            final List<IndexRange> indexRanges = indexRangeService.calculateRanges(batch).values().stream()
+                    .<IndexRange>map(indexRange -> MongoIndexRange.create(indexRange, documentCounts.get(indexRange.indexName())))
+                    .toList();
+            indexRangeService.saveAll(indexRanges);
+            indexRanges.forEach(indexRange -> LOG.info("Created ranges for index {}: {}", indexRange.indexName(), indexRange));
+        } catch (Exception e) {
+            LOG.info("Could not calculate ranges of indices " + batch + ". Skipping.", e);
+        } finally {
+            indicesCalculated.addAndGet(batch.size());
+        }
     }
 
     protected void info(String what) {
@@ -17,6 +17,7 @@
 package org.graylog2.inputs.extractors;
 
 import com.codahale.metrics.MetricRegistry;
+import org.graylog2.Configuration;
 import org.graylog2.ConfigurationException;
 import org.graylog2.grok.GrokPatternRegistry;
 import org.graylog2.lookup.LookupTableService;
@@ -32,12 +33,24 @@ public class ExtractorFactory {
     private final MetricRegistry metricRegistry;
     private final GrokPatternRegistry grokPatternRegistry;
     private final LookupTableService lookupTableService;
+    private final int timerSampleRate;
 
-    @Inject
     public ExtractorFactory(MetricRegistry metricRegistry, GrokPatternRegistry grokPatternRegistry, LookupTableService lookupTableService) {
+        this(metricRegistry, grokPatternRegistry, lookupTableService, 1);
+    }
+
+    @Inject
+    public ExtractorFactory(MetricRegistry metricRegistry, GrokPatternRegistry grokPatternRegistry,
+                            LookupTableService lookupTableService, Configuration configuration) {
+        this(metricRegistry, grokPatternRegistry, lookupTableService, configuration.getExtractorsTimerSampleRate());
+    }
+
+    private ExtractorFactory(MetricRegistry metricRegistry, GrokPatternRegistry grokPatternRegistry,
+                             LookupTableService lookupTableService, int timerSampleRate) {
         this.metricRegistry = metricRegistry;
         this.grokPatternRegistry = grokPatternRegistry;
         this.lookupTableService = lookupTableService;
+        this.timerSampleRate = timerSampleRate;
     }
 
     public Extractor factory(String id,
@@ -52,7 +65,24 @@ public class ExtractorFactory {
                              Extractor.ConditionType conditionType,
                              String conditionValue)
             throws NoSuchExtractorException, Extractor.ReservedFieldException, ConfigurationException {
+        final Extractor extractor = create(id, title, order, cursorStrategy, type, sourceField, targetField,
+                extractorConfig, creatorUserId, converters, conditionType, conditionValue);
+        extractor.sampleTimers(metricRegistry, timerSampleRate);
+        return extractor;
+    }
 
+    private Extractor create(String id,
+                             String title,
+                             long order,
+                             Extractor.CursorStrategy cursorStrategy,
+                             Extractor.Type type,
+                             String sourceField,
+                             String targetField,
+                             Map<String, Object> extractorConfig,
+                             String creatorUserId, List<Converter> converters,
+                             Extractor.ConditionType conditionType,
+                             String conditionValue)
+            throws NoSuchExtractorException, Extractor.ReservedFieldException, ConfigurationException {
         // TODO convert to guice factory
         switch (type) {
             case REGEX:
@@ -39,6 +39,8 @@ import org.graylog2.lookup.adapters.dnslookup.DnsAnswer;
 import org.graylog2.lookup.adapters.dnslookup.DnsClient;
 import org.graylog2.lookup.adapters.dnslookup.DnsLookupAdapterConfiguration;
 import org.graylog2.lookup.adapters.dnslookup.DnsLookupType;
+import org.graylog2.lookup.adapters.dnslookup.DnsNameNotFoundException;
+import org.graylog2.lookup.adapters.dnslookup.DnsRequestCoalescer;
 import org.graylog2.lookup.adapters.dnslookup.PtrDnsAnswer;
 import org.graylog2.lookup.adapters.dnslookup.TxtDnsAnswer;
 import org.graylog2.lookup.dto.DataAdapterDto;
@@ -47,7 +49,6 @@ import org.graylog2.plugin.lookup.LookupDataAdapter;
 import org.graylog2.plugin.lookup.LookupDataAdapterConfiguration;
 import org.graylog2.plugin.lookup.LookupResult;
 import org.graylog2.shared.utilities.ExceptionUtils;
-import org.joda.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,6 +57,7 @@ import javax.annotation.Nullable;
 import jakarta.inject.Inject;
 
 import java.net.UnknownHostException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -64,7 +66,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class DnsLookupDataAdapter extends LookupDataAdapter {
 
@@ -72,20 +78,23 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
 
     public static final String NAME = "dnslookup";
 
-    private static final Duration REFRESH_INTERVAL_DURATION = Duration.ZERO;
+    private static final org.joda.time.Duration REFRESH_INTERVAL_DURATION = org.joda.time.Duration.ZERO;
     private static final String A_RECORD_LABEL = "A";
     private static final String AAAA_RECORD_LABEL = "AAAA";
     private static final String ERROR_COUNTER = "errors";
+    private static final String NEGATIVE_CACHE_HITS_COUNTER = "negativeCacheHits";
     private static final String RESULTS_FIELD = "results";
     private static final String RAW_RESULTS_FIELD = "raw_results";
     private static final String TIMER_RESOLVE_DOMAIN_NAME = "resolveDomainNameTime";
     private static final String TIMER_REVERSE_LOOKUP = "reverseLookupTime";
     private static final String TIMER_TEXT_LOOKUP = "textLookupTime";
     private DnsClient dnsClient;
+    private DnsRequestCoalescer<LookupResult> requestCoalescer;
     private final Config config;
     private final DnsLookupAdapterConfiguration adapterConfiguration;
 
     private final Counter errorCounter;
+    private final Counter negativeCacheHitsCounter;
 
     // Timers exist for all request types, so that each can be troubleshot individually.
     private final Timer resolveDomainNameTimer;
@@ -100,6 +109,7 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
         this.config = (Config) dto.config();
         this.adapterConfiguration = adapterConfiguration;
         this.errorCounter = metricRegistry.counter(MetricRegistry.name(getClass(), dto.id(), ERROR_COUNTER));
+        this.negativeCacheHitsCounter = metricRegistry.counter(MetricRegistry.name(getClass(), dto.id(), NEGATIVE_CACHE_HITS_COUNTER));
         this.resolveDomainNameTimer = metricRegistry.timer(MetricRegistry.name(getClass(), dto.id(), TIMER_RESOLVE_DOMAIN_NAME));
         this.reverseLookupTimer = metricRegistry.timer(MetricRegistry.name(getClass(), dto.id(), TIMER_REVERSE_LOOKUP));
         this.textLookupTimer = metricRegistry.timer(MetricRegistry.name(getClass(), dto.id(), TIMER_TEXT_LOOKUP));
@@ -110,6 +120,10 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
         dnsClient = new DnsClient(config.requestTimeout(), adapterConfiguration.getPoolSize(),
                 adapterConfiguration.getPoolRefreshInterval().toSeconds());
         dnsClient.start(config.serverIps());
+        if (adapterConfiguration.isAsyncRequests()) {
+            requestCoalescer = new DnsRequestCoalescer<>(Duration.ofMillis(adapterConfiguration.getNegativeCacheTTL().toMilliseconds()),
+                    adapterConfiguration.getNegativeCacheMaxSize());
+        }
     }
 
     @Override
@@ -122,7 +136,7 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
      * Not needed for the DNS Lookup adaptor.
      */
     @Override
-    public Duration refreshInterval() {
+    public org.joda.time.Duration refreshInterval() {
         return REFRESH_INTERVAL_DURATION;
     }
 
@@ -145,6 +159,10 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
 
         LOG.debug("Beginning [{}] DNS resolution for key [{}]", config.lookupType(), trimmedKey);
 
+        if (requestCoalescer != null) {
+            return getAsync(trimmedKey);
+        }
+
         LookupResult lookupResult;
         switch (config.lookupType()) {
             case A:
@@ -185,6 +203,80 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
         return lookupResult;
     }
 
+    /**
+     * Resolves the key without holding a resolver for the duration of the request. Concurrent lookups of the same
+     * key share a single DNS request and keys that recently resolved to NXDOMAIN are answered from the negative
+     * cache without contacting the DNS server.
+     */
+    private LookupResult getAsync(String key) {
+        if (requestCoalescer.isKnownNonExistent(key)) {
+            negativeCacheHitsCounter.inc();
+            return getEmptyResult();
+        }
+
+        final Timer timer = switch (config.lookupType()) {
+            case A, AAAA, A_AAAA -> resolveDomainNameTimer;
+            case PTR -> reverseLookupTimer;
+            case TXT -> textLookupTimer;
+        };
+
+        try (final Timer.Context ignored = timer.time()) {
+            final LookupResult lookupResult = requestCoalescer.execute(key, () -> resolveAsync(key))
+                    .get(config.requestTimeout(), TimeUnit.MILLISECONDS);
+            LOG.debug("[{}] DNS resolution complete for key [{}]. Response [{}]", config.lookupType(), key, lookupResult);
+            return lookupResult;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DnsNameNotFoundException) {
+                return getEmptyResult(); // NXDOMAIN is a valid case when the DNS record does not exist. Do not log an error.
+            }
+            LOG.error("Could not perform [{}] DNS lookup for [{}]. Cause [{}]", config.lookupType(), key, ExceptionUtils.getRootCauseOrMessage(e));
+        } catch (TimeoutException e) {
+            LOG.error("[{}] DNS lookup for [{}] didn't complete in [{}] ms", config.lookupType(), key, config.requestTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Interrupted while waiting for [{}] DNS lookup for [{}]", config.lookupType(), key);
+        }
+        errorCounter.inc();
+        return getErrorResult();
+    }
+
+    private CompletableFuture<LookupResult> resolveAsync(String key) {
+        return switch (config.lookupType()) {
+            case A -> dnsClient.resolveIPv4AddressForHostnameAsync(key, false).thenApply(this::buildAddressLookupResult);
+            case AAAA -> dnsClient.resolveIPv6AddressForHostnameAsync(key, false).thenApply(this::buildAddressLookupResult);
+            case A_AAAA -> {
+                final CompletableFuture<List<ADnsAnswer>> ip4Answers = dnsClient.resolveIPv4AddressForHostnameAsync(key, true);
+                final CompletableFuture<List<ADnsAnswer>> ip6Answers = dnsClient.resolveIPv6AddressForHostnameAsync(key, true);
+                yield nullIfNameNotFound(ip4Answers).thenCombine(nullIfNameNotFound(ip6Answers), (ip4, ip6) -> {
+                    if (ip4 == null && ip6 == null) {
+                        // The name doesn't exist for either record type, report it so the answer gets negatively cached.
+                        throw new CompletionException(new DnsNameNotFoundException(key, null));
+                    }
+                    return buildAllAddressesLookupResult(key, ip4 == null ? List.of() : ip4, ip6 == null ? List.of() : ip6);
+                });
+            }
+            case PTR -> dnsClient.reverseLookupAsync(key).thenApply(dnsResponse -> buildReverseLookupResult(key, dnsResponse));
+            case TXT -> dnsClient.txtLookupAsync(key).thenApply(txtDnsAnswers -> buildTextLookupResult(key, txtDnsAnswers));
+        };
+    }
+
+    /**
+     * Completes with {@code null} if the DNS server answered with NXDOMAIN, so that it can be distinguished from
+     * other failures, which are passed on.
+     */
+    private static CompletableFuture<List<ADnsAnswer>> nullIfNameNotFound(CompletableFuture<List<ADnsAnswer>> answers) {
+        return answers.handle((result, error) -> {
+            if (error == null) {
+                return result;
+            }
+            final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof DnsNameNotFoundException) {
+                return null;
+            }
+            throw new CompletionException(cause);
+        });
+    }
+
     /**
      * Provides both single and multiple addresses in LookupResult. This is because the purpose of a hostname
      * resolution request is to resolve to a single IP address (so that communication can be initiated with it).
@@ -237,6 +329,13 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
         return getEmptyResult();
     }
 
+    private LookupResult buildAddressLookupResult(List<ADnsAnswer> aDnsAnswers) {
+        if (CollectionUtils.isNotEmpty(aDnsAnswers)) {
+            return buildLookupResult(aDnsAnswers);
+        }
+        return getEmptyResult();
+    }
+
     private LookupResult buildLookupResult(List<ADnsAnswer> aDnsAnswers) {
 
         /* Provide both a single and multiValue addresses.
@@ -276,38 +375,43 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
             } catch (UnknownHostException e) {
             }
 
-            // Select answer for single value. Prefer use of IPv4 address. Only return IPv6 address if no IPv6 address found.
-            final String singleValue;
-            if (CollectionUtils.isNotEmpty(ip4Answers)) {
-                singleValue = ip4Answers.get(0).ipAddress();
-            } else if (CollectionUtils.isNotEmpty(ip6Answers)) {
-                singleValue = ip6Answers.get(0).ipAddress();
-            } else {
-                LOG.debug("Could not resolve [A/AAAA] records hostname [{}].", key);
-                return getEmptyResult();
-            }
+            return buildAllAddressesLookupResult(key, ip4Answers, ip6Answers);
+        } catch (Exception e) {
+            LOG.error("Could not resolve [A/AAAA] records for hostname [{}]. Cause [{}]", key, ExceptionUtils.getRootCauseOrMessage(e));
+            errorCounter.inc();
+            return getErrorResult();
+        }
+    }
 
-            final LookupResult.Builder builder = LookupResult.builder();
-            if (StringUtils.isNotBlank(singleValue)) {
-                builder.single(singleValue);
-            }
+    private LookupResult buildAllAddressesLookupResult(Object key, List<ADnsAnswer> ip4Answers, List<ADnsAnswer> ip6Answers) {
 
-            final List<ADnsAnswer> allAnswers = new ArrayList<>();
-            allAnswers.addAll(ip4Answers);
-            allAnswers.addAll(ip6Answers);
+        // Select answer for single value. Prefer use of IPv4 address. Only return IPv6 address if no IPv6 address found.
+        final String singleValue;
+        if (CollectionUtils.isNotEmpty(ip4Answers)) {
+            singleValue = ip4Answers.get(0).ipAddress();
+        } else if (CollectionUtils.isNotEmpty(ip6Answers)) {
+            singleValue = ip6Answers.get(0).ipAddress();
+        } else {
+            LOG.debug("Could not resolve [A/AAAA] records hostname [{}].", key);
+            return getEmptyResult();
+        }
 
-            if (CollectionUtils.isNotEmpty(allAnswers)) {
-                builder.multiValue(Collections.singletonMap(RESULTS_FIELD, allAnswers)).stringListValue(ADnsAnswer.convertToStringListValue(allAnswers));
-            }
+        final LookupResult.Builder builder = LookupResult.builder();
+        if (StringUtils.isNotBlank(singleValue)) {
+            builder.single(singleValue);
+        }
 
-            assignMinimumTTL(allAnswers, builder);
+        final List<ADnsAnswer> allAnswers = new ArrayList<>();
+        allAnswers.addAll(ip4Answers);
+        allAnswers.addAll(ip6Answers);
 
-            return builder.build();
-        } catch (Exception e) {
-            LOG.error("Could not resolve [A/AAAA] records for hostname [{}]. Cause [{}]", key, ExceptionUtils.getRootCauseOrMessage(e));
-            errorCounter.inc();
-            return getErrorResult();
+        if (CollectionUtils.isNotEmpty(allAnswers)) {
+            builder.multiValue(Collections.singletonMap(RESULTS_FIELD, allAnswers)).stringListValue(ADnsAnswer.convertToStringListValue(allAnswers));
         }
+
+        assignMinimumTTL(allAnswers, builder);
+
+        return builder.build();
     }
 
     private LookupResult performReverseLookup(Object key) {
@@ -321,6 +425,11 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
             return getErrorResult();
         }
 
+        return buildReverseLookupResult(key, dnsResponse);
+    }
+
+    private LookupResult buildReverseLookupResult(Object key, @Nullable PtrDnsAnswer dnsResponse) {
+
         if (dnsResponse != null) {
             if (!Strings.isNullOrEmpty(dnsResponse.fullDomain())) {
 
@@ -362,6 +471,11 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
             return getErrorResult();
         }
 
+        return buildTextLookupResult(key, txtDnsAnswers);
+    }
+
+    private LookupResult buildTextLookupResult(Object key, List<TxtDnsAnswer> txtDnsAnswers) {
+
         if (CollectionUtils.isNotEmpty(txtDnsAnswers)) {
             final LookupResult.Builder builder = LookupResult.builder();
             builder.multiValue(Collections.singletonMap(RAW_RESULTS_FIELD, txtDnsAnswers))
@@ -31,8 +31,10 @@ import io.netty.handler.codec.dns.DefaultDnsRecordDecoder;
 import io.netty.handler.codec.dns.DnsRecord;
 import io.netty.handler.codec.dns.DnsRecordType;
 import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.DnsResponseCode;
 import io.netty.handler.codec.dns.DnsSection;
 import io.netty.resolver.dns.DnsNameResolver;
+import io.netty.util.concurrent.Future;
 import org.apache.commons.lang3.StringUtils;
 import org.graylog2.lookup.adapters.dnslookup.DnsResolverPool.ResolverLease;
 import org.graylog2.shared.utilities.ExceptionUtils;
@@ -44,12 +46,16 @@ import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -61,6 +67,7 @@ public class DnsClient {
 
     private static final int DEFAULT_DNS_PORT = 53;
     private static final int DEFAULT_REQUEST_TIMEOUT_INCREMENT = 100;
+    private static final int MAX_CNAME_HOPS = 8;
     private static final Pattern VALID_HOSTNAME_PATTERN = Pattern.compile("^(([a-zA-Z0-9]|[a-zA-Z0-9][a-zA-Z0-9\\-]*[a-zA-Z0-9])\\.)*([A-Za-z0-9]|[A-Za-z0-9][A-Za-z0-9\\-]*[A-Za-z0-9])$");
 
     // Use fully qualified reverse lookup domain names (with dot at end).
@@ -172,6 +179,125 @@ public class DnsClient {
         }
     }
 
+    /**
+     * Asynchronous variant of {@link #resolveIPv4AddressForHostname(String, boolean)}. The returned future is
+     * completed on the resolver event loop and never blocks the calling thread. A non-existent host name completes
+     * the future exceptionally with a {@link DnsNameNotFoundException}, other error responses complete it with a
+     * {@link DnsResponseCodeException}.
+     */
+    public CompletableFuture<List<ADnsAnswer>> resolveIPv4AddressForHostnameAsync(String hostName, boolean includeIpVersion) {
+        return resolveIpAddressesAsync(hostName, DnsRecordType.A, includeIpVersion);
+    }
+
+    /**
+     * Asynchronous variant of {@link #resolveIPv6AddressForHostname(String, boolean)}.
+     *
+     * @see #resolveIPv4AddressForHostnameAsync(String, boolean)
+     */
+    public CompletableFuture<List<ADnsAnswer>> resolveIPv6AddressForHostnameAsync(String hostName, boolean includeIpVersion) {
+        return resolveIpAddressesAsync(hostName, DnsRecordType.AAAA, includeIpVersion);
+    }
+
+    private CompletableFuture<List<ADnsAnswer>> resolveIpAddressesAsync(String hostName, DnsRecordType dnsRecordType, boolean includeIpVersion) {
+
+        LOG.debug("Attempting to asynchronously resolve [{}] records for [{}]", dnsRecordType, hostName);
+
+        if (resolverPool.isStopped()) {
+            return CompletableFuture.failedFuture(new DnsClientNotRunningException());
+        }
+
+        validateHostName(hostName);
+
+        return queryIpAddresses(hostName, hostName, dnsRecordType, includeIpVersion, MAX_CNAME_HOPS);
+    }
+
+    /* DnsNameResolver.resolveAll(DnsQuestion) reports every failure (NXDOMAIN, SERVFAIL, timeouts) as an
+     * UnknownHostException. Query the server directly instead, so that only NXDOMAIN answers are treated as
+     * non-existent names. Recursive DNS servers usually include the CNAME chain and the resolved addresses in the
+     * answer section. If the answer only contains the CNAME chain, the last alias target is queried again, like
+     * DnsNameResolver.resolveAll() does. */
+    private CompletableFuture<List<ADnsAnswer>> queryIpAddresses(String hostName, String queryName, DnsRecordType dnsRecordType,
+                                                                 boolean includeIpVersion, int remainingCnameHops) {
+        if (resolverPool.isStopped()) {
+            return CompletableFuture.failedFuture(new DnsClientNotRunningException());
+        }
+
+        final ResolverLease resolverLease = resolverPool.takeLease();
+        return toCompletableFuture(resolverLease, resolverLease.getResolver().query(new DefaultDnsQuestion(queryName, dnsRecordType)),
+                envelope -> {
+                    final DnsResponse content = envelope.content();
+                    try {
+                        checkResponseCode(content, hostName);
+                        final List<ADnsAnswer> answers = new ArrayList<>();
+                        final Map<String, String> cnames = new HashMap<>();
+                        for (int i = 0; i < content.count(DnsSection.ANSWER); i++) {
+                            final DnsRecord dnsRecord = content.recordAt(DnsSection.ANSWER, i);
+                            if (!(dnsRecord instanceof DefaultDnsRawRecord rawRecord)) {
+                                continue;
+                            }
+                            if (dnsRecordType.equals(dnsRecord.type())) {
+                                // decodeDnsRecord() releases the record, but it is still owned by the response.
+                                final ADnsAnswer answer = decodeDnsRecord(rawRecord.retain(), includeIpVersion);
+                                if (answer != null) {
+                                    answers.add(answer);
+                                }
+                            } else if (DnsRecordType.CNAME.equals(dnsRecord.type())) {
+                                cnames.put(normalizeDomainName(dnsRecord.name()),
+                                        normalizeDomainName(DefaultDnsRecordDecoder.decodeName(rawRecord.content().duplicate())));
+                            }
+                        }
+                        if (!answers.isEmpty() || cnames.isEmpty()) {
+                            return CompletableFuture.completedFuture(answers);
+                        }
+
+                        // Follow the CNAME chain of the answer. The chain length is bounded to protect against loops.
+                        String aliasTarget = normalizeDomainName(queryName);
+                        for (int i = 0; i < cnames.size() && cnames.containsKey(aliasTarget); i++) {
+                            aliasTarget = cnames.get(aliasTarget);
+                        }
+                        if (aliasTarget.equals(normalizeDomainName(queryName)) || remainingCnameHops <= 0) {
+                            LOG.debug("Unable to follow CNAME chain of [{}] beyond [{}]", hostName, aliasTarget);
+                            return CompletableFuture.completedFuture(answers);
+                        }
+                        LOG.debug("Following CNAME chain of [{}] to [{}]", hostName, aliasTarget);
+                        return queryIpAddresses(hostName, aliasTarget, dnsRecordType, includeIpVersion, remainingCnameHops - 1);
+                    } finally {
+                        content.release();
+                    }
+                }).thenCompose(Function.identity());
+    }
+
+    private static String normalizeDomainName(String name) {
+        return StringUtils.removeEnd(name, ".").toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Bridges a Netty resolver future to a {@link CompletableFuture}. The resolver lease is returned as soon as the
+     * resolver future completes, so that a lease is never held by a waiting caller thread.
+     */
+    private <T, R> CompletableFuture<R> toCompletableFuture(ResolverLease resolverLease, Future<T> resolverFuture, ResponseDecoder<T, R> decoder) {
+        final CompletableFuture<R> result = new CompletableFuture<>();
+        resolverFuture.addListener(future -> {
+            resolverPool.returnLease(resolverLease);
+            if (!future.isSuccess()) {
+                result.completeExceptionally(future.cause());
+                return;
+            }
+            try {
+                //noinspection unchecked
+                result.complete(decoder.decode((T) future.getNow()));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface ResponseDecoder<T, R> {
+        R decode(T response) throws Exception;
+    }
+
     /**
      * Picks out the IP address and TTL from the answer response for each record.
      */
@@ -239,45 +365,104 @@ public class DnsClient {
         final ResolverLease resolverLease = resolverPool.takeLease();
         try {
             content = resolverLease.getResolver().query(new DefaultDnsQuestion(inverseAddressFormat, DnsRecordType.PTR)).get(requestTimeout, TimeUnit.MILLISECONDS).content();
-            for (int i = 0; i < content.count(DnsSection.ANSWER); i++) {
+            return decodePtrResponse(content, ipAddress);
+        } catch (TimeoutException e) {
+            throw new ExecutionException("Resolver future didn't return a result in " + requestTimeout + " ms", e);
+        } finally {
+            if (content != null) {
+                // Must manually release references on content object since the DnsResponse class extends ReferenceCounted
+                content.release();
+            }
+            resolverPool.returnLease(resolverLease);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #reverseLookup(String)}. The future completes with {@code null} if the
+     * response did not contain a PTR record, exceptionally with a {@link DnsNameNotFoundException} if the
+     * DNS server answered with NXDOMAIN and with a {@link DnsResponseCodeException} for other error responses.
+     */
+    public CompletableFuture<PtrDnsAnswer> reverseLookupAsync(String ipAddress) {
 
-                // Return the first PTR record, because there should be only one as per
-                // http://tools.ietf.org/html/rfc1035#section-3.5
-                final DnsRecord dnsRecord = content.recordAt(DnsSection.ANSWER, i);
-                if (dnsRecord instanceof DefaultDnsPtrRecord) {
+        LOG.debug("Attempting to asynchronously perform reverse lookup for IP address [{}]", ipAddress);
 
-                    final DefaultDnsPtrRecord ptrRecord = (DefaultDnsPtrRecord) dnsRecord;
-                    final PtrDnsAnswer.Builder dnsAnswerBuilder = PtrDnsAnswer.builder();
+        if (resolverPool.isStopped()) {
+            return CompletableFuture.failedFuture(new DnsClientNotRunningException());
+        }
 
-                    final String hostname = ptrRecord.hostname();
-                    LOG.trace("PTR record retrieved with hostname [{}]", hostname);
+        validateIpAddress(ipAddress);
 
+        final String inverseAddressFormat = getInverseAddressFormat(ipAddress);
+
+        final ResolverLease resolverLease = resolverPool.takeLease();
+        return toCompletableFuture(resolverLease, resolverLease.getResolver().query(new DefaultDnsQuestion(inverseAddressFormat, DnsRecordType.PTR)),
+                envelope -> {
+                    final DnsResponse content = envelope.content();
                     try {
-                        parseReverseLookupDomain(dnsAnswerBuilder, hostname);
-                    } catch (IllegalArgumentException e) {
-                        LOG.debug("Reverse lookup of [{}] was partially successful. The DNS server returned [{}], " +
-                                  "which is an invalid host name. The \"domain\" field will be left blank.",
-                                  ipAddress, hostname);
-                        dnsAnswerBuilder.domain("");
+                        checkResponseCode(content, inverseAddressFormat);
+                        return decodePtrResponse(content, ipAddress);
+                    } finally {
+                        content.release();
                     }
+                });
+    }
+
+    private static PtrDnsAnswer decodePtrResponse(DnsResponse content, String ipAddress) {
+        for (int i = 0; i < content.count(DnsSection.ANSWER); i++) {
+
+            // Return the first PTR record, because there should be only one as per
+            // http://tools.ietf.org/html/rfc1035#section-3.5
+            final DnsRecord dnsRecord = content.recordAt(DnsSection.ANSWER, i);
+            if (dnsRecord instanceof DefaultDnsPtrRecord) {
+
+                final DefaultDnsPtrRecord ptrRecord = (DefaultDnsPtrRecord) dnsRecord;
+                final PtrDnsAnswer.Builder dnsAnswerBuilder = PtrDnsAnswer.builder();
 
-                    return dnsAnswerBuilder.dnsTTL(ptrRecord.timeToLive())
-                                           .build();
+                final String hostname = ptrRecord.hostname();
+                LOG.trace("PTR record retrieved with hostname [{}]", hostname);
+
+                try {
+                    parseReverseLookupDomain(dnsAnswerBuilder, hostname);
+                } catch (IllegalArgumentException e) {
+                    LOG.debug("Reverse lookup of [{}] was partially successful. The DNS server returned [{}], " +
+                              "which is an invalid host name. The \"domain\" field will be left blank.",
+                              ipAddress, hostname);
+                    dnsAnswerBuilder.domain("");
                 }
+
+                return dnsAnswerBuilder.dnsTTL(ptrRecord.timeToLive())
+                                       .build();
             }
-        } catch (TimeoutException e) {
-            throw new ExecutionException("Resolver future didn't return a result in " + requestTimeout + " ms", e);
-        } finally {
-            if (content != null) {
-                // Must manually release references on content object since the DnsResponse class extends ReferenceCounted
-                content.release();
-            }
-            resolverPool.returnLease(resolverLease);
         }
 
         return null;
     }
 
+    /**
+     * Fails with a {@link DnsNameNotFoundException} if the response code is NXDOMAIN. As per RFC 2308, the TTL of
+     * the SOA record in the authority section is used as the negative caching TTL if the server provided one.
+     * All other error response codes (e.g. SERVFAIL) fail with a {@link DnsResponseCodeException}, so that they are
+     * not mistaken for non-existent names.
+     */
+    private static void checkResponseCode(DnsResponse content, String name) throws DnsNameNotFoundException, DnsResponseCodeException {
+        if (DnsResponseCode.NOERROR.equals(content.code())) {
+            return;
+        }
+        if (!DnsResponseCode.NXDOMAIN.equals(content.code())) {
+            throw new DnsResponseCodeException(name, content.code());
+        }
+
+        Long negativeTTL = null;
+        for (int i = 0; i < content.count(DnsSection.AUTHORITY); i++) {
+            final DnsRecord dnsRecord = content.recordAt(DnsSection.AUTHORITY, i);
+            if (DnsRecordType.SOA.equals(dnsRecord.type())) {
+                negativeTTL = dnsRecord.timeToLive();
+                break;
+            }
+        }
+        throw new DnsNameNotFoundException(name, negativeTTL);
+    }
+
     /**
      * Extract the domain name (without subdomain). The Guava {@link InternetDomainName} implementation
      * provides a method to correctly handle this (and handles special cases for TLDs with multiple
@@ -327,29 +512,7 @@ public class DnsClient {
         final ResolverLease resolverLease = resolverPool.takeLease();
         try {
             content = resolverLease.getResolver().query(new DefaultDnsQuestion(hostName, DnsRecordType.TXT)).get(requestTimeout, TimeUnit.MILLISECONDS).content();
-            int count = content.count(DnsSection.ANSWER);
-            final ArrayList<TxtDnsAnswer> txtRecords = new ArrayList<>(count);
-            for (int i = 0; i < count; i++) {
-
-                final DnsRecord dnsRecord = content.recordAt(DnsSection.ANSWER, i);
-                LOG.trace("TXT record [{}] retrieved with content [{}].", i, dnsRecord);
-
-                if (dnsRecord instanceof DefaultDnsRawRecord) {
-                    final DefaultDnsRawRecord txtRecord = (DefaultDnsRawRecord) dnsRecord;
-
-                    final TxtDnsAnswer.Builder dnsAnswerBuilder = TxtDnsAnswer.builder();
-                    final String decodeTxtRecord = decodeTxtRecord(txtRecord);
-                    LOG.trace("The decoded TXT record is [{}]", decodeTxtRecord);
-
-                    dnsAnswerBuilder.value(decodeTxtRecord)
-                                    .dnsTTL(txtRecord.timeToLive())
-                                    .build();
-
-                    txtRecords.add(dnsAnswerBuilder.build());
-                }
-            }
-
-            return txtRecords;
+            return decodeTxtResponse(content);
         } catch (TimeoutException e) {
             throw new ExecutionException("Resolver future didn't return a result in " + requestTimeout + " ms", e);
         } finally {
@@ -361,6 +524,60 @@ public class DnsClient {
         }
     }
 
+    /**
+     * Asynchronous variant of {@link #txtLookup(String)}. The future completes exceptionally with a
+     * {@link DnsNameNotFoundException} if the DNS server answered with NXDOMAIN and with a
+     * {@link DnsResponseCodeException} for other error responses.
+     */
+    public CompletableFuture<List<TxtDnsAnswer>> txtLookupAsync(String hostName) {
+
+        if (resolverPool.isStopped()) {
+            return CompletableFuture.failedFuture(new DnsClientNotRunningException());
+        }
+
+        LOG.debug("Attempting to asynchronously perform TXT lookup for hostname [{}]", hostName);
+
+        validateHostName(hostName);
+
+        final ResolverLease resolverLease = resolverPool.takeLease();
+        return toCompletableFuture(resolverLease, resolverLease.getResolver().query(new DefaultDnsQuestion(hostName, DnsRecordType.TXT)),
+                envelope -> {
+                    final DnsResponse content = envelope.content();
+                    try {
+                        checkResponseCode(content, hostName);
+                        return decodeTxtResponse(content);
+                    } finally {
+                        content.release();
+                    }
+                });
+    }
+
+    private static List<TxtDnsAnswer> decodeTxtResponse(DnsResponse content) {
+        int count = content.count(DnsSection.ANSWER);
+        final ArrayList<TxtDnsAnswer> txtRecords = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+
+            final DnsRecord dnsRecord = content.recordAt(DnsSection.ANSWER, i);
+            LOG.trace("TXT record [{}] retrieved with content [{}].", i, dnsRecord);
+
+            if (dnsRecord instanceof DefaultDnsRawRecord) {
+                final DefaultDnsRawRecord txtRecord = (DefaultDnsRawRecord) dnsRecord;
+
+                final TxtDnsAnswer.Builder dnsAnswerBuilder = TxtDnsAnswer.builder();
+                final String decodeTxtRecord = decodeTxtRecord(txtRecord);
+                LOG.trace("The decoded TXT record is [{}]", decodeTxtRecord);
+
+                dnsAnswerBuilder.value(decodeTxtRecord)
+                                .dnsTTL(txtRecord.timeToLive())
+                                .build();
+
+                txtRecords.add(dnsAnswerBuilder.build());
+            }
+        }
+
+        return txtRecords;
+    }
+
     private static String decodeTxtRecord(DefaultDnsRawRecord record) {
 
         LOG.debug("Attempting to read TXT value from DNS record [{}]", record);
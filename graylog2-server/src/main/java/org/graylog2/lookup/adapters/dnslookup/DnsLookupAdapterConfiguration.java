@@ -20,15 +20,21 @@ import com.github.joschi.jadconfig.Parameter;
 import com.github.joschi.jadconfig.util.Duration;
 import com.github.joschi.jadconfig.validators.PositiveDurationValidator;
 import com.github.joschi.jadconfig.validators.PositiveIntegerValidator;
+import com.github.joschi.jadconfig.validators.PositiveLongValidator;
 import org.graylog2.plugin.PluginConfigBean;
 
 public class DnsLookupAdapterConfiguration implements PluginConfigBean {
     private static final String PREFIX = "dns_lookup_adapter_";
     protected static final String RESOLVER_POOL_SIZE = PREFIX + "resolver_pool_size";
     protected static final String RESOLVER_POOL_REFRESH_INTERVAL = PREFIX + "resolver_pool_refresh_interval";
+    protected static final String ASYNC_REQUESTS = PREFIX + "async_requests";
+    protected static final String NEGATIVE_CACHE_TTL = PREFIX + "negative_cache_ttl";
+    protected static final String NEGATIVE_CACHE_MAX_SIZE = PREFIX + "negative_cache_max_size";
 
     protected static final int DEFAULT_POOL_SIZE = 10;
     protected static final int DEFAULT_REFRESH_INTERVAL_SECONDS = 300;
+    protected static final int DEFAULT_NEGATIVE_CACHE_TTL_SECONDS = 60;
+    protected static final long DEFAULT_NEGATIVE_CACHE_MAX_SIZE = 100_000L;
 
     @Parameter(value = RESOLVER_POOL_SIZE, validators = PositiveIntegerValidator.class)
     private int poolSize = DEFAULT_POOL_SIZE;
@@ -36,6 +42,15 @@ public class DnsLookupAdapterConfiguration implements PluginConfigBean {
     @Parameter(value = RESOLVER_POOL_REFRESH_INTERVAL, validators = PositiveDurationValidator.class)
     private Duration poolRefreshInterval = Duration.seconds(DEFAULT_REFRESH_INTERVAL_SECONDS);
 
+    @Parameter(value = ASYNC_REQUESTS)
+    private boolean asyncRequests = false;
+
+    @Parameter(value = NEGATIVE_CACHE_TTL, validators = PositiveDurationValidator.class)
+    private Duration negativeCacheTTL = Duration.seconds(DEFAULT_NEGATIVE_CACHE_TTL_SECONDS);
+
+    @Parameter(value = NEGATIVE_CACHE_MAX_SIZE, validators = PositiveLongValidator.class)
+    private long negativeCacheMaxSize = DEFAULT_NEGATIVE_CACHE_MAX_SIZE;
+
     public int getPoolSize() {
         return poolSize;
     }
@@ -43,4 +58,21 @@ public class DnsLookupAdapterConfiguration implements PluginConfigBean {
     public Duration getPoolRefreshInterval() {
         return poolRefreshInterval;
     }
+
+    /**
+     * When enabled, DNS lookup adapters issue their requests asynchronously on the resolver event loop,
+     * collapse concurrent requests for the same key into one DNS query and cache negative (NXDOMAIN)
+     * answers separately from the lookup table cache.
+     */
+    public boolean isAsyncRequests() {
+        return asyncRequests;
+    }
+
+    public Duration getNegativeCacheTTL() {
+        return negativeCacheTTL;
+    }
+
+    public long getNegativeCacheMaxSize() {
+        return negativeCacheMaxSize;
+    }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.lookup.adapters.dnslookup;
+
+import javax.annotation.Nullable;
+import java.net.UnknownHostException;
+import java.util.Optional;
+
+/**
+ * Signals an NXDOMAIN answer from the DNS server. This is an expected outcome for many lookups (e.g. reverse
+ * lookups of private addresses), so no stack trace is recorded.
+ */
+public class DnsNameNotFoundException extends UnknownHostException {
+
+    private final Long negativeTTL;
+
+    public DnsNameNotFoundException(String name, @Nullable Long negativeTTL) {
+        super("The DNS name [" + name + "] does not exist.");
+        this.negativeTTL = negativeTTL;
+    }
+
+    /**
+     * @return the negative caching TTL in seconds as provided by the SOA record of the response, if any
+     */
+    public Optional<Long> negativeTTL() {
+        return Optional.ofNullable(negativeTTL);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.lookup.adapters.dnslookup;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent DNS requests for the same key into a single in-flight request and remembers negative
+ * (NXDOMAIN) answers for a bounded amount of time.
+ *
+ * <br>
+ * All callers asking for a key while a request for it is still outstanding share the future of that request.
+ * Once the request completes, the key is removed from the in-flight map. If the request failed with a
+ * {@link DnsNameNotFoundException}, the key is remembered as non-existent for the negative TTL provided by the
+ * DNS server (see {@link DnsNameNotFoundException#negativeTTL()}), capped at the configured maximum. Other failures,
+ * like timeouts or SERVFAIL answers, are not cached.
+ *
+ * <br>
+ * Positive answers are not cached here, they are subject to the lookup table cache and their record TTLs.
+ *
+ * @param <T> the result type of the requests
+ */
+public class DnsRequestCoalescer<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(DnsRequestCoalescer.class);
+
+    private final ConcurrentMap<String, CompletableFuture<T>> inflightRequests = new ConcurrentHashMap<>();
+    private final Cache<String, Long> negativeAnswers;
+    private final long maxNegativeTTLNanos;
+
+    public DnsRequestCoalescer(Duration maxNegativeTTL, long negativeCacheMaxSize) {
+        this.maxNegativeTTLNanos = maxNegativeTTL.toNanos();
+        this.negativeAnswers = Caffeine.newBuilder()
+                .maximumSize(negativeCacheMaxSize)
+                .expireAfter(new Expiry<String, Long>() {
+                    @Override
+                    public long expireAfterCreate(@Nonnull String key, @Nonnull Long ttlNanos, long currentTime) {
+                        return ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(@Nonnull String key, @Nonnull Long ttlNanos, long currentTime, long currentDuration) {
+                        return ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(@Nonnull String key, @Nonnull Long ttlNanos, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * @return true if a recent request for the key was answered with NXDOMAIN and the negative TTL did not expire yet
+     */
+    public boolean isKnownNonExistent(String key) {
+        return negativeAnswers.getIfPresent(key) != null;
+    }
+
+    /**
+     * Returns the future of the in-flight request for the given key or starts a new request with the given supplier.
+     *
+     * @param key     the lookup key
+     * @param request starts the DNS request, only called if there is no in-flight request for the key
+     * @return a future that completes with the result of the (possibly shared) request
+     */
+    public CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> request) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final CompletableFuture<T> inflight = inflightRequests.putIfAbsent(key, future);
+        if (inflight != null) {
+            LOG.trace("Joining in-flight DNS request for key [{}]", key);
+            return inflight;
+        }
+
+        CompletableFuture<T> requestFuture;
+        try {
+            requestFuture = request.get();
+        } catch (Exception e) {
+            requestFuture = CompletableFuture.failedFuture(e);
+        }
+
+        requestFuture.whenComplete((result, error) -> {
+            inflightRequests.remove(key, future);
+            if (error == null) {
+                future.complete(result);
+                return;
+            }
+            final Throwable cause = unwrap(error);
+            if (cause instanceof DnsNameNotFoundException nameNotFoundException) {
+                rememberNonExistent(key, nameNotFoundException);
+            }
+            future.completeExceptionally(cause);
+        });
+
+        return future;
+    }
+
+    private void rememberNonExistent(String key, DnsNameNotFoundException e) {
+        final long ttlNanos = e.negativeTTL()
+                .map(TimeUnit.SECONDS::toNanos)
+                .map(serverTTL -> Math.min(serverTTL, maxNegativeTTLNanos))
+                .orElse(maxNegativeTTLNanos);
+        if (ttlNanos > 0) {
+            LOG.trace("Caching negative DNS answer for key [{}] for [{}] ms", key, TimeUnit.NANOSECONDS.toMillis(ttlNanos));
+            negativeAnswers.put(key, ttlNanos);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    protected int inflightRequests() {
+        return inflightRequests.size();
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.lookup.adapters.dnslookup;
+
+import io.netty.handler.codec.dns.DnsResponseCode;
+
+import java.io.IOException;
+
+/**
+ * Signals an error response from the DNS server other than NXDOMAIN, e.g. SERVFAIL or REFUSED. In contrast to
+ * {@link DnsNameNotFoundException}, the name might exist, so the answer must not be cached.
+ */
+public class DnsResponseCodeException extends IOException {
+
+    private final DnsResponseCode responseCode;
+
+    public DnsResponseCodeException(String name, DnsResponseCode responseCode) {
+        super("The DNS server answered the query for [" + name + "] with [" + responseCode + "].");
+        this.responseCode = responseCode;
+    }
+
+    public DnsResponseCode responseCode() {
+        return responseCode;
+    }
+}
@@ -31,6 +31,7 @@ import org.graylog2.outputs.filter.OutputFilter;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.outputs.FilteredMessageOutput;
 import org.graylog2.plugin.outputs.MessageOutput;
+import org.graylog2.shared.buffers.ProcessingStageMetrics;
 import org.graylog2.shared.messageq.MessageQueueAcknowledger;
 import org.graylog2.system.shutdown.GracefulShutdownHook;
 import org.graylog2.system.shutdown.GracefulShutdownService;
@@ -76,6 +77,7 @@ public class BatchedMessageFilterOutput implements MessageOutput, GracefulShutdo
     private final Timer processTime;
     private final GracefulShutdownService gracefulShutdownService;
     private final IndexSetAwareMessageOutputBuffer buffer;
+    private final ProcessingStageMetrics processingStageMetrics;
     private ScheduledFuture<?> flushTask;
 
     @Inject
@@ -86,6 +88,7 @@ public class BatchedMessageFilterOutput implements MessageOutput, GracefulShutdo
                                       MessageQueueAcknowledger acknowledger,
                                       IndexSetAwareMessageOutputBuffer indexSetAwareMessageOutputBuffer,
                                       GracefulShutdownService gracefulShutdownService,
+                                      ProcessingStageMetrics processingStageMetrics,
                                       @Named("output_flush_interval") int outputFlushInterval,
                                       @Named("shutdown_timeout") int shutdownTimeoutMs,
                                       @Named("daemonScheduler") ScheduledExecutorService daemonScheduler) {
@@ -102,6 +105,7 @@ public class BatchedMessageFilterOutput implements MessageOutput, GracefulShutdo
         this.shutdownTimeout = Duration.ofMillis(shutdownTimeoutMs);
         this.daemonScheduler = daemonScheduler;
         this.buffer = indexSetAwareMessageOutputBuffer;
+        this.processingStageMetrics = processingStageMetrics;
 
         this.batchSize = metricRegistry.histogram(name(this.getClass(), "batchSize"));
         this.bufferFlushes = metricRegistry.meter(name(this.getClass(), "bufferFlushes"));
@@ -165,6 +169,9 @@ public class BatchedMessageFilterOutput implements MessageOutput, GracefulShutdo
             }
 
             bufferFlushes.mark();
+            for (final var filteredMessage : filteredMessages) {
+                processingStageMetrics.finishStage(filteredMessage.message(), ProcessingStageMetrics.Stage.INDEXING);
+            }
             // We only acknowledge messages once all outputs are done writing messages.
             acknowledger.acknowledge(filteredMessages.stream().map(FilteredMessage::message).toList());
         } catch (Exception e) {
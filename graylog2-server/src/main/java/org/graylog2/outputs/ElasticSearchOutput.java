@@ -21,6 +21,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.graylog2.indexer.fieldtypes.UnknownFieldTypesDetector;
 import org.graylog2.indexer.messages.ImmutableMessage;
 import org.graylog2.indexer.messages.IndexingResults;
 import org.graylog2.indexer.messages.MessageWithIndex;
@@ -59,11 +60,13 @@ public class ElasticSearchOutput implements MessageOutput, FilteredMessageOutput
     private final Meter failures;
     private final Timer processTime;
     private final Messages messages;
+    private final UnknownFieldTypesDetector unknownFieldTypesDetector;
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
 
     @Inject
-    public ElasticSearchOutput(MetricRegistry metricRegistry, Messages messages) {
+    public ElasticSearchOutput(MetricRegistry metricRegistry, Messages messages, UnknownFieldTypesDetector unknownFieldTypesDetector) {
         this.messages = messages;
+        this.unknownFieldTypesDetector = unknownFieldTypesDetector;
         // Only constructing metrics here. write() get's another Core reference. (because this technically is a plugin)
         this.writes = metricRegistry.meter(WRITES_METRICNAME);
         this.failures = metricRegistry.meter(FAILURES_METRICNAME);
@@ -128,6 +131,7 @@ public class ElasticSearchOutput implements MessageOutput, FilteredMessageOutput
             indexingResults = messages.bulkIndex(messagesWithIndex);
         }
         failures.mark(indexingResults.errors().size());
+        unknownFieldTypesDetector.check(messagesWithIndex);
     }
 
     @Override
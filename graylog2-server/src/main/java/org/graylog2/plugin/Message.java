@@ -19,6 +19,8 @@ package org.graylog2.plugin;
 import com.codahale.metrics.Meter;
 import com.eaio.uuid.UUID;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Function;
@@ -311,6 +313,13 @@ public class Message implements Messages, Indexable, Acknowledgeable {
             FIELD_MESSAGE, FIELD_ID
     );
 
+    // Field names come from a small set of keys, so they are only checked and cleaned once per key. The cached
+    // trimmed key is used for all messages, which avoids keeping a copy of the same field name in every message.
+    private static final int MAX_CACHED_KEY_LENGTH = 256;
+    private static final LoadingCache<String, FieldKey> FIELD_KEYS = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .build(FieldKey::of);
+
     @Deprecated
     public static final Function<Message, String> ID_FUNCTION = new MessageIdFunction();
 
@@ -331,6 +340,13 @@ public class Message implements Messages, Indexable, Acknowledgeable {
     private DateTime receiveTime;
     private DateTime processingTime;
 
+    /**
+     * The {@link System#nanoTime()} when a message whose processing latency is sampled entered its current
+     * processing stage. See {@link org.graylog2.shared.buffers.ProcessingStageMetrics} for details.
+     */
+    private long processingStageStart;
+    private boolean processingLatencySampled = false;
+
     private ArrayList<Recording> recordings;
 
     /**
@@ -614,10 +630,11 @@ public class Message implements Messages, Indexable, Acknowledgeable {
     }
 
     private void addField(final String key, final Object value, final boolean isRequiredField) {
-        final String trimmedKey = key.trim();
+        final FieldKey fieldKey = fieldKey(key);
+        final String trimmedKey = fieldKey.key();
 
         // Don't accept protected keys. (some are allowed though lol)
-        if ((RESERVED_FIELDS.contains(trimmedKey) && !RESERVED_SETTABLE_FIELDS.contains(trimmedKey)) || !validKey(trimmedKey)) {
+        if (!fieldKey.accepted()) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Ignoring invalid or reserved key {} for message {}", trimmedKey, getId());
             } else {
@@ -632,26 +649,31 @@ public class Message implements Messages, Indexable, Acknowledgeable {
 
             if (isRequiredField || !str.isEmpty()) {
                 final Object previousValue = fields.put(trimmedKey, str);
-                updateSize(trimmedKey, str, previousValue);
+                updateSize(fieldKey, str, previousValue);
             }
         } else if (isTimestamp && value != null) {
             try {
                 final DateTime timeStamp = DateTimeConverter.convertToDateTime(value);
                 final Object previousValue = fields.put(FIELD_TIMESTAMP, timeStamp);
-                updateSize(trimmedKey, timeStamp, previousValue);
+                updateSize(fieldKey, timeStamp, previousValue);
             } catch (IllegalArgumentException ignored) {
             }
         } else if (value != null) {
             final Object previousValue = fields.put(trimmedKey, value);
-            updateSize(trimmedKey, value, previousValue);
+            updateSize(fieldKey, value, previousValue);
         }
     }
 
     private void updateSize(String fieldName, Object newValue, Object previousValue) {
+        updateSize(fieldKey(fieldName), newValue, previousValue);
+    }
+
+    private void updateSize(FieldKey fieldKey, Object newValue, Object previousValue) {
         // don't count internal fields
-        if (GRAYLOG_FIELDS.contains(fieldName) || ILLUMINATE_FIELDS.contains(fieldName)) {
+        if (fieldKey.internal()) {
             return;
         }
+        final String fieldName = fieldKey.key();
         long newValueSize = 0;
         long oldValueSize = 0;
         final long oldSize = sizeCounter.getCount();
@@ -698,9 +720,40 @@ public class Message implements Messages, Indexable, Acknowledgeable {
     }
 
     public static String cleanKey(final String key) {
+        final FieldKey fieldKey = fieldKey(key);
+        // Cached keys are trimmed, but surrounding whitespace has to be replaced like any other invalid character
+        return fieldKey.key().length() == key.length() ? fieldKey.cleanKey() : replaceInvalidKeyChars(key);
+    }
+
+    private static String replaceInvalidKeyChars(final String key) {
         return INVALID_KEY_CHAR_MATCHER.replaceFrom(key, KEY_REPLACEMENT_CHAR);
     }
 
+    private static FieldKey fieldKey(final String key) {
+        // Only allocates a new string if there actually is whitespace to trim
+        final String trimmedKey = key.trim();
+        // Don't let a few huge keys take up the space of many small ones
+        return trimmedKey.length() > MAX_CACHED_KEY_LENGTH ? FieldKey.of(trimmedKey) : FIELD_KEYS.get(trimmedKey);
+    }
+
+    /**
+     * The trimmed field name for a key and the results of all checks which only depend on the name.
+     *
+     * @param key      the trimmed key
+     * @param cleanKey the trimmed key with all invalid characters replaced, see {@link #cleanKey(String)}
+     * @param accepted whether the field can be set in a message, i.e. it's valid and not reserved
+     * @param internal whether the field doesn't count towards the message size
+     */
+    private record FieldKey(String key, String cleanKey, boolean accepted, boolean internal) {
+        static FieldKey of(String key) {
+            final boolean reserved = RESERVED_FIELDS.contains(key) && !RESERVED_SETTABLE_FIELDS.contains(key);
+            return new FieldKey(key,
+                    replaceInvalidKeyChars(key),
+                    !reserved && validKey(key),
+                    GRAYLOG_FIELDS.contains(key) || ILLUMINATE_FIELDS.contains(key));
+        }
+    }
+
     public void addFields(final Map<String, Object> fields) {
         if (fields == null) {
             return;
@@ -955,6 +1008,25 @@ public class Message implements Messages, Indexable, Acknowledgeable {
         }
     }
 
+    public boolean isProcessingLatencySampled() {
+        return processingLatencySampled;
+    }
+
+    public long getProcessingStageStart() {
+        return processingStageStart;
+    }
+
+    /**
+     * Marks the message as sampled for processing latency metrics and sets the time it entered its current processing
+     * stage.
+     *
+     * @param processingStageStart the {@link System#nanoTime()} when the message entered the stage
+     */
+    public void setProcessingStageStart(long processingStageStart) {
+        this.processingStageStart = processingStageStart;
+        this.processingLatencySampled = true;
+    }
+
     // helper methods to optionally record timing information per message, useful for debugging or benchmarking
     // not thread safe!
     public void recordTiming(ServerStatus serverStatus, String name, long elapsedNanos) {
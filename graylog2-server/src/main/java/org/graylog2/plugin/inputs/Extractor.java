@@ -26,6 +26,7 @@ import org.graylog.failure.ProcessingFailureCause;
 import org.graylog2.inputs.extractors.ExtractorException;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.database.EmbeddedPersistable;
+import org.graylog2.shared.metrics.SampledTimer;
 import org.graylog2.shared.utilities.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -118,10 +119,10 @@ public abstract class Extractor implements EmbeddedPersistable {
 
     private final Counter conditionHitsCounter;
     private final Counter conditionMissesCounter;
-    private final Timer conditionTimer;
-    private final Timer executionTimer;
-    private final Timer converterTimer;
-    private final Timer completeTimer;
+    private Timer conditionTimer;
+    private Timer executionTimer;
+    private Timer converterTimer;
+    private Timer completeTimer;
     private final String conditionHitsCounterName;
     private final String conditionMissesCounterName;
     private final String conditionTimerName;
@@ -190,6 +191,31 @@ public abstract class Extractor implements EmbeddedPersistable {
         this.completeTimer = metricRegistry.timer(completeTimerName);
     }
 
+    /**
+     * Replaces the execution timers of this extractor with timers which only measure one out of
+     * {@code sampleRate} executions. The names of the timers don't change.
+     *
+     * @param metricRegistry the registry the timers are registered with
+     * @param sampleRate     measure one out of this many executions
+     * @see SampledTimer
+     */
+    public void sampleTimers(MetricRegistry metricRegistry, int sampleRate) {
+        if (sampleRate <= 1) {
+            return;
+        }
+        this.conditionTimer = SampledTimer.timer(metricRegistry, conditionTimerName, sampleRate);
+        this.executionTimer = SampledTimer.timer(metricRegistry, executionTimerName, sampleRate);
+        this.converterTimer = SampledTimer.timer(metricRegistry, converterTimerName, sampleRate);
+        this.completeTimer = SampledTimer.timer(metricRegistry, completeTimerName, sampleRate);
+    }
+
+    /**
+     * Records a message which has been skipped because the condition of this extractor can't match it.
+     */
+    public void recordConditionMiss() {
+        conditionMissesCounter.inc();
+    }
+
     public void runExtractor(Message msg) {
         try(final Timer.Context ignored = completeTimer.time()) {
             final String field;
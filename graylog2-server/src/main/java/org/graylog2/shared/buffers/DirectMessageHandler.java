@@ -25,12 +25,15 @@ class DirectMessageHandler implements WorkHandler<RawMessageEvent> {
 
     private final ProcessBuffer processBuffer;
     private final ProcessingStatusRecorder processingStatusRecorder;
+    private final ProcessingStageMetrics processingStageMetrics;
 
     @Inject
     public DirectMessageHandler(ProcessBuffer processBuffer,
-                                ProcessingStatusRecorder processingStatusRecorder) {
+                                ProcessingStatusRecorder processingStatusRecorder,
+                                ProcessingStageMetrics processingStageMetrics) {
         this.processBuffer = processBuffer;
         this.processingStatusRecorder = processingStatusRecorder;
+        this.processingStageMetrics = processingStageMetrics;
     }
 
     @Override
@@ -39,6 +42,7 @@ class DirectMessageHandler implements WorkHandler<RawMessageEvent> {
         processBuffer.insertBlocking(rawMessage);
         if (rawMessage != null) {
             processingStatusRecorder.updateIngestReceiveTime(rawMessage.getTimestamp());
+            processingStageMetrics.recordInputBuffer(rawMessage.getTimestamp());
         }
         // clear out for gc and to avoid promoting the raw message event to a tenured gen
         event.clear();
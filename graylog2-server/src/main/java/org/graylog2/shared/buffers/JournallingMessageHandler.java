@@ -43,13 +43,16 @@ public class JournallingMessageHandler implements EventHandler<RawMessageEvent>
     private final Counter byteCounter;
     private final MessageQueueWriter messageQueueWriter;
     private final ProcessingStatusRecorder processingStatusRecorder;
+    private final ProcessingStageMetrics processingStageMetrics;
 
     @Inject
     public JournallingMessageHandler(MetricRegistry metrics,
                                      MessageQueueWriter messageQueueWriter,
-                                     ProcessingStatusRecorder processingStatusRecorder) {
+                                     ProcessingStatusRecorder processingStatusRecorder,
+                                     ProcessingStageMetrics processingStageMetrics) {
         this.messageQueueWriter = messageQueueWriter;
         this.processingStatusRecorder = processingStatusRecorder;
+        this.processingStageMetrics = processingStageMetrics;
         byteCounter = metrics.counter(MetricRegistry.name(JournallingMessageHandler.class, "written_bytes"));
     }
 
@@ -70,6 +73,9 @@ public class JournallingMessageHandler implements EventHandler<RawMessageEvent>
             processingStatusRecorder.updateIngestReceiveTime(metricsFilter.getLatestReceiveTime());
 
             messageQueueWriter.write(entries);
+            for (final RawMessageEvent entry : entries) {
+                processingStageMetrics.recordInputBuffer(entry.getMessageTimestamp());
+            }
 
             // Release objects for GC
             batch.stream()
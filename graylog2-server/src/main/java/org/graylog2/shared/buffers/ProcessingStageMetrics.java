@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.buffers;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import org.graylog2.indexer.messages.ImmutableMessage;
+import org.graylog2.plugin.IOState;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.events.inputs.IOStateChangedEvent;
+import org.graylog2.plugin.inputs.MessageInput;
+import org.graylog2.shared.inputs.InputRegistry;
+import org.graylog2.shared.metrics.HdrTimer;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Records how long messages spend in each processing stage, from receiving them on an input until they have been
+ * written to the indexer.
+ * <p>
+ * Only one out of {@code processing_latency_sample_rate} messages, chosen at random when it's decoded, is measured.
+ * A sampled message carries the time it entered its current stage (see {@link Message#getProcessingStageStart()}),
+ * so the time it waited in a buffer can be measured when it leaves the buffer. Messages which aren't sampled don't
+ * read the clock.
+ * <p>
+ * The latencies are recorded in HdrHistogram based timers for every stage, and for every stage and running input.
+ * Latencies above the range of a timer are recorded as its highest trackable value. The timers of an input are
+ * removed when it stops.
+ */
+@Singleton
+public class ProcessingStageMetrics {
+    public enum Stage {
+        /**
+         * From receiving a message on an input until it has been written to the journal. Not recorded per input.
+         */
+        INPUT_BUFFER(24),
+        /**
+         * From receiving a message on an input until it is decoded, including the time in the input buffer.
+         */
+        JOURNAL(24),
+        DECODE(1),
+        /**
+         * The message filter chain, which runs the extractors and adds static fields.
+         */
+        EXTRACTORS(1),
+        STREAM_ROUTING(1),
+        PIPELINES(1),
+        /**
+         * Message processors of plugins, e.g. the GeoIP resolver.
+         */
+        OTHER_PROCESSORS(1),
+        /**
+         * From the end of processing until an output buffer processor takes the message.
+         */
+        OUTPUT_BUFFER(1),
+        /**
+         * From the output buffer until the batch with the message has been written, including the time it waited for
+         * the batch to fill up.
+         */
+        INDEXING(1);
+
+        private final String metricName = name().toLowerCase(Locale.ENGLISH);
+        // Messages can wait in the journal for hours when there is a backlog
+        private final long highestTrackableHours;
+
+        Stage(long highestTrackableHours) {
+            this.highestTrackableHours = highestTrackableHours;
+        }
+
+        public String metricName() {
+            return metricName;
+        }
+
+        public long highestTrackableHours() {
+            return highestTrackableHours;
+        }
+    }
+
+    private final MetricRegistry metricRegistry;
+    private final InputRegistry inputRegistry;
+    private final int sampleRate;
+    private final Timer[] stageTimers;
+    private final Map<String, InputTimers> inputTimers = new ConcurrentHashMap<>();
+
+    @Inject
+    public ProcessingStageMetrics(MetricRegistry metricRegistry,
+                                  InputRegistry inputRegistry,
+                                  EventBus eventBus,
+                                  @Named("processing_latency_sample_rate") int sampleRate) {
+        this.metricRegistry = metricRegistry;
+        this.inputRegistry = inputRegistry;
+        this.sampleRate = sampleRate;
+        this.stageTimers = new Timer[Stage.values().length];
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = metricRegistry.timer(metricName(stage),
+                    () -> new HdrTimer(stage.highestTrackableHours(), TimeUnit.HOURS, 2));
+        }
+        eventBus.register(this);
+    }
+
+    public static String metricName(Stage stage) {
+        return name(ProcessingStageMetrics.class, "latency", stage.metricName());
+    }
+
+    /**
+     * Returns the name of the timer of a stage for an input. Like the other metrics of an input, it starts with
+     * {@link MessageInput#getUniqueReadableId()}.
+     */
+    public static String metricName(Stage stage, MessageInput input) {
+        return name(input.getUniqueReadableId(), "processing_latency", stage.metricName());
+    }
+
+    /**
+     * Records the input buffer latency of one out of {@code processing_latency_sample_rate} raw messages which have
+     * been written to the journal.
+     *
+     * @param receiveTime the time the raw message has been received
+     */
+    public void recordInputBuffer(@Nullable DateTime receiveTime) {
+        if (receiveTime != null && shouldSample()) {
+            record(Stage.INPUT_BUFFER, null, TimeUnit.MILLISECONDS.toNanos(DateTimeUtils.currentTimeMillis() - receiveTime.getMillis()));
+        }
+    }
+
+    /**
+     * Decides if the processing latency of a decoded message is sampled. If it is, the journal and decode latency are
+     * recorded and the message enters the next stage.
+     *
+     * @param message     the decoded message
+     * @param receiveTime the time the raw message has been received
+     * @param decodeNanos the time it took to decode the raw message
+     */
+    public void sample(Message message, @Nullable DateTime receiveTime, long decodeNanos) {
+        if (!shouldSample()) {
+            return;
+        }
+        final String inputId = message.getSourceInputId();
+        if (receiveTime != null) {
+            record(Stage.JOURNAL, inputId, TimeUnit.MILLISECONDS.toNanos(DateTimeUtils.currentTimeMillis() - receiveTime.getMillis()));
+        }
+        record(Stage.DECODE, inputId, decodeNanos);
+        message.setProcessingStageStart(System.nanoTime());
+    }
+
+    /**
+     * Records the duration of a stage for a sampled message.
+     */
+    public void record(Message message, Stage stage, long elapsedNanos) {
+        if (message.isProcessingLatencySampled()) {
+            record(stage, message.getSourceInputId(), elapsedNanos);
+        }
+    }
+
+    /**
+     * Lets a sampled message enter the next stage, e.g. a buffer.
+     */
+    public void startStage(Message message) {
+        if (message.isProcessingLatencySampled()) {
+            message.setProcessingStageStart(System.nanoTime());
+        }
+    }
+
+    /**
+     * Records the time a sampled message has spent in the given stage and lets it enter the next stage.
+     */
+    public void finishStage(Message message, Stage stage) {
+        if (message.isProcessingLatencySampled()) {
+            final long now = System.nanoTime();
+            record(stage, message.getSourceInputId(), now - message.getProcessingStageStart());
+            message.setProcessingStageStart(now);
+        }
+    }
+
+    /**
+     * Records the time a sampled message has spent in the given stage. This is meant for the last stage, so the
+     * message doesn't enter another one.
+     */
+    public void finishStage(ImmutableMessage message, Stage stage) {
+        if (message.isProcessingLatencySampled()) {
+            record(stage, message.getSourceInputId(), System.nanoTime() - message.getProcessingStageStart());
+        }
+    }
+
+    private boolean shouldSample() {
+        return sampleRate > 0 && (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+    }
+
+    private void record(Stage stage, @Nullable String inputId, long elapsedNanos) {
+        stageTimers[stage.ordinal()].update(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (inputId != null) {
+            final InputTimers timers = inputTimers.computeIfAbsent(inputId, this::registerInputTimers);
+            if (timers != null) {
+                timers.stageTimers[stage.ordinal()].update(elapsedNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Registers the timers of a running input. Returns {@code null} for inputs which aren't running (anymore), so
+     * messages which are still processed after an input stopped don't register timers which are never removed.
+     */
+    @Nullable
+    private InputTimers registerInputTimers(String inputId) {
+        final IOState<MessageInput> inputState = inputRegistry.getRunningInputState(inputId);
+        if (inputState == null || !isActive(inputState.getState())) {
+            return null;
+        }
+        final MessageInput input = inputState.getStoppable();
+        final Timer[] timers = new Timer[Stage.values().length];
+        for (Stage stage : Stage.values()) {
+            if (stage == Stage.INPUT_BUFFER) {
+                // Raw messages in the input buffer haven't been decoded yet, so their input isn't known
+                continue;
+            }
+            // Fewer significant digits, so the timers of many inputs don't need too much memory
+            timers[stage.ordinal()] = metricRegistry.timer(metricName(stage, input),
+                    () -> new HdrTimer(stage.highestTrackableHours(), TimeUnit.HOURS, 1));
+        }
+        return new InputTimers(input, timers);
+    }
+
+    @Subscribe
+    public void inputStateChanged(IOStateChangedEvent<MessageInput> event) {
+        if (isActive(event.newState())) {
+            return;
+        }
+        // Removing the timers locks their entry, so they can't be registered again for an input which isn't running
+        final InputTimers timers = inputTimers.remove(event.changedState().getStoppable().getId());
+        if (timers != null) {
+            for (Stage stage : Stage.values()) {
+                metricRegistry.remove(metricName(stage, timers.input));
+            }
+        }
+    }
+
+    private static boolean isActive(IOState.Type state) {
+        return state == IOState.Type.RUNNING || state == IOState.Type.FAILING;
+    }
+
+    private static class InputTimers {
+        private final MessageInput input;
+        private final Timer[] stageTimers;
+
+        private InputTimers(MessageInput input, Timer[] stageTimers) {
+            this.input = input;
+            this.stageTimers = stageTimers;
+        }
+    }
+}
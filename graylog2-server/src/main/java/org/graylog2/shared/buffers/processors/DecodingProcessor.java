@@ -35,6 +35,7 @@ import org.graylog2.plugin.inputs.codecs.Codec;
 import org.graylog2.plugin.inputs.codecs.MultiMessageCodec;
 import org.graylog2.plugin.inputs.failure.InputProcessingException;
 import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.shared.buffers.ProcessingStageMetrics;
 import org.graylog2.shared.messageq.MessageQueueAcknowledger;
 import org.graylog2.shared.utilities.ExceptionUtils;
 import org.slf4j.Logger;
@@ -65,6 +66,7 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
     private final MetricRegistry metricRegistry;
     private final MessageQueueAcknowledger acknowledger;
     private final FailureSubmissionService failureSubmissionService;
+    private final ProcessingStageMetrics processingStageMetrics;
     private final Timer parseTime;
 
     @AssistedInject
@@ -73,6 +75,7 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
                              final MetricRegistry metricRegistry,
                              MessageQueueAcknowledger acknowledger,
                              FailureSubmissionService failureSubmissionService,
+                             ProcessingStageMetrics processingStageMetrics,
                              @Assisted("decodeTime") Timer decodeTime,
                              @Assisted("parseTime") Timer parseTime) {
         this.codecFactory = codecFactory;
@@ -80,6 +83,7 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
         this.metricRegistry = metricRegistry;
         this.acknowledger = acknowledger;
         this.failureSubmissionService = failureSubmissionService;
+        this.processingStageMetrics = processingStageMetrics;
 
         // these metrics are global to all processors, thus they are passed in directly to avoid relying on the class name
         this.parseTime = parseTime;
@@ -277,6 +281,7 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
 
         metricRegistry.meter(name(baseMetricName, "processedMessages")).mark();
         decodedTrafficCounter.inc(message.getSize());
+        processingStageMetrics.sample(message, raw.getTimestamp(), decodeTime);
         return message;
     }
 }
@@ -24,10 +24,14 @@ import com.google.common.eventbus.Subscribe;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import jakarta.inject.Provider;
+import org.graylog.events.processor.streaming.StreamingFilterEventEvaluator;
 import org.graylog.failure.FailureSubmissionService;
+import org.graylog.plugins.pipelineprocessor.processors.PipelineInterpreter;
 import org.graylog2.buffers.OutputBuffer;
 import org.graylog2.cluster.ClusterConfigChangedEvent;
+import org.graylog2.messageprocessors.MessageFilterChainProcessor;
 import org.graylog2.messageprocessors.OrderedMessageProcessors;
+import org.graylog2.messageprocessors.StreamMatcherFilterProcessor;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.Messages;
 import org.graylog2.plugin.Tools;
@@ -36,6 +40,7 @@ import org.graylog2.plugin.cluster.ClusterConfigService;
 import org.graylog2.plugin.messageprocessors.MessageProcessor;
 import org.graylog2.plugin.streams.DefaultStream;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.shared.buffers.ProcessingStageMetrics;
 import org.graylog2.shared.buffers.WorkHandler;
 import org.graylog2.streams.StreamMetrics;
 import org.graylog2.system.processing.ProcessingStatusRecorder;
@@ -68,6 +73,8 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
     private final FailureSubmissionService failureSubmissionService;
     private final ClusterConfigService clusterConfigService;
     private final EventBus eventBus;
+    private final StreamingFilterEventEvaluator streamingFilterEventEvaluator;
+    private final ProcessingStageMetrics processingStageMetrics;
 
     private volatile Message currentMessage;
     private volatile Duration cachedGracePeriod = null;
@@ -83,7 +90,9 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
                                   FailureSubmissionService failureSubmissionService,
                                   StreamMetrics streamMetrics,
                                   ClusterConfigService clusterConfigService,
-                                  EventBus eventBus) {
+                                  EventBus eventBus,
+                                  StreamingFilterEventEvaluator streamingFilterEventEvaluator,
+                                  ProcessingStageMetrics processingStageMetrics) {
         this.orderedMessageProcessors = orderedMessageProcessors;
         this.outputBuffer = outputBuffer;
         this.processingStatusRecorder = processingStatusRecorder;
@@ -93,6 +102,8 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
         this.failureSubmissionService = failureSubmissionService;
         this.clusterConfigService = clusterConfigService;
         this.eventBus = eventBus;
+        this.streamingFilterEventEvaluator = streamingFilterEventEvaluator;
+        this.processingStageMetrics = processingStageMetrics;
 
         incomingMessages = metricRegistry.meter(name(ProcessBufferProcessor.class, "incomingMessages"));
         outgoingMessages = metricRegistry.meter(name(ProcessBufferProcessor.class, "outgoingMessages"));
@@ -171,8 +182,13 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
         msg.addStream(defaultStreamProvider.get());
         Messages messages = msg;
 
+        final boolean latencySampled = msg.isProcessingLatencySampled();
         for (MessageProcessor messageProcessor : orderedMessageProcessors) {
+            final long start = latencySampled ? System.nanoTime() : 0L;
             messages = messageProcessor.process(messages);
+            if (latencySampled) {
+                processingStageMetrics.record(msg, processingStage(messageProcessor), System.nanoTime() - start);
+            }
         }
 
         for (Message message : messages) {
@@ -193,11 +209,25 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
             processingStatusRecorder.updatePostProcessingReceiveTime(message.getReceiveTime());
 
             if (failureSubmissionService.submitProcessingErrors(message)) {
+                // Needs the processing time, see StreamingFilterEventEvaluator for details
+                streamingFilterEventEvaluator.evaluate(message);
+                processingStageMetrics.startStage(message);
                 outputBuffer.insertBlocking(message);
             }
         }
     }
 
+    private static ProcessingStageMetrics.Stage processingStage(MessageProcessor messageProcessor) {
+        if (messageProcessor instanceof MessageFilterChainProcessor) {
+            return ProcessingStageMetrics.Stage.EXTRACTORS;
+        } else if (messageProcessor instanceof StreamMatcherFilterProcessor) {
+            return ProcessingStageMetrics.Stage.STREAM_ROUTING;
+        } else if (messageProcessor instanceof PipelineInterpreter) {
+            return ProcessingStageMetrics.Stage.PIPELINES;
+        }
+        return ProcessingStageMetrics.Stage.OTHER_PROCESSORS;
+    }
+
     public Duration getTimeStampGracePeriod() {
         if (cachedGracePeriod == null) {
             cachedGracePeriod = clusterConfigService.getOrDefault(TimeStampConfig.class, TimeStampConfig.getDefault()).gracePeriod();
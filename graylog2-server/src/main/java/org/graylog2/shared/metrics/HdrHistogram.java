@@ -107,10 +107,17 @@ public class HdrHistogram extends com.codahale.metrics.Histogram {
 
     @Override
     public void update(long value) {
+        final long highestTrackableValue = hdrHistogram.getHighestTrackableValue();
+        if (value > highestTrackableValue) {
+            // Dropping the value would make the percentiles look better than they are
+            log.debug("Recording value {} for HdrHistogram as the highest trackable value {}", value, highestTrackableValue);
+            hdrHistogram.recordValue(highestTrackableValue);
+            return;
+        }
         try {
             hdrHistogram.recordValue(value);
         } catch (ArrayIndexOutOfBoundsException e) {
-            log.debug("Ignoring value {} for HdrHistogram, it exceeds the highest trackable value {}", value, hdrHistogram.getHighestTrackableValue());
+            log.debug("Ignoring value {} for HdrHistogram, it can't be recorded", value);
         }
     }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A timer which only measures one out of every {@code sampleRate} executions on average.
+ * <p>
+ * Timing every execution of cheap operations like extractor conditions or stream rules costs a considerable share
+ * of the operation itself, mostly for updating the histogram reservoir and the rate meters. This timer only counts
+ * the unsampled executions in a {@link LongAdder}, so {@link #getCount()} is still exact. The durations of the
+ * sampled executions are recorded in a {@link HdrHistogram}, and the rates are extrapolated from them.
+ * <p>
+ * Executions have to be measured with {@link #time()}, other ways of updating the timer are not sampled.
+ */
+public class SampledTimer extends Timer {
+    private static final Timer NOT_SAMPLED_TIMER = new Timer(new Meter(), new Histogram(new SlidingWindowReservoir(1)), new Clock() {
+        @Override
+        public long getTick() {
+            return 0;
+        }
+    }) {
+        @Override
+        public void update(long duration, TimeUnit unit) {
+        }
+    };
+    // The context of an execution which isn't measured doesn't read the clock and can be shared
+    private static final Timer.Context NOT_SAMPLED = NOT_SAMPLED_TIMER.time();
+
+    private final int sampleRate;
+    private final Meter meter;
+    private final Histogram histogram;
+    private final LongAdder count = new LongAdder();
+
+    public SampledTimer(int sampleRate) {
+        this(sampleRate, new Meter(), new HdrHistogram(TimeUnit.MINUTES.toNanos(1), 2));
+    }
+
+    private SampledTimer(int sampleRate, Meter meter, Histogram histogram) {
+        super(meter, histogram, Clock.defaultClock());
+        checkArgument(sampleRate > 0, "sampleRate must be positive");
+        this.sampleRate = sampleRate;
+        this.meter = meter;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Returns a timer for the given name which measures every execution if the sample rate is 1 and a
+     * {@link SampledTimer} otherwise.
+     *
+     * @param metricRegistry the registry to register the timer with
+     * @param name           the name of the timer
+     * @param sampleRate     measure one out of this many executions
+     * @return the registered timer
+     */
+    public static Timer timer(MetricRegistry metricRegistry, String name, int sampleRate) {
+        if (sampleRate <= 1) {
+            return metricRegistry.timer(name);
+        }
+
+        final Timer timer = metricRegistry.timer(name, () -> new SampledTimer(sampleRate));
+        if (timer instanceof SampledTimer sampledTimer && sampledTimer.sampleRate == sampleRate) {
+            return sampledTimer;
+        }
+        // Replaces timers which have been created without sampling, e.g. by a REST resource looking up the timer
+        try {
+            return MetricUtils.reRegister(metricRegistry, name, new SampledTimer(sampleRate));
+        } catch (IllegalArgumentException e) {
+            // Another thread replaced the timer concurrently
+            return metricRegistry.timer(name, () -> new SampledTimer(sampleRate));
+        }
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public Context time() {
+        count.increment();
+        if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+            return super.time();
+        }
+        return NOT_SAMPLED;
+    }
+
+    @Override
+    public void update(long duration, TimeUnit unit) {
+        super.update(duration, unit);
+        if (sampleRate > 1) {
+            // The sampled execution stands for the ones which haven't been measured
+            meter.mark(sampleRate - 1L);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the number of executions which have actually been measured.
+     */
+    public long getSampledCount() {
+        return histogram.getCount();
+    }
+}
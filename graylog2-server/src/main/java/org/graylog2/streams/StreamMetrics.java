@@ -20,8 +20,10 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.collect.Maps;
+import org.graylog2.Configuration;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.plugin.streams.StreamRule;
+import org.graylog2.shared.metrics.SampledTimer;
 
 import jakarta.inject.Inject;
 
@@ -29,6 +31,7 @@ import java.util.Map;
 
 public class StreamMetrics {
     private final MetricRegistry metricRegistry;
+    private final int timerSampleRate;
 
     private final Map<String, Meter> streamIncomingMeters = Maps.newHashMap();
     private final Map<String, Timer> streamExecutionTimers = Maps.newHashMap();
@@ -37,9 +40,18 @@ public class StreamMetrics {
     private final Map<String, Meter> streamFaultsExceededMeters = Maps.newHashMap();
 
 
-    @Inject
     public StreamMetrics(final MetricRegistry metricRegistry) {
+        this(metricRegistry, 1);
+    }
+
+    @Inject
+    public StreamMetrics(final MetricRegistry metricRegistry, final Configuration configuration) {
+        this(metricRegistry, configuration.getStreamRulesTimerSampleRate());
+    }
+
+    public StreamMetrics(final MetricRegistry metricRegistry, final int timerSampleRate) {
         this.metricRegistry = metricRegistry;
+        this.timerSampleRate = timerSampleRate;
     }
 
     public void markIncomingMeter(String streamId) {
@@ -49,7 +61,8 @@ public class StreamMetrics {
     public Timer getExecutionTimer(String streamId, String streamRuleId) {
         Timer timer = this.streamExecutionTimers.get(streamRuleId);
         if (timer == null) {
-            timer = metricRegistry.timer(MetricRegistry.name(Stream.class, streamId, "StreamRule", streamRuleId, "executionTime"));
+            timer = SampledTimer.timer(metricRegistry,
+                    MetricRegistry.name(Stream.class, streamId, "StreamRule", streamRuleId, "executionTime"), timerSampleRate);
             this.streamExecutionTimers.put(streamRuleId, timer);
         }
 
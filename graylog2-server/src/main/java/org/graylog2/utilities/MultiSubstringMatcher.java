@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.utilities;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Finds out which of a fixed set of substrings occur in a text with a single pass over the text, no matter how many
+ * substrings there are (Aho-Corasick automaton).
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public class MultiSubstringMatcher {
+    private static final int ROOT = 0;
+
+    // Transitions of every state, sorted by character for binary search
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+    private final int[] failure;
+    // Indices of all substrings ending in a state, including the ones reachable through failure links
+    private final int[][] outputs;
+    private final int size;
+
+    private MultiSubstringMatcher(char[][] transitionChars, int[][] transitionTargets, int[] failure, int[][] outputs, int size) {
+        this.transitionChars = transitionChars;
+        this.transitionTargets = transitionTargets;
+        this.failure = failure;
+        this.outputs = outputs;
+        this.size = size;
+    }
+
+    /**
+     * Builds a matcher for the given substrings. The index of a substring in the list is its index in the result of
+     * {@link #matches(CharSequence)}.
+     *
+     * @param substrings the non-empty substrings to look for
+     * @return the matcher
+     */
+    public static MultiSubstringMatcher of(List<String> substrings) {
+        final List<StringBuilder> chars = new ArrayList<>();
+        final List<List<Integer>> targets = new ArrayList<>();
+        final List<List<Integer>> ends = new ArrayList<>();
+        chars.add(new StringBuilder());
+        targets.add(new ArrayList<>());
+        ends.add(new ArrayList<>());
+
+        for (int i = 0; i < substrings.size(); i++) {
+            final String substring = substrings.get(i);
+            checkArgument(substring != null && !substring.isEmpty(), "Substrings must not be empty");
+            int state = ROOT;
+            for (int j = 0; j < substring.length(); j++) {
+                final char c = substring.charAt(j);
+                final int index = chars.get(state).indexOf(String.valueOf(c));
+                if (index >= 0) {
+                    state = targets.get(state).get(index);
+                } else {
+                    final int newState = chars.size();
+                    chars.add(new StringBuilder());
+                    targets.add(new ArrayList<>());
+                    ends.add(new ArrayList<>());
+                    chars.get(state).append(c);
+                    targets.get(state).add(newState);
+                    state = newState;
+                }
+            }
+            ends.get(state).add(i);
+        }
+
+        final int states = chars.size();
+        final char[][] transitionChars = new char[states][];
+        final int[][] transitionTargets = new int[states][];
+        for (int state = 0; state < states; state++) {
+            final String stateChars = chars.get(state).toString();
+            final Integer[] order = new Integer[stateChars.length()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Character.compare(stateChars.charAt(a), stateChars.charAt(b)));
+            transitionChars[state] = new char[order.length];
+            transitionTargets[state] = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                transitionChars[state][i] = stateChars.charAt(order[i]);
+                transitionTargets[state][i] = targets.get(state).get(order[i]);
+            }
+        }
+
+        // Breadth-first search, so the failure state of every state is known before its children are visited
+        final int[] failure = new int[states];
+        final int[][] outputs = new int[states][];
+        outputs[ROOT] = new int[0];
+        final Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitionTargets[ROOT]) {
+            failure[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            final int[] inherited = outputs[failure[state]];
+            final List<Integer> own = ends.get(state);
+            final int[] stateOutputs = Arrays.copyOf(inherited, inherited.length + own.size());
+            for (int i = 0; i < own.size(); i++) {
+                stateOutputs[inherited.length + i] = own.get(i);
+            }
+            outputs[state] = stateOutputs;
+
+            for (int i = 0; i < transitionChars[state].length; i++) {
+                final char c = transitionChars[state][i];
+                final int child = transitionTargets[state][i];
+                int fallback = failure[state];
+                while (fallback != ROOT && next(transitionChars, transitionTargets, fallback, c) < 0) {
+                    fallback = failure[fallback];
+                }
+                final int target = next(transitionChars, transitionTargets, fallback, c);
+                failure[child] = target >= 0 && target != child ? target : ROOT;
+                queue.add(child);
+            }
+        }
+
+        return new MultiSubstringMatcher(transitionChars, transitionTargets, failure, outputs, substrings.size());
+    }
+
+    private static int next(char[][] transitionChars, int[][] transitionTargets, int state, char c) {
+        final int index = Arrays.binarySearch(transitionChars[state], c);
+        return index >= 0 ? transitionTargets[state][index] : -1;
+    }
+
+    /**
+     * Returns the number of substrings this matcher looks for.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds all substrings occurring in the given text.
+     *
+     * @param text the text to search
+     * @return the indices of the substrings which occur in the text
+     */
+    public BitSet matches(CharSequence text) {
+        final BitSet result = new BitSet(size);
+        int found = 0;
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            int target = next(transitionChars, transitionTargets, state, c);
+            while (target < 0 && state != ROOT) {
+                state = failure[state];
+                target = next(transitionChars, transitionTargets, state, c);
+            }
+            state = target < 0 ? ROOT : target;
+
+            for (int output : outputs[state]) {
+                if (!result.get(output)) {
+                    result.set(output);
+                    if (++found == size) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.utilities;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import io.krakens.grok.api.Grok;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.graylog2.grok.GrokMatcher;
+import org.graylog2.shared.metrics.MetricUtils;
+
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Shared cache for compiled regular expressions and Grok patterns.
+ * <p>
+ * Patterns which are only known at runtime (e.g. a pipeline rule which reads the pattern from a field or a lookup
+ * table) are compiled once per distinct value instead of once per use. The cache is bounded by the total length of
+ * the compiled regular expressions, which is a good approximation of the memory they need.
+ */
+@Singleton
+public class PatternCache {
+    public static final String REGEX = "regex";
+
+    private static final long MAX_WEIGHT = 4 * 1024 * 1024;
+    private static final Duration EXPIRE_AFTER_ACCESS = Duration.ofMinutes(10);
+
+    private final Cache<Key, Object> cache;
+    private final Meter hits;
+    private final Meter misses;
+    private final Timer compileTime;
+
+    @Inject
+    public PatternCache(MetricRegistry metricRegistry) {
+        this(metricRegistry, MAX_WEIGHT);
+    }
+
+    @VisibleForTesting
+    PatternCache(MetricRegistry metricRegistry, long maxWeight) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterAccess(EXPIRE_AFTER_ACCESS)
+                .maximumWeight(maxWeight)
+                .weigher(PatternCache::weigh)
+                .build();
+        this.hits = metricRegistry.meter(name(PatternCache.class, "hits"));
+        this.misses = metricRegistry.meter(name(PatternCache.class, "misses"));
+        this.compileTime = metricRegistry.timer(name(PatternCache.class, "compile-time"));
+        MetricUtils.safelyRegister(metricRegistry, name(PatternCache.class, "size"), (Gauge<Long>) cache::estimatedSize);
+    }
+
+    /**
+     * Returns the compiled regular expression.
+     *
+     * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid
+     */
+    public Pattern regex(String regex) {
+        return regex(regex, 0);
+    }
+
+    /**
+     * Returns the regular expression compiled with the given {@link Pattern} flags.
+     *
+     * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid
+     */
+    public Pattern regex(String regex, int flags) {
+        return get(new Key(REGEX, regex, flags), key -> Pattern.compile(key.pattern(), key.flags()));
+    }
+
+    /**
+     * Returns the compiled pattern of the given type. Exceptions of the compiler are passed on to the caller and
+     * nothing is cached in that case.
+     *
+     * @param type     the type of the pattern, patterns of different types are cached separately
+     * @param pattern  the pattern to compile
+     * @param compiler compiles the pattern
+     */
+    public <T> T get(String type, String pattern, Function<String, T> compiler) {
+        return get(new Key(type, pattern, 0), key -> compiler.apply(key.pattern()));
+    }
+
+    /**
+     * Removes all patterns of the given type, e.g. because their compilation depends on something that changed.
+     */
+    public void invalidate(String type) {
+        cache.asMap().keySet().removeIf(key -> key.type().equals(type));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Key key, Function<Key, T> compiler) {
+        final Object cached = cache.getIfPresent(key);
+        if (cached != null) {
+            hits.mark();
+            return (T) cached;
+        }
+        misses.mark();
+        return (T) cache.get(key, k -> {
+            try (final Timer.Context ignored = compileTime.time()) {
+                return compiler.apply(k);
+            }
+        });
+    }
+
+    private static int weigh(Key key, Object value) {
+        final Object compiled = value instanceof GrokMatcher matcher ? matcher.grok() : value;
+        if (compiled instanceof Grok grok && grok.getNamedRegex() != null) {
+            // Grok patterns are expanded into much longer regular expressions
+            return grok.getNamedRegex().length();
+        }
+        return key.pattern().length();
+    }
+
+    @VisibleForTesting
+    long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private record Key(String type, String pattern, int flags) {
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Extracts literal text from regular expressions, so cheap substring checks can rule out texts before running the
+ * regular expression itself.
+ */
+public final class RegexLiterals {
+    private static final int FLAGS = -1;
+    private static final int NOT_ANALYZED = -2;
+
+    private RegexLiterals() {
+    }
+
+    /**
+     * Returns the longest literal which is part of every match of the given regular expression.
+     * <p>
+     * The analysis is conservative: it only looks into groups which aren't optional and gives up on alternations
+     * and embedded flags. The expression must be compiled without flags that change how literals match, like
+     * {@link java.util.regex.Pattern#CASE_INSENSITIVE} or {@link java.util.regex.Pattern#COMMENTS}.
+     *
+     * @param regex the regular expression
+     * @return the literal or an empty optional if the expression doesn't contain one
+     */
+    public static Optional<String> requiredLiteral(String regex) {
+        return requiredLiterals(regex).stream().reduce((a, b) -> b.length() > a.length() ? b : a);
+    }
+
+    /**
+     * Returns all literals which are part of every match of the given regular expression, in the order they appear
+     * in the expression. The same restrictions as for {@link #requiredLiteral(String)} apply.
+     *
+     * @param regex the regular expression
+     * @return the literals, or an empty list if the expression doesn't contain any
+     */
+    public static List<String> requiredLiterals(String regex) {
+        final Literals literals = new Literals();
+        int i = 0;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            switch (c) {
+                case '\\' -> {
+                    if (i + 1 >= regex.length()) {
+                        return List.of();
+                    }
+                    final char escaped = regex.charAt(i + 1);
+                    if (escaped == 'Q') {
+                        final int end = regex.indexOf("\\E", i + 2);
+                        final String quoted = end < 0 ? regex.substring(i + 2) : regex.substring(i + 2, end);
+                        i = end < 0 ? regex.length() : end + 2;
+                        for (int j = 0; j < quoted.length() - 1; j++) {
+                            literals.append(quoted.charAt(j));
+                        }
+                        if (!quoted.isEmpty()) {
+                            // Only the last character of the quotation is affected by a quantifier
+                            i = literals.appendQuantified(regex, i, quoted.charAt(quoted.length() - 1));
+                        }
+                    } else if (Character.isLetterOrDigit(escaped)) {
+                        // Character classes, anchors, back references and control characters
+                        literals.finish();
+                        i = skipQuantifier(regex, skipEscape(regex, i + 1));
+                    } else {
+                        i = literals.appendQuantified(regex, i + 2, escaped);
+                    }
+                }
+                case '|' -> {
+                    return List.of();
+                }
+                case '(' -> {
+                    final int bodyStart = groupBodyStart(regex, i);
+                    if (bodyStart == FLAGS) {
+                        // Embedded flags like (?i) can change how the rest of the expression matches
+                        return List.of();
+                    }
+                    literals.finish();
+                    final int end = skipGroup(regex, i);
+                    if (end < 0) {
+                        return List.of();
+                    }
+                    if (bodyStart >= 0 && isRequired(regex, end)) {
+                        // Literals which are part of every match of the group are part of every match of the expression
+                        literals.literals.addAll(requiredLiterals(regex.substring(bodyStart, end - 1)));
+                    }
+                    i = skipQuantifier(regex, end);
+                }
+                case '[' -> {
+                    literals.finish();
+                    i = skipCharacterClass(regex, i);
+                    if (i < 0) {
+                        return List.of();
+                    }
+                    i = skipQuantifier(regex, i);
+                }
+                case '.', '^', '$' -> {
+                    literals.finish();
+                    i = skipQuantifier(regex, i + 1);
+                }
+                default -> i = literals.appendQuantified(regex, i + 1, c);
+            }
+        }
+        literals.finish();
+        return literals.literals;
+    }
+
+    /**
+     * Skips the operands of escape sequences like {@code \x41}, {@code \p{Alpha}} or back references.
+     *
+     * @param i the index of the escaped letter or digit
+     * @return the index after the escape sequence
+     */
+    private static int skipEscape(String regex, int i) {
+        final char c = regex.charAt(i);
+        int next = i + 1;
+        switch (c) {
+            case 'x', 'p', 'P', 'N' -> {
+                if (regex.startsWith("{", next)) {
+                    final int end = regex.indexOf('}', next);
+                    return end < 0 ? regex.length() : end + 1;
+                }
+                return Math.min(regex.length(), next + (c == 'x' ? 2 : 1));
+            }
+            case 'u' -> {
+                return Math.min(regex.length(), next + 4);
+            }
+            case 'c' -> {
+                return Math.min(regex.length(), next + 1);
+            }
+            case 'k' -> {
+                final int end = regex.indexOf('>', next);
+                return end < 0 ? regex.length() : end + 1;
+            }
+            default -> {
+                if (Character.isDigit(c)) {
+                    // Octal escapes and back references
+                    while (next < regex.length() && Character.isDigit(regex.charAt(next))) {
+                        next++;
+                    }
+                }
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Returns the index where the body of the group starting at the given index begins, {@link #FLAGS} if it only
+     * sets flags, or {@link #NOT_ANALYZED} if the group isn't part of the match (lookarounds) or has its own flags.
+     */
+    private static int groupBodyStart(String regex, int start) {
+        if (!regex.startsWith("(?", start)) {
+            return start + 1;
+        }
+        if (regex.startsWith("(?:", start) || regex.startsWith("(?>", start)) {
+            return start + 3;
+        }
+        if (regex.startsWith("(?<", start) && start + 3 < regex.length() && Character.isLetter(regex.charAt(start + 3))) {
+            final int nameEnd = regex.indexOf('>', start);
+            return nameEnd < 0 ? NOT_ANALYZED : nameEnd + 1;
+        }
+        int i = start + 2;
+        while (i < regex.length() && (Character.isLetter(regex.charAt(i)) || regex.charAt(i) == '-')) {
+            i++;
+        }
+        if (i > start + 2 && i < regex.length() && regex.charAt(i) == ')') {
+            return FLAGS;
+        }
+        return NOT_ANALYZED;
+    }
+
+    /**
+     * Returns true if the group ending before the given index isn't optional.
+     */
+    private static boolean isRequired(String regex, int end) {
+        return !isQuantifier(regex, end) || regex.charAt(end) == '+';
+    }
+
+    private static boolean isQuantifier(String regex, int i) {
+        if (i >= regex.length()) {
+            return false;
+        }
+        final char c = regex.charAt(i);
+        return c == '?' || c == '*' || c == '+' || c == '{';
+    }
+
+    private static int skipQuantifier(String regex, int i) {
+        if (!isQuantifier(regex, i)) {
+            return i;
+        }
+        int next = i + 1;
+        if (regex.charAt(i) == '{') {
+            final int end = regex.indexOf('}', i);
+            next = end < 0 ? regex.length() : end + 1;
+        }
+        // Lazy and possessive quantifiers
+        if (next < regex.length() && (regex.charAt(next) == '?' || regex.charAt(next) == '+')) {
+            next++;
+        }
+        return next;
+    }
+
+    private static int skipGroup(String regex, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (regex.startsWith("\\Q", i)) {
+                    final int end = regex.indexOf("\\E", i + 2);
+                    i = end < 0 ? regex.length() : end + 2;
+                } else {
+                    i += 2;
+                }
+                continue;
+            }
+            if (c == '[') {
+                i = skipCharacterClass(regex, i);
+                if (i < 0) {
+                    return -1;
+                }
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int skipCharacterClass(String regex, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (regex.startsWith("\\Q", i)) {
+                    final int end = regex.indexOf("\\E", i + 2);
+                    i = end < 0 ? regex.length() : end + 2;
+                } else {
+                    i += 2;
+                }
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                // A closing bracket right at the beginning of a class is a literal
+                if (regex.startsWith("]", i + 1)) {
+                    i++;
+                } else if (regex.startsWith("^]", i + 1)) {
+                    i += 2;
+                }
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static final class Literals {
+        private final StringBuilder current = new StringBuilder();
+        private final List<String> literals = new ArrayList<>();
+
+        void append(char c) {
+            current.append(c);
+        }
+
+        /**
+         * Appends a literal character, taking a quantifier following it into account.
+         *
+         * @return the index after the character and its quantifier
+         */
+        int appendQuantified(String regex, int next, char c) {
+            if (!isQuantifier(regex, next)) {
+                current.append(c);
+                return next;
+            }
+            if (regex.charAt(next) == '+') {
+                // The character is required at least once, but the following literal doesn't have to come next
+                current.append(c);
+            }
+            finish();
+            return skipQuantifier(regex, next);
+        }
+
+        void finish() {
+            if (!current.isEmpty()) {
+                literals.add(current.toString());
+            }
+            current.setLength(0);
+        }
+    }
+}
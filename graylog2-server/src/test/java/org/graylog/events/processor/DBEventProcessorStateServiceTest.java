@@ -252,4 +252,27 @@ public class DBEventProcessorStateServiceTest {
         assertThat(stateService.deleteByEventDefinitionId("54e3deadbeefdeadbeefaff3")).isEqualTo(1);
         assertThat(stateService.deleteByEventDefinitionId("nope")).isEqualTo(0);
     }
+
+    @Test
+    public void streaming() {
+        final DateTime now = DateTime.now(DateTimeZone.UTC);
+
+        // No state record yet
+        assertThat(stateService.startStreaming("abc123", now)).isEmpty();
+
+        stateService.setState("abc123", now.minusMinutes(1), now);
+        assertThat(stateService.getStreamingSince("abc123")).isEmpty();
+
+        assertThat(stateService.startStreaming("abc123", now)).contains(now);
+        // An existing marker is kept
+        assertThat(stateService.startStreaming("abc123", now.plusMinutes(5))).contains(now);
+
+        // Updating the state doesn't remove the marker
+        stateService.setState("abc123", now, now.plusMinutes(1));
+        assertThat(stateService.getStreamingSince("abc123")).contains(now);
+
+        stateService.stopStreaming("abc123");
+        assertThat(stateService.getStreamingSince("abc123")).isEmpty();
+        assertThat(stateService.startStreaming("abc123", now.plusMinutes(5))).contains(now.plusMinutes(5));
+    }
 }
@@ -28,6 +28,7 @@ import org.graylog.events.processor.EventProcessorDependencyCheck;
 import org.graylog.events.processor.EventProcessorException;
 import org.graylog.events.processor.EventProcessorPreconditionException;
 import org.graylog.events.processor.EventStreamService;
+import org.graylog.events.processor.streaming.StreamingFilterEventEvaluator;
 import org.graylog.events.search.MoreSearch;
 import org.graylog.plugins.views.search.rest.PermittedStreams;
 import org.graylog.plugins.views.search.searchfilters.model.InlineQueryStringSearchFilter;
@@ -39,9 +40,11 @@ import org.graylog2.notifications.NotificationService;
 import org.graylog2.plugin.MessageFactory;
 import org.graylog2.plugin.MessageSummary;
 import org.graylog2.plugin.TestMessageFactory;
+import org.graylog2.plugin.cluster.ClusterConfigService;
 import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
 import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.shared.buffers.processors.TimeStampConfig;
 import org.graylog2.streams.StreamService;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -56,12 +59,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -93,6 +98,10 @@ public class AggregationEventProcessorTest {
     private NotificationService notificationService;
     @Mock
     private StreamService streamService;
+    @Mock
+    private StreamingFilterEventEvaluator streamingEvaluator;
+    @Mock
+    private ClusterConfigService clusterConfigService;
 
     private PermittedStreams permittedStreams;
     private EventStreamService eventStreamService;
@@ -135,7 +144,7 @@ public class AggregationEventProcessorTest {
                 .build();
 
         final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory,
-                eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, permittedStreams, Set.of(), messageFactory);
+                eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, permittedStreams, Set.of(), messageFactory, streamingEvaluator, clusterConfigService);
 
         assertThatCode(() -> eventProcessor.createEvents(eventFactory, parameters, (events) -> {})).doesNotThrowAnyException();
 
@@ -151,6 +160,50 @@ public class AggregationEventProcessorTest {
         verify(searchFactory, never()).create(eq(config), eq(parameters), any(AggregationSearch.User.class), eq(eventDefinitionDto), eq(List.of()));
     }
 
+    @Test
+    public void createEventsWithFilterEvaluatedAtIngestTime() throws Exception {
+        when(eventProcessorDependencyCheck.hasMessagesIndexedUpTo(any(TimeRange.class))).thenReturn(true);
+        when(clusterConfigService.getOrDefault(eq(TimeStampConfig.class), any())).thenReturn(new TimeStampConfig(java.time.Duration.ofHours(1)));
+
+        final DateTime streamingSince = DateTime.parse("2024-01-01T12:00:00.000Z");
+        when(streamingEvaluator.streamingSince("dto-id-1")).thenReturn(Optional.of(streamingSince));
+
+        final EventDefinitionDto eventDefinitionDto = buildEventDefinitionDto(ImmutableSet.of("stream-1"), ImmutableList.of(), null, emptyList());
+        final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory,
+                eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, permittedStreams, Set.of(), messageFactory, streamingEvaluator, clusterConfigService);
+
+        // Messages processed before the streaming start are still searched
+        final AbsoluteRange catchUpRange = AbsoluteRange.create(streamingSince.minusMinutes(1), streamingSince.plusMinutes(1));
+        final AggregationEventProcessorParameters catchUpParameters = AggregationEventProcessorParameters.builder()
+                .timerange(catchUpRange)
+                .build();
+
+        assertThatCode(() -> eventProcessor.createEvents(eventFactory, catchUpParameters, (events) -> {})).doesNotThrowAnyException();
+
+        verify(moreSearch, times(1)).scrollQuery(
+                eq("(" + QUERY_STRING + ") AND (NOT gl2_processing_timestamp:[\"2024-01-01 12:00:00.000\" TO *])"),
+                eq(ImmutableSet.of("stream-1")),
+                eq(emptyList()),
+                any(),
+                eq(catchUpRange),
+                eq(catchUpParameters.batchSize()),
+                any(MoreSearch.ScrollCallback.class)
+        );
+
+        reset(moreSearch);
+
+        // Time ranges that start more than one grace period after the streaming start are not searched at all
+        final AbsoluteRange laterRange = AbsoluteRange.create(streamingSince.plusHours(2), streamingSince.plusHours(2).plusMinutes(1));
+        final AggregationEventProcessorParameters laterParameters = AggregationEventProcessorParameters.builder()
+                .timerange(laterRange)
+                .build();
+
+        assertThatCode(() -> eventProcessor.createEvents(eventFactory, laterParameters, (events) -> {})).doesNotThrowAnyException();
+
+        verify(moreSearch, never()).scrollQuery(any(), any(), any(), any(), any(), anyInt(), any());
+        verify(stateService, times(1)).setState("dto-id-1", laterRange.from(), laterRange.to());
+    }
+
     @Test
     public void createEventsWithoutRequiredMessagesBeingIndexed() throws Exception {
         final DateTime now = DateTime.now(DateTimeZone.UTC);
@@ -171,7 +224,7 @@ public class AggregationEventProcessorTest {
                 .build();
 
         final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(eventDefinitionDto, searchFactory,
-                eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, permittedStreams, Set.of(), messageFactory);
+                eventProcessorDependencyCheck, stateService, moreSearch, eventStreamService, messages, permittedStreams, Set.of(), messageFactory, streamingEvaluator, clusterConfigService);
 
         // If the dependency check returns true, there should be no exception raised and the state service should be called
         when(eventProcessorDependencyCheck.hasMessagesIndexedUpTo(timerange)).thenReturn(true);
@@ -286,7 +339,7 @@ public class AggregationEventProcessorTest {
         final EventDefinitionDto eventDefinitionDto = buildEventDefinitionDto(ImmutableSet.of(), ImmutableList.of(series), null, filters);
         final AggregationEventProcessor eventProcessor = new AggregationEventProcessor(
                 eventDefinitionDto, searchFactory, eventProcessorDependencyCheck, stateService, moreSearch,
-                eventStreamService, messages, permittedStreams, Set.of(), messageFactory);
+                eventStreamService, messages, permittedStreams, Set.of(), messageFactory, streamingEvaluator, clusterConfigService);
 
         eventProcessor.sourceMessagesForEvent(event, messageConsumer, batchLimit);
     }
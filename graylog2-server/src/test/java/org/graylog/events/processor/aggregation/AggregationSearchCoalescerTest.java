@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.aggregation;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.plugins.views.search.Query;
+import org.graylog.plugins.views.search.QueryResult;
+import org.graylog.plugins.views.search.Search;
+import org.graylog.plugins.views.search.SearchJob;
+import org.graylog.plugins.views.search.SearchType;
+import org.graylog.plugins.views.search.db.SearchJobService;
+import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
+import org.graylog.plugins.views.search.engine.QueryEngine;
+import org.graylog.plugins.views.search.engine.QueryWorkload;
+import org.graylog.plugins.views.search.errors.QueryError;
+import org.graylog.plugins.views.search.errors.SearchTypeError;
+import org.graylog.plugins.views.search.filter.OrFilter;
+import org.graylog.plugins.views.search.filter.StreamFilter;
+import org.graylog.plugins.views.search.searchfilters.model.InlineQueryStringSearchFilter;
+import org.graylog.plugins.views.search.searchtypes.MessageList;
+import org.graylog.plugins.views.search.searchtypes.pivot.Pivot;
+import org.graylog.plugins.views.search.searchtypes.pivot.PivotResult;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.Values;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Count;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AggregationSearchCoalescerTest {
+    private static final AbsoluteRange TIMERANGE = AbsoluteRange.create(
+            DateTime.parse("2024-01-01T00:00:00.000Z"), DateTime.parse("2024-01-01T00:01:00.000Z"));
+    private static final AggregationSearch.User USER = new AggregationSearch.User("admin", DateTimeZone.UTC);
+
+    @Mock
+    private QueryEngine queryEngine;
+    @Mock
+    private SearchJobService searchJobService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(searchJobService.create(any(), anyString(), any()))
+                .thenAnswer(invocation -> new SearchJob("job", invocation.getArgument(0), invocation.getArgument(1), "node"));
+        // Returns an empty pivot result for every search type of every query
+        lenient().when(queryEngine.execute(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            final SearchJob searchJob = invocation.getArgument(0);
+            for (final Query query : searchJob.getSearch().queries()) {
+                final Map<String, SearchType.Result> results = query.searchTypes().stream()
+                        .collect(Collectors.toMap(SearchType::id, searchType -> pivotResult(searchType.id())));
+                searchJob.addQueryResultFuture(query.id(), CompletableFuture.completedFuture(QueryResult.builder()
+                        .query(query)
+                        .searchTypes(results)
+                        .build()));
+            }
+            return searchJob.seal();
+        });
+    }
+
+    @Test
+    void combinesSearchesWithTheSameTimerange() throws Exception {
+        final AggregationSearchCoalescer coalescer = createCoalescer(Duration.ofMinutes(1), 2);
+
+        final CompletableFuture<Map<String, QueryResult>> result1 = coalescer.submit(search("source:foo", "stream-1"), USER);
+        assertThat(result1).isNotDone();
+        // Reaching the maximum batch size executes the batch right away
+        final CompletableFuture<Map<String, QueryResult>> result2 = coalescer.submit(search("source:bar", "stream-2"), USER);
+
+        verify(queryEngine, times(1)).execute(any(), any(), any(), any(), eq(QueryWorkload.EVENT_PROCESSING));
+        assertThat(result1.get()).containsOnlyKeys("query-1", "streams-query-1");
+        assertThat(result2.get()).containsOnlyKeys("query-1", "streams-query-1");
+        assertThat(result1.get().get("query-1").searchTypes()).containsOnlyKeys("pivot-1");
+        assertThat(result2.get().get("streams-query-1").searchTypes()).containsOnlyKeys("streams-pivot-1");
+    }
+
+    @Test
+    void executesSearchesDirectlyWhenDisabled() throws Exception {
+        final AggregationSearchCoalescer coalescer = createCoalescer(Duration.ZERO, 2);
+
+        assertThat(coalescer.isEnabled()).isFalse();
+        assertThat(coalescer.submit(search("source:foo", "stream-1"), USER).get()).containsOnlyKeys("query-1", "streams-query-1");
+        assertThat(coalescer.submit(search("source:bar", "stream-2"), USER).get()).containsOnlyKeys("query-1", "streams-query-1");
+
+        verify(queryEngine, times(2)).execute(any(), any(), any(), any(), eq(QueryWorkload.EVENT_PROCESSING));
+    }
+
+    @Test
+    void combineMovesQueryPropertiesIntoSearchTypes() {
+        final Search search = AggregationSearchCoalescer.combine(TIMERANGE, List.of(
+                member(search("source:foo", "stream-1")),
+                member(search("source:bar", "stream-2"))));
+
+        assertThat(search.queries()).hasSize(1);
+        final Query query = search.queries().iterator().next();
+        assertThat(query.timerange()).isEqualTo(TIMERANGE);
+        assertThat(query.usedStreamIds()).containsExactlyInAnyOrder("stream-1", "stream-2");
+        assertThat(query.searchTypes()).extracting(SearchType::id).containsExactlyInAnyOrder(
+                "member-0-query-1-pivot-1",
+                "member-0-streams-query-1-streams-pivot-1",
+                "member-1-query-1-pivot-1",
+                "member-1-streams-query-1-streams-pivot-1");
+
+        final SearchType searchType = query.searchTypes().stream()
+                .filter(st -> st.id().equals("member-1-query-1-pivot-1"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(searchType.query()).contains(ElasticsearchQueryString.of("source:bar"));
+        assertThat(searchType.streams()).containsExactly("stream-2");
+        assertThat(searchType.filters()).hasSize(1);
+    }
+
+    @Test
+    void demultiplexOnlyReturnsErrorsOfTheMember() {
+        final Search search = search("source:foo", "stream-1");
+        final Query combinedQuery = AggregationSearchCoalescer.combine(TIMERANGE, List.of(member(search), member(search)))
+                .queries().iterator().next();
+        final QueryError queryError = new QueryError(combinedQuery, "query failed");
+        final SearchTypeError ownError = new SearchTypeError(combinedQuery, "member-0-query-1-pivot-1", "own search type failed");
+        final SearchTypeError otherError = new SearchTypeError(combinedQuery, "member-1-query-1-pivot-1", "other search type failed");
+        final QueryResult combinedResult = QueryResult.builder()
+                .query(combinedQuery)
+                .searchTypes(Map.of(
+                        "member-0-query-1-pivot-1", pivotResult("member-0-query-1-pivot-1"),
+                        "member-1-query-1-pivot-1", pivotResult("member-1-query-1-pivot-1")))
+                .errors(Set.of(queryError, ownError, otherError))
+                .build();
+
+        final Map<String, QueryResult> results = AggregationSearchCoalescer.demultiplex(0, search, combinedResult);
+
+        assertThat(results.get("query-1").searchTypes()).containsOnlyKeys("pivot-1");
+        assertThat(results.get("query-1").errors()).containsExactlyInAnyOrder(queryError, ownError);
+        assertThat(results.get("streams-query-1").searchTypes()).isEmpty();
+        assertThat(results.get("streams-query-1").errors()).containsExactly(queryError);
+    }
+
+    @Test
+    void canCoalesce() {
+        assertThat(search("source:foo", "stream-1").queries()).allMatch(AggregationSearchCoalescer::canCoalesce);
+
+        // No streams
+        assertThat(AggregationSearchCoalescer.canCoalesce(Query.builder()
+                .id("query-1")
+                .timerange(TIMERANGE)
+                .searchTypes(ImmutableSet.of(pivot("pivot-1")))
+                .build())).isFalse();
+
+        // Search types other than pivots
+        assertThat(AggregationSearchCoalescer.canCoalesce(query("query-1", "source:foo", "stream-1",
+                MessageList.builder().id("messages-1").build()))).isFalse();
+
+        // Search types with their own query
+        assertThat(AggregationSearchCoalescer.canCoalesce(query("query-1", "source:foo", "stream-1",
+                pivot("pivot-1").toBuilder().query(ElasticsearchQueryString.of("source:bar")).build()))).isFalse();
+    }
+
+    private AggregationSearchCoalescer createCoalescer(Duration window, int maxBatchSize) {
+        return new AggregationSearchCoalescer(queryEngine, searchJobService, window, maxBatchSize, new MetricRegistry());
+    }
+
+    private static AggregationSearchCoalescer.Member member(Search search) {
+        return new AggregationSearchCoalescer.Member(search, new CompletableFuture<>());
+    }
+
+    private static Search search(String queryString, String streamId) {
+        return Search.builder()
+                .queries(ImmutableSet.of(
+                        query("query-1", queryString, streamId, pivot("pivot-1")).toBuilder()
+                                .filters(List.of(InlineQueryStringSearchFilter.builder().queryString("host:localhost").build()))
+                                .build(),
+                        query("streams-query-1", queryString, streamId, pivot("streams-pivot-1"))))
+                .build();
+    }
+
+    private static Query query(String id, String queryString, String streamId, SearchType searchType) {
+        return Query.builder()
+                .id(id)
+                .timerange(TIMERANGE)
+                .query(ElasticsearchQueryString.of(queryString))
+                .filter(OrFilter.builder().filters(Set.of(StreamFilter.ofId(streamId))).build())
+                .searchTypes(ImmutableSet.of(searchType))
+                .build();
+    }
+
+    private static PivotResult pivotResult(String id) {
+        return PivotResult.builder().id(id).total(0).effectiveTimerange(TIMERANGE).build();
+    }
+
+    private static Pivot pivot(String id) {
+        return Pivot.builder()
+                .id(id)
+                .rowGroups(Values.builder().limit(10).field("source").build())
+                .rollup(true)
+                .series(Count.builder().build())
+                .build();
+    }
+}
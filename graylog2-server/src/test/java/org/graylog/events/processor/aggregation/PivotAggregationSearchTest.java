@@ -33,6 +33,7 @@ import org.graylog.plugins.views.search.db.SearchJobService;
 import org.graylog.plugins.views.search.elasticsearch.QueryStringDecorators;
 import org.graylog.plugins.views.search.engine.PositionTrackingQuery;
 import org.graylog.plugins.views.search.engine.QueryEngine;
+import org.graylog.plugins.views.search.engine.QueryWorkload;
 import org.graylog.plugins.views.search.engine.normalization.SearchNormalization;
 import org.graylog.plugins.views.search.rest.PermittedStreams;
 import org.graylog.plugins.views.search.searchfilters.model.InlineQueryStringSearchFilter;
@@ -73,6 +74,7 @@ import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
@@ -98,6 +100,8 @@ public class PivotAggregationSearchTest {
     private StreamService streamService;
     @Mock
     private SearchNormalization searchNormalization;
+    @Mock
+    private AggregationSearchCoalescer searchCoalescer;
 
     private final PermittedStreams permittedStreams = new PermittedStreams(Stream::of, (categories) -> Stream.of());
 
@@ -524,11 +528,11 @@ public class PivotAggregationSearchTest {
         job.addQueryResultFuture(TEST_USER, CompletableFuture.completedFuture(queryResult));
         job.seal();
         when(searchJobService.create(any(), eq(TEST_USER), eq(0))).thenReturn(job);
-        when(queryEngine.execute(any(), anySet(), any())).thenReturn(job).thenReturn(job);
+        when(queryEngine.execute(any(), anySet(), any(), any(), any())).thenReturn(job).thenReturn(job);
         pivotAggregationSearch.getSearchJob(parameters,
                 new AggregationSearch.User(TEST_USER, DateTimeZone.UTC), WINDOW_LENGTH, WINDOW_LENGTH);
         Mockito.verify(searchNormalization, times(1)).postValidation(isA(Query.class), any());
-        Mockito.verify(queryEngine, times(1)).execute(isA(SearchJob.class), argThat(Set::isEmpty), eq(DateTimeZone.UTC));
+        Mockito.verify(queryEngine, times(1)).execute(isA(SearchJob.class), argThat(Set::isEmpty), eq(DateTimeZone.UTC), isNull(), eq(QueryWorkload.EVENT_PROCESSING));
     }
 
     private static AggregationEventProcessorParameters buildParameters(AbsoluteRange timerange) {
@@ -584,6 +588,7 @@ public class PivotAggregationSearchTest {
                 queryStringDecorators,
                 streamService,
                 searchNormalization,
+                searchCoalescer,
                 false
         );
     }
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.events.processor.streaming;
+
+import org.graylog.events.processor.streaming.FilterQueryMatcher.FieldKind;
+import org.graylog2.indexer.fieldtypes.FieldTypeDTO;
+import org.graylog2.indexer.fieldtypes.IndexFieldTypesDTO;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageFactory;
+import org.graylog2.plugin.TestMessageFactory;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilterQueryMatcherTest {
+    private static final Map<String, FieldKind> FIELD_KINDS = Map.of(
+            "source", FieldKind.KEYWORD,
+            "action", FieldKind.KEYWORD,
+            "tags", FieldKind.KEYWORD,
+            "user", FieldKind.KEYWORD,
+            "path", FieldKind.KEYWORD,
+            "http_status", FieldKind.NUMERIC,
+            "took_ms", FieldKind.NUMERIC,
+            "level", FieldKind.NUMERIC
+    );
+
+    private final MessageFactory messageFactory = new TestMessageFactory();
+
+    @Test
+    void matchesEverythingForEmptyQueries() {
+        final Message message = message(Map.of());
+
+        assertThat(compile("").test(message)).isTrue();
+        assertThat(compile("*").test(message)).isTrue();
+        assertThat(compile("*:*").test(message)).isTrue();
+    }
+
+    @Test
+    void matchesTerms() {
+        final Predicate<Message> predicate = compile("source:server-1");
+
+        assertThat(predicate.test(message(Map.of("source", "server-1")))).isTrue();
+        assertThat(predicate.test(message(Map.of("source", "server-2")))).isFalse();
+        assertThat(predicate.test(message(Map.of("source", "Server-1")))).isFalse();
+        assertThat(predicate.test(message(Map.of()))).isFalse();
+    }
+
+    @Test
+    void matchesPhrases() {
+        final Predicate<Message> predicate = compile("action:\"user login\"");
+
+        assertThat(predicate.test(message(Map.of("action", "user login")))).isTrue();
+        assertThat(predicate.test(message(Map.of("action", "user")))).isFalse();
+    }
+
+    @Test
+    void matchesNumbers() {
+        assertThat(compile("http_status:404").test(message(Map.of("http_status", 404)))).isTrue();
+        assertThat(compile("http_status:404").test(message(Map.of("http_status", 404L)))).isTrue();
+        assertThat(compile("http_status:404").test(message(Map.of("http_status", 500)))).isFalse();
+        assertThat(compile("took_ms:1.5").test(message(Map.of("took_ms", 1.5d)))).isTrue();
+    }
+
+    @Test
+    void matchesMultiValueFields() {
+        final Predicate<Message> predicate = compile("tags:alert");
+
+        assertThat(predicate.test(message(Map.of("tags", List.of("info", "alert"))))).isTrue();
+        assertThat(predicate.test(message(Map.of("tags", List.of("info"))))).isFalse();
+    }
+
+    @Test
+    void matchesBooleanOperators() {
+        final Predicate<Message> and = compile("source:server-1 AND level:3");
+        assertThat(and.test(message(Map.of("source", "server-1", "level", 3)))).isTrue();
+        assertThat(and.test(message(Map.of("source", "server-1", "level", 4)))).isFalse();
+
+        final Predicate<Message> or = compile("source:server-1 OR source:server-2");
+        assertThat(or.test(message(Map.of("source", "server-1")))).isTrue();
+        assertThat(or.test(message(Map.of("source", "server-2")))).isTrue();
+        assertThat(or.test(message(Map.of("source", "server-3")))).isFalse();
+
+        final Predicate<Message> not = compile("NOT source:server-1");
+        assertThat(not.test(message(Map.of("source", "server-1")))).isFalse();
+        assertThat(not.test(message(Map.of("source", "server-2")))).isTrue();
+        assertThat(not.test(message(Map.of()))).isTrue();
+
+        final Predicate<Message> nested = compile("(source:server-1 OR source:server-2) AND NOT level:7");
+        assertThat(nested.test(message(Map.of("source", "server-2", "level", 3)))).isTrue();
+        assertThat(nested.test(message(Map.of("source", "server-2", "level", 7)))).isFalse();
+        assertThat(nested.test(message(Map.of("source", "server-3", "level", 3)))).isFalse();
+    }
+
+    @Test
+    void matchesExistence() {
+        assertThat(compile("_exists_:user").test(message(Map.of("user", "jane")))).isTrue();
+        assertThat(compile("_exists_:user").test(message(Map.of()))).isFalse();
+        assertThat(compile("user:*").test(message(Map.of("user", "jane")))).isTrue();
+        assertThat(compile("user:*").test(message(Map.of()))).isFalse();
+    }
+
+    @Test
+    void matchesPrefixesAndWildcards() {
+        assertThat(compile("source:server*").test(message(Map.of("source", "server-1")))).isTrue();
+        assertThat(compile("source:server*").test(message(Map.of("source", "client-1")))).isFalse();
+        assertThat(compile("source:serv?r-1").test(message(Map.of("source", "server-1")))).isTrue();
+        assertThat(compile("source:*-1").test(message(Map.of("source", "server-1")))).isTrue();
+        assertThat(compile("source:*-1").test(message(Map.of("source", "server-2")))).isFalse();
+        assertThat(compile("path:*.log").test(message(Map.of("path", "/var/xlog")))).isFalse();
+    }
+
+    @Test
+    void matchesRanges() {
+        final Predicate<Message> inclusive = compile("http_status:[400 TO 499]");
+        assertThat(inclusive.test(message(Map.of("http_status", 400)))).isTrue();
+        assertThat(inclusive.test(message(Map.of("http_status", 499)))).isTrue();
+        assertThat(inclusive.test(message(Map.of("http_status", 500)))).isFalse();
+
+        final Predicate<Message> exclusive = compile("http_status:{400 TO 499}");
+        assertThat(exclusive.test(message(Map.of("http_status", 400)))).isFalse();
+        assertThat(exclusive.test(message(Map.of("http_status", 450)))).isTrue();
+
+        final Predicate<Message> open = compile("took_ms:[1000 TO *]");
+        assertThat(open.test(message(Map.of("took_ms", 5000)))).isTrue();
+        assertThat(open.test(message(Map.of("took_ms", 50)))).isFalse();
+
+        final Predicate<Message> strings = compile("user:[a TO c]");
+        assertThat(strings.test(message(Map.of("user", "bob")))).isTrue();
+        assertThat(strings.test(message(Map.of("user", "dave")))).isFalse();
+    }
+
+    @Test
+    void comparesNumericStringsAsNumbers() {
+        final Predicate<Message> range = compile("http_status:[400 TO 499]");
+        assertThat(range.test(message(Map.of("http_status", "404")))).isTrue();
+        assertThat(range.test(message(Map.of("http_status", "5000")))).isFalse();
+        assertThat(range.test(message(Map.of("http_status", "not-a-number")))).isFalse();
+
+        assertThat(compile("http_status:404").test(message(Map.of("http_status", "404")))).isTrue();
+        assertThat(compile("took_ms:1.5").test(message(Map.of("took_ms", "1.50")))).isTrue();
+    }
+
+    @Test
+    void doesNotCompileUnsupportedQueries() {
+        // Default field
+        assertThat(FilterQueryMatcher.compile("error", FIELD_KINDS)).isEmpty();
+        // Analyzed or unknown fields
+        assertThat(FilterQueryMatcher.compile("message:error", FIELD_KINDS)).isEmpty();
+        assertThat(FilterQueryMatcher.compile("source:server-1 AND full_message:error", FIELD_KINDS)).isEmpty();
+        assertThat(FilterQueryMatcher.compile("source:server-1", Map.of())).isEmpty();
+        // Prefixes and wildcards on numeric fields, non-numeric values for numeric fields
+        assertThat(FilterQueryMatcher.compile("http_status:4*", FIELD_KINDS)).isEmpty();
+        assertThat(FilterQueryMatcher.compile("http_status:error", FIELD_KINDS)).isEmpty();
+        assertThat(FilterQueryMatcher.compile("http_status:[a TO c]", FIELD_KINDS)).isEmpty();
+        // Regular expressions and fuzzy queries
+        assertThat(FilterQueryMatcher.compile("source:/server-[0-9]/", FIELD_KINDS)).isEmpty();
+        assertThat(FilterQueryMatcher.compile("source:server~", FIELD_KINDS)).isEmpty();
+        // Field wildcards
+        assertThat(FilterQueryMatcher.compile("sou*:server-1", FIELD_KINDS)).isEmpty();
+        // Syntax errors
+        assertThat(FilterQueryMatcher.compile("source:(", FIELD_KINDS)).isEmpty();
+    }
+
+    @Test
+    void onlyKnowsFieldsWithKeywordOrNumericMappingsInAllIndices() {
+        final Map<String, FieldKind> fieldKinds = FilterQueryMatcher.fieldKinds(List.of(
+                IndexFieldTypesDTO.create("set-1", "graylog_0", Set.of(
+                        FieldTypeDTO.create("source", "text"),
+                        FieldTypeDTO.create("action", "keyword"),
+                        FieldTypeDTO.create("http_status", "long"),
+                        FieldTypeDTO.create("took_ms", "float"),
+                        FieldTypeDTO.create("user", "keyword"),
+                        FieldTypeDTO.create("level", "long"))),
+                IndexFieldTypesDTO.create("set-1", "graylog_1", Set.of(
+                        FieldTypeDTO.create("action", "keyword"),
+                        FieldTypeDTO.create("http_status", "integer"),
+                        FieldTypeDTO.create("user", "long"),
+                        FieldTypeDTO.create("level", "text")))
+        ));
+
+        assertThat(fieldKinds).containsOnly(
+                Map.entry("action", FieldKind.KEYWORD),
+                Map.entry("http_status", FieldKind.NUMERIC)
+        );
+        assertThat(FilterQueryMatcher.compile("source:server-1", fieldKinds)).isEmpty();
+        assertThat(FilterQueryMatcher.compile("action:login AND http_status:200", fieldKinds)).isPresent();
+    }
+
+    private Predicate<Message> compile(String query) {
+        return FilterQueryMatcher.compile(query, FIELD_KINDS).orElseThrow();
+    }
+
+    private Message message(Map<String, Object> fields) {
+        final Message message = messageFactory.createMessage("test", "localhost", DateTime.now(DateTimeZone.UTC));
+        message.addFields(fields);
+        return message;
+    }
+}
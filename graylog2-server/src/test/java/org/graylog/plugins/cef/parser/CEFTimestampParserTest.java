@@ -48,6 +48,12 @@ public class CEFTimestampParserTest {
                 {"Sep 18 2017 13:25:40 CET", new DateTime(2017, 9, 18, 13, 25, 40, 0, DateTimeZone.forID("CET")), DateTimeZone.forID("CET"), Locale.ROOT},
                 {"Sep 18 2017 13:25:40", new DateTime(2017, 9, 18, 13, 25, 40, 0, DateTimeZone.forID("CET")), DateTimeZone.forID("CET"), Locale.ROOT},
                 {"Mai 18 2017 13:25:40.123 CET", new DateTime(2017, 5, 18, 13, 25, 40, 123, DateTimeZone.forID("CET")), DateTimeZone.forID("CET"), Locale.GERMAN},
+                {"", null, DateTimeZone.UTC, Locale.ROOT},
+                {"+1505741140123", new DateTime(2017, 9, 18, 13, 25, 40, 123, DateTimeZone.UTC), DateTimeZone.UTC, Locale.ROOT},
+                {"99999999999999999999", null, DateTimeZone.UTC, Locale.ROOT},
+                {"  Sep  18   2017 13:25:40   CET ", new DateTime(2017, 9, 18, 13, 25, 40, 0, DateTimeZone.forID("CET")), DateTimeZone.forID("CET"), Locale.ROOT},
+                {"Sep 18 25:99:99", null, DateTimeZone.UTC, Locale.ROOT},
+                {"2017-09-18T13:25:40.123Z", new DateTime(2017, 9, 18, 13, 25, 40, 123, DateTimeZone.UTC), DateTimeZone.UTC, Locale.ROOT},
         });
     }
 
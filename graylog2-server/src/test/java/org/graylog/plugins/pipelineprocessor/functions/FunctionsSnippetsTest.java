@@ -92,6 +92,7 @@ import org.graylog.plugins.pipelineprocessor.functions.ips.IpAnonymize;
 import org.graylog.plugins.pipelineprocessor.functions.ips.IsIp;
 import org.graylog.plugins.pipelineprocessor.functions.json.IsJson;
 import org.graylog.plugins.pipelineprocessor.functions.json.JsonFlatten;
+import org.graylog.plugins.pipelineprocessor.functions.json.SetFieldsFromJson;
 import org.graylog.plugins.pipelineprocessor.functions.json.JsonParse;
 import org.graylog.plugins.pipelineprocessor.functions.json.SelectJsonPath;
 import org.graylog.plugins.pipelineprocessor.functions.lookup.ListCount;
@@ -137,6 +138,7 @@ import org.graylog.plugins.pipelineprocessor.functions.strings.Lowercase;
 import org.graylog.plugins.pipelineprocessor.functions.strings.MultiGrokMatch;
 import org.graylog.plugins.pipelineprocessor.functions.strings.RegexMatch;
 import org.graylog.plugins.pipelineprocessor.functions.strings.RegexReplace;
+import org.graylog.plugins.pipelineprocessor.functions.strings.SetFieldsFromKeyValue;
 import org.graylog.plugins.pipelineprocessor.functions.strings.Replace;
 import org.graylog.plugins.pipelineprocessor.functions.strings.Split;
 import org.graylog.plugins.pipelineprocessor.functions.strings.StartsWith;
@@ -171,6 +173,7 @@ import org.graylog2.plugin.streams.Stream;
 import org.graylog2.shared.SuppressForbidden;
 import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
 import org.graylog2.streams.StreamService;
+import org.graylog2.utilities.PatternCache;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
 import org.joda.time.DateTimeZone;
@@ -193,7 +196,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -243,10 +246,10 @@ public class FunctionsSnippetsTest extends BaseParserTest {
         functions.put(SetField.NAME, new SetField());
         functions.put(SetFields.NAME, new SetFields());
         functions.put(RenameField.NAME, new RenameField());
-        functions.put(RemoveField.NAME, new RemoveField());
+        functions.put(RemoveField.NAME, new RemoveField(new PatternCache(new MetricRegistry())));
         functions.put(RemoveSingleField.NAME, new RemoveSingleField());
-        functions.put(RemoveMultipleFields.NAME, new RemoveMultipleFields());
-        functions.put(RemoveStringFieldsByValue.NAME, new RemoveStringFieldsByValue());
+        functions.put(RemoveMultipleFields.NAME, new RemoveMultipleFields(new PatternCache(new MetricRegistry())));
+        functions.put(RemoveStringFieldsByValue.NAME, new RemoveStringFieldsByValue(new PatternCache(new MetricRegistry())));
         functions.put(NormalizeFields.NAME, new NormalizeFields());
 
         functions.put(DropMessage.NAME, new DropMessage());
@@ -282,8 +285,8 @@ public class FunctionsSnippetsTest extends BaseParserTest {
         //functions.put(FromInput.NAME, new FromInput());
 
         // generic functions
-        functions.put(RegexMatch.NAME, new RegexMatch());
-        functions.put(RegexReplace.NAME, new RegexReplace());
+        functions.put(RegexMatch.NAME, new RegexMatch(new PatternCache(new MetricRegistry())));
+        functions.put(RegexReplace.NAME, new RegexReplace(new PatternCache(new MetricRegistry())));
 
         // string functions
         functions.put(Abbreviate.NAME, new Abbreviate());
@@ -297,8 +300,9 @@ public class FunctionsSnippetsTest extends BaseParserTest {
         functions.put(Uncapitalize.NAME, new Uncapitalize());
         functions.put(Uppercase.NAME, new Uppercase());
         functions.put(KeyValue.NAME, new KeyValue());
+        functions.put(SetFieldsFromKeyValue.NAME, new SetFieldsFromKeyValue());
         functions.put(Join.NAME, new Join());
-        functions.put(Split.NAME, new Split());
+        functions.put(Split.NAME, new Split(new PatternCache(new MetricRegistry())));
         functions.put(StartsWith.NAME, new StartsWith());
         functions.put(Replace.NAME, new Replace());
         functions.put(Length.NAME, new Length());
@@ -308,6 +312,7 @@ public class FunctionsSnippetsTest extends BaseParserTest {
         final ObjectMapper objectMapper = new ObjectMapperProvider().get();
         functions.put(JsonParse.NAME, new JsonParse(objectMapper));
         functions.put(JsonFlatten.NAME, new JsonFlatten(objectMapper));
+        functions.put(SetFieldsFromJson.NAME, new SetFieldsFromJson(objectMapper));
         functions.put(SelectJsonPath.NAME, new SelectJsonPath(objectMapper));
 
         functions.put(DateConversion.NAME, new DateConversion());
@@ -397,7 +402,7 @@ public class FunctionsSnippetsTest extends BaseParserTest {
         final EventBus clusterBus = new EventBus();
         final GrokPatternRegistry grokPatternRegistry = new GrokPatternRegistry(clusterBus,
                 grokPatternService,
-                Executors.newScheduledThreadPool(1));
+                new PatternCache(new MetricRegistry()));
         functions.put(GrokMatch.NAME, new GrokMatch(grokPatternRegistry));
         functions.put(MultiGrokMatch.NAME, new MultiGrokMatch(grokPatternRegistry));
         functions.put(GrokExists.NAME, new GrokExists(grokPatternRegistry));
@@ -609,6 +614,61 @@ public class FunctionsSnippetsTest extends BaseParserTest {
         assertThat(evaluatedMessage.getField("ignore_some_array")).isNull();
     }
 
+    @Test
+    void setFieldsFromJson() {
+        final String nestedJson = """
+                {
+                    "store": {
+                        "book": {"author": "Nigel Rees", "price": 8.95, "pages": 512, "in_stock": true, "isbn": null},
+                        "bicycle": {"color": "red", "price": 19.95}
+                    },
+                    "some_array": ["a", null, {"c": 3, "d": [1, 2]}],
+                    "large": 12345678901234,
+                    "app.kubernetes.io_name": "hal"
+                }""";
+
+        final Rule rule = parser.parseRule(ruleForTest(), false);
+        final Message message = messageFactory.createMessage("JSON", "test", Tools.nowUTC());
+        message.addField("nested_json", nestedJson);
+        final Message evaluatedMessage = evaluateRule(rule, message);
+
+        for (String arrayHandler : List.of("flatten_", "json_", "ignore_")) {
+            final Map<String, Object> expected = evaluatedMessage.getFields().entrySet().stream()
+                    .filter(entry -> entry.getKey().startsWith(arrayHandler))
+                    .collect(Collectors.toMap(entry -> "fused_" + entry.getKey(), Map.Entry::getValue));
+            final Map<String, Object> fused = evaluatedMessage.getFields().entrySet().stream()
+                    .filter(entry -> entry.getKey().startsWith("fused_" + arrayHandler))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+            assertThat(fused).isNotEmpty().isEqualTo(expected);
+        }
+        assertThat(evaluatedMessage.getField("fused_flatten_store_book_pages")).isEqualTo(512);
+        assertThat(evaluatedMessage.getField("fused_flatten_store_book_price")).isEqualTo(8.95);
+        assertThat(evaluatedMessage.getField("fused_flatten_large")).isEqualTo(12345678901234L);
+        assertThat(evaluatedMessage.getField("fused_flatten_some_array_2_d_1")).isEqualTo(2);
+        assertThat(evaluatedMessage.hasField("fused_flatten_store_book_isbn")).isFalse();
+        assertThat(evaluatedMessage.hasField("fused_flatten_some_array_1")).isFalse();
+        assertThat(evaluatedMessage.getField("fused_ignore_store_book_in_stock")).isEqualTo("true");
+
+        assertThat(evaluatedMessage.getField("a_b_clean")).isEqualTo(1);
+        // Invalid JSON doesn't set any fields
+        assertThat(evaluatedMessage.hasField("partial")).isFalse();
+        assertThat(evaluatedMessage.getFieldNames()).noneMatch(name -> name.startsWith("array_"));
+    }
+
+    @Test
+    void setFieldsFromKeyValue() {
+        final Rule rule = parser.parseRule(ruleForTest(), false);
+        final Message message = evaluateRule(rule);
+
+        assertThat(message.getField("fused_a")).isEqualTo("1,4").isEqualTo(message.getField("classic_a"));
+        assertThat(message.getField("fused_b")).isEqualTo("2").isEqualTo(message.getField("classic_b"));
+        assertThat(message.hasField("fused_c")).isFalse();
+        assertThat(message.getField("d_e_clean")).isEqualTo("5");
+        assertThat(message.getField("f:g_clean")).isNull();
+        assertThat(message.getField("f_g_clean")).isEqualTo("6");
+    }
+
     @Test
     void substring() {
         final Rule rule = parser.parseRule(ruleForTest(), false);
@@ -52,6 +52,7 @@ import org.graylog2.streams.StreamService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
@@ -140,7 +141,8 @@ class MessageCreationLoopPreventionTest extends BaseParserTest {
                 metricRegistry,
                 Executors.newScheduledThreadPool(1),
                 eventBus,
-                (currentPipelines, streamPipelineConnections, ruleMetricsConfig) -> new PipelineInterpreter.State(currentPipelines, streamPipelineConnections, ruleMetricsConfig, new MetricRegistry(), 1, true)
+                (currentPipelines, streamPipelineConnections, ruleMetricsConfig) -> new PipelineInterpreter.State(currentPipelines, streamPipelineConnections, ruleMetricsConfig, new MetricRegistry(), 1, true),
+                Duration.ZERO
         );
         this.pipelineInterpreter = new PipelineInterpreter(
                 messageQueueAcknowledger,
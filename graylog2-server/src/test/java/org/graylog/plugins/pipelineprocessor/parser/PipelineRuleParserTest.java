@@ -16,6 +16,7 @@
  */
 package org.graylog.plugins.pipelineprocessor.parser;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -61,6 +62,7 @@ import org.graylog2.plugin.Message;
 import org.graylog2.plugin.MessageFactory;
 import org.graylog2.plugin.TestMessageFactory;
 import jakarta.annotation.Nonnull;
+import org.graylog2.utilities.PatternCache;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
 import org.joda.time.DateTimeZone;
@@ -105,7 +107,7 @@ class PipelineRuleParserTest extends BaseParserTest {
         functions.put(StringConversion.NAME, new StringConversion());
         functions.put(SetField.NAME, new SetField());
         functions.put(HasField.NAME, new HasField());
-        functions.put(RegexMatch.NAME, new RegexMatch());
+        functions.put(RegexMatch.NAME, new RegexMatch(new PatternCache(new MetricRegistry())));
         functions.put("now_in_tz", new NowInTimezoneFunction());
 
         functions.put(Now.NAME, new Now());
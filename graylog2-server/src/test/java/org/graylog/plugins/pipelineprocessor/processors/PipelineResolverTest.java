@@ -32,6 +32,7 @@ import org.joda.time.DateTimeZone;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -266,6 +267,57 @@ class PipelineResolverTest {
         });
     }
 
+    @Test
+    void reusesUnchangedRulesAndPipelines() {
+        final var registry = PipelineMetricRegistry.create(metricRegistry, Pipeline.class.getName(), Rule.class.getName());
+        final var pipeline2 = pipeline1.toBuilder()
+                .id("pipeline-2")
+                .source("""
+                        pipeline "test-pipeline-2"
+                          stage 0 match either
+                            rule "test-rule-2"
+                        end
+                        """)
+                .build();
+        final var rule2 = rule1.toBuilder()
+                .id("rule-2")
+                .source("""
+                        rule "test-rule-2"
+                        when true
+                        then
+                        end
+                        """)
+                .build();
+        final var rules = new ArrayList<>(List.of(rule1, rule2));
+        final var resolver = new PipelineResolver(
+                new PipelineRuleParser(new FunctionRegistry(Map.of())),
+                PipelineResolverConfig.of(rules::stream, () -> Stream.of(pipeline1, pipeline2))
+        );
+
+        final var pipelines = resolver.resolvePipelines(registry);
+        assertThat(resolver.resolvePipelines(registry)).isEqualTo(pipelines).allSatisfy((id, pipeline) ->
+                assertThat(pipeline).isSameAs(pipelines.get(id)));
+
+        // Only the pipeline which references the changed rule is resolved again
+        rules.set(1, rule2.toBuilder().source("""
+                rule "test-rule-2"
+                when false
+                then
+                end
+                """).build());
+        final var updatedPipelines = resolver.resolvePipelines(registry);
+
+        assertThat(updatedPipelines.get("pipeline-1")).isSameAs(pipelines.get("pipeline-1"));
+        assertThat(updatedPipelines.get("pipeline-2")).isNotSameAs(pipelines.get("pipeline-2"));
+        assertThat(updatedPipelines.get("pipeline-2").stages().first().getRules().get(0).when()
+                .evaluateBool(EvaluationContext.emptyContext())).isFalse();
+
+        // Removing a rule resolves the pipelines referencing it again
+        rules.remove(1);
+        assertThat(resolver.resolvePipelines(registry).get("pipeline-2").stages().first().getRules().get(0).name())
+                .isEqualTo("Unresolved rule test-rule-2");
+    }
+
     @Test
     void resolveStreamConnections() {
         final var registry = PipelineMetricRegistry.create(metricRegistry, Pipeline.class.getName(), Rule.class.getName());
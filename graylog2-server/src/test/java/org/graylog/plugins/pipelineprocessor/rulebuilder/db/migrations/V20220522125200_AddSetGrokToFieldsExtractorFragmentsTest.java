@@ -16,6 +16,7 @@
  */
 package org.graylog.plugins.pipelineprocessor.rulebuilder.db.migrations;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.Sets;
 import com.google.common.eventbus.EventBus;
 import org.graylog.plugins.pipelineprocessor.ast.Rule;
@@ -34,12 +35,12 @@ import org.graylog2.plugin.MessageFactory;
 import org.graylog2.plugin.TestMessageFactory;
 import org.graylog2.plugin.Tools;
 import org.graylog2.shared.SuppressForbidden;
+import org.graylog2.utilities.PatternCache;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -62,7 +63,7 @@ class V20220522125200_AddSetGrokToFieldsExtractorFragmentsTest extends BaseFragm
         final EventBus clusterBus = new EventBus();
         final GrokPatternRegistry grokPatternRegistry = new GrokPatternRegistry(clusterBus,
                 grokPatternService,
-                Executors.newScheduledThreadPool(1));
+                new PatternCache(new MetricRegistry()));
         functions.put(GrokMatch.NAME, new GrokMatch(grokPatternRegistry));
         functions.put(SetFields.NAME, new SetFields());
         functions.put(StringConversion.NAME, new StringConversion());
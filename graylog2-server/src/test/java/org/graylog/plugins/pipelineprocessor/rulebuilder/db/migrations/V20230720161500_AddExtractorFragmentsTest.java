@@ -16,6 +16,7 @@
  */
 package org.graylog.plugins.pipelineprocessor.rulebuilder.db.migrations;
 
+import com.codahale.metrics.MetricRegistry;
 import org.graylog.plugins.pipelineprocessor.ast.Rule;
 import org.graylog.plugins.pipelineprocessor.ast.functions.Function;
 import org.graylog.plugins.pipelineprocessor.functions.conversion.StringConversion;
@@ -35,6 +36,7 @@ import org.graylog2.plugin.MessageFactory;
 import org.graylog2.plugin.TestMessageFactory;
 import org.graylog2.plugin.Tools;
 import org.graylog2.plugin.lookup.LookupResult;
+import org.graylog2.utilities.PatternCache;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -60,9 +62,9 @@ class V20230720161500_AddExtractorFragmentsTest extends BaseFragmentTest {
         functions.put(GetField.NAME, new GetField());
         functions.put(SetField.NAME, new SetField());
         functions.put(StringConversion.NAME, new StringConversion());
-        functions.put(RegexMatch.NAME, new RegexMatch());
-        functions.put(RegexReplace.NAME, new RegexReplace());
-        functions.put(Split.NAME, new Split());
+        functions.put(RegexMatch.NAME, new RegexMatch(new PatternCache(new MetricRegistry())));
+        functions.put(RegexReplace.NAME, new RegexReplace(new PatternCache(new MetricRegistry())));
+        functions.put(Split.NAME, new Split(new PatternCache(new MetricRegistry())));
 
         lookupTable = mock(LookupTable.class);
         when(lookupTable.lookup("ExistingKey")).thenReturn(LookupResult.builder()
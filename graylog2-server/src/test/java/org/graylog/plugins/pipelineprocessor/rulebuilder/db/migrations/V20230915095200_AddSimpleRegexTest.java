@@ -16,11 +16,13 @@
  */
 package org.graylog.plugins.pipelineprocessor.rulebuilder.db.migrations;
 
+import com.codahale.metrics.MetricRegistry;
 import org.graylog.plugins.pipelineprocessor.ast.functions.Function;
 import org.graylog.plugins.pipelineprocessor.functions.strings.RegexMatch;
 import org.graylog.plugins.pipelineprocessor.parser.FunctionRegistry;
 import org.graylog.plugins.pipelineprocessor.rulebuilder.db.RuleFragment;
 import org.graylog.plugins.pipelineprocessor.rulebuilder.parser.BaseFragmentTest;
+import org.graylog2.utilities.PatternCache;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -31,7 +33,7 @@ class V20230915095200_AddSimpleRegexTest extends BaseFragmentTest {
     @BeforeAll
     public static void initialize() {
         final Map<String, Function<?>> functions = commonFunctions();
-        functions.put(RegexMatch.NAME, new RegexMatch());
+        functions.put(RegexMatch.NAME, new RegexMatch(new PatternCache(new MetricRegistry())));
         functionRegistry = new FunctionRegistry(functions);
     }
 
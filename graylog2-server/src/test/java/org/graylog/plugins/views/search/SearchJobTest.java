@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class SearchJobTest {
+    private final SearchJob searchJob = new SearchJob("job", mock(Search.class), "user", "node");
+
+    @Test
+    void cancelReachesScheduledQueryAndRunningBackendRequest() {
+        final CompletableFuture<QueryResult> scheduled = new CompletableFuture<>();
+        final CompletableFuture<Object> request = new CompletableFuture<>();
+        searchJob.setQuerySchedulerFuture("query-1", scheduled);
+        searchJob.setQueryExecutionFuture("query-1", request);
+
+        searchJob.cancel();
+
+        assertThat(scheduled).isCancelled();
+        assertThat(request).isCancelled();
+        assertThat(searchJob.execution().cancelled()).isTrue();
+    }
+
+    @Test
+    void isCancelledIfQueuedQueriesHaveBeenCancelled() {
+        searchJob.setQuerySchedulerFuture("query-1", new CompletableFuture<QueryResult>());
+        searchJob.setQuerySchedulerFuture("query-2", new CompletableFuture<QueryResult>());
+
+        assertThat(searchJob.execution().cancelled()).isFalse();
+
+        searchJob.cancel();
+
+        assertThat(searchJob.execution().cancelled()).isTrue();
+    }
+
+    @Test
+    void isNotCancelledIfRunningRequestCompleted() {
+        final CompletableFuture<QueryResult> scheduled = new CompletableFuture<>();
+        final CompletableFuture<Object> request = new CompletableFuture<>();
+        searchJob.setQuerySchedulerFuture("query-1", scheduled);
+        searchJob.setQueryExecutionFuture("query-1", request);
+
+        request.complete(new Object());
+        scheduled.complete(QueryResult.emptyResult());
+        searchJob.cancel();
+
+        assertThat(searchJob.execution().cancelled()).isFalse();
+    }
+}
@@ -79,7 +79,7 @@ class IndexLookupTest {
 
     private IndexRangeService mockIndexRangeService(SortedSet<IndexRange> indexRanges, TimeRange timeRangeWithMatchingIndexRange) {
         final IndexRangeService indexRangeService = mock(IndexRangeService.class);
-        when(indexRangeService.find(timeRangeWithMatchingIndexRange.getFrom(), timeRangeWithMatchingIndexRange.getTo())).thenReturn(indexRanges);
+        when(indexRangeService.find(timeRangeWithMatchingIndexRange.getFrom(), timeRangeWithMatchingIndexRange.getTo(), streamIds)).thenReturn(indexRanges);
         return indexRangeService;
     }
 
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.plugins.views.search.Query;
+import org.graylog.plugins.views.search.QueryResult;
+import org.graylog.plugins.views.search.Search;
+import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
+import org.graylog.plugins.views.search.errors.SearchTypeError;
+import org.graylog.plugins.views.search.filter.OrFilter;
+import org.graylog.plugins.views.search.filter.StreamFilter;
+import org.graylog.plugins.views.search.searchtypes.pivot.Pivot;
+import org.graylog.plugins.views.search.searchtypes.pivot.PivotResult;
+import org.graylog.plugins.views.search.searchtypes.pivot.SeriesSpec;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.AutoInterval;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.Interval;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.Time;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.TimeUnitInterval;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.Values;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Average;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Count;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Max;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.indexer.searches.timeranges.InvalidRangeParametersException;
+import org.graylog2.plugin.indexer.searches.timeranges.RelativeRange;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IncrementalPivotExecutionTest {
+    private static final DateTime NOW = DateTime.parse("2024-01-01T01:00:30.000Z");
+    private static final String FINGERPRINT = SearchTypeResultCache.fingerprint(Set.of("stream-1"));
+    private static final List<SeriesSpec> SERIES = List.of(
+            Count.builder().id("count()").build(),
+            Max.builder().id("max(took_ms)").field("took_ms").build());
+
+    private final IncrementalPivotExecution execution = new IncrementalPivotExecution(true, Duration.ofMinutes(1), 100,
+            new ObjectMapperProvider().get(), new MetricRegistry());
+
+    @Test
+    void executesFirstRequestForTheWholeTimeRange() throws Exception {
+        final Query query = query(NOW, pivot(TimeUnitInterval.Builder.builder().timeunit("1m").build()));
+
+        final IncrementalPivotExecution.Plan plan = execution.plan(search(query), query, FINGERPRINT).orElseThrow();
+
+        final Pivot rewrittenPivot = (Pivot) plan.query().searchTypes().iterator().next();
+        assertThat(rewrittenPivot.query()).isEmpty();
+        assertThat(rewrittenPivot.rollup()).isFalse();
+        assertThat(rewrittenPivot.series()).hasSize(3);
+
+        // Buckets from 00:00 to 01:00, each one contains one message
+        final PivotResult result = complete(plan, rows(0, 60, 1));
+
+        assertThat(result.total()).isEqualTo(61);
+        assertThat(result.rows()).hasSize(62);
+        assertThat(result.rows().get(0).values()).extracting(PivotResult.Value::key)
+                .containsExactly(ImmutableList.of("count()"), ImmutableList.of("max(took_ms)"));
+        assertThat(rollupValues(result)).containsExactly(61L, 60.0d);
+        assertThat(result.columnNames()).containsExactly("timestamp", "count()", "max(took_ms)");
+        assertThat(execution.stateCount()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyQueriesNewAndIncompleteBuckets() throws Exception {
+        final Query query = query(NOW, pivot(TimeUnitInterval.Builder.builder().timeunit("1m").build()));
+        complete(execution.plan(search(query), query, FINGERPRINT).orElseThrow(), rows(0, 60, 1));
+
+        final Query refreshedQuery = query(NOW.plusMinutes(1), pivot(TimeUnitInterval.Builder.builder().timeunit("1m").build()));
+        final IncrementalPivotExecution.Plan plan = execution.plan(search(refreshedQuery), refreshedQuery, FINGERPRINT).orElseThrow();
+
+        // 00:02 is the first bucket which isn't cut by the start of the time range, 00:59 was incomplete before
+        final Pivot rewrittenPivot = (Pivot) plan.query().searchTypes().iterator().next();
+        assertThat(rewrittenPivot.query()).contains(ElasticsearchQueryString.of(
+                "NOT timestamp:[\"2024-01-01 00:02:00.000\" TO \"2024-01-01 00:59:00.000\"}"));
+
+        // The leading bucket and the new buckets contain two messages, the excluded buckets are empty
+        final ImmutableList<PivotResult.Row> newRows = ImmutableList.<PivotResult.Row>builder()
+                .addAll(rows(1, 1, 2))
+                .addAll(rows(2, 58, 0))
+                .addAll(rows(59, 61, 2))
+                .build();
+        final PivotResult result = complete(plan, newRows);
+
+        assertThat(result.rows()).hasSize(62);
+        assertThat(result.rows().get(0).key()).containsExactly("2024-01-01T00:01:00.000Z");
+        assertThat(result.rows().get(60).key()).containsExactly("2024-01-01T01:01:00.000Z");
+        // 57 retained buckets with one message each
+        assertThat(result.total()).isEqualTo(2 + 57 + 3 * 2);
+        assertThat(rollupValues(result)).containsExactly(65L, 61.0d);
+    }
+
+    @Test
+    void executesFullQueryAfterFailure() throws Exception {
+        final Query query = query(NOW, pivot(TimeUnitInterval.Builder.builder().timeunit("1m").build()));
+        complete(execution.plan(search(query), query, FINGERPRINT).orElseThrow(), rows(0, 60, 1));
+
+        final Query refreshedQuery = query(NOW.plusMinutes(1), pivot(TimeUnitInterval.Builder.builder().timeunit("1m").build()));
+        final IncrementalPivotExecution.Plan plan = execution.plan(search(refreshedQuery), refreshedQuery, FINGERPRINT).orElseThrow();
+        final QueryResult failedResult = QueryResult.builder()
+                .query(plan.query())
+                .searchTypes(Map.of())
+                .errors(Set.of(new SearchTypeError(plan.query(), "pivot-1", "Failed")))
+                .build();
+        plan.complete(failedResult);
+
+        assertThat(execution.stateCount()).isZero();
+        final IncrementalPivotExecution.Plan nextPlan = execution.plan(search(refreshedQuery), refreshedQuery, FINGERPRINT).orElseThrow();
+        assertThat(((Pivot) nextPlan.query().searchTypes().iterator().next()).query()).isEmpty();
+    }
+
+    @Test
+    void ignoresIneligiblePivots() throws Exception {
+        final Pivot pivot = pivot(TimeUnitInterval.Builder.builder().timeunit("1m").build());
+
+        assertThat(IncrementalPivotExecution.isEligible(pivot)).isTrue();
+        assertThat(IncrementalPivotExecution.isEligible(pivot.toBuilder()
+                .series(List.of(Average.builder().id("avg(took_ms)").field("took_ms").build()))
+                .build())).isFalse();
+        assertThat(IncrementalPivotExecution.isEligible(pivot.toBuilder()
+                .rowGroups(Values.builder().field("source").limit(10).build())
+                .build())).isFalse();
+        assertThat(IncrementalPivotExecution.isEligible(pivot.toBuilder()
+                .columnGroups(Values.builder().field("source").limit(10).build())
+                .build())).isFalse();
+        assertThat(IncrementalPivotExecution.isEligible(pivot.toBuilder()
+                .rowGroups(Time.builder().field("gl2_receive_timestamp").interval(AutoInterval.create()).build())
+                .build())).isFalse();
+
+        // Weekly buckets don't have a fixed length
+        final Query weeklyQuery = query(NOW, pivot(TimeUnitInterval.Builder.builder().timeunit("1w").build()));
+        assertThat(execution.plan(search(weeklyQuery), weeklyQuery, FINGERPRINT)).isEmpty();
+
+        final Query absoluteQuery = query(NOW, pivot).toBuilder()
+                .timerange(AbsoluteRange.create(NOW.minusHours(1), NOW))
+                .build();
+        assertThat(execution.plan(search(absoluteQuery), absoluteQuery, FINGERPRINT)).isEmpty();
+    }
+
+    @Test
+    void resolvesAutoIntervals() throws Exception {
+        final Query query = query(NOW, pivot(AutoInterval.create()));
+
+        final IncrementalPivotExecution.Plan plan = execution.plan(search(query), query, FINGERPRINT).orElseThrow();
+
+        final Pivot rewrittenPivot = (Pivot) plan.query().searchTypes().iterator().next();
+        assertThat(((Time) rewrittenPivot.rowGroups().get(0)).interval())
+                .isEqualTo(TimeUnitInterval.Builder.builder().timeunit("1m").build());
+    }
+
+    private static List<Object> rollupValues(PivotResult result) {
+        final PivotResult.Row rollupRow = result.rows().get(result.rows().size() - 1);
+        assertThat(rollupRow.key()).isEmpty();
+        return rollupRow.values().stream().map(PivotResult.Value::value).toList();
+    }
+
+    private static PivotResult complete(IncrementalPivotExecution.Plan plan, List<PivotResult.Row> rows) {
+        final PivotResult backendResult = PivotResult.builder()
+                .id("pivot-1")
+                .rows(ImmutableList.copyOf(rows))
+                .columnNames(List.of("timestamp", "count()", "max(took_ms)", "incremental-document-count"))
+                .total(0)
+                .effectiveTimerange(AbsoluteRange.create(plan.query().timerange().getFrom(), plan.query().timerange().getTo()))
+                .build();
+        final QueryResult result = plan.complete(QueryResult.builder()
+                .query(plan.query())
+                .searchTypes(Map.of("pivot-1", backendResult))
+                .build());
+        return (PivotResult) result.searchTypes().get("pivot-1");
+    }
+
+    private static List<PivotResult.Row> rows(int fromMinute, int toMinute, long messagesPerBucket) {
+        final ImmutableList.Builder<PivotResult.Row> rows = ImmutableList.builder();
+        for (int minute = fromMinute; minute <= toMinute; minute++) {
+            final DateTime bucket = DateTime.parse("2024-01-01T00:00:00.000Z").plusMinutes(minute);
+            rows.add(PivotResult.Row.builder()
+                    .key(ImmutableList.of(bucket.toString()))
+                    .source("leaf")
+                    .values(ImmutableList.of(
+                            PivotResult.Value.create(List.of("count()"), messagesPerBucket, true, "row-leaf"),
+                            PivotResult.Value.create(List.of("max(took_ms)"), messagesPerBucket > 0 ? (double) minute : Double.NEGATIVE_INFINITY, true, "row-leaf"),
+                            PivotResult.Value.create(List.of("incremental-document-count"), messagesPerBucket, true, "row-leaf")))
+                    .build());
+        }
+        return rows.build();
+    }
+
+    private static Search search(Query query) {
+        return Search.builder().queries(ImmutableSet.of(query)).build();
+    }
+
+    private static Query query(DateTime now, Pivot pivot) throws InvalidRangeParametersException {
+        return Query.builder()
+                .id("query-1")
+                .timerange(RelativeRange.create(3600).withReferenceDate(now))
+                .query(ElasticsearchQueryString.of("source:foo"))
+                .filter(OrFilter.builder().filters(Set.of(StreamFilter.ofId("stream-1"))).build())
+                .searchTypes(ImmutableSet.of(pivot))
+                .build();
+    }
+
+    private static Pivot pivot(Interval interval) {
+        return Pivot.builder()
+                .id("pivot-1")
+                .rowGroups(Time.builder().field("timestamp").interval(interval).build())
+                .series(SERIES)
+                .rollup(true)
+                .build();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.plugins.views.search.Query;
+import org.graylog.plugins.views.search.QueryResult;
+import org.graylog.plugins.views.search.SearchType;
+import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
+import org.graylog.plugins.views.search.errors.SearchError;
+import org.graylog.plugins.views.search.errors.SearchTypeError;
+import org.graylog.plugins.views.search.searchtypes.pivot.Pivot;
+import org.graylog.plugins.views.search.searchtypes.pivot.PivotResult;
+import org.graylog.plugins.views.search.searchtypes.pivot.SeriesSpec;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.Values;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Average;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Count;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PivotMergingTest {
+    private static final AbsoluteRange TIMERANGE = AbsoluteRange.create(
+            DateTime.parse("2024-01-01T00:00:00.000Z"), DateTime.parse("2024-01-01T01:00:00.000Z"));
+    private static final SeriesSpec COUNT = Count.builder().build();
+    private static final SeriesSpec AVERAGE = Average.builder().field("took_ms").build();
+
+    private final PivotMerging pivotMerging = new PivotMerging(true, new MetricRegistry());
+
+    @Test
+    void mergesPivotsWhichOnlyDifferInTheirSeries() {
+        final Query query = query(
+                pivot("pivot-1", "source", COUNT),
+                pivot("pivot-2", "source", AVERAGE, COUNT),
+                pivot("pivot-3", "action", COUNT));
+
+        final PivotMerging.Plan plan = pivotMerging.plan(query, Set.of()).orElseThrow();
+
+        assertThat(plan.query().searchTypes()).hasSize(2);
+        assertThat(plan.query().searchTypes())
+                .filteredOn(searchType -> searchType.id().equals("pivot-3"))
+                .hasSize(1);
+        final Pivot merged = (Pivot) plan.query().searchTypes().stream()
+                .filter(searchType -> !searchType.id().equals("pivot-3"))
+                .findFirst()
+                .orElseThrow();
+        assertThat(merged.series()).containsExactly(COUNT, AVERAGE);
+        assertThat(merged.rowGroups()).isEqualTo(pivot("pivot-1", "source", COUNT).rowGroups());
+    }
+
+    @Test
+    void splitsResultsOfMergedPivots() {
+        final Query query = query(pivot("pivot-1", "source", COUNT), pivot("pivot-2", "source", AVERAGE));
+        final PivotMerging.Plan plan = pivotMerging.plan(query, Set.of()).orElseThrow();
+        final String mergedId = plan.query().searchTypes().iterator().next().id();
+
+        final PivotResult mergedResult = PivotResult.builder()
+                .id(mergedId)
+                .total(42)
+                .effectiveTimerange(TIMERANGE)
+                .columnNames(List.of("source", "count()", "avg(took_ms)"))
+                .addRow(row("server-1", 30, 12.5))
+                .addRow(row("server-2", 12, 7.0))
+                .build();
+        final QueryResult result = plan.split(QueryResult.builder()
+                .query(plan.query())
+                .searchTypes(Map.of(mergedId, mergedResult))
+                .build());
+
+        assertThat(result.query()).isEqualTo(query);
+        assertThat(result.searchTypes()).containsOnlyKeys("pivot-1", "pivot-2");
+
+        final PivotResult countResult = (PivotResult) result.searchTypes().get("pivot-1");
+        assertThat(countResult.total()).isEqualTo(42);
+        assertThat(countResult.columnNames()).containsExactly("source", "count()");
+        assertThat(countResult.rows()).extracting(PivotResult.Row::key)
+                .containsExactly(ImmutableList.of("server-1"), ImmutableList.of("server-2"));
+        assertThat(countResult.rows().get(0).values()).extracting(PivotResult.Value::value).containsExactly(30);
+
+        final PivotResult averageResult = (PivotResult) result.searchTypes().get("pivot-2");
+        assertThat(averageResult.columnNames()).containsExactly("source", "avg(took_ms)");
+        assertThat(averageResult.rows().get(1).values()).extracting(PivotResult.Value::value).containsExactly(7.0);
+    }
+
+    @Test
+    void splitsErrorsOfMergedPivots() {
+        final Query query = query(pivot("pivot-1", "source", COUNT), pivot("pivot-2", "source", AVERAGE));
+        final PivotMerging.Plan plan = pivotMerging.plan(query, Set.of()).orElseThrow();
+        final String mergedId = plan.query().searchTypes().iterator().next().id();
+
+        final Set<SearchError> errors = plan.splitErrors(List.of(new SearchTypeError(plan.query(), mergedId, "Boom")));
+
+        assertThat(errors).hasSize(2)
+                .allSatisfy(error -> assertThat(error.description()).isEqualTo("Boom"))
+                .extracting(error -> ((SearchTypeError) error).searchTypeId())
+                .containsExactlyInAnyOrder("pivot-1", "pivot-2");
+    }
+
+    @Test
+    void doesNotMergePivotsWhichCantBeMerged() {
+        // Different series with the same ID
+        assertThat(pivotMerging.plan(query(
+                pivot("pivot-1", "source", Count.builder().id("metric").build()),
+                pivot("pivot-2", "source", Average.builder().id("metric").field("took_ms").build())), Set.of())).isEmpty();
+
+        // Different queries
+        assertThat(pivotMerging.plan(query(
+                pivot("pivot-1", "source", COUNT),
+                pivot("pivot-2", "source", AVERAGE).toBuilder().query(ElasticsearchQueryString.of("foo")).build()), Set.of())).isEmpty();
+
+        // Pivots with validation errors
+        final Query query = query(pivot("pivot-1", "source", COUNT), pivot("pivot-2", "source", AVERAGE));
+        assertThat(pivotMerging.plan(query, Set.of(new SearchTypeError(query, "pivot-2", "Invalid")))).isEmpty();
+
+        // Disabled
+        assertThat(new PivotMerging(false, new MetricRegistry()).plan(query, Set.of())).isEmpty();
+    }
+
+    private static PivotResult.Row row(String key, Object count, Object average) {
+        return PivotResult.Row.builder()
+                .key(ImmutableList.of(key))
+                .source("leaf")
+                .values(ImmutableList.of(
+                        PivotResult.Value.create(List.of(COUNT.id()), count, false, "row-leaf"),
+                        PivotResult.Value.create(List.of(AVERAGE.id()), average, false, "row-leaf")))
+                .build();
+    }
+
+    private static Query query(SearchType... searchTypes) {
+        return Query.builder()
+                .id("query-1")
+                .timerange(TIMERANGE)
+                .query(ElasticsearchQueryString.of("*"))
+                .searchTypes(ImmutableSet.copyOf(searchTypes))
+                .build();
+    }
+
+    private static Pivot pivot(String id, String field, SeriesSpec... series) {
+        return Pivot.builder()
+                .id(id)
+                .rowGroups(Values.builder().limit(10).field(field).build())
+                .series(List.of(series))
+                .rollup(false)
+                .build();
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class QuerySchedulerTest {
+    private static final Map<QueryWorkload, Integer> WEIGHTS = Map.of(
+            QueryWorkload.INTERACTIVE, 8,
+            QueryWorkload.EVENT_PROCESSING, 4,
+            QueryWorkload.EXPORT, 1);
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void sharesThreadsAccordingToWeights() throws Exception {
+        final QueryScheduler scheduler = scheduler(1, 0, 0, 0);
+        final CountDownLatch blocker = block(scheduler, 1);
+
+        final List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            futures.add(submit(scheduler, request(QueryWorkload.EXPORT, "user-" + i, "search-" + i), "export"));
+        }
+        for (int i = 0; i < 16; i++) {
+            futures.add(submit(scheduler, request(QueryWorkload.INTERACTIVE, "user-" + i, "search-" + i), "interactive"));
+        }
+        blocker.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        // Exports get their share, but interactive searches are preferred by far
+        final List<String> firstNine = executed.subList(0, 9);
+        assertThat(firstNine).filteredOn("interactive"::equals).hasSizeGreaterThanOrEqualTo(7);
+        assertThat(firstNine).contains("export");
+    }
+
+    @Test
+    void usersTakeTurns() throws Exception {
+        final QueryScheduler scheduler = scheduler(1, 0, 0, 0);
+        final CountDownLatch blocker = block(scheduler, 1);
+
+        final List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(submit(scheduler, request(QueryWorkload.INTERACTIVE, "dashboard-user", "dashboard"), "dashboard-" + i));
+        }
+        futures.add(submit(scheduler, request(QueryWorkload.INTERACTIVE, "other-user", "search"), "other"));
+        blocker.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertThat(executed).containsExactly("dashboard-0", "other", "dashboard-1", "dashboard-2", "dashboard-3", "dashboard-4");
+    }
+
+    @Test
+    void limitsConcurrentQueriesPerUserAndSearch() throws Exception {
+        final QueryScheduler userLimited = scheduler(4, 0, 1, 0);
+        final CountDownLatch userBlocker = block(userLimited, 2, request(QueryWorkload.INTERACTIVE, "user", "search-1"));
+        assertThat(userLimited.running()).isEqualTo(1);
+        assertThat(userLimited.queued()).isEqualTo(1);
+        userBlocker.countDown();
+
+        final QueryScheduler searchLimited = scheduler(4, 0, 0, 2);
+        final CountDownLatch searchBlocker = block(searchLimited, 3, request(QueryWorkload.INTERACTIVE, "user", "search-1"));
+        assertThat(searchLimited.running()).isEqualTo(2);
+        assertThat(searchLimited.queued()).isEqualTo(1);
+
+        // Other searches are not affected
+        submit(searchLimited, request(QueryWorkload.INTERACTIVE, "user", "search-2"), "other").get(10, TimeUnit.SECONDS);
+        searchBlocker.countDown();
+    }
+
+    @Test
+    void rejectsQueriesIfQueueIsFull() throws Exception {
+        final QueryScheduler scheduler = scheduler(1, 1, 0, 0);
+        final CountDownLatch blocker = block(scheduler, 1);
+
+        final CompletableFuture<String> queued = submit(scheduler, request(QueryWorkload.INTERACTIVE, "user", "search"), "queued");
+        final CompletableFuture<String> rejected = submit(scheduler, request(QueryWorkload.INTERACTIVE, "user", "search"), "rejected");
+
+        assertThatThrownBy(rejected::get).hasCauseInstanceOf(RejectedExecutionException.class);
+        blocker.countDown();
+        assertThat(queued.get(10, TimeUnit.SECONDS)).isEqualTo("queued");
+        assertThat(executed).doesNotContain("rejected");
+    }
+
+    @Test
+    void failsQueriesWhichExceedTheirDeadline() throws Exception {
+        final QueryScheduler scheduler = scheduler(1, 0, 0, 0);
+        final AtomicBoolean runningQueryCancelled = new AtomicBoolean(false);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final Instant deadline = Instant.now().plusMillis(500);
+
+        final CompletableFuture<String> running = scheduler.submit(
+                new QueryScheduler.Request(QueryWorkload.INTERACTIVE, "user", "search", deadline, () -> {
+                    runningQueryCancelled.set(true);
+                    blocker.countDown();
+                }),
+                () -> {
+                    awaitUninterruptibly(blocker);
+                    return "running";
+                }, new CompletableFuture<>());
+        await().until(() -> scheduler.running() == 1);
+        final CompletableFuture<String> queued = submit(scheduler,
+                new QueryScheduler.Request(QueryWorkload.INTERACTIVE, "user", "search", deadline.minusMillis(250), () -> {}), "queued");
+
+        assertThatThrownBy(() -> queued.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThatThrownBy(() -> running.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(runningQueryCancelled).isTrue();
+        await().until(() -> scheduler.running() == 0);
+        assertThat(executed).doesNotContain("queued");
+    }
+
+    @Test
+    void removesCancelledQueriesFromQueue() throws Exception {
+        final QueryScheduler scheduler = scheduler(1, 0, 0, 0);
+        final CountDownLatch blocker = block(scheduler, 1);
+
+        final CompletableFuture<String> cancelled = submit(scheduler, request(QueryWorkload.INTERACTIVE, "user", "search"), "cancelled");
+        assertThat(scheduler.queued()).isEqualTo(1);
+
+        cancelled.cancel(true);
+
+        assertThat(scheduler.queued()).isZero();
+        blocker.countDown();
+        submit(scheduler, request(QueryWorkload.INTERACTIVE, "user", "search"), "next").get(10, TimeUnit.SECONDS);
+        assertThat(executed).containsExactly("next");
+    }
+
+    private QueryScheduler scheduler(int poolSize, int queueSize, int maxQueriesPerUser, int maxQueriesPerSearch) {
+        return new QueryScheduler("test", poolSize, queueSize, maxQueriesPerUser, maxQueriesPerSearch, WEIGHTS, new MetricRegistry());
+    }
+
+    private static QueryScheduler.Request request(QueryWorkload workload, String owner, String searchJobId) {
+        return new QueryScheduler.Request(workload, owner, searchJobId, null, () -> {});
+    }
+
+    private CompletableFuture<String> submit(QueryScheduler scheduler, QueryScheduler.Request request, String name) {
+        return scheduler.submit(request, () -> {
+            executed.add(name);
+            return name;
+        }, new CompletableFuture<>());
+    }
+
+    /**
+     * Submits queries which block until the returned latch is released and waits until they are running or queued.
+     */
+    private CountDownLatch block(QueryScheduler scheduler, int count) {
+        return block(scheduler, count, request(QueryWorkload.INTERACTIVE, "blocker", "blocker"));
+    }
+
+    private CountDownLatch block(QueryScheduler scheduler, int count, QueryScheduler.Request request) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < count; i++) {
+            scheduler.submit(request, () -> {
+                awaitUninterruptibly(latch);
+                return "blocker";
+            }, new CompletableFuture<>());
+        }
+        await().until(() -> scheduler.running() + scheduler.queued() == count && scheduler.running() > 0);
+        return latch;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -76,6 +76,12 @@ public class SearchExecutorTest {
     @Mock
     private QueryEngine queryEngine;
 
+    @Mock
+    private SearchTypeResultCache resultCache;
+
+    @Mock
+    private IncrementalPivotExecution incrementalPivotExecution;
+
     @Mock
     private NodeId nodeId;
 
@@ -101,8 +107,10 @@ public class SearchExecutorTest {
                                         Optional.of((queryString, job, query) -> PositionTrackingQuery.of("decorated"))
                                 )
                         )
-                ), streamService));
-        when(queryEngine.execute(any(), any(), any())).thenAnswer(invocation -> {
+                ), streamService),
+                resultCache,
+                incrementalPivotExecution);
+        when(queryEngine.execute(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
             final SearchJob searchJob = invocation.getArgument(0);
             searchJob.addQueryResultFuture("query", CompletableFuture.completedFuture(QueryResult.emptyResult()));
             searchJob.seal();
@@ -155,7 +163,7 @@ public class SearchExecutorTest {
                 .build();
         this.searchExecutor.executeSync("search1", searchUser, executionState);
 
-        verify(queryEngine, times(1)).execute(searchJobCaptor.capture(), anySet(), any());
+        verify(queryEngine, times(1)).execute(searchJobCaptor.capture(), anySet(), any(), any(), eq(QueryWorkload.INTERACTIVE));
 
         final SearchJob executedJob = searchJobCaptor.getValue();
 
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.engine;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.joschi.jadconfig.util.Size;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.plugins.views.search.Query;
+import org.graylog.plugins.views.search.Search;
+import org.graylog.plugins.views.search.SearchType;
+import org.graylog.plugins.views.search.elasticsearch.ElasticsearchQueryString;
+import org.graylog.plugins.views.search.filter.OrFilter;
+import org.graylog.plugins.views.search.filter.StreamFilter;
+import org.graylog.plugins.views.search.searchtypes.pivot.Pivot;
+import org.graylog.plugins.views.search.searchtypes.pivot.PivotResult;
+import org.graylog.plugins.views.search.searchtypes.pivot.buckets.Values;
+import org.graylog.plugins.views.search.searchtypes.pivot.series.Count;
+import org.graylog.plugins.views.search.timeranges.DerivedTimeRange;
+import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.indexer.searches.timeranges.RelativeRange;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchTypeResultCacheTest {
+    private static final AbsoluteRange TIMERANGE = AbsoluteRange.create(
+            DateTime.parse("2024-01-01T00:00:00.000Z"), DateTime.parse("2024-01-01T01:00:00.000Z"));
+    private static final String FINGERPRINT = SearchTypeResultCache.fingerprint(Set.of("stream-1", "stream-2"));
+
+    private final SearchTypeResultCache cache = createCache(Duration.ofMinutes(1));
+
+    @Test
+    void storesResults() {
+        final Query query = query("source:foo", "stream-1");
+        final String key = cache.key(search(query), query, pivot("pivot-1"), DateTimeZone.UTC, FINGERPRINT).orElseThrow();
+
+        assertThat(cache.get(key)).isEmpty();
+
+        final PivotResult result = pivotResult("pivot-1");
+        cache.put(key, result);
+
+        assertThat(cache.get(key)).contains(result);
+    }
+
+    @Test
+    void keyDependsOnEverythingTheResultDependsOn() {
+        final Query query = query("source:foo", "stream-1");
+        final String key = key(query, pivot("pivot-1"), DateTimeZone.UTC, FINGERPRINT);
+
+        // Identical requests
+        assertThat(key(query("source:foo", "stream-1"), pivot("pivot-1"), DateTimeZone.UTC, FINGERPRINT)).isEqualTo(key);
+        assertThat(key(query, pivot("pivot-1"), DateTimeZone.UTC, SearchTypeResultCache.fingerprint(Set.of("stream-2", "stream-1"))))
+                .isEqualTo(key);
+
+        assertThat(key(query("source:bar", "stream-1"), pivot("pivot-1"), DateTimeZone.UTC, FINGERPRINT)).isNotEqualTo(key);
+        assertThat(key(query("source:foo", "stream-2"), pivot("pivot-1"), DateTimeZone.UTC, FINGERPRINT)).isNotEqualTo(key);
+        assertThat(key(query.toBuilder().timerange(AbsoluteRange.create(TIMERANGE.from(), TIMERANGE.to().plusMinutes(1))).build(),
+                pivot("pivot-1"), DateTimeZone.UTC, FINGERPRINT)).isNotEqualTo(key);
+        assertThat(key(query, pivot("pivot-2"), DateTimeZone.UTC, FINGERPRINT)).isNotEqualTo(key);
+        assertThat(key(query, pivot("pivot-1").toBuilder().rollup(false).build(), DateTimeZone.UTC, FINGERPRINT)).isNotEqualTo(key);
+        assertThat(key(query, pivot("pivot-1"), DateTimeZone.forID("Europe/Berlin"), FINGERPRINT)).isNotEqualTo(key);
+        assertThat(key(query, pivot("pivot-1"), DateTimeZone.UTC, SearchTypeResultCache.fingerprint(Set.of("stream-1")))).isNotEqualTo(key);
+    }
+
+    @Test
+    void doesNotCacheSearchTypesWithOwnTimeRange() {
+        final Query query = query("source:foo", "stream-1");
+        final Pivot pivot = pivot("pivot-1").toBuilder()
+                .timerange(DerivedTimeRange.of(TIMERANGE))
+                .build();
+
+        assertThat(cache.key(search(query), query, pivot, DateTimeZone.UTC, FINGERPRINT)).isEmpty();
+    }
+
+    @Test
+    void alignsRelativeTimeRanges() throws Exception {
+        final Query query = query("source:foo", "stream-1").toBuilder()
+                .timerange(RelativeRange.create(300))
+                .build();
+
+        final Query aligned = cache.alignTimeRange(query);
+
+        assertThat(aligned.timerange()).isInstanceOf(RelativeRange.class);
+        assertThat(aligned.timerange().getTo().getMillis() % 10_000).isZero();
+        assertThat(aligned.timerange().getTo().getMillis() - aligned.timerange().getFrom().getMillis()).isEqualTo(300_000);
+        assertThat(key(aligned, pivot("pivot-1"), DateTimeZone.UTC, FINGERPRINT))
+                .isEqualTo(key(cache.alignTimeRange(query), pivot("pivot-1"), DateTimeZone.UTC, FINGERPRINT));
+
+        // Absolute time ranges stay the same
+        final Query absoluteQuery = query("source:foo", "stream-1");
+        assertThat(cache.alignTimeRange(absoluteQuery)).isSameAs(absoluteQuery);
+    }
+
+    @Test
+    void isDisabledWithoutTtl() {
+        final SearchTypeResultCache disabledCache = createCache(Duration.ZERO);
+
+        assertThat(disabledCache.isEnabled()).isFalse();
+        assertThat(disabledCache.isCacheable(query("source:foo", "stream-1"))).isFalse();
+        assertThat(cache.isCacheable(query("source:foo", "stream-1"))).isTrue();
+    }
+
+    private String key(Query query, SearchType searchType, DateTimeZone timezone, String fingerprint) {
+        return cache.key(search(query), query, searchType, timezone, fingerprint).orElseThrow();
+    }
+
+    private static SearchTypeResultCache createCache(Duration ttl) {
+        return new SearchTypeResultCache(ttl, Size.megabytes(1), Duration.ofSeconds(10),
+                new ObjectMapperProvider().get(), new MetricRegistry());
+    }
+
+    private static Search search(Query query) {
+        return Search.builder().queries(ImmutableSet.of(query)).build();
+    }
+
+    private static Query query(String queryString, String streamId) {
+        return Query.builder()
+                .id("query-1")
+                .timerange(TIMERANGE)
+                .query(ElasticsearchQueryString.of(queryString))
+                .filter(OrFilter.builder().filters(Set.of(StreamFilter.ofId(streamId))).build())
+                .searchTypes(ImmutableSet.of(pivot("pivot-1")))
+                .build();
+    }
+
+    private static Pivot pivot(String id) {
+        return Pivot.builder()
+                .id(id)
+                .rowGroups(Values.builder().limit(10).field("source").build())
+                .rollup(true)
+                .series(Count.builder().build())
+                .build();
+    }
+
+    private static PivotResult pivotResult(String id) {
+        return PivotResult.builder().id(id).total(0).effectiveTimerange(TIMERANGE).build();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.export;
+
+import org.graylog2.indexer.ElasticsearchException;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchResponseStreamParserTest {
+    private static final String RESPONSE = """
+            {
+              "took": 5,
+              "timed_out": false,
+              "_shards": {"total": 2, "successful": 2, "skipped": 0, "failed": 0},
+              "hits": {
+                "total": {"value": 2, "relation": "eq"},
+                "max_score": null,
+                "hits": [
+                  {
+                    "_index": "graylog_0",
+                    "_id": "1",
+                    "_score": null,
+                    "_source": {"timestamp": "2015-01-01 01:00:00.000", "source": "source-1", "count": 42, "tags": ["a", "b"]},
+                    "sort": [1420074000000, "1"]
+                  },
+                  {
+                    "_index": "graylog_1",
+                    "_id": "2",
+                    "_score": null,
+                    "_source": {"timestamp": "2015-01-01 02:00:00.000", "source": "source-2", "nested": {"key": "value"}},
+                    "sort": [1420077600000, "2"]
+                  }
+                ]
+              }
+            }
+            """;
+
+    private final SearchResponseStreamParser parser = new SearchResponseStreamParser(new ObjectMapperProvider().get());
+    private final List<String> indices = new ArrayList<>();
+    private final List<Map<String, Object>> sources = new ArrayList<>();
+
+    @Test
+    void parsesHits() throws IOException {
+        final SearchResponseStreamParser.Result result = parser.parse(stream(RESPONSE), this::collect);
+
+        assertThat(result.hits()).isEqualTo(2);
+        assertThat(result.stopped()).isFalse();
+        assertThat(result.lastSortValues()).containsExactly(1420077600000L, "2");
+        assertThat(indices).containsExactly("graylog_0", "graylog_1");
+        assertThat(sources).containsExactly(
+                Map.of("timestamp", "2015-01-01 01:00:00.000", "source", "source-1", "count", 42, "tags", List.of("a", "b")),
+                Map.of("timestamp", "2015-01-01 02:00:00.000", "source", "source-2", "nested", Map.of("key", "value")));
+    }
+
+    @Test
+    void stopsWhenConsumerIsDone() throws IOException {
+        final SearchResponseStreamParser.Result result = parser.parse(stream(RESPONSE), (index, source, sortValues) -> {
+            collect(index, source, sortValues);
+            return false;
+        });
+
+        assertThat(result.hits()).isEqualTo(1);
+        assertThat(result.stopped()).isTrue();
+        assertThat(result.lastSortValues()).containsExactly(1420074000000L, "1");
+        assertThat(indices).containsExactly("graylog_0");
+    }
+
+    @Test
+    void parsesEmptyResponses() throws IOException {
+        final SearchResponseStreamParser.Result result = parser.parse(stream("""
+                {"took": 1, "_shards": {"total": 1, "successful": 1, "failed": 0}, "hits": {"total": {"value": 0}, "hits": []}}
+                """), this::collect);
+
+        assertThat(result.hits()).isZero();
+        assertThat(result.lastSortValues()).isNull();
+        assertThat(indices).isEmpty();
+    }
+
+    @Test
+    void failsOnShardFailures() {
+        final String response = """
+                {
+                  "_shards": {
+                    "total": 2, "successful": 0, "failed": 2,
+                    "failures": [
+                      {"shard": 0, "index": "graylog_0", "reason": {"type": "query_shard_exception", "reason": "Failed to parse query"}},
+                      {"shard": 1, "index": "graylog_0", "reason": {"type": "query_shard_exception", "reason": "Failed to parse query"}}
+                    ]
+                  },
+                  "hits": {"hits": []}
+                }
+                """;
+
+        assertThatThrownBy(() -> parser.parse(stream(response), this::collect))
+                .isInstanceOf(ElasticsearchException.class)
+                .satisfies(e -> assertThat(((ElasticsearchException) e).getErrorDetails()).containsExactly("Failed to parse query"));
+    }
+
+    private boolean collect(String index, Map<String, Object> source, List<Object> sortValues) {
+        indices.add(index);
+        sources.add(source);
+        return true;
+    }
+
+    private static InputStream stream(String response) {
+        return new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8));
+    }
+}
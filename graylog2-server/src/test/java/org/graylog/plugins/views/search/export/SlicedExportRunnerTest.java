@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog.plugins.views.search.export;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.joschi.jadconfig.util.Duration;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.graylog.plugins.views.search.export.SimpleMessageChunk.ChunkOrder.FIRST;
+import static org.graylog.plugins.views.search.export.SimpleMessageChunk.ChunkOrder.INTERMEDIATE;
+import static org.graylog.plugins.views.search.export.SimpleMessageChunk.ChunkOrder.LAST;
+
+class SlicedExportRunnerTest {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final SlicedExportRunner runner = new SlicedExportRunner(3, Duration.minutes(1), metricRegistry);
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    @Test
+    void mergesSlicesInOrder() {
+        runner.run(List.of(
+                        slice(List.of(1, 4), List.of(7, 10)),
+                        slice(List.of(2, 5, 8)),
+                        slice(List.of(3), List.of(6), List.of(9))),
+                Comparator.naturalOrder(), 4, OptionalInt.empty(), this::publish);
+
+        assertThat(chunks).containsExactly(
+                new Chunk(List.of(1, 2, 3, 4), FIRST),
+                new Chunk(List.of(5, 6, 7, 8), INTERMEDIATE),
+                new Chunk(List.of(9, 10), INTERMEDIATE),
+                new Chunk(List.of(), LAST));
+        assertThat(metricRegistry.meter("org.graylog.plugins.views.search.export.SlicedExportRunner.exported-messages").getCount())
+                .isEqualTo(10);
+    }
+
+    @Test
+    void publishesAllHitsOfUnorderedSlices() {
+        runner.run(List.of(
+                        slice(List.of(1, 4), List.of(7, 10)),
+                        slice(List.of(2, 5, 8)),
+                        slice(List.of(3), List.of(6), List.of(9))),
+                null, 4, OptionalInt.empty(), this::publish);
+
+        assertThat(chunks.get(0).order()).isEqualTo(FIRST);
+        assertThat(chunks.get(chunks.size() - 1)).isEqualTo(new Chunk(List.of(), LAST));
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.hits()).hasSizeLessThanOrEqualTo(4));
+        assertThat(chunks.stream().flatMap(chunk -> chunk.hits().stream()))
+                .containsExactlyInAnyOrder(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+    }
+
+    @Test
+    void stopsAtLimit() {
+        final AtomicInteger requests = new AtomicInteger();
+        final SlicedExportRunner.Slice<Integer> endless = () -> {
+            final int offset = requests.getAndIncrement() * 10;
+            return List.of(offset, offset + 1, offset + 2);
+        };
+
+        runner.run(List.of(endless), Comparator.naturalOrder(), 5, OptionalInt.of(7), this::publish);
+
+        assertThat(chunks).containsExactly(
+                new Chunk(List.of(0, 1, 2, 10, 11), FIRST),
+                new Chunk(List.of(12, 20), INTERMEDIATE),
+                new Chunk(List.of(), LAST));
+    }
+
+    @Test
+    void stopsIfChunkCannotBePublished() {
+        runner.run(List.of(slice(List.of(1, 2), List.of(3, 4))), Comparator.naturalOrder(), 2, OptionalInt.empty(),
+                (hits, order) -> {
+                    publish(hits, order);
+                    return false;
+                });
+
+        assertThat(chunks).containsExactly(new Chunk(List.of(1, 2), FIRST));
+    }
+
+    @Test
+    void failsIfSliceFails() {
+        final SlicedExportRunner.Slice<Integer> failing = () -> {
+            throw new ExportException("Boom");
+        };
+
+        assertThatThrownBy(() -> runner.run(List.of(slice(List.of(1)), failing), Comparator.naturalOrder(), 2,
+                OptionalInt.empty(), this::publish))
+                .isInstanceOf(ExportException.class)
+                .hasMessage("Boom");
+        assertThatThrownBy(() -> runner.run(List.of(slice(List.of(1)), failing), null, 2,
+                OptionalInt.empty(), this::publish))
+                .isInstanceOf(ExportException.class)
+                .hasMessage("Boom");
+    }
+
+    @Test
+    void ordersSortValues() {
+        final Comparator<Object[]> order = SlicedExportRunner.SORT_VALUES_ORDER;
+
+        assertThat(order.compare(new Object[]{1000L, "b"}, new Object[]{2000L, "a"})).isNegative();
+        assertThat(order.compare(new Object[]{1000L, "b"}, new Object[]{1000L, "a"})).isPositive();
+        assertThat(order.compare(new Object[]{1000, "a"}, new Object[]{1000L, "a"})).isZero();
+        assertThat(order.compare(new Object[]{1.5d}, new Object[]{2L})).isNegative();
+        assertThat(order.compare(new Object[]{null}, new Object[]{1L})).isPositive();
+    }
+
+    private boolean publish(List<Integer> hits, SimpleMessageChunk.ChunkOrder order) {
+        chunks.add(new Chunk(hits, order));
+        return true;
+    }
+
+    @SafeVarargs
+    private static SlicedExportRunner.Slice<Integer> slice(List<Integer>... batches) {
+        final Iterator<List<Integer>> iterator = Arrays.asList(batches).iterator();
+        return () -> iterator.hasNext() ? iterator.next() : List.of();
+    }
+
+    private record Chunk(List<Integer> hits, SimpleMessageChunk.ChunkOrder order) {
+    }
+}
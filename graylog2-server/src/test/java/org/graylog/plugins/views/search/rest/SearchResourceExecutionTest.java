@@ -28,8 +28,10 @@ import org.graylog.plugins.views.search.SearchExecutionGuard;
 import org.graylog.plugins.views.search.SearchJob;
 import org.graylog.plugins.views.search.db.InMemorySearchJobService;
 import org.graylog.plugins.views.search.db.SearchJobService;
+import org.graylog.plugins.views.search.engine.IncrementalPivotExecution;
 import org.graylog.plugins.views.search.engine.QueryEngine;
 import org.graylog.plugins.views.search.engine.SearchExecutor;
+import org.graylog.plugins.views.search.engine.SearchTypeResultCache;
 import org.graylog.plugins.views.search.engine.normalization.PluggableSearchNormalization;
 import org.graylog.plugins.views.search.engine.validation.PluggableSearchValidation;
 import org.graylog.plugins.views.search.events.SearchJobExecutionEvent;
@@ -74,6 +76,12 @@ public class SearchResourceExecutionTest {
     @Mock
     private QueryEngine queryEngine;
 
+    @Mock
+    private SearchTypeResultCache resultCache;
+
+    @Mock
+    private IncrementalPivotExecution incrementalPivotExecution;
+
     @Mock
     private SearchExecutionGuard executionGuard;
 
@@ -105,7 +113,9 @@ public class SearchResourceExecutionTest {
                 searchJobService,
                 queryEngine,
                 new PluggableSearchValidation(executionGuard, Collections.emptySet()),
-                new PluggableSearchNormalization(Collections.emptySet(), streamService));
+                new PluggableSearchNormalization(Collections.emptySet(), streamService),
+                resultCache,
+                incrementalPivotExecution);
 
         this.searchResource = new SearchResource(searchDomain, searchExecutor, searchJobService, eventBus, clusterConfigService) {
             @Override
@@ -174,7 +184,7 @@ public class SearchResourceExecutionTest {
         searchJob.addQueryResultFuture("query", CompletableFuture.completedFuture(QueryResult.emptyResult()));
         searchJob.seal();
 
-        when(queryEngine.execute(any(), any(), any())).thenReturn(searchJob);
+        when(queryEngine.execute(any(), any(), any(), any(), any())).thenReturn(searchJob);
 
         final Response response = this.searchResource.executeSyncJob(search, 100, searchUser);
 
@@ -213,7 +223,7 @@ public class SearchResourceExecutionTest {
 
         final SearchJob searchJob = makeSearchJob(search.toSearch());
 
-        when(queryEngine.execute(any(), any(), any())).thenReturn(searchJob);
+        when(queryEngine.execute(any(), any(), any(), any(), any())).thenReturn(searchJob);
 
         final Response response = this.searchResource.executeSyncJob(search, 100, searchUser);
 
@@ -299,7 +309,7 @@ public class SearchResourceExecutionTest {
 
         persistSearch(search);
 
-        when(queryEngine.execute(any(), any(), any())).thenAnswer(invocation -> {
+        when(queryEngine.execute(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
             final SearchJob searchJob = invocation.getArgument(0);
             searchJob.addQueryResultFuture("query", CompletableFuture.completedFuture(QueryResult.emptyResult()));
             searchJob.seal();
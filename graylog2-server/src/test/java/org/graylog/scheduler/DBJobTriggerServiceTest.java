@@ -549,6 +549,73 @@ public class DBJobTriggerServiceTest {
         assertThat(dbJobTriggerService.nextRunnableTrigger()).isEmpty();
     }
 
+    @Test
+    public void nextRunnableTriggers() {
+        // No triggers yet
+        assertThat(dbJobTriggerService.nextRunnableTriggers(10)).isEmpty();
+
+        final JobTriggerDto trigger1 = dbJobTriggerService.create(triggerWithNextTime(clock.nowUTC().plusSeconds(11)));
+        final JobTriggerDto trigger2 = dbJobTriggerService.create(triggerWithNextTime(clock.nowUTC().plusSeconds(10)));
+        final JobTriggerDto trigger3 = dbJobTriggerService.create(triggerWithNextTime(clock.nowUTC().plusSeconds(12)));
+        final JobTriggerDto trigger4 = dbJobTriggerService.create(triggerWithNextTime(clock.nowUTC().plusSeconds(30)));
+
+        // Empty because the next time of all triggers is in the future
+        assertThat(dbJobTriggerService.nextRunnableTriggers(10)).isEmpty();
+
+        clock.plus(20, TimeUnit.SECONDS);
+
+        // The limit is respected and we get the triggers with the oldest next time first
+        final List<JobTriggerDto> firstBatch = dbJobTriggerService.nextRunnableTriggers(2);
+        assertThat(firstBatch).hasSize(2);
+        assertNextTrigger(Optional.of(firstBatch.get(0)), trigger2);
+        assertNextTrigger(Optional.of(firstBatch.get(1)), trigger1);
+
+        // Already locked triggers are not returned again
+        final List<JobTriggerDto> secondBatch = dbJobTriggerService.nextRunnableTriggers(10);
+        assertThat(secondBatch).hasSize(1);
+        assertNextTrigger(Optional.of(secondBatch.get(0)), trigger3);
+
+        assertThat(dbJobTriggerService.nextRunnableTriggers(10)).isEmpty();
+
+        clock.plus(20, TimeUnit.SECONDS);
+
+        assertThat(dbJobTriggerService.nextRunnableTriggers(10))
+                .extracting(JobTriggerDto::id)
+                .containsExactly(trigger4.id());
+    }
+
+    @Test
+    public void nextRunnableTriggerTime() {
+        // No triggers yet
+        assertThat(dbJobTriggerService.nextRunnableTriggerTime()).isEmpty();
+
+        final JobTriggerDto trigger1 = dbJobTriggerService.create(triggerWithNextTime(clock.nowUTC().plusSeconds(30)));
+        final JobTriggerDto trigger2 = dbJobTriggerService.create(triggerWithNextTime(clock.nowUTC().plusSeconds(10)));
+
+        assertThat(dbJobTriggerService.nextRunnableTriggerTime()).contains(trigger2.nextTime());
+
+        clock.plus(20, TimeUnit.SECONDS);
+
+        // Triggers that are already due are not considered
+        assertThat(dbJobTriggerService.nextRunnableTriggerTime()).contains(trigger1.nextTime());
+
+        clock.plus(20, TimeUnit.SECONDS);
+
+        assertThat(dbJobTriggerService.nextRunnableTriggerTime()).isEmpty();
+    }
+
+    private JobTriggerDto triggerWithNextTime(DateTime nextTime) {
+        return JobTriggerDto.Builder.create(clock)
+                .jobDefinitionId("abc-123")
+                .jobDefinitionType("event-processor-execution-v1")
+                .nextTime(nextTime)
+                .schedule(IntervalJobSchedule.builder()
+                        .interval(1)
+                        .unit(TimeUnit.SECONDS)
+                        .build())
+                .build();
+    }
+
     @Test
     @MongoDBFixtures("job-triggers.json")
     public void nextRunnableTriggerWithEndTime() {
@@ -16,19 +16,32 @@
  */
 package org.graylog.scheduler;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.graylog.events.JobSchedulerTestClock;
 import org.graylog.scheduler.eventbus.JobSchedulerEventBus;
+import org.graylog.scheduler.schedule.IntervalJobSchedule;
 import org.graylog.scheduler.worker.JobWorkerPool;
 import org.graylog2.cluster.lock.RefreshingLockService;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -56,10 +69,12 @@ class JobExecutionEngineTest {
     @Spy
     private MetricRegistry metricRegistry = new MetricRegistry();
 
+    private final JobSchedulerTestClock clock = new JobSchedulerTestClock(DateTime.now(DateTimeZone.UTC));
+
     @Test
     void updateLockedJobsOnlyIfSomeJobWorkersRun() {
         JobExecutionEngine underTest = new JobExecutionEngine(jobTriggerService, jobDefinitionService, eventBus, scheduleStrategies, jobTriggerUpdatesFactory,
-                refreshingLockServiceFactory, jobFactory, workerPool, jobSchedulerConfig, metricRegistry);
+                refreshingLockServiceFactory, jobFactory, workerPool, jobSchedulerConfig, metricRegistry, clock);
 
         underTest.updateLockedJobs();
         given(workerPool.anySlotsUsed()).willReturn(true);
@@ -67,4 +82,104 @@ class JobExecutionEngineTest {
 
         verify(jobTriggerService, times(1)).updateLockedJobTriggers();
     }
+
+    @Test
+    void executeLocksOneTriggerByDefault() {
+        given(workerPool.hasFreeSlots()).willReturn(true);
+        given(jobTriggerService.nextRunnableTrigger()).willReturn(Optional.of(trigger("trigger-1")));
+        given(workerPool.execute(any())).willReturn(true);
+
+        assertThat(createEngine().execute()).isTrue();
+
+        verify(jobTriggerService, never()).nextRunnableTriggers(anyInt());
+        assertThat(metricRegistry.histogram(MetricRegistry.name(JobExecutionEngine.class, "triggers", "acquired")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void executeLocksTriggersInBatchesBoundedByFreeSlots() {
+        given(jobSchedulerConfig.maxTriggersPerAcquisition()).willReturn(10);
+        given(workerPool.hasFreeSlots()).willReturn(true);
+        given(workerPool.freeSlots()).willReturn(2);
+        final JobTriggerDto trigger1 = trigger("trigger-1");
+        final JobTriggerDto trigger2 = trigger("trigger-2");
+        given(jobTriggerService.nextRunnableTriggers(2)).willReturn(List.of(trigger1, trigger2));
+        // The second trigger can't be executed because another thread took the slot in the meantime
+        given(workerPool.execute(any())).willReturn(true, false);
+        clock.plus(5, TimeUnit.SECONDS);
+
+        assertThat(createEngine().execute()).isTrue();
+
+        verify(jobTriggerService, never()).nextRunnableTrigger();
+        verify(jobTriggerService, never()).releaseTrigger(trigger1, JobTriggerUpdate.withNextTime(trigger1.nextTime()));
+        verify(jobTriggerService, times(1)).releaseTrigger(trigger2, JobTriggerUpdate.withNextTime(trigger2.nextTime()));
+        final Timer triggerLag = metricRegistry.timer(MetricRegistry.name(JobExecutionEngine.class, "triggers", "lag"));
+        assertThat(triggerLag.getCount()).isEqualTo(2);
+        assertThat(triggerLag.getSnapshot().getMax()).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+        assertThat(metricRegistry.histogram(MetricRegistry.name(JobExecutionEngine.class, "triggers", "acquired")).getSnapshot().getMax()).isEqualTo(2);
+    }
+
+    @Test
+    void executeRecordsEmptyAcquisitions() {
+        given(workerPool.hasFreeSlots()).willReturn(true);
+        given(jobTriggerService.nextRunnableTrigger()).willReturn(Optional.empty());
+
+        assertThat(createEngine().execute()).isFalse();
+
+        final Histogram triggersAcquired = metricRegistry.histogram(MetricRegistry.name(JobExecutionEngine.class, "triggers", "acquired"));
+        assertThat(triggersAcquired.getCount()).isEqualTo(1);
+        assertThat(triggersAcquired.getSnapshot().getMax()).isZero();
+    }
+
+    @Test
+    void executeBatchReturnsFalseWithoutRunnableTriggers() {
+        given(jobSchedulerConfig.maxTriggersPerAcquisition()).willReturn(10);
+        given(workerPool.hasFreeSlots()).willReturn(true);
+        given(workerPool.freeSlots()).willReturn(5);
+        given(jobTriggerService.nextRunnableTriggers(5)).willReturn(List.of());
+
+        assertThat(createEngine().execute()).isFalse();
+    }
+
+    @Test
+    void millisUntilNextTriggerIsBoundedByMaxSleep() {
+        given(jobSchedulerConfig.maxTriggersPerAcquisition()).willReturn(10);
+        given(workerPool.hasFreeSlots()).willReturn(true);
+        final JobExecutionEngine underTest = createEngine();
+
+        given(jobTriggerService.nextRunnableTriggerTime()).willReturn(Optional.empty());
+        assertThat(underTest.millisUntilNextTrigger(1000)).isEqualTo(1000);
+
+        given(jobTriggerService.nextRunnableTriggerTime()).willReturn(Optional.of(clock.nowUTC().plusMinutes(1)));
+        assertThat(underTest.millisUntilNextTrigger(1000)).isEqualTo(1000);
+
+        given(jobTriggerService.nextRunnableTriggerTime()).willReturn(Optional.of(clock.nowUTC().plusMillis(300)));
+        assertThat(underTest.millisUntilNextTrigger(1000)).isEqualTo(300);
+
+        clock.plus(500, TimeUnit.MILLISECONDS);
+        assertThat(underTest.millisUntilNextTrigger(1000)).isZero();
+    }
+
+    @Test
+    void millisUntilNextTriggerDoesNotQueryWithoutBatching() {
+        assertThat(createEngine().millisUntilNextTrigger(1000)).isEqualTo(1000);
+
+        verify(jobTriggerService, never()).nextRunnableTriggerTime();
+    }
+
+    private JobExecutionEngine createEngine() {
+        return new JobExecutionEngine(jobTriggerService, jobDefinitionService, eventBus, scheduleStrategies, jobTriggerUpdatesFactory,
+                refreshingLockServiceFactory, jobFactory, workerPool, jobSchedulerConfig, metricRegistry, clock);
+    }
+
+    private JobTriggerDto trigger(String id) {
+        return JobTriggerDto.Builder.create(clock)
+                .id(id)
+                .jobDefinitionId("abc-123")
+                .jobDefinitionType("event-processor-execution-v1")
+                .schedule(IntervalJobSchedule.builder()
+                        .interval(1)
+                        .unit(TimeUnit.MINUTES)
+                        .build())
+                .build();
+    }
 }
@@ -145,6 +145,7 @@ class JobSchedulerServiceIT {
                 workerPool,
                 schedulerConfig,
                 metricRegistry,
+                clock,
                 200);
 
         final JobWorkerPool.Factory workerPoolFactory = (name, poolSize) ->
@@ -16,12 +16,14 @@
  */
 package org.graylog2.filters;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 import com.google.common.eventbus.EventBus;
 import org.graylog.failure.ProcessingFailureCause;
 import org.graylog.testing.messages.MessagesExtension;
 import org.graylog2.inputs.Input;
 import org.graylog2.inputs.InputService;
+import org.graylog2.inputs.extractors.CopyInputExtractor;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.MessageFactory;
 import org.graylog2.plugin.inputs.Extractor;
@@ -33,6 +35,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -84,6 +88,45 @@ class ExtractorFilterTest {
         });
     }
 
+    @Test
+    void skipsExtractorsWhoseConditionCannotMatch(MessageFactory messageFactory) throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final Input input = mock(Input.class);
+        when(input.getId()).thenReturn("123");
+        when(inputService.all()).thenReturn(ImmutableList.of(input));
+
+        final Extractor foo = copyExtractor(metricRegistry, "1", Extractor.CursorStrategy.COPY, Extractor.ConditionType.STRING, "foo", "foo_copy");
+        final Extractor bar = copyExtractor(metricRegistry, "2", Extractor.CursorStrategy.COPY, Extractor.ConditionType.STRING, "bar", "bar_copy");
+        final Extractor regex = copyExtractor(metricRegistry, "3", Extractor.CursorStrategy.COPY, Extractor.ConditionType.REGEX, "^ba[rz]+ qux$", "regex_copy");
+        // Replaces the source field with "fullyCutByExtractor"
+        final Extractor cut = copyExtractor(metricRegistry, "4", Extractor.CursorStrategy.CUT, Extractor.ConditionType.STRING, "qux", "cut_copy");
+        final Extractor afterCut = copyExtractor(metricRegistry, "5", Extractor.CursorStrategy.COPY, Extractor.ConditionType.STRING, "fullyCut", "after_cut_copy");
+        when(inputService.getExtractors(any())).thenReturn(ImmutableList.of(foo, bar, regex, cut, afterCut));
+
+        dut = new ExtractorFilter(inputService, eventBus, executorService);
+        dut.lifecycleChanged(Lifecycle.STARTING);
+
+        final Message message = messageFactory.createMessage("message", "source", new DateTime(2016, 1, 1, 0, 0, DateTimeZone.UTC));
+        message.setSourceInputId("123");
+        message.addField("text", "bar qux");
+
+        dut.filter(message);
+
+        assertThat(message.getFields()).doesNotContainKey("foo_copy")
+                .containsEntry("bar_copy", "bar qux")
+                .containsEntry("regex_copy", "bar qux")
+                .containsEntry("cut_copy", "bar qux")
+                .containsEntry("after_cut_copy", "fullyCutByExtractor");
+        assertThat(metricRegistry.counter(foo.getConditionMissesCounterName()).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(bar.getConditionHitsCounterName()).getCount()).isEqualTo(1);
+    }
+
+    private Extractor copyExtractor(MetricRegistry metricRegistry, String id, Extractor.CursorStrategy cursorStrategy,
+                                    Extractor.ConditionType conditionType, String conditionValue, String targetField) throws Exception {
+        return new CopyInputExtractor(metricRegistry, id, "extractor-" + id, Long.parseLong(id), cursorStrategy,
+                "text", targetField, Map.of(), "user", List.of(), conditionType, conditionValue);
+    }
+
     private Extractor buildExceptionalExtractor() {
         final Extractor extractor = mock(Extractor.class);
         lenient().when(extractor.getOrder()).thenReturn(1L);
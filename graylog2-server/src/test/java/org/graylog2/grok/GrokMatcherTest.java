@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.grok;
+
+import io.krakens.grok.api.Grok;
+import io.krakens.grok.api.GrokCompiler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GrokMatcherTest {
+    private static final String APACHE_LOG = "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 200 2326 \"http://www.example.com/start.html\" \"Mozilla/4.08\"";
+
+    private static GrokCompiler grokCompiler;
+
+    @BeforeAll
+    static void setUp() {
+        grokCompiler = GrokCompiler.newInstance();
+        grokCompiler.registerDefaultPatterns();
+    }
+
+    @Test
+    void extractsLiteralsOfExpandedPatterns() {
+        final GrokMatcher matcher = GrokMatcher.of(grokCompiler.compile("%{COMBINEDAPACHELOG}"), true);
+
+        assertThat(matcher.requiredLiterals()).isNotEmpty();
+        assertThat(matcher.mayMatch(APACHE_LOG)).isTrue();
+        assertThat(matcher.mayMatch("Oct 10 13:55:36 localhost sshd[4242]: Accepted publickey for frank")).isFalse();
+    }
+
+    @Test
+    void matchesLikeGrok() {
+        final List<String> patterns = List.of("%{COMBINEDAPACHELOG}", "%{IP:client} \\[%{HTTPDATE:timestamp}\\]",
+                "user=%{WORD:user} status=%{NUMBER:status}", "%{WORD:word}");
+        final List<String> texts = List.of(APACHE_LOG, "user=frank status=200", "user=frank", "status=200 user=frank",
+                "10.0.0.1 [10/Oct/2000:13:55:36 -0700]", "");
+
+        for (String pattern : patterns) {
+            final Grok grok = grokCompiler.compile(pattern);
+            final GrokMatcher matcher = GrokMatcher.of(grok, true);
+            for (String text : texts) {
+                assertThat(matcher.match(text).captureFlattened())
+                        .as("%s on '%s'", pattern, text)
+                        .isEqualTo(grok.match(text).captureFlattened());
+            }
+        }
+    }
+
+    @Test
+    void doesNotPrefilterIfDisabled() {
+        final GrokMatcher matcher = GrokMatcher.of(grokCompiler.compile("user=%{WORD:user}"), false);
+
+        assertThat(matcher.requiredLiterals()).isEmpty();
+        assertThat(matcher.mayMatch("foo")).isTrue();
+        assertThat(matcher.match("user=frank").captureFlattened()).containsEntry("user", "frank");
+    }
+}
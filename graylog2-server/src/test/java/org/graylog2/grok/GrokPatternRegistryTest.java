@@ -16,9 +16,10 @@
  */
 package org.graylog2.grok;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.eventbus.EventBus;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.krakens.grok.api.Grok;
+import org.graylog2.utilities.PatternCache;
 import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Rule;
@@ -29,9 +30,8 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.when;
@@ -48,15 +48,16 @@ public class GrokPatternRegistryTest {
 
     private GrokPatternRegistry grokPatternRegistry;
     private EventBus eventBus;
+    private MetricRegistry metricRegistry;
     @Mock
     private GrokPatternService grokPatternService;
 
     @Before
     public void setUp() {
         eventBus = new EventBus("Test");
-        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("updater-%d").build());
         when(grokPatternService.loadAll()).thenReturn(GROK_PATTERNS);
-        grokPatternRegistry = new GrokPatternRegistry(eventBus, grokPatternService, executor);
+        metricRegistry = new MetricRegistry();
+        grokPatternRegistry = new GrokPatternRegistry(eventBus, grokPatternService, new PatternCache(new MetricRegistry()), true, metricRegistry);
     }
 
     @Test
@@ -117,4 +118,21 @@ public class GrokPatternRegistryTest {
         assertThat(grokPatternRegistry.grokPatternExists("NUM")).isFalse();
         assertThat(grokPatternRegistry.grokPatternExists("TESTNUM")).isTrue();
     }
+
+    @Test
+    public void cachedMultiMatcherForPatternsRegistersHitsGauges() {
+        final MultiGrokMatcher matcher = grokPatternRegistry.cachedMultiMatcherForPatterns(List.of("a=%{TESTNUM}", "b=%{TESTNUM}"), false);
+        matcher.match("b=42");
+
+        assertThat(grokPatternRegistry.cachedMultiMatcherForPatterns(List.of("a=%{TESTNUM}", "b=%{TESTNUM}"), false)).isSameAs(matcher);
+        assertThat(metricRegistry.getGauges()).hasSize(2);
+        assertThat(metricRegistry.getGauges().entrySet()).anySatisfy(entry -> {
+            assertThat(entry.getKey()).startsWith(MultiGrokMatcher.class.getName()).endsWith(".pattern.1.hits");
+            assertThat(entry.getValue().getValue()).isEqualTo(1L);
+        });
+
+        // The matchers are rebuilt when the patterns change
+        eventBus.post(GrokPatternsUpdatedEvent.create(Collections.singleton("TESTNUM")));
+        assertThat(metricRegistry.getGauges()).isEmpty();
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.grok;
+
+import io.krakens.grok.api.GrokCompiler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MultiGrokMatcherTest {
+    private static GrokCompiler grokCompiler;
+
+    @BeforeAll
+    static void setUp() {
+        grokCompiler = GrokCompiler.newInstance();
+        grokCompiler.registerDefaultPatterns();
+    }
+
+    @Test
+    void returnsFirstMatchingPattern() {
+        final MultiGrokMatcher matcher = matcher("action=DROP src=%{IP:src}", "action=%{WORD:action}", "%{GREEDYDATA:rest}");
+
+        assertThat(matcher.match("action=DROP src=10.0.0.1").index()).isEqualTo(0);
+        assertThat(matcher.match("action=ACCEPT src=10.0.0.1").index()).isEqualTo(1);
+        assertThat(matcher.match("something else").index()).isEqualTo(2);
+        assertThat(matcher.match("something else").match().captureFlattened()).containsEntry("rest", "something else");
+    }
+
+    @Test
+    void returnsNoMatch() {
+        final MultiGrokMatcher matcher = matcher("action=%{WORD:action}", "user=%{WORD:user}");
+
+        final MultiGrokMatcher.IndexedMatch match = matcher.match("nothing");
+
+        assertThat(match.index()).isEqualTo(-1);
+        assertThat(match.match().isNull()).isTrue();
+        // Both patterns have been ruled out by their literals
+        assertThat(matcher.attempts()).isZero();
+    }
+
+    @Test
+    void learnsOrderWithoutChangingResults() {
+        final List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            patterns.add("rule" + i + " %{IP:src}");
+        }
+        // Overlaps with the most common pattern and is declared before it
+        patterns.add(1, "rule18 %{IP:src} blocked");
+        final MultiGrokMatcher matcher = matcher(patterns.toArray(new String[0]));
+        final int common = patterns.indexOf("rule18 %{IP:src}");
+
+        for (int i = 0; i < 5000; i++) {
+            assertThat(matcher.match("rule18 10.0.0.1").index()).isEqualTo(common);
+        }
+        assertThat(matcher.hits(common)).isEqualTo(5000);
+        // Only the pattern which matches and the overlapping one survive the literal prefilter
+        assertThat(matcher.attempts()).isLessThanOrEqualTo(5000 * 2);
+
+        final long attempts = matcher.attempts();
+        assertThat(matcher.match("rule18 10.0.0.1 blocked").index()).isEqualTo(1);
+        assertThat(matcher.attempts() - attempts).isEqualTo(2);
+    }
+
+    @Test
+    void triesCommonPatternFirst() {
+        final List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            patterns.add("%{IP:src} %{WORD:action} " + i + "$");
+        }
+        final MultiGrokMatcher matcher = matcher(patterns.toArray(new String[0]));
+
+        for (int i = 0; i < 1000; i++) {
+            matcher.match("10.0.0.1 DROP 19");
+        }
+        final long attempts = matcher.attempts();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(matcher.match("10.0.0.1 DROP 19").index()).isEqualTo(19);
+        }
+
+        // Pattern 1 can't be ruled out by its literals and is declared before pattern 19
+        assertThat(matcher.attempts() - attempts).isEqualTo(2000);
+    }
+
+    @Test
+    void failsOnInvalidPatternOnlyIfNoEarlierPatternMatches() {
+        final MultiGrokMatcher matcher = MultiGrokMatcher.compile(List.of("action=%{WORD:action}", "%{UNKNOWN}", "user=%{WORD:user}"),
+                pattern -> GrokMatcher.of(grokCompiler.compile(pattern), true));
+
+        assertThat(matcher.match("action=DROP").index()).isEqualTo(0);
+        assertThatThrownBy(() -> matcher.match("user=jane")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> matcher.match("nothing")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static MultiGrokMatcher matcher(String... patterns) {
+        return new MultiGrokMatcher(List.of(patterns).stream()
+                .map(pattern -> GrokMatcher.of(grokCompiler.compile(pattern), true))
+                .toList());
+    }
+}
@@ -19,8 +19,10 @@ package org.graylog2.indexer.fieldtypes;
 import com.github.joschi.jadconfig.util.Duration;
 import com.google.common.eventbus.EventBus;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.graylog2.cluster.leader.LeaderElectionService;
 import org.graylog2.indexer.MongoIndexSet;
 import org.graylog2.indexer.cluster.Cluster;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesPollRequestedEvent;
 import org.graylog2.indexer.indexset.IndexSetConfig;
 import org.graylog2.indexer.indexset.IndexSetService;
 import org.graylog2.indexer.indices.Indices;
@@ -34,15 +36,21 @@ import org.mockito.stubbing.Answer;
 
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -63,9 +71,17 @@ class IndexFieldTypePollerPeriodicalTest {
             new ThreadFactoryBuilder().setNameFormat("index-field-type-poller-periodical-test-%d").build()
     );
 
+    private final LeaderElectionService leaderElectionService = mock(LeaderElectionService.class);
+
     @BeforeEach
     void setUp() {
-        this.periodical = new IndexFieldTypePollerPeriodical(indexFieldTypePoller,
+        this.periodical = createPeriodical(false);
+        when(serverStatus.getLifecycle()).thenReturn(Lifecycle.RUNNING);
+        when(cluster.isConnected()).thenReturn(true);
+    }
+
+    private IndexFieldTypePollerPeriodical createPeriodical(boolean incremental) {
+        return new IndexFieldTypePollerPeriodical(indexFieldTypePoller,
                 indexFieldTypesService,
                 indexSetService,
                 indices,
@@ -73,10 +89,10 @@ class IndexFieldTypePollerPeriodicalTest {
                 cluster,
                 eventBus,
                 serverStatus,
+                leaderElectionService,
                 Duration.seconds(0),
+                incremental,
                 scheduler);
-        when(serverStatus.getLifecycle()).thenReturn(Lifecycle.RUNNING);
-        when(cluster.isConnected()).thenReturn(true);
     }
 
     @Test
@@ -90,21 +106,7 @@ class IndexFieldTypePollerPeriodicalTest {
 
     @Test
     void noConcurrentPollingForFieldTypes() throws InterruptedException {
-        final IndexSetConfig indexSet = IndexSetConfig.builder()
-                .id("indexSet1")
-                .title("Test Index Set")
-                .indexPrefix("test")
-                .shards(2)
-                .creationDate(ZonedDateTime.now())
-                .indexAnalyzer("standard")
-                .indexTemplateName("test")
-                .indexOptimizationMaxNumSegments(2048)
-                .indexOptimizationDisabled(false)
-                .fieldTypeRefreshInterval(org.joda.time.Duration.standardSeconds(1))
-                .retentionStrategyConfig(NoopRetentionStrategyConfig.createDefault())
-                .rotationStrategyConfig(MessageCountRotationStrategyConfig.createDefault())
-                .replicas(1)
-                .build();
+        final IndexSetConfig indexSet = indexSetConfig("indexSet1", "test");
         final List<IndexSetConfig> indexSets = List.of(indexSet);
         when(indexSetService.findAll()).thenReturn(indexSets);
 
@@ -139,4 +141,80 @@ class IndexFieldTypePollerPeriodicalTest {
 
         verify(indexFieldTypePoller, times(1)).pollIndex(anyString(), anyString());
     }
+
+    @Test
+    void incrementalPollingBatchesIndicesAndOnlyStoresChanges() {
+        final IndexFieldTypePollerPeriodical incrementalPeriodical = createPeriodical(true);
+        final IndexSetConfig indexSet1 = indexSetConfig("indexSet1", "test");
+        final IndexSetConfig indexSet2 = indexSetConfig("indexSet2", "other");
+        when(indexSetService.findAll()).thenReturn(List.of(indexSet1, indexSet2));
+        mockActiveWriteIndex(indexSet1, "test_0");
+        mockActiveWriteIndex(indexSet2, "other_0");
+
+        final IndexFieldTypesDTO unchanged = indexTypes("indexSet1", "test_0", "source");
+        final IndexFieldTypesDTO changed = indexTypes("indexSet2", "other_0", "source", "new_field");
+        when(indexFieldTypesService.findForIndexSet("indexSet1")).thenReturn(List.of(unchanged.toBuilder().id("id-1").build()));
+        when(indexFieldTypesService.findForIndexSet("indexSet2")).thenReturn(List.of(indexTypes("indexSet2", "other_0", "source")));
+        when(indexFieldTypePoller.pollIndices(Map.of("test_0", "indexSet1", "other_0", "indexSet2")))
+                .thenReturn(Set.of(unchanged, changed));
+
+        incrementalPeriodical.doRun();
+
+        await().atMost(1, TimeUnit.MINUTES).until(() -> scheduler.getCompletedTaskCount() == 1);
+
+        verify(indexFieldTypePoller, times(1)).pollIndices(Map.of("test_0", "indexSet1", "other_0", "indexSet2"));
+        verify(indexFieldTypePoller, never()).pollIndex(anyString(), anyString());
+        verify(indexFieldTypesService, times(1)).upsert(any());
+        verify(indexFieldTypesService).upsert(changed);
+    }
+
+    @Test
+    void pollsRequestedIndexSetsOnLeader() {
+        final IndexFieldTypePollerPeriodical incrementalPeriodical = createPeriodical(true);
+        final IndexSetConfig indexSet = indexSetConfig("indexSet1", "test");
+        when(indexSetService.get("indexSet1")).thenReturn(Optional.of(indexSet));
+        mockActiveWriteIndex(indexSet, "test_0");
+        final IndexFieldTypesDTO polled = indexTypes("indexSet1", "test_0", "source", "new_field");
+        when(indexFieldTypePoller.pollIndices(Map.of("test_0", "indexSet1"))).thenReturn(Set.of(polled));
+
+        when(leaderElectionService.isLeader()).thenReturn(false);
+        incrementalPeriodical.handlePollRequest(IndexFieldTypesPollRequestedEvent.create(Set.of("indexSet1")));
+        verifyNoInteractions(indexFieldTypePoller);
+
+        when(leaderElectionService.isLeader()).thenReturn(true);
+        incrementalPeriodical.handlePollRequest(IndexFieldTypesPollRequestedEvent.create(Set.of("indexSet1")));
+
+        await().atMost(1, TimeUnit.MINUTES).until(() -> scheduler.getCompletedTaskCount() == 1);
+        verify(indexFieldTypesService).upsert(polled);
+    }
+
+    private void mockActiveWriteIndex(IndexSetConfig indexSetConfig, String activeWriteIndex) {
+        final MongoIndexSet mongoIndexSet = mock(MongoIndexSet.class);
+        when(mongoIndexSet.getActiveWriteIndex()).thenReturn(activeWriteIndex);
+        when(mongoIndexSetFactory.create(eq(indexSetConfig))).thenReturn(mongoIndexSet);
+    }
+
+    private static IndexFieldTypesDTO indexTypes(String indexSetId, String indexName, String... fieldNames) {
+        return IndexFieldTypesDTO.create(indexSetId, indexName, Stream.of(fieldNames)
+                .map(fieldName -> FieldTypeDTO.create(fieldName, "keyword"))
+                .collect(Collectors.toSet()));
+    }
+
+    private static IndexSetConfig indexSetConfig(String id, String indexPrefix) {
+        return IndexSetConfig.builder()
+                .id(id)
+                .title("Test Index Set")
+                .indexPrefix(indexPrefix)
+                .shards(2)
+                .creationDate(ZonedDateTime.now())
+                .indexAnalyzer("standard")
+                .indexTemplateName("test")
+                .indexOptimizationMaxNumSegments(2048)
+                .indexOptimizationDisabled(false)
+                .fieldTypeRefreshInterval(org.joda.time.Duration.standardSeconds(1))
+                .retentionStrategyConfig(NoopRetentionStrategyConfig.createDefault())
+                .rotationStrategyConfig(MessageCountRotationStrategyConfig.createDefault())
+                .replicas(1)
+                .build();
+    }
 }
@@ -17,15 +17,20 @@
 package org.graylog2.indexer.fieldtypes;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
 import org.graylog.testing.mongodb.MongoDBInstance;
 import org.graylog2.bindings.providers.MongoJackObjectMapperProvider;
 import org.graylog2.database.MongoCollections;
+import org.graylog2.events.ClusterEventBus;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesChangedEvent;
 import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -38,11 +43,19 @@ public class IndexFieldTypesServiceTest {
     public final MongoDBInstance mongodb = MongoDBInstance.createForClass();
 
     private IndexFieldTypesService dbService;
+    private final List<IndexFieldTypesChangedEvent> changedEvents = new ArrayList<>();
 
     @Before
     public void setUp() throws Exception {
         final MongoJackObjectMapperProvider objectMapperProvider = new MongoJackObjectMapperProvider(new ObjectMapperProvider().get());
-        this.dbService = new IndexFieldTypesService(new MongoCollections(objectMapperProvider, mongodb.mongoConnection()));
+        final ClusterEventBus clusterEventBus = new ClusterEventBus();
+        clusterEventBus.registerClusterEventSubscriber(new Object() {
+            @Subscribe
+            public void handle(IndexFieldTypesChangedEvent event) {
+                changedEvents.add(event);
+            }
+        });
+        this.dbService = new IndexFieldTypesService(new MongoCollections(objectMapperProvider, mongodb.mongoConnection()), new EventBus(), clusterEventBus);
     }
 
     @After
@@ -166,6 +179,32 @@ public class IndexFieldTypesServiceTest {
         assertThat(dbService.findAll().size()).isEqualTo(2);
     }
 
+    @Test
+    public void upsertOnlyAnnouncesChanges() {
+        final IndexFieldTypesDTO dto = createDto("graylog_0", Collections.emptySet());
+        // Load the index set into the cache
+        assertThat(dbService.findForIndexSet("abc123")).isEmpty();
+
+        dbService.upsert(dto);
+        assertThat(changedEvents).hasSize(1);
+        assertThat(changedEvents.get(0).indexSetIds()).containsExactly("abc123");
+
+        // Unchanged field types of the active write index are upserted on every poll
+        dbService.upsert(dto);
+        dbService.upsert(dto);
+        assertThat(changedEvents).hasSize(1);
+
+        final IndexFieldTypesDTO changed = createDto("graylog_0", Set.of(FieldTypeDTO.create("user", "keyword")));
+        dbService.upsert(changed);
+        assertThat(changedEvents).hasSize(2);
+
+        // The own events don't drop the updated cache entry
+        changedEvents.forEach(event -> dbService.handleIndexFieldTypesChanged(event));
+        assertThat(dbService.findForIndexSet("abc123"))
+                .singleElement()
+                .satisfies(types -> assertThat(types.fields()).contains(FieldTypeDTO.create("user", "keyword")));
+    }
+
     @Test
     public void streamForIndexSet() {
         final IndexFieldTypesDTO newDto1 = createDto("graylog_0", "abc", Collections.emptySet());
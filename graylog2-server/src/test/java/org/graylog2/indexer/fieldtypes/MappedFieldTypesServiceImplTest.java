@@ -18,10 +18,12 @@ package org.graylog2.indexer.fieldtypes;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
 import org.graylog.plugins.formatting.units.fields.FieldUnitObtainer;
 import org.graylog.plugins.views.search.elasticsearch.IndexLookup;
 import org.graylog.plugins.views.search.rest.MappedFieldTypeDTO;
 import org.graylog2.Configuration;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesChangedEvent;
 import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
 import org.graylog2.plugin.indexer.searches.timeranges.RelativeRange;
 import org.graylog2.plugin.indexer.searches.timeranges.TimeRange;
@@ -75,7 +77,7 @@ public class MappedFieldTypesServiceImplTest {
     public void setUp() throws Exception {
         final Configuration withStreamAwarenessOff = spy(new Configuration());
         doReturn(false).when(withStreamAwarenessOff).maintainsStreamAwareFieldTypes();
-        this.mappedFieldTypesService = new MappedFieldTypesServiceImpl(withStreamAwarenessOff, streamService, indexFieldTypesService, new FieldTypeMapper(), indexLookup, fieldUnitObtainer);
+        this.mappedFieldTypesService = new MappedFieldTypesServiceImpl(withStreamAwarenessOff, streamService, indexFieldTypesService, new FieldTypeMapper(), indexLookup, fieldUnitObtainer, new EventBus());
         when(streamService.indexSetIdsByIds(Collections.singleton("stream1"))).thenReturn(Collections.singleton("indexSetId"));
         when(streamService.indexSetIdsByIds(Collections.singleton("stream2"))).thenReturn(Collections.singleton("indexSetId"));
     }
@@ -84,7 +86,7 @@ public class MappedFieldTypesServiceImplTest {
     public void testDifferenceBetweenStreamAwareAndUnawareFieldTypeRetrieval() {
         final Configuration withStreamAwarenessOn = spy(new Configuration());
         doReturn(true).when(withStreamAwarenessOn).maintainsStreamAwareFieldTypes();
-        MappedFieldTypesServiceImpl streamAwareMappedFieldTypesService = new MappedFieldTypesServiceImpl(withStreamAwarenessOn, streamService, indexFieldTypesService, new FieldTypeMapper(), indexLookup, fieldUnitObtainer);
+        MappedFieldTypesServiceImpl streamAwareMappedFieldTypesService = new MappedFieldTypesServiceImpl(withStreamAwarenessOn, streamService, indexFieldTypesService, new FieldTypeMapper(), indexLookup, fieldUnitObtainer, new EventBus());
 
         final List<IndexFieldTypesDTO> fieldTypes = ImmutableList.of(
                 createIndexTypes(
@@ -197,6 +199,25 @@ public class MappedFieldTypesServiceImplTest {
         assertThat(timeRangeCaptor.getValue()).isEqualTo(AbsoluteRange.create("2010-05-17T23:28:14.000+02:00", "2021-05-05T12:09:23.213+02:00"));
     }
 
+    @Test
+    public void reusesResultsUntilFieldTypesChange() {
+        final EventBus eventBus = new EventBus();
+        final MappedFieldTypesServiceImpl service = new MappedFieldTypesServiceImpl(new Configuration(), streamService, indexFieldTypesService, new FieldTypeMapper(), indexLookup, fieldUnitObtainer, eventBus);
+        when(indexFieldTypesService.findForIndexSets(Collections.singleton("indexSetId"))).thenReturn(ImmutableList.of(
+                createIndexTypes("deadbeef", "testIndex", FieldTypeDTO.builder().fieldName("field1").physicalType("keyword").streams(Set.of("stream1")).build())
+        ));
+        when(indexLookup.indexNamesForStreamsInTimeRange(Collections.singleton("stream1"), RelativeRange.allTime())).thenReturn(ImmutableSet.of("testIndex"));
+
+        final Set<MappedFieldTypeDTO> result = service.fieldTypesByStreamIds(Collections.singleton("stream1"), RelativeRange.allTime());
+        assertThat(service.fieldTypesByStreamIds(Collections.singleton("stream1"), RelativeRange.allTime())).isEqualTo(result);
+        verify(indexFieldTypesService, times(1)).findForIndexSets(Collections.singleton("indexSetId"));
+
+        eventBus.post(IndexFieldTypesChangedEvent.create("indexSetId"));
+
+        assertThat(service.fieldTypesByStreamIds(Collections.singleton("stream1"), RelativeRange.allTime())).isEqualTo(result);
+        verify(indexFieldTypesService, times(2)).findForIndexSets(Collections.singleton("indexSetId"));
+    }
+
     private IndexFieldTypesDTO createIndexTypes(String indexId, String indexName, FieldTypeDTO... fieldTypes) {
         return IndexFieldTypesDTO.create(indexId, indexName, java.util.stream.Stream.of(fieldTypes).collect(Collectors.toSet()));
     }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.fieldtypes;
+
+import com.google.common.eventbus.EventBus;
+import org.graylog2.events.ClusterEventBus;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesChangedEvent;
+import org.graylog2.indexer.fieldtypes.events.IndexFieldTypesPollRequestedEvent;
+import org.graylog2.indexer.indexset.IndexSetConfig;
+import org.graylog2.indexer.messages.ImmutableMessage;
+import org.graylog2.indexer.messages.MessageWithIndex;
+import org.graylog2.plugin.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UnknownFieldTypesDetectorTest {
+    private final IndexFieldTypesService indexFieldTypesService = mock(IndexFieldTypesService.class);
+    private final ClusterEventBus clusterEventBus = mock(ClusterEventBus.class);
+    private final EventBus eventBus = new EventBus();
+    private final IndexSet indexSet = mock(IndexSet.class);
+
+    @BeforeEach
+    void setUp() {
+        final IndexSetConfig indexSetConfig = mock(IndexSetConfig.class);
+        when(indexSetConfig.id()).thenReturn("indexSet1");
+        when(indexSet.getConfig()).thenReturn(indexSetConfig);
+        when(indexFieldTypesService.findForIndexSet("indexSet1")).thenReturn(List.of(
+                IndexFieldTypesDTO.create("indexSet1", "test_0", Set.of(FieldTypeDTO.create("source", "keyword")))
+        ));
+    }
+
+    @Test
+    void requestsPollForUnknownFields() {
+        final UnknownFieldTypesDetector detector = new UnknownFieldTypesDetector(true, indexFieldTypesService, eventBus, clusterEventBus);
+
+        detector.check(List.of(message(Message.FIELD_ID, "source")));
+        verify(clusterEventBus, never()).post(any());
+
+        detector.check(List.of(message("source", "new_field")));
+        verify(clusterEventBus, times(1)).post(IndexFieldTypesPollRequestedEvent.create(Set.of("indexSet1")));
+
+        // The field is not reported again until the field types have been changed
+        detector.check(List.of(message("new_field")));
+        verify(clusterEventBus, times(1)).post(any());
+    }
+
+    @Test
+    void forgetsReportedFieldsWhenFieldTypesChange() {
+        final UnknownFieldTypesDetector detector = new UnknownFieldTypesDetector(true, indexFieldTypesService, eventBus, clusterEventBus);
+
+        detector.check(List.of(message("new_field")));
+        eventBus.post(IndexFieldTypesChangedEvent.create("indexSet1"));
+        detector.check(List.of(message("other_field")));
+
+        // Rate limited
+        verify(clusterEventBus, times(1)).post(any());
+        verify(indexFieldTypesService, times(2)).findForIndexSet("indexSet1");
+    }
+
+    @Test
+    void doesNothingIfDisabled() {
+        final UnknownFieldTypesDetector detector = new UnknownFieldTypesDetector(false, indexFieldTypesService, eventBus, clusterEventBus);
+
+        detector.check(List.of(message("new_field")));
+
+        verify(clusterEventBus, never()).post(any());
+        verify(indexFieldTypesService, never()).findForIndexSet(any());
+    }
+
+    private MessageWithIndex message(String... fieldNames) {
+        final ImmutableMessage message = mock(ImmutableMessage.class);
+        when(message.getFieldNames()).thenReturn(Set.of(fieldNames));
+        return new MessageWithIndex(message, indexSet);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.ranges;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexRangeIntervalIndexTest {
+    private static final DateTime NOW = new DateTime(2024, 1, 1, 0, 0, DateTimeZone.UTC);
+
+    @Test
+    void findsOverlappingIndexRanges() {
+        final IndexRangeIntervalIndex index = IndexRangeIntervalIndex.of(List.of(
+                range("graylog_1", 1, 100, null),
+                range("graylog_2", 100, 200, null),
+                range("graylog_3", 200, 300, null)));
+
+        assertThat(index.find(50, 60)).extracting(IndexRange::indexName).containsExactly("graylog_1");
+        assertThat(index.find(100, 100)).extracting(IndexRange::indexName).containsExactlyInAnyOrder("graylog_1", "graylog_2");
+        assertThat(index.find(150, 250)).extracting(IndexRange::indexName).containsExactlyInAnyOrder("graylog_2", "graylog_3");
+        assertThat(index.find(301, 400)).isEmpty();
+    }
+
+    @Test
+    void alwaysFindsIndexRangesWithUnknownTimeRange() {
+        final IndexRange unknown = MongoIndexRange.create("graylog_2", new DateTime(0L, DateTimeZone.UTC),
+                new DateTime(0L, DateTimeZone.UTC), NOW, 0);
+        final IndexRangeIntervalIndex index = IndexRangeIntervalIndex.of(List.of(range("graylog_1", 100, 200, null), unknown));
+
+        assertThat(index.find(NOW.getMillis(), NOW.plusHours(1).getMillis())).containsExactly(unknown);
+        assertThat(index.find(NOW.getMillis(), NOW.plusHours(1).getMillis(), Set.of("stream-1"))).containsExactly(unknown);
+    }
+
+    @Test
+    void findsIndexRangesOfStreams() {
+        final IndexRangeIntervalIndex index = IndexRangeIntervalIndex.of(List.of(
+                range("graylog_1", 1, 100, List.of("stream-1")),
+                range("graylog_2", 1, 100, List.of("stream-1", "stream-2")),
+                range("graylog_3", 1, 100, List.of("stream-3")),
+                range("graylog_4", 1, 100, null),
+                range("graylog_5", 200, 300, List.of("stream-1"))));
+
+        assertThat(index.find(1, 100, Set.of("stream-1"))).extracting(IndexRange::indexName)
+                .containsExactlyInAnyOrder("graylog_1", "graylog_2", "graylog_4");
+        assertThat(index.find(1, 100, Set.of("stream-2", "stream-3"))).extracting(IndexRange::indexName)
+                .containsExactlyInAnyOrder("graylog_2", "graylog_3", "graylog_4");
+        assertThat(index.find(1, 100, Set.of("stream-4"))).extracting(IndexRange::indexName)
+                .containsExactly("graylog_4");
+        assertThat(index.find(1, 100, Set.of())).extracting(IndexRange::indexName)
+                .containsExactly("graylog_4");
+    }
+
+    @Test
+    void findsTheSameIndexRangesAsLinearScan() {
+        final Random random = new Random(42);
+        final List<IndexRange> ranges = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final long begin = 1 + random.nextInt(100_000);
+            ranges.add(range("graylog_" + i, begin, begin + random.nextInt(5_000), null));
+        }
+        final IndexRangeIntervalIndex index = IndexRangeIntervalIndex.of(ranges);
+
+        for (int i = 0; i < 500; i++) {
+            final long begin = random.nextInt(110_000);
+            final long end = begin + random.nextInt(20_000);
+            final List<IndexRange> expected = ranges.stream()
+                    .filter(range -> range.begin().getMillis() <= end && range.end().getMillis() >= begin)
+                    .toList();
+
+            assertThat(index.find(begin, end)).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    private static IndexRange range(String indexName, long begin, long end, List<String> streamIds) {
+        return MongoIndexRange.create(indexName, new DateTime(begin, DateTimeZone.UTC), new DateTime(end, DateTimeZone.UTC),
+                NOW, 0, streamIds);
+    }
+}
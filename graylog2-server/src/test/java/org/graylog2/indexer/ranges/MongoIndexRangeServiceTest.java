@@ -26,6 +26,7 @@ import org.graylog2.audit.NullAuditEventSender;
 import org.graylog2.bindings.providers.MongoJackObjectMapperProvider;
 import org.graylog2.database.MongoCollections;
 import org.graylog2.database.NotFoundException;
+import org.graylog2.events.ClusterEventBus;
 import org.graylog2.indexer.ElasticsearchException;
 import org.graylog2.indexer.IndexSetRegistry;
 import org.graylog2.indexer.indices.HealthStatus;
@@ -75,7 +76,8 @@ public class MongoIndexRangeServiceTest {
         localEventBus = new EventBus("local-event-bus");
         indexRangeService = new MongoIndexRangeService(
                 new MongoCollections(objectMapperProvider, mongodb.mongoConnection()), indices, indexSetRegistry,
-                new NullAuditEventSender(), new SimpleNodeId("5ca1ab1e-0000-4000-a000-000000000000"), localEventBus);
+                new NullAuditEventSender(), new SimpleNodeId("5ca1ab1e-0000-4000-a000-000000000000"), localEventBus,
+                new ClusterEventBus());
     }
 
     @Test
@@ -225,6 +227,19 @@ public class MongoIndexRangeServiceTest {
         assertThat(result.calculationDuration()).isEqualTo(42);
     }
 
+    @Test
+    public void findReturnsSavedAndRemovedIndexRanges() throws Exception {
+        final DateTime begin = new DateTime(2015, 1, 1, 0, 0, DateTimeZone.UTC);
+        final DateTime end = new DateTime(2015, 1, 2, 0, 0, DateTimeZone.UTC);
+        assertThat(indexRangeService.find(begin, end)).isEmpty();
+
+        indexRangeService.save(MongoIndexRange.create("graylog", begin, end, DateTime.now(DateTimeZone.UTC), 42));
+        assertThat(indexRangeService.find(begin, end)).extracting(IndexRange::indexName).containsExactly("graylog");
+
+        indexRangeService.remove("graylog");
+        assertThat(indexRangeService.find(begin, end)).isEmpty();
+    }
+
     @Test
     public void saveOverwritesExistingIndexRange() throws Exception {
         final String indexName = "graylog";
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.indexer.ranges;
+
+import com.google.common.collect.ImmutableSortedSet;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.indexset.IndexSetConfig;
+import org.graylog2.indexer.indices.Indices;
+import org.graylog2.shared.system.activities.ActivityWriter;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RebuildIndexRangesJobTest {
+    private static final DateTime NOW = DateTime.now(DateTimeZone.UTC);
+
+    private final IndexRangeService indexRangeService = mock(IndexRangeService.class);
+    private final Indices indices = mock(Indices.class);
+    private final IndexSet indexSet = mock(IndexSet.class);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        final IndexSetConfig config = mock(IndexSetConfig.class);
+        when(config.title()).thenReturn("Default");
+        when(indexSet.getConfig()).thenReturn(config);
+        when(indexSet.getIndexWildcard()).thenReturn("graylog_*");
+        when(indexSet.getActiveWriteIndex()).thenReturn("graylog_5");
+        when(indexSet.getManagedIndices()).thenReturn(new String[]{"graylog_0", "graylog_1", "graylog_2", "graylog_3", "graylog_4", "graylog_5"});
+        when(indexRangeService.get("graylog_5")).thenReturn(MongoIndexRange.create("graylog_5", new DateTime(0L, DateTimeZone.UTC), new DateTime(0L, DateTimeZone.UTC), NOW, 0));
+        when(indexRangeService.calculateRanges(anyCollection())).thenAnswer(invocation -> {
+            final Collection<String> indexNames = invocation.getArgument(0);
+            return indexNames.stream().collect(Collectors.toMap(name -> name, this::range));
+        });
+    }
+
+    @Test
+    void skipsClosedAndUnchangedIndices() {
+        // graylog_0 is closed, graylog_1 didn't change, graylog_2 changed and graylog_3 has no document count yet
+        when(indices.getDocumentCounts(List.of("graylog_*"))).thenReturn(Map.of(
+                "graylog_1", 10L, "graylog_2", 20L, "graylog_3", 30L, "graylog_4", 40L, "graylog_5", 50L));
+        when(indexRangeService.findAll()).thenReturn(ImmutableSortedSet.orderedBy(IndexRange.COMPARATOR)
+                .add(MongoIndexRange.create(range("graylog_1"), 10L))
+                .add(MongoIndexRange.create(range("graylog_2"), 15L))
+                .add(range("graylog_3"))
+                .build());
+
+        final RebuildIndexRangesJob job = createJob(2, 2, true);
+        job.execute();
+
+        final Set<String> savedIndices = savedRanges().stream().map(IndexRange::indexName).collect(Collectors.toSet());
+        assertThat(savedIndices).containsExactlyInAnyOrder("graylog_2", "graylog_3", "graylog_4");
+        assertThat(savedRanges()).allSatisfy(indexRange -> assertThat(indexRange.documentCount()).isNotNull());
+        assertThat(job.getProgress()).isEqualTo(100);
+        verify(indexRangeService, never()).save(any());
+    }
+
+    @Test
+    void recalculatesClosedAndUnchangedIndicesByDefault() {
+        when(indices.getDocumentCounts(List.of("graylog_*"))).thenReturn(Map.of(
+                "graylog_1", 10L, "graylog_2", 20L, "graylog_3", 30L, "graylog_4", 40L, "graylog_5", 50L));
+
+        final RebuildIndexRangesJob job = createJob(2, 2, false);
+        job.execute();
+
+        final Set<String> savedIndices = savedRanges().stream().map(IndexRange::indexName).collect(Collectors.toSet());
+        assertThat(savedIndices).containsExactlyInAnyOrder("graylog_0", "graylog_1", "graylog_2", "graylog_3", "graylog_4");
+        assertThat(savedRanges()).filteredOn(indexRange -> !indexRange.indexName().equals("graylog_0"))
+                .allSatisfy(indexRange -> assertThat(indexRange.documentCount()).isNotNull());
+        verify(indexRangeService, never()).findAll();
+    }
+
+    @Test
+    void calculatesAllIndicesIfDocumentCountsAreUnavailable() {
+        when(indices.getDocumentCounts(List.of("graylog_*"))).thenThrow(new RuntimeException("Boom"));
+        when(indexRangeService.findAll()).thenReturn(ImmutableSortedSet.orderedBy(IndexRange.COMPARATOR).build());
+
+        final RebuildIndexRangesJob job = createJob(1, 10, true);
+        job.execute();
+
+        verify(indexRangeService).calculateRanges(List.of("graylog_0", "graylog_1", "graylog_2", "graylog_3", "graylog_4"));
+        assertThat(savedRanges()).hasSize(5);
+    }
+
+    @Test
+    void doesNotCalculateAnythingIfCancelled() {
+        when(indices.getDocumentCounts(List.of("graylog_*"))).thenReturn(Map.of("graylog_1", 10L));
+        when(indexRangeService.findAll()).thenReturn(ImmutableSortedSet.orderedBy(IndexRange.COMPARATOR).build());
+
+        final RebuildIndexRangesJob job = createJob(1, 1, true);
+        job.requestCancel();
+        job.execute();
+
+        verify(indexRangeService, never()).calculateRanges(anyCollection());
+    }
+
+    private RebuildIndexRangesJob createJob(int concurrency, int batchSize, boolean skipUnchanged) {
+        return new RebuildIndexRangesJob(Set.of(indexSet), mock(ActivityWriter.class), indexRangeService, indices, concurrency, batchSize, skipUnchanged);
+    }
+
+    private List<IndexRange> savedRanges() {
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<Collection<IndexRange>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(indexRangeService, atLeastOnce()).saveAll(captor.capture());
+        return captor.getAllValues().stream().flatMap(Collection::stream).toList();
+    }
+
+    private IndexRange range(String indexName) {
+        return MongoIndexRange.create(indexName, NOW.minusHours(1), NOW, NOW, 10, List.of("stream-1"));
+    }
+}
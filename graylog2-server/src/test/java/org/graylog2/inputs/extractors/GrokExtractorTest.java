@@ -16,6 +16,7 @@
  */
 package org.graylog2.inputs.extractors;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.Lists;
 import com.google.common.eventbus.EventBus;
 import org.graylog2.ConfigurationException;
@@ -27,6 +28,7 @@ import org.graylog2.grok.InMemoryGrokPatternService;
 import org.graylog2.plugin.LocalMetricRegistry;
 import org.graylog2.plugin.inputs.Extractor;
 import org.graylog2.shared.SuppressForbidden;
+import org.graylog2.utilities.PatternCache;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.junit.Before;
@@ -229,7 +231,7 @@ public class GrokExtractorTest {
         } catch (Exception e) {
             fail("Could not save grok patter: " + e.getMessage());
         }
-        final GrokPatternRegistry grokPatternRegistry = new GrokPatternRegistry(clusterBus, grokPatternService, Executors.newScheduledThreadPool(1));
+        final GrokPatternRegistry grokPatternRegistry = new GrokPatternRegistry(clusterBus, grokPatternService, new PatternCache(new MetricRegistry()));
 
         try {
             return new GrokExtractor(new LocalMetricRegistry(),
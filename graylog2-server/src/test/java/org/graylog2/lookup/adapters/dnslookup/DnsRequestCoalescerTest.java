@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.lookup.adapters.dnslookup;
+
+import io.netty.handler.codec.dns.DnsResponseCode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DnsRequestCoalescerTest {
+    private static final long RECORD_TTL = 42;
+
+    private TestDnsServer dnsServer;
+    private DnsClient dnsClient;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        dnsServer = new TestDnsServer(RECORD_TTL, 200)
+                .addA("host.example.org", "10.0.0.1")
+                .addPtr("1.0.0.10.in-addr.arpa", "host.example.org")
+                .addCname("alias.example.org", "www.example.org")
+                .addCname("www.example.org", "host.example.org")
+                .addCname("dangling.example.org", "missing.example.org")
+                .addServerFailure("broken.example.org")
+                .start();
+        dnsClient = new DnsClient(2000, 1, 300);
+        dnsClient.start(dnsServer.address());
+    }
+
+    @AfterEach
+    void tearDown() {
+        dnsClient.stop();
+        dnsServer.close();
+    }
+
+    @Test
+    void concurrentRequestsForTheSameKeyShareOneQuery() throws Exception {
+        final DnsRequestCoalescer<PtrDnsAnswer> coalescer = new DnsRequestCoalescer<>(Duration.ofMinutes(1), 100);
+
+        final List<CompletableFuture<PtrDnsAnswer>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(coalescer.execute("10.0.0.1", () -> dnsClient.reverseLookupAsync("10.0.0.1")));
+        }
+
+        for (CompletableFuture<PtrDnsAnswer> future : futures) {
+            final PtrDnsAnswer answer = future.get(5, TimeUnit.SECONDS);
+            assertThat(answer.fullDomain()).startsWith("host.example.org");
+            assertThat(answer.dnsTTL()).isEqualTo(RECORD_TTL);
+        }
+        assertThat(dnsServer.queryCount("1.0.0.10.in-addr.arpa")).isEqualTo(1);
+        assertThat(coalescer.inflightRequests()).isZero();
+
+        // Completed requests are not cached, the next request hits the server again.
+        coalescer.execute("10.0.0.1", () -> dnsClient.reverseLookupAsync("10.0.0.1")).get(5, TimeUnit.SECONDS);
+        assertThat(dnsServer.queryCount("1.0.0.10.in-addr.arpa")).isEqualTo(2);
+    }
+
+    @Test
+    void nonExistentNamesAreCachedWithTheServerProvidedTTL() {
+        final DnsRequestCoalescer<PtrDnsAnswer> coalescer = new DnsRequestCoalescer<>(Duration.ofMinutes(1), 100);
+
+        assertThatThrownBy(() -> coalescer.execute("10.0.0.2", () -> dnsClient.reverseLookupAsync("10.0.0.2")).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOfSatisfying(DnsNameNotFoundException.class,
+                        e -> assertThat(e.negativeTTL()).contains(TestDnsServer.SOA_TTL));
+
+        assertThat(coalescer.isKnownNonExistent("10.0.0.2")).isTrue();
+        assertThat(coalescer.isKnownNonExistent("10.0.0.1")).isFalse();
+        assertThat(dnsServer.queryCount("2.0.0.10.in-addr.arpa")).isEqualTo(1);
+    }
+
+    @Test
+    void negativeTTLIsCappedByConfiguredMaximum() throws InterruptedException {
+        final DnsRequestCoalescer<List<TxtDnsAnswer>> coalescer = new DnsRequestCoalescer<>(Duration.ofMillis(100), 100);
+
+        assertThatThrownBy(() -> coalescer.execute("missing.example.org", () -> dnsClient.txtLookupAsync("missing.example.org")).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DnsNameNotFoundException.class);
+        assertThat(coalescer.isKnownNonExistent("missing.example.org")).isTrue();
+
+        Thread.sleep(300);
+        assertThat(coalescer.isKnownNonExistent("missing.example.org")).isFalse();
+    }
+
+    @Test
+    void nonExistentHostNamesAreCached() {
+        final DnsRequestCoalescer<List<ADnsAnswer>> coalescer = new DnsRequestCoalescer<>(Duration.ofMinutes(1), 100);
+
+        assertThatThrownBy(() -> coalescer.execute("missing.example.org", () -> dnsClient.resolveIPv4AddressForHostnameAsync("missing.example.org", false)).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOfSatisfying(DnsNameNotFoundException.class,
+                        e -> assertThat(e.negativeTTL()).contains(TestDnsServer.SOA_TTL));
+        assertThat(coalescer.isKnownNonExistent("missing.example.org")).isTrue();
+    }
+
+    @Test
+    void serverFailuresAreNotCached() {
+        final DnsRequestCoalescer<List<ADnsAnswer>> coalescer = new DnsRequestCoalescer<>(Duration.ofMinutes(1), 100);
+
+        assertThatThrownBy(() -> coalescer.execute("broken.example.org", () -> dnsClient.resolveIPv4AddressForHostnameAsync("broken.example.org", false)).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOfSatisfying(DnsResponseCodeException.class,
+                        e -> assertThat(e.responseCode()).isEqualTo(DnsResponseCode.SERVFAIL));
+        assertThat(coalescer.isKnownNonExistent("broken.example.org")).isFalse();
+
+        final DnsRequestCoalescer<List<TxtDnsAnswer>> txtCoalescer = new DnsRequestCoalescer<>(Duration.ofMinutes(1), 100);
+        assertThatThrownBy(() -> txtCoalescer.execute("broken.example.org", () -> dnsClient.txtLookupAsync("broken.example.org")).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DnsResponseCodeException.class);
+        assertThat(txtCoalescer.isKnownNonExistent("broken.example.org")).isFalse();
+    }
+
+    @Test
+    void asyncAddressResolutionHonoursRecordTTL() throws Exception {
+        final List<ADnsAnswer> answers = dnsClient.resolveIPv4AddressForHostnameAsync("host.example.org", true).get(5, TimeUnit.SECONDS);
+
+        assertThat(answers).hasSize(1);
+        assertThat(answers.get(0).ipAddress()).isEqualTo("10.0.0.1");
+        assertThat(answers.get(0).ipVersion()).isEqualTo("IPv4");
+        assertThat(answers.get(0).dnsTTL()).isEqualTo(RECORD_TTL);
+    }
+
+    @Test
+    void asyncAddressResolutionFollowsCnameChains() throws Exception {
+        final List<ADnsAnswer> answers = dnsClient.resolveIPv4AddressForHostnameAsync("alias.example.org", false).get(5, TimeUnit.SECONDS);
+
+        assertThat(answers).hasSize(1);
+        assertThat(answers.get(0).ipAddress()).isEqualTo("10.0.0.1");
+        assertThat(dnsServer.queryCount("alias.example.org")).isEqualTo(1);
+        assertThat(dnsServer.queryCount("www.example.org")).isEqualTo(1);
+        assertThat(dnsServer.queryCount("host.example.org")).isEqualTo(1);
+    }
+
+    @Test
+    void asyncAddressResolutionOfDanglingCnameFailsWithNameNotFound() {
+        assertThatThrownBy(() -> dnsClient.resolveIPv4AddressForHostnameAsync("dangling.example.org", false).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DnsNameNotFoundException.class);
+    }
+
+    @Test
+    void invalidKeysFailTheRequestWithoutQueryingTheServer() {
+        final DnsRequestCoalescer<PtrDnsAnswer> coalescer = new DnsRequestCoalescer<>(Duration.ofMinutes(1), 100);
+
+        assertThatThrownBy(() -> coalescer.execute("not-an-ip", () -> dnsClient.reverseLookupAsync("not-an-ip")).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(coalescer.isKnownNonExistent("not-an-ip")).isFalse();
+        assertThat(coalescer.inflightRequests()).isZero();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.lookup.adapters.dnslookup;
+
+import com.google.common.net.InetAddresses;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.codec.dns.DatagramDnsQuery;
+import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
+import io.netty.handler.codec.dns.DatagramDnsResponse;
+import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
+import io.netty.handler.codec.dns.DefaultDnsPtrRecord;
+import io.netty.handler.codec.dns.DefaultDnsQuestion;
+import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsResponseCode;
+import io.netty.handler.codec.dns.DnsSection;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal UDP DNS server for tests. Answers A and PTR questions from the registered records, answers questions for
+ * registered aliases with only the CNAME record (like an authoritative server does for targets in another zone),
+ * responds with SERVFAIL
+ * for registered failing names and with NXDOMAIN (including an SOA record in the authority section) for everything
+ * else. Responses can be delayed to
+ * simulate slow DNS servers.
+ */
+class TestDnsServer implements AutoCloseable {
+    static final long SOA_TTL = 30;
+
+    private final NioEventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+    private final Map<String, InetAddress> aRecords = new ConcurrentHashMap<>();
+    private final Map<String, String> ptrRecords = new ConcurrentHashMap<>();
+    private final Map<String, String> cnameRecords = new ConcurrentHashMap<>();
+    private final Set<String> failingNames = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> queryCounts = new ConcurrentHashMap<>();
+    private final long ttl;
+    private final long responseDelayMillis;
+    private Channel channel;
+
+    TestDnsServer(long ttl, long responseDelayMillis) {
+        this.ttl = ttl;
+        this.responseDelayMillis = responseDelayMillis;
+    }
+
+    TestDnsServer addA(String hostName, String ipAddress) {
+        aRecords.put(fqdn(hostName), InetAddresses.forString(ipAddress));
+        return this;
+    }
+
+    TestDnsServer addPtr(String reverseName, String hostName) {
+        ptrRecords.put(fqdn(reverseName), fqdn(hostName));
+        return this;
+    }
+
+    TestDnsServer addCname(String alias, String target) {
+        cnameRecords.put(fqdn(alias), fqdn(target));
+        return this;
+    }
+
+    TestDnsServer addServerFailure(String name) {
+        failingNames.add(fqdn(name));
+        return this;
+    }
+
+    TestDnsServer start() throws InterruptedException {
+        channel = new Bootstrap()
+                .group(eventLoopGroup)
+                .channel(NioDatagramChannel.class)
+                .handler(new ChannelInitializer<NioDatagramChannel>() {
+                    @Override
+                    protected void initChannel(NioDatagramChannel ch) {
+                        ch.pipeline().addLast(new DatagramDnsQueryDecoder(), new DatagramDnsResponseEncoder(), new QueryHandler());
+                    }
+                })
+                .bind(new InetSocketAddress("127.0.0.1", 0))
+                .sync()
+                .channel();
+        return this;
+    }
+
+    String address() {
+        final InetSocketAddress localAddress = (InetSocketAddress) channel.localAddress();
+        return "127.0.0.1:" + localAddress.getPort();
+    }
+
+    int queryCount(String name) {
+        final AtomicInteger count = queryCounts.get(fqdn(name));
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            channel.close().syncUninterruptibly();
+        }
+        eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private static String fqdn(String name) {
+        return name.endsWith(".") ? name : name + ".";
+    }
+
+    private static ByteBuf encodeName(String name) {
+        final ByteBuf buf = Unpooled.buffer();
+        for (String label : name.split("\\.")) {
+            final byte[] bytes = label.getBytes(StandardCharsets.US_ASCII);
+            buf.writeByte(bytes.length);
+            buf.writeBytes(bytes);
+        }
+        return buf.writeByte(0);
+    }
+
+    private class QueryHandler extends SimpleChannelInboundHandler<DatagramDnsQuery> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DatagramDnsQuery query) {
+            final DnsRecord question = query.recordAt(DnsSection.QUESTION);
+            final String name = fqdn(question.name());
+            queryCounts.computeIfAbsent(name, k -> new AtomicInteger()).incrementAndGet();
+
+            final DatagramDnsResponse response = new DatagramDnsResponse(query.recipient(), query.sender(), query.id());
+            response.setRecursionAvailable(true);
+            response.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion(question.name(), question.type()));
+
+            if (failingNames.contains(name)) {
+                response.setCode(DnsResponseCode.SERVFAIL);
+            } else if (cnameRecords.containsKey(name)) {
+                response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord(question.name(), DnsRecordType.CNAME, ttl,
+                        encodeName(cnameRecords.get(name))));
+            } else if (DnsRecordType.A.equals(question.type()) && aRecords.containsKey(name)) {
+                response.addRecord(DnsSection.ANSWER, new DefaultDnsRawRecord(question.name(), DnsRecordType.A, ttl,
+                        Unpooled.wrappedBuffer(aRecords.get(name).getAddress())));
+            } else if (DnsRecordType.PTR.equals(question.type()) && ptrRecords.containsKey(name)) {
+                response.addRecord(DnsSection.ANSWER, new DefaultDnsPtrRecord(question.name(), DnsRecord.CLASS_IN, ttl, ptrRecords.get(name)));
+            } else if (!aRecords.containsKey(name) && !ptrRecords.containsKey(name)) {
+                response.setCode(DnsResponseCode.NXDOMAIN);
+                response.addRecord(DnsSection.AUTHORITY, new DefaultDnsRawRecord("test.", DnsRecordType.SOA, SOA_TTL, Unpooled.EMPTY_BUFFER));
+            }
+
+            ctx.executor().schedule(() -> ctx.writeAndFlush(response), responseDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
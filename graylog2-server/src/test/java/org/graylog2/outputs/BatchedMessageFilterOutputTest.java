@@ -19,6 +19,7 @@ package org.graylog2.outputs;
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.EventBus;
 import jakarta.annotation.Nonnull;
 import org.graylog.testing.messages.MessagesExtension;
 import org.graylog2.indexer.IndexSet;
@@ -35,6 +36,8 @@ import org.graylog2.plugin.outputs.MessageOutput;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.shared.SuppressForbidden;
 import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.graylog2.shared.buffers.ProcessingStageMetrics;
+import org.graylog2.shared.inputs.InputRegistry;
 import org.graylog2.shared.messageq.MessageQueueAcknowledger;
 import org.graylog2.system.shutdown.GracefulShutdownService;
 import org.junit.jupiter.api.AfterEach;
@@ -133,6 +136,7 @@ class BatchedMessageFilterOutputTest {
                 acknowledger,
                 buffer,
                 gracefulShutdownService,
+                new ProcessingStageMetrics(new MetricRegistry(), new InputRegistry(), new EventBus(), 0),
                 outputFlushInterval,
                 shutdownTimeoutMs,
                 Executors.newSingleThreadScheduledExecutor()
@@ -20,6 +20,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 import org.graylog.testing.messages.MessagesExtension;
 import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.fieldtypes.UnknownFieldTypesDetector;
 import org.graylog2.indexer.messages.IndexingResults;
 import org.graylog2.indexer.messages.MessageWithIndex;
 import org.graylog2.indexer.messages.Messages;
@@ -56,6 +57,9 @@ public class ElasticSearchOutputTest {
     @Mock
     private Messages messages;
 
+    @Mock
+    private UnknownFieldTypesDetector unknownFieldTypesDetector;
+
     @Mock
     private IndexingResults indexingResults;
 
@@ -79,7 +83,7 @@ public class ElasticSearchOutputTest {
     public void setUp(MessageFactory messageFactory) throws Exception {
         this.messageFactory = messageFactory;
 
-        output = new ElasticSearchOutput(new MetricRegistry(), messages);
+        output = new ElasticSearchOutput(new MetricRegistry(), messages, unknownFieldTypesDetector);
         output.initialize();
 
         lenient().when(defaultStream.getIndexSet()).thenReturn(defaultIndexSet);
@@ -21,6 +21,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.eaio.uuid.UUID;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -66,6 +67,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -116,6 +118,22 @@ public class MessageTest {
         assertNull(m.getField("someäthing"));
     }
 
+    @Test
+    public void testAddFieldSharesFieldNamesBetweenMessages() throws Exception {
+        final Message m1 = new Message("foo", "bar", Tools.nowUTC());
+        final Message m2 = new Message("foo", "bar", Tools.nowUTC());
+        m1.addField(new String(" shared_key "), "1");
+        m2.addField(new String("shared_key "), "2");
+        m2.addField(new String(" _ttl"), "3");
+
+        final String key1 = Iterables.find(m1.getFieldNames(), "shared_key"::equals);
+        final String key2 = Iterables.find(m2.getFieldNames(), "shared_key"::equals);
+        assertEquals("shared_key", key1);
+        assertSame(key1, key2);
+        assertEquals("2", m2.getField("shared_key"));
+        assertFalse(m2.hasField("_ttl"));
+    }
+
     @Test
     public void testAddFieldTrimsValue() throws Exception {
         Message m = new Message("foo", "bar", Tools.nowUTC());
@@ -389,6 +407,8 @@ public class MessageTest {
         assertEquals("foo_bar", Message.cleanKey("foo?bar"));
         assertEquals("foo___bar", Message.cleanKey("foo +?bar"));
         assertEquals("_", Message.cleanKey(" "));
+        assertEquals("_foo_", Message.cleanKey(" foo "));
+        assertEquals("foo", Message.cleanKey("foo"));
     }
 
     @Test
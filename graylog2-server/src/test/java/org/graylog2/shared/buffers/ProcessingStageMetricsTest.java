@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.buffers;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.eventbus.EventBus;
+import org.graylog2.indexer.messages.SerializationMemoizingMessage;
+import org.graylog2.plugin.IOState;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageFactory;
+import org.graylog2.plugin.TestMessageFactory;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.inputs.MessageInput;
+import org.graylog2.shared.buffers.ProcessingStageMetrics.Stage;
+import org.graylog2.shared.inputs.InputRegistry;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.graylog2.shared.buffers.ProcessingStageMetrics.metricName;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProcessingStageMetricsTest {
+    private final MessageFactory messageFactory = new TestMessageFactory();
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final EventBus eventBus = new EventBus();
+    private final InputRegistry inputRegistry = new InputRegistry();
+    private final MessageInput input = mock(MessageInput.class);
+    private final DateTime now = new DateTime(2024, 1, 1, 0, 0, DateTimeZone.UTC);
+    private IOState<MessageInput> inputState;
+
+    @BeforeEach
+    void setUp() {
+        DateTimeUtils.setCurrentMillisFixed(now.getMillis());
+        when(input.getId()).thenReturn("input-1");
+        when(input.getUniqueReadableId()).thenReturn("org.graylog2.inputs.TestInput.input-1");
+        inputState = new IOState<>(eventBus, input, IOState.Type.RUNNING);
+        inputRegistry.add(inputState);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    void recordsStagesOfSampledMessages() {
+        final ProcessingStageMetrics metrics = metrics(1);
+        final Message message = message();
+
+        metrics.recordInputBuffer(now.minusMillis(5));
+        metrics.sample(message, now.minusMillis(20), 1000L);
+        assertThat(message.isProcessingLatencySampled()).isTrue();
+
+        metrics.record(message, Stage.PIPELINES, 2000L);
+        metrics.startStage(message);
+        metrics.finishStage(message, Stage.OUTPUT_BUFFER);
+        metrics.finishStage(new SerializationMemoizingMessage(message), Stage.INDEXING);
+
+        assertThat(metricRegistry.timer(metricName(Stage.INPUT_BUFFER)).getCount()).isEqualTo(1);
+        for (Stage stage : new Stage[]{Stage.JOURNAL, Stage.DECODE, Stage.PIPELINES, Stage.OUTPUT_BUFFER, Stage.INDEXING}) {
+            assertThat(metricRegistry.timer(metricName(stage)).getCount()).as(stage.metricName()).isEqualTo(1);
+            assertThat(metricRegistry.timer(metricName(stage, input)).getCount()).as(stage.metricName()).isEqualTo(1);
+        }
+        assertThat(metricRegistry.timer(metricName(Stage.INPUT_BUFFER)).getSnapshot().getMax())
+                .isCloseTo(TimeUnit.MILLISECONDS.toNanos(5), within(TimeUnit.MICROSECONDS.toNanos(100)));
+        assertThat(metricRegistry.timer(metricName(Stage.JOURNAL)).getSnapshot().getMax())
+                .isCloseTo(TimeUnit.MILLISECONDS.toNanos(20), within(TimeUnit.MICROSECONDS.toNanos(200)));
+        assertThat(metricRegistry.timer(metricName(Stage.DECODE)).getSnapshot().getMax()).isCloseTo(1000L, within(10L));
+        assertThat(metricRegistry.timer(metricName(Stage.EXTRACTORS)).getCount()).isZero();
+        assertThat(metricRegistry.getTimers()).doesNotContainKey(metricName(Stage.INPUT_BUFFER, input));
+    }
+
+    @Test
+    void recordsLatenciesAboveTheRangeAsHighestTrackableValue() {
+        final ProcessingStageMetrics metrics = metrics(1);
+        final Message message = message();
+
+        metrics.sample(message, now.minusHours(30), TimeUnit.HOURS.toNanos(2));
+
+        assertThat(metricRegistry.timer(metricName(Stage.JOURNAL)).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.timer(metricName(Stage.JOURNAL)).getSnapshot().getMax())
+                .isGreaterThanOrEqualTo(TimeUnit.HOURS.toNanos(24));
+        assertThat(metricRegistry.timer(metricName(Stage.DECODE)).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.timer(metricName(Stage.DECODE)).getSnapshot().getMax())
+                .isBetween(TimeUnit.HOURS.toNanos(1), TimeUnit.HOURS.toNanos(2));
+        assertThat(metricRegistry.timer(metricName(Stage.JOURNAL, input)).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void removesTimersOfStoppedInputs() {
+        final ProcessingStageMetrics metrics = metrics(1);
+
+        metrics.sample(message(), now.minusMillis(20), 1000L);
+        assertThat(metricRegistry.getTimers()).containsKey(metricName(Stage.DECODE, input));
+
+        inputState.setState(IOState.Type.STOPPED);
+        assertThat(metricRegistry.getTimers().keySet()).noneMatch(name -> name.startsWith(input.getUniqueReadableId()));
+
+        // Messages of the stopped input which are still processed don't register the timers again
+        metrics.sample(message(), now.minusMillis(20), 1000L);
+        assertThat(metricRegistry.getTimers().keySet()).noneMatch(name -> name.startsWith(input.getUniqueReadableId()));
+        assertThat(metricRegistry.timer(metricName(Stage.DECODE)).getCount()).isEqualTo(2);
+
+        inputState.setState(IOState.Type.RUNNING);
+        metrics.sample(message(), now.minusMillis(20), 1000L);
+        assertThat(metricRegistry.timer(metricName(Stage.DECODE, input)).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotRecordAnythingIfDisabled() {
+        final ProcessingStageMetrics metrics = metrics(0);
+        final Message message = message();
+
+        metrics.recordInputBuffer(Tools.nowUTC());
+        metrics.sample(message, Tools.nowUTC(), 1000L);
+        metrics.record(message, Stage.PIPELINES, 2000L);
+        metrics.startStage(message);
+        metrics.finishStage(message, Stage.OUTPUT_BUFFER);
+
+        assertThat(message.isProcessingLatencySampled()).isFalse();
+        for (Stage stage : Stage.values()) {
+            assertThat(metricRegistry.timer(metricName(stage)).getCount()).as(stage.metricName()).isZero();
+        }
+        assertThat(metricRegistry.getTimers().keySet()).noneMatch(name -> name.startsWith(input.getUniqueReadableId()));
+    }
+
+    private ProcessingStageMetrics metrics(int sampleRate) {
+        return new ProcessingStageMetrics(metricRegistry, inputRegistry, eventBus, sampleRate);
+    }
+
+    private Message message() {
+        final Message message = messageFactory.createMessage("test", "localhost", Tools.nowUTC());
+        message.setSourceInputId("input-1");
+        return message;
+    }
+}
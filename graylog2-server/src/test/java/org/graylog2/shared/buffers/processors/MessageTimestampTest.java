@@ -19,6 +19,7 @@ package org.graylog2.shared.buffers.processors;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.eventbus.EventBus;
 import jakarta.inject.Provider;
+import org.graylog.events.processor.streaming.StreamingFilterEventEvaluator;
 import org.graylog.failure.FailureSubmissionService;
 import org.graylog2.buffers.OutputBuffer;
 import org.graylog2.cluster.ClusterConfigChangedEvent;
@@ -30,6 +31,8 @@ import org.graylog2.plugin.TestMessageFactory;
 import org.graylog2.plugin.buffers.MessageEvent;
 import org.graylog2.plugin.cluster.ClusterConfigService;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.shared.buffers.ProcessingStageMetrics;
+import org.graylog2.shared.inputs.InputRegistry;
 import org.graylog2.streams.StreamMetrics;
 import org.graylog2.system.processing.ProcessingStatusRecorder;
 import org.joda.time.DateTime;
@@ -147,7 +150,9 @@ class MessageTimestampTest {
                 Mockito.mock(FailureSubmissionService.class),
                 streamMetrics,
                 clusterConfigService,
-                Mockito.mock(EventBus.class)
+                Mockito.mock(EventBus.class),
+                Mockito.mock(StreamingFilterEventEvaluator.class),
+                new ProcessingStageMetrics(metricRegistry, new InputRegistry(), new EventBus(), 0)
         );
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.shared.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class SampledTimerTest {
+    @Test
+    void countsAllExecutionsButMeasuresOnlySamples() {
+        final SampledTimer timer = new SampledTimer(10);
+
+        for (int i = 0; i < 10_000; i++) {
+            try (Timer.Context ignored = timer.time()) {
+                // Nothing to measure
+            }
+        }
+
+        assertThat(timer.getCount()).isEqualTo(10_000);
+        assertThat(timer.getSampledCount()).isBetween(1L, 2_000L);
+    }
+
+    @Test
+    void measuresEveryExecutionWithSampleRateOne() {
+        final SampledTimer timer = new SampledTimer(1);
+
+        for (int i = 0; i < 100; i++) {
+            timer.time().stop();
+        }
+
+        assertThat(timer.getCount()).isEqualTo(100);
+        assertThat(timer.getSampledCount()).isEqualTo(100);
+    }
+
+    @Test
+    void rejectsInvalidSampleRates() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new SampledTimer(0));
+    }
+
+    @Test
+    void registersPlainTimersWithoutSampling() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+
+        final Timer timer = SampledTimer.timer(metricRegistry, "timer", 1);
+
+        assertThat(timer).isNotInstanceOf(SampledTimer.class);
+        assertThat(metricRegistry.getTimers()).containsEntry("timer", timer);
+    }
+
+    @Test
+    void reusesAndReplacesRegisteredTimers() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        metricRegistry.timer("timer");
+
+        final Timer timer = SampledTimer.timer(metricRegistry, "timer", 10);
+
+        assertThat(timer).isInstanceOf(SampledTimer.class);
+        assertThat(((SampledTimer) timer).getSampleRate()).isEqualTo(10);
+        assertThat(metricRegistry.getTimers()).containsEntry("timer", timer);
+        assertThat(SampledTimer.timer(metricRegistry, "timer", 10)).isSameAs(timer);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class MultiSubstringMatcherTest {
+    @Test
+    void findsAllOccurringSubstrings() {
+        final MultiSubstringMatcher matcher = MultiSubstringMatcher.of(List.of("he", "she", "his", "hers", "xyz"));
+
+        assertThat(matcher.size()).isEqualTo(5);
+        assertThat(matcher.matches("ushers")).isEqualTo(bits(0, 1, 3));
+        assertThat(matcher.matches("this")).isEqualTo(bits(2));
+        assertThat(matcher.matches("")).isEqualTo(bits());
+        assertThat(matcher.matches("nothing to see")).isEqualTo(bits());
+    }
+
+    @Test
+    void followsFailureLinks() {
+        final MultiSubstringMatcher matcher = MultiSubstringMatcher.of(List.of("abcd", "bcx", "c"));
+
+        assertThat(matcher.matches("abcx")).isEqualTo(bits(1, 2));
+        assertThat(matcher.matches("aabcabcd")).isEqualTo(bits(0, 2));
+    }
+
+    @Test
+    void handlesDuplicatesAndNestedSubstrings() {
+        final MultiSubstringMatcher matcher = MultiSubstringMatcher.of(List.of("error", "error", "err", "ror"));
+
+        assertThat(matcher.matches("an error occurred")).isEqualTo(bits(0, 1, 2, 3));
+        assertThat(matcher.matches("errand")).isEqualTo(bits(2));
+    }
+
+    @Test
+    void behavesLikeContains() {
+        final List<String> substrings = List.of("GET", "POST", "/api/", "login", "200", "500", "a", "aa", "aaa");
+        final MultiSubstringMatcher matcher = MultiSubstringMatcher.of(substrings);
+        final List<String> texts = List.of("GET /api/login 200", "POST /index.html 500", "aa", "", "PUT /ap/ 2000");
+
+        for (String text : texts) {
+            final BitSet matches = matcher.matches(text);
+            for (int i = 0; i < substrings.size(); i++) {
+                assertThat(matches.get(i)).as("'%s' in '%s'", substrings.get(i), text).isEqualTo(text.contains(substrings.get(i)));
+            }
+        }
+    }
+
+    @Test
+    void rejectsEmptySubstrings() {
+        assertThatIllegalArgumentException().isThrownBy(() -> MultiSubstringMatcher.of(List.of("foo", "")));
+    }
+
+    private static BitSet bits(int... indices) {
+        final BitSet bits = new BitSet();
+        for (int index : indices) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.utilities;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PatternCacheTest {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final PatternCache cache = new PatternCache(metricRegistry);
+
+    @Test
+    void compilesRegexOncePerDistinctValue() {
+        final Pattern pattern = cache.regex("^foo.*");
+
+        assertThat(cache.regex("^foo.*")).isSameAs(pattern);
+        assertThat(cache.regex("^bar.*")).isNotSameAs(pattern);
+        assertThat(cache.regex("^foo.*", Pattern.DOTALL)).isNotSameAs(pattern)
+                .satisfies(p -> assertThat(p.flags()).isEqualTo(Pattern.DOTALL));
+
+        assertThat(metricRegistry.meter("org.graylog2.utilities.PatternCache.hits").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter("org.graylog2.utilities.PatternCache.misses").getCount()).isEqualTo(3);
+        assertThat(metricRegistry.timer("org.graylog2.utilities.PatternCache.compile-time").getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void doesNotCacheInvalidPatterns() {
+        assertThatThrownBy(() -> cache.regex("foo(")).isInstanceOf(PatternSyntaxException.class);
+        assertThatThrownBy(() -> cache.regex("foo(")).isInstanceOf(PatternSyntaxException.class);
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void cachesTypesSeparately() {
+        final AtomicInteger compilations = new AtomicInteger();
+
+        cache.get("custom", "foo", pattern -> pattern + compilations.incrementAndGet());
+        assertThat(cache.<String>get("custom", "foo", pattern -> pattern + compilations.incrementAndGet())).isEqualTo("foo1");
+        assertThat(cache.<String>get("other", "foo", pattern -> pattern + compilations.incrementAndGet())).isEqualTo("foo2");
+        cache.regex("foo");
+
+        cache.invalidate("custom");
+
+        assertThat(cache.<String>get("custom", "foo", pattern -> pattern + compilations.incrementAndGet())).isEqualTo("foo3");
+        assertThat(cache.<String>get("other", "foo", pattern -> pattern + compilations.incrementAndGet())).isEqualTo("foo2");
+        assertThat(cache.size()).isEqualTo(3);
+    }
+
+    @Test
+    void isBoundedByPatternLength() {
+        final PatternCache smallCache = new PatternCache(new MetricRegistry(), 100);
+
+        for (int i = 0; i < 100; i++) {
+            smallCache.regex("pattern-" + i);
+        }
+
+        assertThat(smallCache.size()).isLessThanOrEqualTo(10);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2020 Graylog, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the Server Side Public License, version 1,
+ * as published by MongoDB, Inc.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * Server Side Public License for more details.
+ *
+ * You should have received a copy of the Server Side Public License
+ * along with this program. If not, see
+ * <http://www.mongodb.com/licensing/server-side-public-license>.
+ */
+package org.graylog2.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RegexLiteralsTest {
+    @Test
+    void findsLongestLiteral() {
+        assertThat(RegexLiterals.requiredLiteral("foo")).contains("foo");
+        assertThat(RegexLiterals.requiredLiteral("^foo\\d+barbaz$")).contains("barbaz");
+        assertThat(RegexLiterals.requiredLiteral("user=(\\w+) action=login")).contains(" action=login");
+        assertThat(RegexLiterals.requiredLiteral("[a-z]+ failed")).contains(" failed");
+        assertThat(RegexLiterals.requiredLiteral("(?<user>\\w+)@example\\.com")).contains("@example.com");
+        assertThat(RegexLiterals.requiredLiteral("id:\\Q[1.2]\\E")).contains("id:[1.2]");
+    }
+
+    @Test
+    void handlesQuantifiers() {
+        assertThat(RegexLiterals.requiredLiteral("colou?r")).contains("colo");
+        assertThat(RegexLiterals.requiredLiteral("abc*d")).contains("ab");
+        assertThat(RegexLiterals.requiredLiteral("ab+cd")).contains("ab");
+        assertThat(RegexLiterals.requiredLiteral("ab{2,3}cde")).contains("cde");
+        assertThat(RegexLiterals.requiredLiteral("x(abc)?yz")).contains("yz");
+        assertThat(RegexLiterals.requiredLiteral("x[abc]*?yz")).contains("yz");
+    }
+
+    @Test
+    void looksIntoRequiredGroups() {
+        assertThat(RegexLiterals.requiredLiterals("(?<all>(foo)bar(?:baz|qux)) (x)+(?<opt>yz)?"))
+                .containsExactly("foo", "bar", " ", "x");
+        assertThat(RegexLiterals.requiredLiterals("(?<![0-9])abc(?=def)")).containsExactly("abc");
+        assertThat(RegexLiterals.requiredLiterals("(?i:foo)bar")).containsExactly("bar");
+    }
+
+    @Test
+    void ignoresEscapeSequences() {
+        assertThat(RegexLiterals.requiredLiteral("\\x41BC")).contains("BC");
+        assertThat(RegexLiterals.requiredLiteral("\\u0041BC")).contains("BC");
+        assertThat(RegexLiterals.requiredLiteral("\\p{Alpha}+xy")).contains("xy");
+        assertThat(RegexLiterals.requiredLiteral("(a)\\1bc")).contains("bc");
+        assertThat(RegexLiterals.requiredLiteral("\\d\\d\\d")).isEmpty();
+    }
+
+    @Test
+    void givesUpOnUnsupportedExpressions() {
+        assertThat(RegexLiterals.requiredLiteral("foo|bar")).isEmpty();
+        assertThat(RegexLiterals.requiredLiteral("(?i)foo")).isEmpty();
+        assertThat(RegexLiterals.requiredLiteral(".*")).isEmpty();
+        assertThat(RegexLiterals.requiredLiteral("")).isEmpty();
+    }
+
+    @Test
+    void literalIsPartOfEveryMatch() {
+        final List<String> regexes = List.of("colou?r", "ab+cd", "^\\[(\\d+)\\] ERROR", "x[abc]*?yz", "a\\.b{0,2}c");
+        final List<String> texts = List.of("color", "colour", "abbbcd", "[42] ERROR", "xyz", "xaabyz", "a.c", "a.bbc");
+
+        for (String regex : regexes) {
+            final String literal = RegexLiterals.requiredLiteral(regex).orElseThrow();
+            final Pattern pattern = Pattern.compile(regex, Pattern.DOTALL);
+            for (String text : texts) {
+                if (pattern.matcher(text).find()) {
+                    assertThat(text).as(regex).contains(literal);
+                }
+            }
+        }
+    }
+}